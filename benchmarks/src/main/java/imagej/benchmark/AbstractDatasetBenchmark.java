@@ -0,0 +1,93 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.scijava.Context;
+
+/**
+ * Base class of benchmarks running on a {@link Dataset} of random data,
+ * parameterized over pixel type and image size.
+ */
+@State(Scope.Benchmark)
+public abstract class AbstractDatasetBenchmark {
+
+	@Param({ "uint8", "uint16", "float32" })
+	public String type;
+
+	@Param({ "512", "2048" })
+	public int size;
+
+	protected Context context;
+
+	protected Dataset dataset;
+
+	@Setup
+	public void setUp() {
+		context = new Context();
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		dataset =
+			BenchmarkData.create(datasetService, type, size, getChannelCount());
+		BenchmarkData.fillRandom(dataset, 0x5eedL);
+		prepare();
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.dispose();
+	}
+
+	// -- Internal methods --
+
+	/** Gets the number of channels of the benchmarked {@link Dataset}. */
+	protected int getChannelCount() {
+		return 1;
+	}
+
+	/** Prepares anything else the benchmark needs, once the data exists. */
+	protected void prepare() {
+		// nothing by default
+	}
+
+}
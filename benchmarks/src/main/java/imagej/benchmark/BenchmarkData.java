@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Creates the {@link Dataset}s the benchmarks run on.
+ */
+public final class BenchmarkData {
+
+	private BenchmarkData() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Creates a square {@link Dataset} of the given pixel type.
+	 * 
+	 * @param type one of "uint8", "uint16" or "float32"
+	 * @param size the width and height of the image
+	 * @param channels the number of channels; if greater than 1, the image has a
+	 *          third, channel axis
+	 */
+	public static Dataset create(final DatasetService datasetService,
+		final String type, final int size, final int channels)
+	{
+		final long[] dims;
+		final AxisType[] axes;
+		if (channels > 1) {
+			dims = new long[] { size, size, channels };
+			axes = new AxisType[] { Axes.X, Axes.Y, Axes.CHANNEL };
+		}
+		else {
+			dims = new long[] { size, size };
+			axes = new AxisType[] { Axes.X, Axes.Y };
+		}
+		final String name = type + " " + size + "x" + size;
+		if (type.equals("uint8")) {
+			return datasetService.create(dims, name, axes, 8, false, false);
+		}
+		if (type.equals("uint16")) {
+			return datasetService.create(dims, name, axes, 16, false, false);
+		}
+		if (type.equals("float32")) {
+			return datasetService.create(dims, name, axes, 32, true, true);
+		}
+		throw new IllegalArgumentException("Unknown pixel type: " + type);
+	}
+
+	/**
+	 * Fills the given {@link Dataset} with reproducible pseudorandom values. For
+	 * integer types, values span the whole range of the type; floating point
+	 * values lie in [0, 1000).
+	 */
+	public static void fillRandom(final Dataset dataset, final long seed) {
+		final Random random = new Random(seed);
+		final RealType<?> type = dataset.getType();
+		final boolean integer = dataset.isInteger();
+		final double min = integer ? type.getMinValue() : 0;
+		final double range = integer ? type.getMaxValue() - min + 1 : 1000;
+		final Cursor<? extends RealType<?>> cursor =
+			dataset.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			double value = min + random.nextDouble() * range;
+			if (integer) value = Math.floor(value);
+			cursor.next().setReal(value);
+		}
+	}
+
+}
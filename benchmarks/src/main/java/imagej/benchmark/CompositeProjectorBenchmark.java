@@ -0,0 +1,106 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.data.display.ColorTables;
+import imagej.data.display.SourceOptimizedCompositeXYProjector;
+
+import java.util.ArrayList;
+
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.RealLUTConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Benchmarks compositing three channels into an {@link ARGBScreenImage} with
+ * {@link SourceOptimizedCompositeXYProjector}, on the calling thread alone or
+ * across the {@link ThreadService}, and optionally restricted to a viewport
+ * covering a quarter of the image.
+ */
+public class CompositeProjectorBenchmark extends AbstractDatasetBenchmark {
+
+	private static final ColorTable[] LUTS = { ColorTables.RED,
+		ColorTables.GREEN, ColorTables.BLUE };
+
+	@Param({ "false", "true" })
+	public boolean parallel;
+
+	@Param({ "false", "true" })
+	public boolean viewport;
+
+	private SourceOptimizedCompositeXYProjector<?, ?, ?> projector;
+
+	@Override
+	protected int getChannelCount() {
+		return LUTS.length;
+	}
+
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	protected void prepare() {
+		// NB - floating point data is generated in [0, 1000)
+		final boolean integer = dataset.isInteger();
+		final double min = integer ? dataset.getType().getMinValue() : 0;
+		final double max = integer ? dataset.getType().getMaxValue() : 1000;
+		final ArrayList<RealLUTConverter> converters =
+			new ArrayList<RealLUTConverter>();
+		for (final ColorTable lut : LUTS) {
+			converters.add(new RealLUTConverter(min, max, lut));
+		}
+		final ARGBScreenImage screenImage = new ARGBScreenImage(size, size);
+		projector =
+			new SourceOptimizedCompositeXYProjector(dataset.getImgPlus(),
+				screenImage, converters, 2);
+		projector.setComposite(true);
+		if (parallel) {
+			projector.setThreadService(context.getService(ThreadService.class));
+		}
+		if (viewport) {
+			projector.setViewport(size / 4, size / 4, 3 * size / 4 - 1,
+				3 * size / 4 - 1);
+		}
+	}
+
+	@Benchmark
+	public void map() {
+		projector.map();
+	}
+
+}
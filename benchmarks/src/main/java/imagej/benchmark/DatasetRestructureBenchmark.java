@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.data.Dataset;
+import imagej.data.DefaultDataset;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+/**
+ * Benchmarks the {@link DefaultDataset} operations that replace or copy its
+ * whole structure: duplication, bulk data copies, and swapping in a new
+ * {@link ImgPlus} (as the crop, resize and type change commands do).
+ */
+public class DatasetRestructureBenchmark extends AbstractDatasetBenchmark {
+
+	private Dataset scratch;
+
+	private ImgPlus<? extends RealType<?>> original;
+
+	private ImgPlus<? extends RealType<?>> other;
+
+	private boolean flip;
+
+	@Override
+	protected void prepare() {
+		scratch = dataset.duplicate();
+		original = scratch.getImgPlus();
+		other = dataset.duplicateBlank().getImgPlus();
+	}
+
+	@Benchmark
+	public Dataset duplicate() {
+		return dataset.duplicate();
+	}
+
+	@Benchmark
+	public Dataset copyDataFrom() {
+		scratch.copyDataFrom(dataset);
+		return scratch;
+	}
+
+	@Benchmark
+	public Dataset setImgPlus() {
+		flip = !flip;
+		scratch.setImgPlus(flip ? other : original);
+		return scratch;
+	}
+
+}
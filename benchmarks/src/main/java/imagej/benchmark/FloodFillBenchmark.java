@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.data.ChannelCollection;
+import imagej.data.DrawingTool;
+import imagej.data.FloodFiller;
+import imagej.render.RenderingService;
+
+import java.util.Collections;
+
+import net.imglib2.Cursor;
+import net.imglib2.type.numeric.RealType;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks {@link FloodFiller}. The image starts out uniform and each
+ * invocation refills the whole plane with the other of two values.
+ */
+public class FloodFillBenchmark extends AbstractDatasetBenchmark {
+
+	@Param({ "4", "8" })
+	public int connectivity;
+
+	private DrawingTool tool;
+
+	private long[] position;
+
+	private boolean flip;
+
+	@Override
+	protected void prepare() {
+		final Cursor<? extends RealType<?>> cursor =
+			dataset.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			cursor.next().setZero();
+		}
+		tool =
+			new DrawingTool(dataset, context.getService(RenderingService.class));
+		position = new long[dataset.numDimensions()];
+		tool.setPosition(position);
+	}
+
+	@Benchmark
+	public boolean fill() {
+		flip = !flip;
+		final double value = flip ? 1 : 0;
+		tool.setChannels(new ChannelCollection(Collections.singletonList(value)));
+		final FloodFiller filler = new FloodFiller(tool);
+		if (connectivity == 4) return filler.fill4(0, 0, position);
+		return filler.fill8(0, 0, position);
+	}
+
+}
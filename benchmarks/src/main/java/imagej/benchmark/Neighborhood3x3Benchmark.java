@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.core.commands.neigh.Neighborhood3x3Operation;
+import imagej.core.commands.neigh.Neighborhood3x3RowWatcher;
+import imagej.core.commands.neigh.Neighborhood3x3Watcher;
+import imagej.data.Dataset;
+import imagej.util.RealRect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Benchmarks {@link Neighborhood3x3Operation} with a 3x3 mean filter, through
+ * both its row-at-a-time path and its per-neighborhood path.
+ */
+public class Neighborhood3x3Benchmark extends AbstractDatasetBenchmark {
+
+	@Param({ "true", "false" })
+	public boolean rows;
+
+	private RealRect selection;
+
+	/** Copy of the data to smooth, since the operation works in place. */
+	private Dataset scratch;
+
+	@Override
+	protected void prepare() {
+		selection = new RealRect(0, 0, size, size);
+		scratch = dataset.duplicate();
+	}
+
+	@Setup(Level.Invocation)
+	public void restoreData() {
+		scratch.copyDataFrom(dataset);
+	}
+
+	@Benchmark
+	public void smooth() {
+		final Neighborhood3x3Watcher watcher =
+			rows ? new MeanRowWatcher() : new MeanWatcher();
+		new Neighborhood3x3Operation(scratch, selection, watcher).run();
+	}
+
+	// -- Helper classes --
+
+	/** Computes the mean of each neighborhood, one location at a time. */
+	private static class MeanWatcher implements Neighborhood3x3Watcher {
+
+		private double sum;
+
+		@Override
+		public void setup() {
+			// nothing to do
+		}
+
+		@Override
+		public void initializeNeighborhood(final long[] position) {
+			sum = 0;
+		}
+
+		@Override
+		public void visitLocation(final int dx, final int dy, final double value)
+		{
+			sum += value;
+		}
+
+		@Override
+		public double calcOutputValue() {
+			return sum / 9;
+		}
+	}
+
+	/** Computes the mean of each neighborhood, a whole row at a time. */
+	private static class MeanRowWatcher extends MeanWatcher implements
+		Neighborhood3x3RowWatcher
+	{
+
+		@Override
+		public void calcOutputRow(final double[] above, final double[] row,
+			final double[] below, final double[] output, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				output[i] =
+					(above[i] + above[i + 1] + above[i + 2] + row[i] + row[i + 1] +
+						row[i + 2] + below[i] + below[i + 1] + below[i + 2]) / 9;
+			}
+		}
+	}
+
+}
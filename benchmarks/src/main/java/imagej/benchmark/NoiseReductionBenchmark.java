@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.benchmark;
+
+import imagej.core.commands.assign.noisereduce.AbstractNoiseReducerPlugin;
+import imagej.core.commands.assign.noisereduce.NoiseReductionMean;
+import imagej.core.commands.assign.noisereduce.NoiseReductionMedian;
+import imagej.core.commands.assign.noisereduce.RadialNeigh;
+import imagej.core.commands.assign.noisereduce.RectangularNeigh;
+import imagej.data.Dataset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+
+/**
+ * Benchmarks the median and mean noise reducers over rectangular and radial
+ * neighborhoods.
+ */
+public class NoiseReductionBenchmark extends AbstractDatasetBenchmark {
+
+	@Param({ "1", "3" })
+	public int radius;
+
+	@Param({ "rectangular", "radial" })
+	public String neighborhood;
+
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public Dataset median() {
+		return reduce(new NoiseReductionMedian());
+	}
+
+	@Benchmark
+	@SuppressWarnings("rawtypes")
+	public Dataset mean() {
+		return reduce(new NoiseReductionMean());
+	}
+
+	// -- Helper methods --
+
+	@SuppressWarnings("rawtypes")
+	private Dataset reduce(final AbstractNoiseReducerPlugin reducer) {
+		context.inject(reducer);
+		reducer.setInput(dataset);
+		if (neighborhood.equals("radial")) {
+			reducer.setNeighborhood(new RadialNeigh(2, radius));
+		}
+		else {
+			final long[] offsets = { radius, radius };
+			reducer.setNeighborhood(new RectangularNeigh(offsets, offsets.clone()));
+		}
+		reducer.run();
+		return reducer.getOutput();
+	}
+
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Utility methods for splitting work across the {@link ThreadService}'s
+ * worker threads.
+ */
+public final class ParallelUtils {
+
+	private ParallelUtils() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Returns the number of pieces a job of the given size should be split
+	 * into, such that no piece is smaller than the given minimum (except when
+	 * the whole job is) and no more pieces are made than there are processors.
+	 */
+	public static int chunkCount(final long size, final long minChunkSize) {
+		final int cpus = Runtime.getRuntime().availableProcessors();
+		if (size <= minChunkSize) return 1;
+		return (int) Math.max(1, Math.min(cpus, size / minChunkSize));
+	}
+
+	/**
+	 * Runs the given tasks on the {@link ThreadService} and waits for all of
+	 * them to finish. A single task is simply run on the calling thread.
+	 * 
+	 * @throws RuntimeException if any task fails; unchecked exceptions thrown
+	 *           by a task are rethrown as is.
+	 */
+	public static void runAndWait(final ThreadService threadService,
+		final List<? extends Runnable> tasks)
+	{
+		if (tasks.size() == 1) {
+			tasks.get(0).run();
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>(tasks.size());
+		for (final Runnable task : tasks) {
+			futures.add(threadService.run(task));
+		}
+		waitFor(futures);
+	}
+
+	/**
+	 * Waits for all the given {@link Future}s to complete.
+	 * 
+	 * @throws RuntimeException if any of the computations failed; unchecked
+	 *           exceptions thrown by a computation are rethrown as is.
+	 */
+	public static void waitFor(final List<? extends Future<?>> futures) {
+		RuntimeException failure = null;
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				if (failure == null) failure = new IllegalStateException(e);
+			}
+			catch (final ExecutionException e) {
+				if (failure != null) continue;
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					failure = (RuntimeException) cause;
+				}
+				else failure = new IllegalStateException(cause);
+			}
+		}
+		if (failure != null) throw failure;
+	}
+
+}
@@ -168,6 +168,15 @@ public interface Dataset extends Data, Metadata {
 	@Override
 	void update();
 
+	/**
+	 * Like {@link #update()}, but reports that only the given planes have
+	 * changed, letting listeners that track individual planes keep what they
+	 * know about the others.
+	 * 
+	 * @see imagej.data.event.DatasetUpdatedEvent#getPlaneNumbers()
+	 */
+	void updatePlanes(int... planeNumbers);
+
 	/**
 	 * {@inheritDoc}
 	 * 
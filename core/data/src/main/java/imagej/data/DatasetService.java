@@ -133,9 +133,22 @@ <T extends RealType<T>> Dataset create(
 	 */
 	boolean canSave(String destination);
 
-	/** Loads a dataset from a source (such as a file on disk). */
+	/**
+	 * Loads a dataset from a source (such as a file on disk). Sources too large
+	 * to comfortably fit in memory are opened lazily, as with
+	 * {@link #open(String, boolean)}.
+	 */
 	Dataset open(String source) throws IOException;
 
+	/**
+	 * Loads a dataset from a source (such as a file on disk).
+	 * 
+	 * @param lazy If true, planes are only read from the source when first
+	 *          accessed, and only a bounded number of them are kept in memory.
+	 *          Modified planes are retained until the dataset is saved.
+	 */
+	Dataset open(String source, boolean lazy) throws IOException;
+
 	/** Reverts the given dataset to its original source. */
 	void revert(Dataset dataset) throws IOException;
 
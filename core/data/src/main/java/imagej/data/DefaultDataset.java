@@ -41,7 +41,16 @@
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.data.types.DataTypeService;
+import imagej.options.OptionsService;
+import imagej.util.ParallelUtils;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import net.imglib2.Cursor;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
@@ -60,6 +69,7 @@
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.meta.CalibratedAxis;
@@ -73,6 +83,7 @@
 import org.scijava.Context;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default implementation of {@link Dataset}.
@@ -88,6 +99,15 @@ public class DefaultDataset extends AbstractData implements Dataset {
 	@Parameter
 	private DataTypeService dataTypeService;
 
+	@Parameter(required = false)
+	private HistogramService histogramService;
+
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	private ImgPlus<? extends RealType<?>> imgPlus;
 	private boolean rgbMerged;
 	private boolean isDirty;
@@ -111,6 +131,8 @@ protected void register() {
 	@Override
 	protected void delete() {
 		publish(new DatasetDeletedEvent(this));
+		// free the scratch file backing the pixels, if any
+		ImgStorage.dispose(imgPlus.getImg());
 	}
 
 	// -- Dataset methods --
@@ -185,7 +207,8 @@ public Object getPlane(final int planeNumber) {
 	@Override
 	public Object getPlane(final int planeNumber, final boolean copyOK) {
 		final Img<? extends RealType<?>> img = imgPlus.getImg();
-		if (img instanceof PlanarAccess) {
+		// NB: The planes of a LazyPlanarImg may be evicted at any time.
+		if (img instanceof PlanarAccess && !(img instanceof LazyPlanarImg)) {
 			final PlanarAccess<?> planarAccess = (PlanarAccess<?>) img;
 			final Object plane = planarAccess.getPlane(planeNumber);
 			if (plane instanceof ArrayDataAccess) return ((ArrayDataAccess<?>) plane)
@@ -219,7 +242,7 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 	@Override
 	public boolean setPlane(final int planeNum, final Object newPlane) {
 		if (setPlaneSilently(planeNum, newPlane)) {
-			update(false);
+			updatePlanes(planeNum);
 			return true;
 		}
 		return false;
@@ -256,6 +279,12 @@ public String getTypeLabelLong() {
 
 	@Override
 	public Dataset duplicate() {
+		if (isScratchStorage()) {
+			// copy plane by plane into a new scratch-backed image
+			final Dataset d = duplicateBlank();
+			copyInto(d);
+			return d;
+		}
 		ImgPlus<? extends RealType<?>> newImgPlus = imgPlus.copy();
 		return new DefaultDataset(getContext(), newImgPlus);
 		// OLD WAY
@@ -270,7 +299,8 @@ public Dataset duplicateBlank() {
 		final ImgPlus untypedImg = imgPlus;
 		@SuppressWarnings("unchecked")
 		final Dataset d =
-			new DefaultDataset(getContext(), createBlankCopy(untypedImg));
+			new DefaultDataset(getContext(), createBlankCopy(optionsService,
+				untypedImg));
 		d.setRGBMerged(isRGBMerged());
 		return d;
 	}
@@ -316,7 +346,8 @@ public void copyDataFrom(final Dataset other) {
 		final ImgFactory factory = getImgPlus().factory();
 		@SuppressWarnings("unchecked")
 		final Img<? extends RealType<?>> newImg =
-			factory.create(other.getDims(), other.getType());
+			ImgStorage.create(optionsService, factory, other.getDims(), other
+				.getType());
 
 		// copy the data into the new img
 		copyDataValues(other.getImgPlus(), newImg);
@@ -339,6 +370,17 @@ public void update() {
 		update(false);
 	}
 
+	@Override
+	public void updatePlanes(final int... planeNumbers) {
+		setDirty(true);
+		// NB - invalidate before publishing, in case a listener asks for a
+		// histogram before the service has seen the event
+		if (histogramService != null) {
+			histogramService.invalidate(this, planeNumbers);
+		}
+		publish(new DatasetUpdatedEvent(this, planeNumbers));
+	}
+
 	@Override
 	public void rebuild() {
 		setDirty(true);
@@ -642,6 +684,7 @@ else if (newPlane instanceof double[]) {
 	private void copyDataValues(final Img<? extends RealType<?>> input,
 		final Img<? extends RealType<?>> output)
 	{
+		if (copyPlanes(input, output)) return;
 		final long[] position = new long[output.numDimensions()];
 		final Cursor<? extends RealType<?>> outputCursor =
 			output.localizingCursor();
@@ -656,6 +699,68 @@ private void copyDataValues(final Img<? extends RealType<?>> input,
 		}
 	}
 
+	/**
+	 * Copies all planes of one planar image into another of the same type and
+	 * dimensions with {@link System#arraycopy}, several planes at once.
+	 * 
+	 * @return false if the images do not share a planar layout, in which case
+	 *         nothing is copied
+	 */
+	private boolean copyPlanes(final Img<?> input, final Img<?> output) {
+		final PlanarImg<?, ?> in = planarImg(input);
+		final PlanarImg<?, ?> out = planarImg(output);
+		if (in == null || out == null) return false;
+		if (in.numDimensions() != out.numDimensions()) return false;
+		for (int d = 0; d < in.numDimensions(); d++) {
+			if (in.dimension(d) != out.dimension(d)) return false;
+		}
+		if (in.firstElement().getClass() != out.firstElement().getClass()) {
+			return false;
+		}
+		final int planeCount = in.numSlices();
+		for (int p = 0; p < planeCount; p++) {
+			final Object src = in.getPlane(p).getCurrentStorageArray();
+			final Object dest = out.getPlane(p).getCurrentStorageArray();
+			if (src.getClass() != dest.getClass()) return false;
+			if (Array.getLength(src) != Array.getLength(dest)) return false;
+		}
+
+		final int workers =
+			threadService == null ? 1 : ParallelUtils.chunkCount(planeCount, 1);
+		final AtomicInteger next = new AtomicInteger();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int w = 0; w < workers; w++) {
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					int p;
+					while ((p = next.getAndIncrement()) < planeCount) {
+						final Object src = in.getPlane(p).getCurrentStorageArray();
+						final Object dest = out.getPlane(p).getCurrentStorageArray();
+						System.arraycopy(src, 0, dest, 0, Array.getLength(src));
+					}
+				}
+			});
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
+		return true;
+	}
+
+	/**
+	 * Gets the {@link PlanarImg} underlying an image, or null if it is not one
+	 * whose planes all reside in memory.
+	 */
+	private PlanarImg<?, ?> planarImg(final Img<?> img) {
+		Img<?> i = img;
+		while (i instanceof ImgPlus) {
+			i = ((ImgPlus<?>) i).getImg();
+		}
+		// NB: A LazyPlanarImg would have to load and pin every plane.
+		if (!(i instanceof PlanarImg) || i instanceof LazyPlanarImg) return null;
+		return (PlanarImg<?, ?>) i;
+	}
+
 	private Object copyOfPlane(final int planeNum) {
 		final long[] dimensions = new long[imgPlus.numDimensions()];
 		imgPlus.dimensions(dimensions);
@@ -721,12 +826,13 @@ private Object copyOfPlane(final int planeNum) {
 
 	/** Makes an image that has same type, container, and dimensions as refImage. */
 	private static <T extends RealType<T>> ImgPlus<T> createBlankCopy(
-		final ImgPlus<T> img)
+		final OptionsService optionsService, final ImgPlus<T> img)
 	{
 		final long[] dimensions = new long[img.numDimensions()];
 		img.dimensions(dimensions);
 		final Img<T> blankImg =
-			img.factory().create(dimensions, img.firstElement());
+			ImgStorage.create(optionsService, img.factory(), dimensions, img
+				.firstElement());
 		return new ImgPlus<T>(blankImg, img);
 	}
 
@@ -738,9 +844,18 @@ private <T extends RealType<?>> ImgPlus<T> wrapAsImgPlus(
 
 	private void update(boolean metadataOnly) {
 		setDirty(true);
+		if (!metadataOnly && histogramService != null) {
+			histogramService.invalidate(this, null);
+		}
 		publish(new DatasetUpdatedEvent(this, metadataOnly));
 	}
 
+	/** Tells whether copies of this dataset are kept in a scratch file. */
+	private boolean isScratchStorage() {
+		return ImgStorage.isScratch(optionsService, imgPlus.factory(), getDims(),
+			getType());
+	}
+
 	private boolean mergedColorCompatible() {
 		if (isSigned()) return false;
 		if (!isInteger()) return false;
@@ -38,6 +38,7 @@
 import imagej.data.display.DataView;
 import imagej.data.display.ImageDisplay;
 import imagej.data.types.DataTypeService;
+import imagej.options.OptionsService;
 import io.scif.FormatException;
 import io.scif.img.ImgIOException;
 import io.scif.img.ImgOpener;
@@ -90,6 +91,9 @@ public final class DefaultDatasetService extends AbstractService implements
 	DatasetService
 {
 
+	/** Files larger than this fraction of the maximum heap are opened lazily. */
+	private static final int LAZY_MEMORY_FRACTION = 4;
+
 	@Parameter
 	private LogService log;
 
@@ -99,6 +103,9 @@ public final class DefaultDatasetService extends AbstractService implements
 	@Parameter
 	private FormatService formatService;
 
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
 	// NB: The create(ImgPlus) method instantiates a
 	// DefaultDataset, which requires a DataTypeService.
 	@Parameter
@@ -183,7 +190,7 @@ public <T extends RealType<T>> Dataset create(
 		final ImgFactory<T> factory, final T type, final long[] dims,
 		final String name, final AxisType[] axes)
 	{
-		final Img<T> img = factory.create(dims, type);
+		final Img<T> img = ImgStorage.create(optionsService, factory, dims, type);
 		final ImgPlus<T> imgPlus = new ImgPlus<T>(img, name, axes, null);
 		return create(imgPlus);
 	}
@@ -217,6 +224,16 @@ public boolean canSave(final String destination) {
 
 	@Override
 	public Dataset open(final String source) throws IOException {
+		final long maxMemory = Runtime.getRuntime().maxMemory();
+		final boolean lazy =
+			new File(source).length() > maxMemory / LAZY_MEMORY_FRACTION;
+		return open(source, lazy);
+	}
+
+	@Override
+	public Dataset open(final String source, final boolean lazy)
+		throws IOException
+	{
 		final ImgOpener imageOpener = new ImgOpener(getContext());
 		// Restore this when NativeType can be eliminated from this class decl.
 		// TODO BDZ 7-17-12 Lowering reliance on NativeType. This cast is safe but
@@ -227,12 +244,13 @@ public Dataset open(final String source) throws IOException {
 		//
 		final ImgOptions options = 
 				new ImgOptions().setIndex(0)
-												.setCheckMode(CheckMode.DEEP)
+												.setCheckMode(lazy ? CheckMode.SHALLOW : CheckMode.DEEP)
 												.setComputeMinMax(false)
-												.setImgModes(ImgMode.PLANAR);
+												.setImgModes(lazy ? ImgMode.CELL : ImgMode.PLANAR);
 		try {
 			@SuppressWarnings("rawtypes")
-			final ImgPlus imgPlus = imageOpener.openImg(source, options);
+			ImgPlus imgPlus = imageOpener.openImg(source, options);
+			if (lazy) imgPlus = makeLazy(imgPlus);
 			@SuppressWarnings("unchecked")
 			final Dataset dataset = create(imgPlus);
 			return dataset;
@@ -278,6 +296,19 @@ public void save(final Dataset dataset, final String destination)
 
 	// -- Helper methods --
 
+	/**
+	 * Wraps a lazily opened image in a {@link LazyPlanarImg}, which keeps a
+	 * bounded number of its planes in memory as native arrays.
+	 */
+	private <T extends RealType<T> & NativeType<T>> ImgPlus<T> makeLazy(
+		final ImgPlus<T> imgPlus)
+	{
+		final Img<T> img = ImgStorage.createLazy(imgPlus.getImg());
+		final ImgPlus<T> lazyImgPlus = new ImgPlus<T>(img, imgPlus);
+		lazyImgPlus.setSource(imgPlus.getSource());
+		return lazyImgPlus;
+	}
+
 	private void invalidParams(final int bitsPerPixel,
 		final boolean signed, final boolean floating)
 	{
@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import imagej.data.options.OptionsStorage;
+import imagej.options.OptionsService;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Decides where the pixels of new images are kept. Planar images larger than
+ * the {@link OptionsStorage} threshold can be kept in a scratch file, with
+ * only a bounded number of planes on the Java heap (see
+ * {@link LazyPlanarImg}). All such images share a single memory budget.
+ */
+final class ImgStorage {
+
+	/** Fraction of the maximum heap usable by the planes of all paged images. */
+	private static final int HEAP_FRACTION = 4;
+
+	/** The memory budget shared by all paged images. */
+	private static final LazyPlanarImg.Budget BUDGET = new LazyPlanarImg.Budget(
+		maxBytes());
+
+	/** Minimum number of planes kept in memory for a paged image. */
+	private static final int MIN_PLANES = 4;
+
+	private ImgStorage() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Creates an image with the given factory, or in a scratch file if the
+	 * factory is planar and the image is large enough per the storage options.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public static <T extends RealType<T>> Img<T> create(
+		final OptionsService optionsService, final ImgFactory<T> factory,
+		final long[] dims, final T type)
+	{
+		if (isScratch(optionsService, factory, dims, type)) {
+			final Img img =
+				LazyPlanarImg.createBlank(dims, (NativeType) type, planeCount(dims,
+					type), BUDGET);
+			return img;
+		}
+		return factory.create(dims, type);
+	}
+
+	/**
+	 * Wraps the given image in one whose planes are read on demand, with only as
+	 * many of them in memory as the shared budget allows.
+	 */
+	public static <T extends RealType<T> & NativeType<T>> Img<T> createLazy(
+		final Img<T> source)
+	{
+		final long[] dims = new long[source.numDimensions()];
+		source.dimensions(dims);
+		final int maxPlanes = planeCount(dims, source.firstElement());
+		return LazyPlanarImg.create(source, maxPlanes, BUDGET);
+	}
+
+	/**
+	 * Tells whether an image from the given factory with the given dimensions
+	 * and type is kept in a scratch file, per the storage options.
+	 */
+	public static boolean isScratch(final OptionsService optionsService,
+		final ImgFactory<?> factory, final long[] dims, final RealType<?> type)
+	{
+		if (optionsService == null) return false;
+		if (!(factory instanceof PlanarImgFactory)) return false;
+		if (!(type instanceof NativeType)) return false;
+		final OptionsStorage options =
+			optionsService.getOptions(OptionsStorage.class);
+		return options != null && options.isScratchStorage(byteCount(dims, type));
+	}
+
+	/**
+	 * Gets how many planes of an image with the given dimensions and type are
+	 * kept in memory at most when it is paged: as many as fit in the shared
+	 * budget. Other paged images may leave room for fewer.
+	 */
+	public static int planeCount(final long[] dims, final RealType<?> type) {
+		long planeBytes = (type.getBitsPerPixel() + 7) / 8;
+		for (int d = 0; d < Math.min(2, dims.length); d++) {
+			planeBytes *= dims[d];
+		}
+		final long planes =
+			Math.max(MIN_PLANES, maxBytes() / Math.max(1, planeBytes));
+		return (int) Math.min(Integer.MAX_VALUE, planes);
+	}
+
+	/**
+	 * Deletes the scratch file of an image created by
+	 * {@link #create(OptionsService, ImgFactory, long[], RealType)}, if it has
+	 * one. The image must not be used afterwards.
+	 */
+	public static void dispose(final Img<?> img) {
+		if (img instanceof LazyPlanarImg) ((LazyPlanarImg<?, ?>) img).dispose();
+	}
+
+	// -- Helper methods --
+
+	private static long maxBytes() {
+		return Runtime.getRuntime().maxMemory() / HEAP_FRACTION;
+	}
+
+	private static long byteCount(final long[] dims, final RealType<?> type) {
+		long count = 1;
+		for (final long dim : dims) {
+			count *= dim;
+		}
+		return count * type.getBitsPerPixel() / 8;
+	}
+
+}
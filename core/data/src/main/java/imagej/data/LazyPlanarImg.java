@@ -0,0 +1,644 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link PlanarImg} whose planes are read from another image, or created
+ * blank, only when they are first accessed, be it by a cursor, a random
+ * access or {@link #getPlane(int)}. At most a bounded number of planes are
+ * kept in memory; when another plane is needed the least recently used one is
+ * evicted.
+ * <p>
+ * Writes into a plane array cannot be observed, so the checksum of each plane
+ * is noted when it is loaded, and compared when it is evicted: only planes
+ * whose contents changed are written to a scratch file, and read back from
+ * there when needed again. Reading an image thus never touches the disk.
+ * </p>
+ * <p>
+ * A plane is never evicted while a cursor or random access is positioned on
+ * it, since that access may keep writing into the plane's array. A plane
+ * handed out by {@link #getPlane(int)} is evicted like any other, though, so
+ * its array must not be written to after other planes were accessed.
+ * </p>
+ * <p>
+ * Besides its own plane count limit, each image is subject to a
+ * {@link Budget} of heap memory which it may share with other images: while
+ * the budget is exceeded, an image evicts its own planes whenever it loads
+ * another one.
+ * </p>
+ * <p>
+ * The scratch file is deleted, and the image's planes are released from its
+ * budget, by {@link #dispose()}, or else once the image has been garbage
+ * collected.
+ * </p>
+ */
+class LazyPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+	extends PlanarImg<T, A>
+{
+
+	/** Marks a plane which must be written out when it is evicted. */
+	private static final long MODIFIED = -1;
+
+	// -- instance variables --
+
+	private final Img<T> source;
+
+	private final int maxPlanes;
+
+	private final T type;
+
+	/**
+	 * The evictable planes in memory, least recent first, each with the
+	 * checksum of its contents when it was loaded, or {@link #MODIFIED}.
+	 */
+	private final LinkedHashMap<Integer, Long> resident =
+		new LinkedHashMap<Integer, Long>(16, 0.75f, true);
+
+	/** The plane each cursor or random access is currently positioned on. */
+	private final Map<Object, Integer> holders =
+		new WeakHashMap<Object, Integer>();
+
+	/** Planes whose edits could not be saved, and which must stay in memory. */
+	private final BitSet pinned = new BitSet();
+
+	/** Planes whose current pixels live in the scratch file. */
+	private final BitSet spilled = new BitSet();
+
+	/** The scratch file and budget share of this image. */
+	private final Resources resources;
+
+	private boolean disposed;
+
+	// -- constructor --
+
+	private LazyPlanarImg(final Img<T> source, final T type,
+		final int maxPlanes, final Budget budget, final long[] dim,
+		final int entitiesPerPixel)
+	{
+		super(dim, entitiesPerPixel);
+		this.source = source;
+		this.maxPlanes = maxPlanes;
+		this.type = type.createVariable();
+		resources = new Resources(this, budget);
+	}
+
+	// -- static utility methods --
+
+	/**
+	 * Creates a planar image with the same type and dimensions as the given
+	 * source, whose planes are read from the source on demand.
+	 * 
+	 * @param source the image to read planes from, which is not modified
+	 * @param maxPlanes the number of unshared planes to keep in memory
+	 */
+	public static <T extends NativeType<T>> PlanarImg<T, ?> create(
+		final Img<T> source, final int maxPlanes)
+	{
+		return create(source, maxPlanes, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Creates a planar image with the same type and dimensions as the given
+	 * source, whose planes are read from the source on demand.
+	 * 
+	 * @param source the image to read planes from, which is not modified
+	 * @param maxPlanes the number of unshared planes to keep in memory
+	 * @param budget the memory budget for the unshared planes in memory
+	 */
+	public static <T extends NativeType<T>> PlanarImg<T, ?> create(
+		final Img<T> source, final int maxPlanes, final Budget budget)
+	{
+		final long[] dims = new long[source.numDimensions()];
+		source.dimensions(dims);
+		return create(source, source.firstElement(), dims, maxPlanes, budget);
+	}
+
+	/**
+	 * Creates a planar image of the given type and dimensions, whose planes are
+	 * zeroed when first accessed.
+	 * 
+	 * @param maxPlanes the number of unshared planes to keep in memory
+	 */
+	public static <T extends NativeType<T>> PlanarImg<T, ?> createBlank(
+		final long[] dims, final T type, final int maxPlanes)
+	{
+		return createBlank(dims, type, maxPlanes, Budget.UNLIMITED);
+	}
+
+	/**
+	 * Creates a planar image of the given type and dimensions, whose planes are
+	 * zeroed when first accessed.
+	 * 
+	 * @param maxPlanes the number of unshared planes to keep in memory
+	 * @param budget the memory budget for the unshared planes in memory
+	 */
+	public static <T extends NativeType<T>> PlanarImg<T, ?> createBlank(
+		final long[] dims, final T type, final int maxPlanes,
+		final Budget budget)
+	{
+		return create(null, type, dims, maxPlanes, budget);
+	}
+
+	// -- LazyPlanarImg methods --
+
+	/** Tells whether the given plane is currently held in memory. */
+	public synchronized boolean isLoaded(final int no) {
+		return super.getPlane(no) != null;
+	}
+
+	/**
+	 * Deletes the scratch file holding modified planes that were evicted. The
+	 * image must not be used afterwards.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		resources.release();
+		resident.clear();
+		spilled.clear();
+	}
+
+	/** Gets the scratch file holding evicted planes, or null if none. */
+	synchronized File getScratchFile() {
+		return resources.file;
+	}
+
+	// -- PlanarAccess methods --
+
+	@Override
+	public A getPlane(final int no) {
+		return plane(no);
+	}
+
+	@Override
+	public synchronized void setPlane(final int no, final A plane) {
+		if (resident.remove(no) != null) uncharge(no);
+		pinned.clear(no);
+		spilled.clear(no);
+		super.setPlane(no, plane);
+		resident.put(no, MODIFIED);
+		resources.charge(byteCount(plane.getCurrentStorageArray()));
+		evict();
+	}
+
+	// -- NativeImg methods --
+
+	@Override
+	public synchronized A update(final Object c) {
+		final int no = ((PlanarContainerSampler) c).getCurrentSliceIndex();
+		// NB - the access leaves the plane it was on, which becomes evictable
+		holders.put(c, no);
+		return plane(no);
+	}
+
+	// -- Helper methods --
+
+	private static <T extends NativeType<T>> PlanarImg<T, ?> create(
+		final Img<T> source, final T type, final long[] dims,
+		final int maxPlanes, final Budget budget)
+	{
+		if (maxPlanes < 1) {
+			throw new IllegalArgumentException("Invalid plane count: " + maxPlanes);
+		}
+		Resources.releaseUnused();
+		final Factory<T> factory =
+			new Factory<T>(source, type, maxPlanes, budget);
+		return (PlanarImg<T, ?>) type.createSuitableNativeImg(factory, dims);
+	}
+
+	/** Gets a plane, reading it first if necessary. */
+	private synchronized A plane(final int no) {
+		A plane = super.getPlane(no);
+		if (plane == null) {
+			if (disposed) throw new IllegalStateException("Image was disposed");
+			plane = spilled.get(no) ? readScratch(no) : readSource(no);
+			super.setPlane(no, plane);
+			final Object array = plane.getCurrentStorageArray();
+			resident.put(no, checksum(array));
+			resources.charge(byteCount(array));
+			evict();
+		}
+		else if (!pinned.get(no)) {
+			// touch the plane, so that it becomes the most recently used
+			resident.get(no);
+		}
+		return plane;
+	}
+
+	/**
+	 * Drops the least recently used planes until few enough remain and the
+	 * budget is kept, skipping the planes some cursor or random access is
+	 * positioned on.
+	 */
+	private void evict() {
+		if (resident.size() <= maxPlanes && !resources.budget.isExceeded()) {
+			return;
+		}
+		final BitSet held = new BitSet();
+		for (final Integer no : holders.values()) {
+			held.set(no);
+		}
+		int count = resident.size();
+		final Iterator<Map.Entry<Integer, Long>> iter =
+			resident.entrySet().iterator();
+		while ((count > maxPlanes || resources.budget.isExceeded()) &&
+			iter.hasNext())
+		{
+			final Map.Entry<Integer, Long> entry = iter.next();
+			final int no = entry.getKey();
+			if (held.get(no)) continue;
+			uncharge(no);
+			if (isModified(no, entry.getValue()) && !writeScratch(no)) {
+				// could not save the edits; keep the plane for good
+				pinned.set(no);
+			}
+			else super.setPlane(no, null);
+			iter.remove();
+			count--;
+		}
+	}
+
+	/** Tells whether a plane differs from what it was when it was loaded. */
+	private boolean isModified(final int no, final long checksum) {
+		if (checksum == MODIFIED) return true;
+		return checksum(super.getPlane(no).getCurrentStorageArray()) != checksum;
+	}
+
+	/** Releases the memory of an evictable plane from the budget. */
+	private void uncharge(final int no) {
+		final Object array = super.getPlane(no).getCurrentStorageArray();
+		resources.charge(-byteCount(array));
+	}
+
+	/** Creates an empty plane of this image's type. */
+	@SuppressWarnings("unchecked")
+	private PlanarImg<T, A> createPlaneImg() {
+		final long[] dims = new long[Math.min(2, numDimensions())];
+		for (int d = 0; d < dims.length; d++) {
+			dims[d] = dimension(d);
+		}
+		return (PlanarImg<T, A>) type.createSuitableNativeImg(
+			new PlanarImgFactory<T>(), dims);
+	}
+
+	/** Copies a plane out of the source image, if any. */
+	private A readSource(final int no) {
+		final PlanarImg<T, A> planeImg = createPlaneImg();
+		if (source == null) return planeImg.getPlane(0);
+		final RandomAccess<T> in = source.randomAccess();
+		long index = no;
+		for (int d = 2; d < numDimensions(); d++) {
+			in.setPosition(index % dimension(d), d);
+			index /= dimension(d);
+		}
+		final Cursor<T> out = planeImg.localizingCursor();
+		while (out.hasNext()) {
+			out.fwd();
+			for (int d = 0; d < planeImg.numDimensions(); d++) {
+				in.setPosition(out.getLongPosition(d), d);
+			}
+			out.get().set(in.get());
+		}
+		return planeImg.getPlane(0);
+	}
+
+	/** Reads a modified plane back from the scratch file. */
+	private A readScratch(final int no) {
+		final A plane = createPlaneImg().getPlane(0);
+		final Object array = plane.getCurrentStorageArray();
+		final byte[] bytes = new byte[byteCount(array)];
+		try {
+			resources.scratch().seek((long) no * bytes.length);
+			resources.scratch().readFully(bytes);
+		}
+		catch (final IOException exc) {
+			throw new IllegalStateException("Cannot read back plane " + no, exc);
+		}
+		fromBytes(bytes, array);
+		return plane;
+	}
+
+	/**
+	 * Writes a modified plane to the scratch file.
+	 * 
+	 * @return false if the plane could not be written
+	 */
+	private boolean writeScratch(final int no) {
+		if (disposed) return false;
+		final byte[] bytes = toBytes(super.getPlane(no).getCurrentStorageArray());
+		try {
+			resources.scratch().seek((long) no * bytes.length);
+			resources.scratch().write(bytes);
+		}
+		catch (final IOException exc) {
+			return false;
+		}
+		spilled.set(no);
+		return true;
+	}
+
+	/**
+	 * Computes a 64-bit checksum (CRC-32 and Adler-32 combined) of a plane. It
+	 * is never equal to {@link #MODIFIED}, since an Adler-32 is never all ones.
+	 */
+	private static long checksum(final Object array) {
+		final byte[] bytes = toBytes(array);
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final Adler32 adler = new Adler32();
+		adler.update(bytes);
+		return crc.getValue() << 32 | adler.getValue();
+	}
+
+	private static int byteCount(final Object array) {
+		if (array instanceof byte[]) return ((byte[]) array).length;
+		if (array instanceof short[]) return 2 * ((short[]) array).length;
+		if (array instanceof char[]) return 2 * ((char[]) array).length;
+		if (array instanceof int[]) return 4 * ((int[]) array).length;
+		if (array instanceof float[]) return 4 * ((float[]) array).length;
+		if (array instanceof long[]) return 8 * ((long[]) array).length;
+		if (array instanceof double[]) return 8 * ((double[]) array).length;
+		throw new IllegalArgumentException("Unsupported plane: " + array);
+	}
+
+	private static byte[] toBytes(final Object array) {
+		final ByteBuffer buf = ByteBuffer.allocate(byteCount(array));
+		if (array instanceof byte[]) buf.put((byte[]) array);
+		else if (array instanceof short[]) buf.asShortBuffer().put((short[]) array);
+		else if (array instanceof char[]) buf.asCharBuffer().put((char[]) array);
+		else if (array instanceof int[]) buf.asIntBuffer().put((int[]) array);
+		else if (array instanceof float[]) buf.asFloatBuffer().put((float[]) array);
+		else if (array instanceof long[]) buf.asLongBuffer().put((long[]) array);
+		else buf.asDoubleBuffer().put((double[]) array);
+		return buf.array();
+	}
+
+	private static void fromBytes(final byte[] bytes, final Object array) {
+		final ByteBuffer buf = ByteBuffer.wrap(bytes);
+		if (array instanceof byte[]) buf.get((byte[]) array);
+		else if (array instanceof short[]) buf.asShortBuffer().get((short[]) array);
+		else if (array instanceof char[]) buf.asCharBuffer().get((char[]) array);
+		else if (array instanceof int[]) buf.asIntBuffer().get((int[]) array);
+		else if (array instanceof float[]) buf.asFloatBuffer().get((float[]) array);
+		else if (array instanceof long[]) buf.asLongBuffer().get((long[]) array);
+		else buf.asDoubleBuffer().get((double[]) array);
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * An amount of heap memory which the evictable planes of one or more
+	 * {@link LazyPlanarImg}s may use together.
+	 */
+	static final class Budget {
+
+		/** A budget which is never exceeded. */
+		public static final Budget UNLIMITED = new Budget(Long.MAX_VALUE);
+
+		private final long maxBytes;
+		private final AtomicLong usedBytes = new AtomicLong();
+
+		public Budget(final long maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		/** Gets the number of bytes used by the planes in memory. */
+		public long getUsedBytes() {
+			return usedBytes.get();
+		}
+
+		public boolean isExceeded() {
+			return usedBytes.get() > maxBytes;
+		}
+
+		private void add(final long bytes) {
+			usedBytes.addAndGet(bytes);
+		}
+	}
+
+	/**
+	 * The scratch file and budget share of a {@link LazyPlanarImg}, which are
+	 * released once the image becomes unreachable, in case it is never
+	 * disposed.
+	 */
+	private static class Resources extends
+		PhantomReference<LazyPlanarImg<?, ?>>
+	{
+
+		private static final ReferenceQueue<LazyPlanarImg<?, ?>> QUEUE =
+			new ReferenceQueue<LazyPlanarImg<?, ?>>();
+
+		/** Keeps the references reachable until they are processed. */
+		private static final Set<Resources> LIVE = Collections
+			.synchronizedSet(new HashSet<Resources>());
+
+		private final Budget budget;
+		private long bytes;
+		private File file;
+		private RandomAccessFile raf;
+
+		public Resources(final LazyPlanarImg<?, ?> img, final Budget budget) {
+			super(img, QUEUE);
+			this.budget = budget;
+			LIVE.add(this);
+		}
+
+		/** Accounts for planes loaded into, or dropped from, memory. */
+		public synchronized void charge(final long count) {
+			bytes += count;
+			budget.add(count);
+		}
+
+		/** Gets the scratch file, creating it if needed. */
+		public synchronized RandomAccessFile scratch() throws IOException {
+			if (raf == null) {
+				file = File.createTempFile("imagej-planes", ".raw");
+				file.deleteOnExit();
+				raf = new RandomAccessFile(file, "rw");
+			}
+			return raf;
+		}
+
+		/** Deletes the scratch file and gives the planes' memory back. */
+		public synchronized void release() {
+			LIVE.remove(this);
+			budget.add(-bytes);
+			bytes = 0;
+			if (raf == null) return;
+			try {
+				raf.close();
+			}
+			catch (final IOException exc) {
+				// NB: We are done with the file anyway.
+			}
+			file.delete();
+			raf = null;
+			file = null;
+		}
+
+		/** Releases the resources of images that were garbage collected. */
+		public static void releaseUnused() {
+			for (;;) {
+				final Reference<?> ref = QUEUE.poll();
+				if (ref == null) break;
+				((Resources) ref).release();
+			}
+		}
+	}
+
+	/**
+	 * Creates {@link LazyPlanarImg}s of whatever storage type is suitable for
+	 * the source image's type.
+	 */
+	private static class Factory<T extends NativeType<T>> extends
+		PlanarImgFactory<T>
+	{
+
+		private final Img<T> source;
+		private final T type;
+		private final int maxPlanes;
+		private final Budget budget;
+
+		public Factory(final Img<T> source, final T type, final int maxPlanes,
+			final Budget budget)
+		{
+			this.source = source;
+			this.type = type;
+			this.maxPlanes = maxPlanes;
+			this.budget = budget;
+		}
+
+		@Override
+		public PlanarImg<T, BitArray> createBitInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, BitArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, ByteArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, CharArray> createCharInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, CharArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, ShortArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, IntArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, LongArray> createLongInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, LongArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, FloatArray> createFloatInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, FloatArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+		@Override
+		public PlanarImg<T, DoubleArray> createDoubleInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new LazyPlanarImg<T, DoubleArray>(source, type, maxPlanes,
+				budget, dimensions, entitiesPerPixel);
+		}
+
+	}
+
+}
@@ -0,0 +1,367 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Reads and writes runs of samples directly in the primitive storage arrays of
+ * array and planar images, converting to and from doubles the same way the
+ * corresponding {@link RealType} does. This allows tight loops over whole rows
+ * or planes instead of one {@link net.imglib2.RandomAccess} call per sample.
+ * <p>
+ * Only types that store exactly one sample per array element are supported
+ * (e.g. not {@link net.imglib2.type.logic.BitType} or the 12-bit type, which
+ * pack samples into bits).
+ */
+public abstract class PlaneAccessor {
+
+	// -- PlaneAccessor methods --
+
+	/**
+	 * Copies samples from a storage array into a double buffer.
+	 * 
+	 * @param storage The primitive storage array.
+	 * @param offset The index of the first sample to read.
+	 * @param dst The buffer to fill.
+	 * @param dstOffset The index of the first buffer element to fill.
+	 * @param length The number of samples to copy.
+	 */
+	public abstract void read(Object storage, int offset, double[] dst,
+		int dstOffset, int length);
+
+	/**
+	 * Copies values from a double buffer into a storage array. Integer samples
+	 * are rounded (and wrapped) just as {@link RealType#setReal(double)} does.
+	 * 
+	 * @param src The buffer holding the values.
+	 * @param srcOffset The index of the first value to write.
+	 * @param storage The primitive storage array.
+	 * @param offset The index of the first sample to overwrite.
+	 * @param length The number of samples to copy.
+	 */
+	public abstract void write(double[] src, int srcOffset, Object storage,
+		int offset, int length);
+
+	// -- Static utility methods --
+
+	/**
+	 * Returns a PlaneAccessor for the storage of the given type, or null if the
+	 * type is not supported.
+	 */
+	public static PlaneAccessor forType(final RealType<?> type) {
+		final Class<?> c = type.getClass();
+		if (c == UnsignedByteType.class) return new UnsignedByteAccessor();
+		if (c == ByteType.class) return new ByteAccessor();
+		if (c == UnsignedShortType.class) return new UnsignedShortAccessor();
+		if (c == ShortType.class) return new ShortAccessor();
+		if (c == UnsignedIntType.class) return new UnsignedIntAccessor();
+		if (c == IntType.class) return new IntAccessor();
+		if (c == LongType.class) return new LongAccessor();
+		if (c == FloatType.class) return new FloatAccessor();
+		if (c == DoubleType.class) return new DoubleAccessor();
+		return null;
+	}
+
+	/**
+	 * Returns the primitive array that stores the given XY plane of an
+	 * {@link ArrayImg} or of an image with {@link PlanarAccess}, or null if the
+	 * image has no such storage, or loads its planes lazily. Use {@link #getOffset(Img, int)} to find where
+	 * the plane starts within the array.
+	 */
+	public static Object getStorage(final Img<?> image, final int planeNumber) {
+		final Img<?> img = unwrap(image);
+		Object access = null;
+		if (img instanceof LazyPlanarImg) {
+			// NB: Its planes may be evicted while they are being accessed.
+			return null;
+		}
+		if (img instanceof PlanarAccess) {
+			access = ((PlanarAccess<?>) img).getPlane(planeNumber);
+		}
+		else if (img instanceof ArrayImg) {
+			access = ((ArrayImg<?, ?>) img).update(null);
+		}
+		if (!(access instanceof ArrayDataAccess)) return null;
+		return ((ArrayDataAccess<?>) access).getCurrentStorageArray();
+	}
+
+	/**
+	 * Returns the index within the array returned by
+	 * {@link #getStorage(Img, int)} at which the given plane starts.
+	 */
+	public static int getOffset(final Img<?> image, final int planeNumber) {
+		final Img<?> img = unwrap(image);
+		if (img instanceof PlanarAccess) return 0;
+		final long planeSize =
+			img.numDimensions() < 2 ? img.dimension(0) : img.dimension(0) *
+				img.dimension(1);
+		return (int) (planeNumber * planeSize);
+	}
+
+	// -- Helper methods --
+
+	private static Img<?> unwrap(final Img<?> image) {
+		Img<?> img = image;
+		while (img instanceof ImgPlus) {
+			img = ((ImgPlus<?>) img).getImg();
+		}
+		return img;
+	}
+
+	/** Rounds a value the way imglib2's integer types do. */
+	private static long round(final double value) {
+		return (long) (value < 0 ? value - 0.5 : value + 0.5);
+	}
+
+	// -- Helper classes --
+
+	private static class UnsignedByteAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final byte[] a = (byte[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i] & 0xff;
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final byte[] a = (byte[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (byte) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class ByteAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final byte[] a = (byte[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i];
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final byte[] a = (byte[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (byte) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class UnsignedShortAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final short[] a = (short[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i] & 0xffff;
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final short[] a = (short[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (short) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class ShortAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final short[] a = (short[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i];
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final short[] a = (short[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (short) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class UnsignedIntAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final int[] a = (int[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i] & 0xffffffffL;
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final int[] a = (int[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (int) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class IntAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final int[] a = (int[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i];
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final int[] a = (int[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (int) round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class LongAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final long[] a = (long[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i];
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final long[] a = (long[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = round(src[srcOffset + i]);
+			}
+		}
+	}
+
+	private static class FloatAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			final float[] a = (float[]) storage;
+			for (int i = 0; i < length; i++) {
+				dst[dstOffset + i] = a[offset + i];
+			}
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			final float[] a = (float[]) storage;
+			for (int i = 0; i < length; i++) {
+				a[offset + i] = (float) src[srcOffset + i];
+			}
+		}
+	}
+
+	private static class DoubleAccessor extends PlaneAccessor {
+
+		@Override
+		public void read(final Object storage, final int offset,
+			final double[] dst, final int dstOffset, final int length)
+		{
+			System.arraycopy(storage, offset, dst, dstOffset, length);
+		}
+
+		@Override
+		public void write(final double[] src, final int srcOffset,
+			final Object storage, final int offset, final int length)
+		{
+			System.arraycopy(src, srcOffset, storage, offset, length);
+		}
+	}
+
+}
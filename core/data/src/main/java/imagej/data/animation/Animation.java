@@ -35,6 +35,8 @@
 
 package imagej.data.animation;
 
+import imagej.data.display.DataView;
+import imagej.data.display.DatasetView;
 import imagej.data.display.ImageDisplay;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
@@ -237,6 +239,19 @@ else if (increment < 0 && currPos == first) {
 		final long pos =
 			isRelative ? display.getLongPosition(axis) + delta : delta;
 		display.setPosition(pos, axis);
+		prefetch(pos);
+	}
+
+	/** Asks the display's dataset views to render the next frame ahead. */
+	private void prefetch(final long pos) {
+		long next = increment > 0 ? pos + 1 : pos - 1;
+		if (next > last) next = backAndForth ? last - 1 : first;
+		else if (next < first) next = backAndForth ? first + 1 : last;
+		for (final DataView view : display) {
+			if (view instanceof DatasetView) {
+				((DatasetView) view).prefetch(axis, next);
+			}
+		}
 	}
 
 	/** Ensures the position of the relevant axis is within the legal range. */
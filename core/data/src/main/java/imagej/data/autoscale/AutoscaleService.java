@@ -35,6 +35,8 @@
 
 package imagej.data.autoscale;
 
+import imagej.data.Dataset;
+
 import java.util.List;
 import java.util.Map;
 
@@ -91,4 +93,13 @@ DataRange getDefaultIntervalRange(
 	 */
 	DataRange getDefaultRandomAccessRange(
 		RandomAccessibleInterval<? extends RealType<?>> interval);
+
+	/**
+	 * Calculates the range of interest of all the data of the given
+	 * {@link Dataset} using the given autoscale method. Methods that can work
+	 * from cached per-plane histograms do so.
+	 * 
+	 * @return The calculated range of values.
+	 */
+	DataRange getDatasetRange(AutoscaleMethod method, Dataset dataset);
 }
@@ -35,6 +35,9 @@
 
 package imagej.data.autoscale;
 
+import imagej.data.Dataset;
+import imagej.data.histogram.HistogramService;
+import imagej.data.minmax.RangeScanner;
 import net.imglib2.IterableInterval;
 import net.imglib2.histogram.Histogram1d;
 import net.imglib2.histogram.Real1dBinMapper;
@@ -42,6 +45,7 @@
 
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
+import org.scijava.thread.ThreadService;
 
 /**
  * Computes a confidence interval containing percentages of the an entire set of
@@ -59,7 +63,7 @@
 	private double lowerTail, upperTail;
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private ThreadService threadService;
 
 	// -- ConfidenceIntervalAutoscaleMethod methods --
 
@@ -124,41 +128,99 @@ public void setTailProportions(double lower, double upper) {
 		upperTail = upper;
 	}
 
+	/**
+	 * Calculates the confidence interval of all the values of a
+	 * {@link Dataset}. Unlike {@link #getRange(IterableInterval)} this takes its
+	 * data range and histogram from the {@link HistogramService}, so repeated
+	 * calls only read planes that have changed in between.
+	 */
+	public DataRange getRange(Dataset dataset) {
+		HistogramService histogramService =
+			getContext().getService(HistogramService.class);
+		if (histogramService == null) {
+			@SuppressWarnings("unchecked")
+			IterableInterval<T> interval =
+				(IterableInterval<T>) dataset.getImgPlus();
+			return getRange(interval);
+		}
+		int[] planes = histogramService.getPlanes(dataset);
+		DataRange range = histogramService.getDataRange(dataset, planes);
+		if (range.getMin() == range.getMax()) return range;
+		Histogram1d<T> histogram =
+			histogramService.getHistogram(dataset, planes, range.getMin(), range
+				.getMax(), 1000);
+		@SuppressWarnings("unchecked")
+		T type = (T) dataset.getType();
+		return tailRange(histogram, type);
+	}
+
 	// -- AutoscaleMethod methods --
 
 	@Override
 	public DataRange getRange(IterableInterval<T> interval) {
-		// pass one through data
-		DataRange range = autoscaleService.getDefaultIntervalRange(interval);
-		// pass two through data
-		Real1dBinMapper<T> mapper =
-			new Real1dBinMapper<T>(range.getMin(), range.getMax(), 1000, false);
+		// pass one through data; integer values are counted along the way
+		RangeScanner scanner = new RangeScanner(threadService);
+		scanner.setCountValues(true);
+		scanner.scan(interval);
+		double min = scanner.getMin();
+		double max = scanner.getMax();
+		// NB - a constant image has no tails; there is nothing to bin
+		if (min == max) return new DataRange(min, max);
+		Real1dBinMapper<T> mapper = new Real1dBinMapper<T>(min, max, 1000, false);
 		Histogram1d<T> histogram = new Histogram1d<T>(mapper);
-		histogram.countData(interval);
+		long[] valueCounts = scanner.getValueCounts();
+		if (valueCounts == null) {
+			// pass two through data
+			histogram.countData(interval);
+		}
+		else {
+			// bin the counted values instead of reading the data again
+			T value = interval.firstElement().createVariable();
+			long[] binPos = new long[1];
+			long[] bins = new long[1000];
+			for (int i = 0; i < valueCounts.length; i++) {
+				if (valueCounts[i] == 0) continue;
+				value.setReal(scanner.getFirstValue() + i);
+				long bin = mapper.map(value);
+				if (bin >= 0 && bin < bins.length) bins[(int) bin] += valueCounts[i];
+			}
+			for (int b = 0; b < bins.length; b++) {
+				if (bins[b] == 0) continue;
+				binPos[0] = b;
+				histogram.dfd().setFrequency(binPos, bins[b]);
+			}
+		}
+		return tailRange(histogram, interval.firstElement());
+	}
+
+	// -- helpers --
+
+	private DataRange tailRange(Histogram1d<T> histogram, T type) {
 		// calc some sizes
 		long totValues = histogram.distributionCount();
 		long lowerSize = (long) Math.floor(lowerTail * totValues);
 		long upperSize = (long) Math.floor(upperTail * totValues);
+		int bins = (int) histogram.getBinCount();
 		// determine bin number containing > than lower tail size
 		long soFar = 0;
 		int bottom = 0;
-		while (soFar < lowerSize) {
+		while (soFar < lowerSize && bottom < bins - 1) {
 			soFar += histogram.frequency(bottom++);
 		}
-		while (histogram.frequency(bottom) == 0) {
+		while (histogram.frequency(bottom) == 0 && bottom < bins - 1) {
 			bottom++;
 		}
 		// determine bin number containing < upper tail size
 		soFar = 0;
-		int top = 999;
-		while (soFar < upperSize) {
+		int top = bins - 1;
+		while (soFar < upperSize && top > bottom) {
 			soFar += histogram.frequency(top--);
 		}
-		while (histogram.frequency(top) == 0) {
+		while (histogram.frequency(top) == 0 && top > bottom) {
 			top--;
 		}
 		// determine approx boundaries
-		T approxMin = interval.firstElement().createVariable();
+		T approxMin = type.createVariable();
 		T approxMax = approxMin.createVariable();
 		histogram.getLowerBound(bottom, approxMin);
 		histogram.getUpperBound(top, approxMax);
@@ -35,6 +35,8 @@
 
 package imagej.data.autoscale;
 
+import imagej.data.Dataset;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -105,6 +107,15 @@ public DataRange getDefaultRandomAccessRange(
 		return getDefaultIntervalRange(newInterval);
 	}
 
+	@SuppressWarnings("unchecked")
+	@Override
+	public DataRange getDatasetRange(AutoscaleMethod method, Dataset dataset) {
+		if (method instanceof ConfidenceIntervalAutoscaleMethod) {
+			return ((ConfidenceIntervalAutoscaleMethod) method).getRange(dataset);
+		}
+		return method.getRange(dataset.getImgPlus());
+	}
+
 	// -- PTService methods --
 
 	@Override
@@ -47,6 +47,7 @@
 import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.ColorTable;
 import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.meta.AxisType;
 import net.imglib2.type.numeric.RealType;
 
 /**
@@ -59,8 +60,20 @@
  */
 public interface DatasetView extends DataView {
 
+	/**
+	 * Gets the rendered image of the current plane. Parts of it that were not
+	 * rendered because they lay outside the visible region of the canvas are
+	 * rendered first, so the whole image is up to date.
+	 */
 	ARGBScreenImage getScreenImage();
 
+	/**
+	 * Gets the rendered image of the current plane as is: only the region
+	 * visible on the canvas is guaranteed to be up to date. This is meant for
+	 * painting the canvas; use {@link #getScreenImage()} to read the image.
+	 */
+	ARGBScreenImage getVisibleScreenImage();
+
 	int getCompositeDimIndex();
 
 	CompositeXYProjector<? extends RealType<?>> getProjector();
@@ -142,6 +155,14 @@ public interface DatasetView extends DataView {
 
 	void setColorMode(ColorMode colorMode);
 
+	/**
+	 * Renders the plane at the given position along the given axis in the
+	 * background, so that a later move there is quick. The plane is rendered
+	 * with the current display ranges and color mode. Does nothing if that
+	 * plane is already available, or if another plane is being prefetched.
+	 */
+	void prefetch(AxisType axis, long position);
+
 	@Override
 	Dataset getData();
 	
@@ -41,16 +41,24 @@
 import imagej.data.Position;
 import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
+import imagej.data.display.event.CanvasEvent;
 import imagej.data.display.event.DataViewUpdatedEvent;
 import imagej.data.display.event.LUTsChangedEvent;
+import imagej.data.display.event.PanZoomEvent;
+import imagej.data.display.event.ViewportResizeEvent;
 import imagej.data.event.DatasetRGBChangedEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.util.ColorRGB;
+import imagej.util.IntCoords;
+import imagej.util.RealCoords;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.imglib2.Binning;
 import net.imglib2.RandomAccessibleInterval;
@@ -58,7 +66,6 @@
 import net.imglib2.display.ColorTable;
 import net.imglib2.display.CompositeXYProjector;
 import net.imglib2.display.RealLUTConverter;
-import net.imglib2.img.cell.AbstractCellImg;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.meta.ImgPlus;
@@ -92,6 +99,12 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	@Parameter(required = false)
 	private EventService eventService;
 
+	@Parameter(required = false)
+	private HistogramService histogramService;
+
+	@Parameter(required = false)
+	private RenderedPlaneService renderedPlaneService;
+
 	/** The dimensional index representing channels, for compositing. */
 	private int channelDimIndex;
 
@@ -103,11 +116,33 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 
 	private ARGBScreenImage screenImage;
 
-	private CompositeXYProjector<? extends RealType<?>> projector;
+	@SuppressWarnings("rawtypes")
+	private SourceOptimizedCompositeXYProjector projector;
+
+	/**
+	 * Region of the screen image being kept up to date, as {minX, minY, maxX,
+	 * maxY}; null when the whole image is rendered.
+	 */
+	private long[] viewport;
 
 	private final ArrayList<RealLUTConverter<? extends RealType<?>>> converters =
 		new ArrayList<RealLUTConverter<? extends RealType<?>>>();
 
+	/**
+	 * Recently rendered planes, so that revisiting a position is cheap. Shared
+	 * with the other views, unless there is no {@link RenderedPlaneService}.
+	 */
+	private volatile RenderedPlaneCache planeCache;
+
+	/** Identifies the planes of this view in the shared cache. */
+	private final Object cacheOwner = new Object();
+
+	/** Changed whenever the planes rendered so far become stale. */
+	private final AtomicLong generation = new AtomicLong();
+
+	/** Whether a plane is currently being prefetched in the background. */
+	private final AtomicBoolean prefetching = new AtomicBoolean();
+
 	// -- DatasetView methods --
 
 	@Override
@@ -118,6 +153,12 @@ public int getChannelCount() {
 
 	@Override
 	public ARGBScreenImage getScreenImage() {
+		if (isInitialized() && !projector.isComplete()) renderAll();
+		return screenImage;
+	}
+
+	@Override
+	public ARGBScreenImage getVisibleScreenImage() {
 		return screenImage;
 	}
 
@@ -126,6 +167,7 @@ public int getCompositeDimIndex() {
 		return channelDimIndex;
 	}
 
+	@SuppressWarnings("unchecked")
 	@Override
 	public CompositeXYProjector<? extends RealType<?>> getProjector() {
 		return projector;
@@ -168,11 +210,7 @@ public void autoscale(final int c) {
 		double max = imgPlus.getChannelMaximum(c);
 		if (Double.isNaN(min) || Double.isNaN(max)) {
 			// not provided in metadata, so calculate the min/max
-			RandomAccessibleInterval<? extends RealType<?>> interval =
-				channelData(getData(), c);
-			interval = xyPlane(interval);
-			final DataRange result =
-				autoscaleService.getDefaultRandomAccessRange(interval);
+			final DataRange result = currentPlaneRange(c);
 			min = result.getMin();
 			max = result.getMax();
 			// cache min/max in metadata for next time
@@ -197,6 +235,8 @@ public List<ColorTable> getColorTables() {
 	@Override
 	public void setColorTable(final ColorTable colorTable, final int channel) {
 		defaultLUTs.set(channel, colorTable);
+		// NB - the table may have been edited in place
+		invalidatePlanes();
 		updateLUTs();
 		// TODO - temp hacks towards fixing bug #668
 		// For now we'll keep this method lightweight and dumb and require
@@ -245,7 +285,7 @@ public void setColorMode(final ColorMode colorMode) {
 
 		resetColorTables(colorMode == ColorMode.GRAYSCALE);
 		projector.setComposite(colorMode == ColorMode.COMPOSITE);
-		projector.map();
+		render();
 	}
 
 	// TODO - add this kind of mapping code to the Imglib Projector classes. Here
@@ -345,12 +385,12 @@ public Dataset getData() {
 
 	@Override
 	public int getPreferredWidth() {
-		return getScreenImage().image().getWidth(null);
+		return screenImage.image().getWidth(null);
 	}
 
 	@Override
 	public int getPreferredHeight() {
-		return getScreenImage().image().getHeight(null);
+		return screenImage.image().getHeight(null);
 	}
 
 	@Override
@@ -358,6 +398,13 @@ public void update() {
 		publish(new DataViewUpdatedEvent(this));
 	}
 
+	@Override
+	public void dispose() {
+		// release this view's share of the plane cache
+		if (planeCache != null) invalidatePlanes();
+		super.dispose();
+	}
+
 	@Override
 	public void rebuild() {
 		// NB: Make sure any calls to updateLUTs are ignored. If they happen before
@@ -378,10 +425,68 @@ public void rebuild() {
 		final int width = (int) img.dimension(0);
 		final int height = (int) img.dimension(1);
 		screenImage = new ARGBScreenImage(width, height);
+		invalidatePlanes();
 
 		initializeView(isComposite());
 		updateLUTs();
-		projector.map();
+		render();
+	}
+
+	@Override
+	public void prefetch(final AxisType axis, final long position) {
+		if (!isInitialized()) return;
+		final int dim = getData().dimensionIndex(axis);
+		if (dim < 2 || position < 0 || position >= getData().dimension(dim)) {
+			return;
+		}
+		final long[] pos = new long[projector.numDimensions()];
+		projector.localize(pos);
+		if (pos[dim] == position) return;
+		pos[dim] = position;
+
+		final Position planePos = getPlanePosition();
+		planePos.setPosition(position, dim - 2);
+		final ArrayList<RealLUTConverter<? extends RealType<?>>> lutConverters =
+			new ArrayList<RealLUTConverter<? extends RealType<?>>>();
+		for (int c = 0; c < converters.size(); c++) {
+			final RealLUTConverter<? extends RealType<?>> converter =
+				converters.get(c);
+			final ColorTable lut =
+				dim == channelDimIndex ? converter.getLUT() : getLUT(planePos, c);
+			lutConverters.add(newConverter(converter.getMin(), converter.getMax(),
+				lut));
+		}
+		final boolean composite = projector.isComposite();
+		final long gen = generation.get();
+		final RenderedPlaneCache.Key key =
+			cacheKey(pos, lutConverters, composite, gen);
+		if (planeCache().contains(key)) return;
+
+		// render at most one plane in the background at a time
+		if (!prefetching.compareAndSet(false, true)) return;
+		final ARGBScreenImage target =
+			new ARGBScreenImage((int) screenImage.dimension(0), (int) screenImage
+				.dimension(1));
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					final SourceOptimizedCompositeXYProjector<?, ?, ?> p =
+						newProjector(target, lutConverters);
+					p.setComposite(composite);
+					p.setPosition(pos);
+					p.map();
+					// NB - drop the plane if the data or display changed meanwhile
+					if (generation.get() == gen) {
+						planeCache().put(key, null, pixels(target));
+					}
+				}
+				finally {
+					prefetching.set(false);
+				}
+			}
+		});
 	}
 
 	// -- PositionableByAxis methods --
@@ -417,7 +522,7 @@ public void setPosition(final long position, final AxisType axis) {
 			updateLUTs();
 		}
 
-		projector.map();
+		render();
 
 		super.setPosition(position, axis);
 	}
@@ -465,12 +570,70 @@ protected void onEvent(final DatasetUpdatedEvent event) {
 		}
 		if (getData() == event.getObject()) {
 			if (event.isMetaDataOnly()) return;
-			projector.map();
+			invalidatePlanes();
+			render();
 		}
 	}
 
+	@EventHandler
+	protected void onEvent(final PanZoomEvent event) {
+		onCanvasChanged(event);
+	}
+
+	@EventHandler
+	protected void onEvent(final ViewportResizeEvent event) {
+		onCanvasChanged(event);
+	}
+
 	// -- Helper methods --
 
+	/**
+	 * Restricts rendering to the visible part of the canvas, and renders
+	 * whatever part of it was not kept up to date so far.
+	 */
+	private void onCanvasChanged(final CanvasEvent event) {
+		if (!isInitialized()) return;
+		final ImageDisplay display = event.getDisplay();
+		if (display == null || !display.contains(this)) return;
+		if (updateViewport(event.getCanvas())) {
+			render();
+			update();
+		}
+	}
+
+	/**
+	 * Points the projector at the region of the image visible on the given
+	 * canvas, padded by a pixel to allow for rounding.
+	 * 
+	 * @return true if part of the visible region has not been rendered yet
+	 */
+	private boolean updateViewport(final ImageCanvas canvas) {
+		final int width = canvas.getViewportWidth();
+		final int height = canvas.getViewportHeight();
+		if (width <= 0 || height <= 0) {
+			// canvas not laid out yet; render everything
+			final boolean changed = viewport != null;
+			viewport = null;
+			projector.clearViewport();
+			return changed;
+		}
+		final RealCoords topLeft =
+			canvas.panelToDataCoords(new IntCoords(0, 0));
+		final RealCoords bottomRight =
+			canvas.panelToDataCoords(new IntCoords(width, height));
+		final long[] visible =
+			{ (long) Math.floor(topLeft.x) - 1, (long) Math.floor(topLeft.y) - 1,
+				(long) Math.ceil(bottomRight.x) + 1,
+				(long) Math.ceil(bottomRight.y) + 1 };
+		final boolean covered =
+			viewport == null ||
+				(visible[0] >= viewport[0] && visible[1] >= viewport[1] &&
+					visible[2] <= viewport[2] && visible[3] <= viewport[3]);
+		viewport = visible;
+		projector.setViewport(visible[0], visible[1], visible[2], visible[3]);
+		return !covered;
+	}
+
 	private int getChannelDimIndex() {
 		return getData().dimensionIndex(Axes.CHANNEL);
 	}
@@ -479,6 +642,110 @@ private boolean isComposite() {
 		return getData().getCompositeChannelCount() > 1 || getData().isRGBMerged();
 	}
 
+	/**
+	 * Renders the current plane into the screen image, reusing a previous
+	 * rendering when nothing affecting it has changed since.
+	 */
+	private void render() {
+		final RenderedPlaneCache.Key key = currentKey();
+		final int[] pixels = pixels(screenImage);
+		if (restore(planeCache().get(key, viewport), pixels)) {
+			projector.setComplete(planeCache().contains(key));
+			return;
+		}
+		projector.map();
+		planeCache().put(key, projector.isComplete() ? null : viewport, pixels
+			.clone());
+	}
+
+	/**
+	 * Renders the parts of the current plane that were skipped for lying
+	 * outside the viewport.
+	 */
+	private void renderAll() {
+		final RenderedPlaneCache.Key key = currentKey();
+		final int[] pixels = pixels(screenImage);
+		if (restore(planeCache().get(key, null), pixels)) {
+			projector.setComplete(true);
+			return;
+		}
+		projector.mapAll();
+		planeCache().put(key, null, pixels.clone());
+	}
+
+	/**
+	 * Copies cached pixels into the screen image, if there are any and they
+	 * have the screen image's size.
+	 */
+	private boolean restore(final int[] cached, final int[] pixels) {
+		if (cached == null || cached.length != pixels.length) return false;
+		System.arraycopy(cached, 0, pixels, 0, pixels.length);
+		return true;
+	}
+
+	private RenderedPlaneCache planeCache() {
+		if (planeCache == null) {
+			planeCache =
+				renderedPlaneService == null ? new RenderedPlaneCache(Runtime
+					.getRuntime().maxMemory() / 16) : renderedPlaneService.getCache();
+		}
+		return planeCache;
+	}
+
+	/** Forgets the planes rendered so far, including any being prefetched. */
+	private void invalidatePlanes() {
+		generation.incrementAndGet();
+		planeCache().clear(cacheOwner);
+	}
+
+	/** Gets the cache key of the plane the projector is set to. */
+	private RenderedPlaneCache.Key currentKey() {
+		final long[] pos = new long[projector.numDimensions()];
+		projector.localize(pos);
+		return cacheKey(pos, converters, projector.isComposite(), generation
+			.get());
+	}
+
+	private RenderedPlaneCache.Key cacheKey(final long[] pos,
+		final List<RealLUTConverter<? extends RealType<?>>> lutConverters,
+		final boolean composite, final long gen)
+	{
+		final int count = lutConverters.size();
+		final double[] mins = new double[count];
+		final double[] maxs = new double[count];
+		final ColorTable[] luts = new ColorTable[count];
+		for (int c = 0; c < count; c++) {
+			final RealLUTConverter<? extends RealType<?>> converter =
+				lutConverters.get(c);
+			mins[c] = converter.getMin();
+			maxs[c] = converter.getMax();
+			luts[c] = converter.getLUT();
+		}
+		return new RenderedPlaneCache.Key(cacheOwner, gen, (int) screenImage
+			.dimension(0), (int) screenImage.dimension(1), pos, mins, maxs, luts,
+			composite);
+	}
+
+	private int[] pixels(final ARGBScreenImage image) {
+		return image.update(null).getCurrentStorageArray();
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private RealLUTConverter<? extends RealType<?>> newConverter(
+		final double min, final double max, final ColorTable lut)
+	{
+		return new RealLUTConverter(min, max, lut);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private SourceOptimizedCompositeXYProjector<?, ?, ?> newProjector(
+		final ARGBScreenImage target,
+		final ArrayList<RealLUTConverter<? extends RealType<?>>> lutConverters)
+	{
+		return new SourceOptimizedCompositeXYProjector(getData().getImgPlus(),
+			target, lutConverters, channelDimIndex);
+	}
+
 	private boolean isInitialized() {
 		return projector != null;
 	}
@@ -502,18 +769,11 @@ private void initializeView(final boolean composite) {
 			converters.add(converter);
 		}
 
-		final ImgPlus<?> img = getData().getImgPlus();
-
-		if (AbstractCellImg.class.isAssignableFrom(img.getImg().getClass())) {
-			projector =
-				new SourceOptimizedCompositeXYProjector(getData().getImgPlus(),
-					screenImage, converters, channelDimIndex);
-		}
-		else {
-			projector =
-				new CompositeXYProjector(getData().getImgPlus(), screenImage,
-					converters, channelDimIndex);
-		}
+		projector =
+			new SourceOptimizedCompositeXYProjector(getData().getImgPlus(),
+				screenImage, converters, channelDimIndex);
+		projector.setThreadService(threadService);
+		viewport = null;
 
 		projector.setComposite(composite);
 	}
@@ -534,7 +794,10 @@ private void updateLUTs() {
 	}
 
 	private ColorTable getCurrentLUT(final int cPos) {
-		final Position pos = getPlanePosition();
+		return getLUT(getPlanePosition(), cPos);
+	}
+
+	private ColorTable getLUT(final Position pos, final int cPos) {
 		if (channelDimIndex >= 0) {
 			pos.setPosition(cPos, channelDimIndex - 2);
 		}
@@ -546,6 +809,35 @@ private ColorTable getCurrentLUT(final int cPos) {
 		return defaultLUTs.get(cPos); // return default channel LUT
 	}
 
+	/**
+	 * Computes the data range of the given channel of the currently displayed
+	 * plane. The {@link HistogramService} remembers plane ranges, so going back
+	 * to a plane does not read it again.
+	 */
+	private DataRange currentPlaneRange(final int c) {
+		final Dataset data = getData();
+		if (histogramService == null || data.dimensionIndex(Axes.X) != 0 ||
+			data.dimensionIndex(Axes.Y) != 1)
+		{
+			RandomAccessibleInterval<? extends RealType<?>> interval =
+				channelData(data, c);
+			interval = xyPlane(interval);
+			return autoscaleService.getDefaultRandomAccessRange(interval);
+		}
+		final int chIndex = data.dimensionIndex(Axes.CHANNEL);
+		final long[] pos = new long[data.numDimensions()];
+		for (int i = 2; i < pos.length; i++) {
+			pos[i] = i == chIndex ? c : getLongPosition(i);
+		}
+		final int[] planes = histogramService.getPlanes(data, pos, pos);
+		final DataRange range = histogramService.getDataRange(data, planes);
+		// NB - like the default autoscale method, never return a range of zero
+		if (range.getMin() == range.getMax()) {
+			return new DataRange(range.getMin(), range.getMax() + 0.000000000000001);
+		}
+		return range;
+	}
+
 	private RandomAccessibleInterval<? extends RealType<?>> channelData(
 		final Dataset d, final int c)
 	{
@@ -0,0 +1,243 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import net.imglib2.display.ColorTable;
+
+/**
+ * A memory-bounded, least recently used cache of rendered ARGB planes. Each
+ * plane is keyed by everything that affects its rendering: the view it was
+ * rendered for, the generation of that view's data, the size of the screen
+ * image, the position, the display range and color table of each channel, and
+ * whether channels are composited.
+ * <p>
+ * One cache is shared by all the views of a context (see
+ * {@link RenderedPlaneService}), so that they draw from a single memory
+ * budget.
+ * </p>
+ * <p>
+ * A plane may have been rendered only within a region of the screen image;
+ * it is then only returned for requests whose region lies inside it.
+ * </p>
+ */
+public class RenderedPlaneCache {
+
+	// -- instance variables --
+
+	private final long maxBytes;
+
+	private final LinkedHashMap<Key, Entry> entries =
+		new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+	private long bytes;
+
+	// -- constructor --
+
+	/** Creates a cache holding at most the given number of bytes of pixels. */
+	public RenderedPlaneCache(final long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("Negative cache size: " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	// -- public interface --
+
+	/**
+	 * Gets the pixels of the plane with the given key, if it was rendered at
+	 * least over the given region, as {minX, minY, maxX, maxY}. A null region
+	 * stands for the whole plane.
+	 * 
+	 * @return the cached pixels, which must not be modified; or null
+	 */
+	public synchronized int[] get(final Key key, final long[] region) {
+		final Entry entry = entries.get(key);
+		if (entry == null || !entry.covers(region)) return null;
+		return entry.pixels;
+	}
+
+	/** Tells whether the whole plane with the given key is cached. */
+	public synchronized boolean contains(final Key key) {
+		final Entry entry = entries.get(key);
+		return entry != null && entry.region == null;
+	}
+
+	/**
+	 * Caches the given pixels, rendered over the given region (null for the
+	 * whole plane). The cache takes ownership of the array. Least recently
+	 * used planes are evicted to stay within budget.
+	 */
+	public synchronized void
+		put(final Key key, final long[] region, final int[] pixels)
+	{
+		final long size = 4L * pixels.length;
+		if (size > maxBytes) return;
+		final Entry old =
+			entries.put(key, new Entry(region == null ? null : region.clone(),
+				pixels));
+		if (old != null) bytes -= 4L * old.pixels.length;
+		bytes += size;
+		final Iterator<Map.Entry<Key, Entry>> iter =
+			entries.entrySet().iterator();
+		while (bytes > maxBytes && iter.hasNext()) {
+			final Entry eldest = iter.next().getValue();
+			bytes -= 4L * eldest.pixels.length;
+			iter.remove();
+		}
+	}
+
+	/** Discards all cached planes. */
+	public synchronized void clear() {
+		entries.clear();
+		bytes = 0;
+	}
+
+	/** Discards all the planes cached for the given owner. */
+	public synchronized void clear(final Object owner) {
+		final Iterator<Map.Entry<Key, Entry>> iter =
+			entries.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, Entry> entry = iter.next();
+			if (entry.getKey().owner != owner) continue;
+			bytes -= 4L * entry.getValue().pixels.length;
+			iter.remove();
+		}
+	}
+
+	/** Gets the number of bytes of pixels currently cached. */
+	public synchronized long getByteCount() {
+		return bytes;
+	}
+
+	// -- Helper classes --
+
+	/** Everything that determines how a plane is rendered. */
+	public static class Key {
+
+		private final Object owner;
+		private final long generation;
+		private final int width, height;
+		private final long[] position;
+		private final double[] mins;
+		private final double[] maxs;
+		private final ColorTable[] colorTables;
+		private final boolean composite;
+
+		/**
+		 * Creates a key. The owner and color tables are compared by identity; the
+		 * arrays are not copied.
+		 * 
+		 * @param owner The object the plane is rendered for
+		 * @param generation A number the owner changes whenever its earlier
+		 *          renderings become stale
+		 * @param width The width of the rendered plane
+		 * @param height The height of the rendered plane
+		 */
+		public Key(final Object owner, final long generation, final int width,
+			final int height, final long[] position, final double[] mins,
+			final double[] maxs, final ColorTable[] colorTables,
+			final boolean composite)
+		{
+			this.owner = owner;
+			this.generation = generation;
+			this.width = width;
+			this.height = height;
+			this.position = position;
+			this.mins = mins;
+			this.maxs = maxs;
+			this.colorTables = colorTables;
+			this.composite = composite;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key other = (Key) o;
+			if (owner != other.owner) return false;
+			if (generation != other.generation) return false;
+			if (width != other.width || height != other.height) return false;
+			if (composite != other.composite) return false;
+			if (!Arrays.equals(position, other.position)) return false;
+			if (!Arrays.equals(mins, other.mins)) return false;
+			if (!Arrays.equals(maxs, other.maxs)) return false;
+			if (colorTables.length != other.colorTables.length) return false;
+			for (int i = 0; i < colorTables.length; i++) {
+				if (colorTables[i] != other.colorTables[i]) return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(owner);
+			hash = 31 * hash + (int) (generation ^ (generation >>> 32));
+			hash = 31 * hash + width;
+			hash = 31 * hash + height;
+			hash = 31 * hash + Arrays.hashCode(position);
+			hash = 31 * hash + Arrays.hashCode(mins);
+			hash = 31 * hash + Arrays.hashCode(maxs);
+			for (final ColorTable colorTable : colorTables) {
+				hash = 31 * hash + System.identityHashCode(colorTable);
+			}
+			return 31 * hash + (composite ? 1 : 0);
+		}
+	}
+
+	/** Pixels of a plane, and the region over which they are valid. */
+	private static class Entry {
+
+		private final long[] region;
+		private final int[] pixels;
+
+		public Entry(final long[] region, final int[] pixels) {
+			this.region = region;
+			this.pixels = pixels;
+		}
+
+		public boolean covers(final long[] r) {
+			if (region == null) return true;
+			if (r == null) return false;
+			return r[0] >= region[0] && r[1] >= region[1] && r[2] <= region[2] &&
+				r[3] <= region[3];
+		}
+	}
+
+}
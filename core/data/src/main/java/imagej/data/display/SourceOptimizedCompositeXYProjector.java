@@ -32,41 +32,56 @@
  * policies, either expressed or implied, of any organization.
  * #L%
  */
-
 package imagej.data.display;
 
+import imagej.util.ParallelUtils;
+
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
-import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.converter.Converter;
+import net.imglib2.display.ColorTable;
 import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
 import net.imglib2.img.cell.CellImg;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
 
 /**
  * As {@link CompositeXYProjector} but uses a source that is both a
  * {@link RandomAccessibleInterval} and an {@link IterableInterval}, and a
- * {@link RandomAccessibleInterval} target. This allows the natural iteration
- * order of the source to be used, instead of that of the target.
+ * {@link RandomAccessibleInterval} target.
  * <p>
- * Furthermore, one source cursor is created for each component being
+ * One source {@link RandomAccess} is created for each component being
  * composited. This optimizes for scenarios where each composited component is
  * not stored conveniently relative to each other (for example - in the case of
  * {@link CellImg} instances where each channel is in a different cell).
  * </p>
  * <p>
- * NB: because N cursors are created, one for each composite component, the
- * memory requirements for this projector are higher than
- * {@link CompositeXYProjector}.
+ * The target is rendered in bands of rows, which are spread across the
+ * {@link ThreadService}'s worker threads when one has been given. Rendering can
+ * be restricted to a viewport (see {@link #setViewport}), in which case pixels
+ * of the target outside the viewport are left untouched; {@link #isComplete()}
+ * then tells that the target is not entirely up to date, and
+ * {@link #mapAll()} renders all of it.
  * </p>
  * <p>
- * NB: Because this is an XY projector, the assumption is the provided source's
- * natural iteration order will cover XY first. If that assumption is false, the
- * projector will fail to produce a correct image.
+ * For integer sources of at most 16 bits, each {@link RealLUTConverter} is
+ * replaced by a lookup table holding the converted color of every possible
+ * value. The tables are rebuilt whenever the converter's min, max or color
+ * table change.
+ * </p>
+ * <p>
+ * NB: Because this is an XY projector, dimensions 0 and 1 of the source must
+ * be X and Y.
  * </p>
  * 
  * @see CompositeXYProjector for the code upon which this class was based.
@@ -75,12 +90,30 @@
  */
 public class SourceOptimizedCompositeXYProjector< A, S extends RandomAccessibleInterval< A > & IterableInterval< A >, T extends RandomAccessibleInterval< ARGBType > & IterableInterval< ARGBType > > extends CompositeXYProjector< A >
 {
-  private int dimIndex = 0;
-  
+	/** Minimum number of pixels rendered by each worker thread. */
+	private static final int MIN_BAND_PIXELS = 64 * 1024;
+
+	/** Largest number of distinct values for which a lookup table is built. */
+	private static final long MAX_TABLE_SIZE = 65536;
+
+	private int dimIndex = 0;
+
 	private T raTarget = null;
 
 	private S iraSource = null;
 
+	private ThreadService threadService;
+
+	/** Viewport bounds, as {minX, minY, maxX, maxY}; null to render all. */
+	private long[] viewport;
+
+	/** Whether the last rendering covered the whole target. */
+	private boolean complete;
+
+	/** Lookup tables of the converters currently in use. */
+	private final Map< Converter< A, ARGBType >, ColorLookup > lookups =
+		new IdentityHashMap< Converter< A, ARGBType >, ColorLookup >();
+
 	public SourceOptimizedCompositeXYProjector( S source, T target, ArrayList< Converter< A, ARGBType >> converters, int dimIndex )
 	{
 		super( source, target, converters, dimIndex );
@@ -89,46 +122,146 @@ public SourceOptimizedCompositeXYProjector( S source, T target, ArrayList< Conve
 		iraSource = source;
 	}
 
-	@Override
-	public void map()
+	// -- SourceOptimizedCompositeXYProjector methods --
+
+	/**
+	 * Sets the {@link ThreadService} used to render bands of rows in parallel.
+	 * If null (the default), rendering happens on the calling thread.
+	 */
+	public void setThreadService( final ThreadService threadService )
+	{
+		this.threadService = threadService;
+	}
+
+	/**
+	 * Restricts subsequent calls to {@link #map()} to the given rectangle of the
+	 * target, in target coordinates (inclusive). The rectangle is clipped to
+	 * the target's bounds.
+	 */
+	public void setViewport( final long minX, final long minY, final long maxX, final long maxY )
+	{
+		if ( minX > maxX || minY > maxY )
+			throw new IllegalArgumentException( "Empty viewport: [" + minX + ", " + minY + "] - [" + maxX + ", " + maxY + "]" );
+		viewport = new long[] { minX, minY, maxX, maxY };
+	}
+
+	/** Makes subsequent calls to {@link #map()} render the whole target. */
+	public void clearViewport()
 	{
-		boolean noComposite = dimIndex < 0;
+		viewport = null;
+	}
 
-		int size = -1;
+	/**
+	 * Tells whether the last call to {@link #map()} rendered the whole target,
+	 * rather than only the viewport.
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
 
-		if ( !noComposite )
-			size = updateCurrentArrays();
+	/** Renders the whole target, regardless of the viewport. */
+	public void mapAll()
+	{
+		final long[] saved = viewport;
+		viewport = null;
+		try
+		{
+			map();
+		}
+		finally
+		{
+			viewport = saved;
+		}
+	}
 
-		if ( noComposite || size == 1 )
+	/**
+	 * Records whether the target is entirely up to date, for when its pixels
+	 * were written by other means than {@link #map()}.
+	 */
+	void setComplete( final boolean complete )
+	{
+		this.complete = complete;
+	}
+
+	// -- Projector methods --
+
+	@Override
+	public void map()
+	{
+		if ( dimIndex < 0 )
 		{
 			super.map();
+			complete = true;
 			return;
 		}
 
-		// System.out.println("    CompositeXYProjector::map() : call #"+(++calls));
+		final int size = updateCurrentArrays();
+
 		for ( int d = 2; d < position.length; ++d )
 			min[ d ] = max[ d ] = position[ d ];
 
-		min[ 0 ] = raTarget.min( 0 );
-		min[ 1 ] = raTarget.min( 1 );
-		max[ 0 ] = raTarget.max( 0 );
-		max[ 1 ] = raTarget.max( 1 );
+		final long minX = clip( 0, viewport == null ? Long.MIN_VALUE : viewport[ 0 ] );
+		final long minY = clip( 1, viewport == null ? Long.MIN_VALUE : viewport[ 1 ] );
+		final long maxX = clip( 0, viewport == null ? Long.MAX_VALUE : viewport[ 2 ] );
+		final long maxY = clip( 1, viewport == null ? Long.MAX_VALUE : viewport[ 3 ] );
+		complete = minX == raTarget.min( 0 ) && minY == raTarget.min( 1 ) && maxX == raTarget.max( 0 ) && maxY == raTarget.max( 1 );
+		if ( minX > maxX || minY > maxY )
+			return;
 
-		final List< RandomAccess< A >> sourceRandomAccess = new ArrayList< RandomAccess< A >>();
+		// Snapshot the per-component state, so that the workers do not depend on
+		// the projector's fields while rendering.
+		final long[] origin = min.clone();
+		final long[] positions = new long[ size ];
+		final List< Converter< A, ARGBType >> componentConverters = new ArrayList< Converter< A, ARGBType >>( size );
+		final List< ColorLookup > componentLookups = new ArrayList< ColorLookup >( size );
+		for ( int i = 0; i < size; ++i )
+		{
+			positions[ i ] = currentPositions[ i ];
+			componentConverters.add( currentConverters[ i ] );
+			componentLookups.add( lookup( currentConverters[ i ] ) );
+		}
 
-		Cursor< A > leadCursor = iraSource.localizingCursor();
+		final long width = maxX - minX + 1;
+		final long height = maxY - minY + 1;
+		final int bandCount = threadService == null ? 1 : ( int ) Math.min( height, ParallelUtils.chunkCount( width * height, MIN_BAND_PIXELS ) );
+		final List< Runnable > bands = new ArrayList< Runnable >( bandCount );
+		for ( int b = 0; b < bandCount; b++ )
+		{
+			final long bandMinY = minY + height * b / bandCount;
+			final long bandMaxY = minY + height * ( b + 1 ) / bandCount - 1;
+			bands.add( new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					renderBand( origin, positions, componentConverters, componentLookups, minX, maxX, bandMinY, bandMaxY );
+				}
+			} );
+		}
+		ParallelUtils.runAndWait( threadService, bands );
+	}
 
-		// Compute how many positions need to be composited in the target
-		int steps = 1;
-		for ( int i = 0; i < min.length; i++ )
-			steps *= ( max[ i ] + 1 - min[ i ] );
+	// -- Helper methods --
+
+	/** Clips the given coordinate to the target's bounds along dimension d. */
+	private long clip( final int d, final long value )
+	{
+		return Math.max( raTarget.min( d ), Math.min( raTarget.max( d ), value ) );
+	}
+
+	/** Composites the rows [minY, maxY] of the target between minX and maxX. */
+	private void renderBand( final long[] origin, final long[] positions, final List< Converter< A, ARGBType >> componentConverters, final List< ColorLookup > componentLookups, final long minX, final long maxX, final long minY, final long maxY )
+	{
+		final int size = positions.length;
 
 		// Generate a RandomAccess for each composite component
+		final List< RandomAccess< A >> sourceRandomAccess = new ArrayList< RandomAccess< A >>( size );
 		for ( int i = 0; i < size; ++i )
 		{
-			RandomAccess< A > randomAccess = iraSource.randomAccess();
-			min[ dimIndex ] = max[ dimIndex ] = currentPositions[ i ];
-			randomAccess.setPosition( min );
+			final RandomAccess< A > randomAccess = iraSource.randomAccess();
+			randomAccess.setPosition( origin );
+			randomAccess.setPosition( positions[ i ], dimIndex );
 			sourceRandomAccess.add( randomAccess );
 		}
 
@@ -137,49 +270,131 @@ public void map()
 
 		final ARGBType bi = new ARGBType();
 
-		// Now we will read the composite component values at the first #steps
-		// x,y
-		// positions.
-		while ( leadCursor.hasNext() && ( --steps ) >= 0 )
+		for ( long y = minY; y <= maxY; ++y )
 		{
-			int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+			for ( int i = 0; i < size; i++ )
+			{
+				final RandomAccess< A > randomAccess = sourceRandomAccess.get( i );
+				randomAccess.setPosition( minX, 0 );
+				randomAccess.setPosition( y, 1 );
+			}
+			targetCursor.setPosition( minX, 0 );
+			targetCursor.setPosition( y, 1 );
 
-			leadCursor.fwd();
+			for ( long x = minX; x <= maxX; ++x )
+			{
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
 
-			for ( int i = 0; i < size; i++ )
+				for ( int i = 0; i < size; i++ )
+				{
+					final RandomAccess< A > randomAccess = sourceRandomAccess.get( i );
+
+					final ColorLookup table = componentLookups.get( i );
+					final int value;
+					if ( table != null )
+						value = table.get( randomAccess.get() );
+					else
+					{
+						componentConverters.get( i ).convert( randomAccess.get(), bi );
+						value = bi.get();
+					}
+					randomAccess.fwd( 0 );
+
+					// accumulate converted result
+					aSum += ARGBType.alpha( value );
+					rSum += ARGBType.red( value );
+					gSum += ARGBType.green( value );
+					bSum += ARGBType.blue( value );
+				}
+				if ( aSum > 255 )
+					aSum = 255;
+				if ( rSum > 255 )
+					rSum = 255;
+				if ( gSum > 255 )
+					gSum = 255;
+				if ( bSum > 255 )
+					bSum = 255;
+
+				targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
+				targetCursor.fwd( 0 );
+			}
+		}
+	}
+
+	/**
+	 * Gets an up-to-date lookup table for the given converter, or null if the
+	 * converter must be called for each pixel.
+	 */
+	private ColorLookup lookup( final Converter< A, ARGBType > converter )
+	{
+		if ( !( converter instanceof RealLUTConverter ) )
+			return null;
+		final A sample = iraSource.firstElement();
+		if ( !( sample instanceof IntegerType ) )
+			return null;
+		final RealType< ? > type = ( RealType< ? > ) sample;
+		final double typeMin = type.getMinValue();
+		final double typeMax = type.getMaxValue();
+		if ( typeMax - typeMin + 1 > MAX_TABLE_SIZE )
+			return null;
+
+		final RealLUTConverter< ? > lutConverter = ( RealLUTConverter< ? > ) converter;
+		ColorLookup table = lookups.get( converter );
+		if ( table == null || !table.matches( lutConverter ) )
+		{
+			table = new ColorLookup( converter, sample, ( int ) typeMin, ( int ) ( typeMax - typeMin + 1 ) );
+			lookups.put( converter, table );
+		}
+		return table;
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * The colors a {@link RealLUTConverter} produces for every value of an
+	 * integer type.
+	 */
+	private class ColorLookup
+	{
+		private final double converterMin;
+
+		private final double converterMax;
+
+		private final ColorTable converterLUT;
+
+		private final int offset;
+
+		private final int[] colors;
+
+		@SuppressWarnings( "unchecked" )
+		public ColorLookup( final Converter< A, ARGBType > converter, final A sample, final int offset, final int count )
+		{
+			final RealLUTConverter< ? > lutConverter = ( RealLUTConverter< ? > ) converter;
+			converterMin = lutConverter.getMin();
+			converterMax = lutConverter.getMax();
+			converterLUT = lutConverter.getLUT();
+			this.offset = offset;
+			colors = new int[ count ];
+
+			final RealType< ? > value = ( ( RealType< ? > ) sample ).createVariable();
+			final ARGBType color = new ARGBType();
+			for ( int i = 0; i < count; i++ )
 			{
-				RandomAccess< A > randomAccess = sourceRandomAccess.get( i );
-				randomAccess.setPosition( leadCursor.getLongPosition( 0 ), 0 );
-				randomAccess.setPosition( leadCursor.getLongPosition( 1 ), 1 );
-				randomAccess.setPosition( currentPositions[ i ], dimIndex );
-
-				currentConverters[ i ].convert( randomAccess.get(), bi );
-
-				// accumulate converted result
-				final int value = bi.get();
-				final int a = ARGBType.alpha( value );
-				final int r = ARGBType.red( value );
-				final int g = ARGBType.green( value );
-				final int b = ARGBType.blue( value );
-				aSum += a;
-				rSum += r;
-				gSum += g;
-				bSum += b;
+				value.setReal( offset + i );
+				converter.convert( ( A ) value, color );
+				colors[ i ] = color.get();
 			}
-			if ( aSum > 255 )
-				aSum = 255;
-			if ( rSum > 255 )
-				rSum = 255;
-			if ( gSum > 255 )
-				gSum = 255;
-			if ( bSum > 255 )
-				bSum = 255;
-
-			targetCursor.setPosition( leadCursor.getLongPosition( 0 ), 0 );
-			targetCursor.setPosition( leadCursor.getLongPosition( 1 ), 1 );
-			targetCursor.get().set( ARGBType.rgba( rSum, gSum, bSum, aSum ) );
 		}
 
+		public boolean matches( final RealLUTConverter< ? > converter )
+		{
+			return converter.getMin() == converterMin && converter.getMax() == converterMax && converter.getLUT() == converterLUT;
+		}
+
+		public int get( final A value )
+		{
+			return colors[ ( ( IntegerType< ? > ) value ).getInteger() - offset ];
+		}
 	}
 
 }
@@ -51,11 +51,24 @@ public class DatasetUpdatedEvent extends DataUpdatedEvent {
 
 	private final Dataset dataset;
 	private final boolean metadataOnly;
+	private final int[] planeNumbers;
 
 	public DatasetUpdatedEvent(final Dataset dataset, boolean metadataOnly) {
 		super(dataset);
 		this.dataset = dataset;
 		this.metadataOnly = metadataOnly;
+		this.planeNumbers = null;
+	}
+
+	/**
+	 * Creates an event reporting that the sample values of the given planes
+	 * (and only those planes) may have changed.
+	 */
+	public DatasetUpdatedEvent(final Dataset dataset, final int[] planeNumbers) {
+		super(dataset);
+		this.dataset = dataset;
+		this.metadataOnly = false;
+		this.planeNumbers = planeNumbers;
 	}
 
 	// -- ObjectEvent methods --
@@ -68,4 +81,12 @@ public Dataset getObject() {
 	public boolean isMetaDataOnly() {
 		return metadataOnly;
 	}
+
+	/**
+	 * Gets the numbers of the planes whose sample values may have changed, or
+	 * null if any plane may have changed.
+	 */
+	public int[] getPlaneNumbers() {
+		return planeNumbers;
+	}
 }
@@ -0,0 +1,638 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import imagej.data.Dataset;
+import imagej.data.PlaneAccessor;
+import imagej.data.autoscale.DataRange;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRGBChangedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetTypeChangedEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.measure.MomentAccumulator;
+import imagej.data.measure.RegionStats;
+import imagej.data.measure.Stat;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.histogram.Real1dBinMapper;
+import net.imglib2.img.Img;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.view.Views;
+
+import org.scijava.event.EventHandler;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Default implementation of {@link HistogramService}. Plane statistics are
+ * always kept. Plane histograms are kept for the few most recently used bin
+ * layouts of each {@link Dataset}, as long as they fit in the count budget.
+ * <p>
+ * The {@link Dataset}s are only weakly referenced, so that the caches of
+ * datasets that are dropped without ever being deleted (such as those created
+ * by scripts) are released with them, and only the most recently used
+ * {@link #MAX_DATASETS} datasets are kept at all.
+ * </p>
+ */
+@Plugin(type = Service.class)
+public class DefaultHistogramService extends AbstractService implements
+	HistogramService
+{
+
+	// -- Constants --
+
+	/** The statistics kept for every plane. */
+	private static final EnumSet<Stat> PLANE_STATS = EnumSet.of(Stat.MINIMUM,
+		Stat.MAXIMUM, Stat.ARITHMETIC_MEAN, Stat.SAMPLE_STD_DEV);
+
+	/** The number of bin layouts whose plane histograms are kept per Dataset. */
+	private static final int MAX_LAYOUTS = 4;
+
+	/** The largest number of bin counts kept for one bin layout of a Dataset. */
+	private static final long MAX_COUNTS_PER_LAYOUT = 8 * 1024 * 1024;
+
+	/** The number of Datasets whose statistics and histograms are kept. */
+	private static final int MAX_DATASETS = 32;
+
+	// -- Parameters --
+
+	@Parameter
+	private ThreadService threadService;
+
+	// -- instance variables --
+
+	private final Map<Dataset, DatasetEntry> entries = Collections
+		.synchronizedMap(new WeakHashMap<Dataset, DatasetEntry>());
+
+	/** Orders the entries by their last use; guarded by {@link #entries}. */
+	private long clock;
+
+	// -- HistogramService methods --
+
+	@Override
+	public int[] getPlanes(final Dataset ds) {
+		final int[] planes = new int[planeCount(ds)];
+		for (int p = 0; p < planes.length; p++) {
+			planes[p] = p;
+		}
+		return planes;
+	}
+
+	@Override
+	public int[] getPlanes(final Dataset ds, final long[] min, final long[] max)
+	{
+		final int numDims = ds.numDimensions();
+		long count = 1;
+		for (int d = 2; d < numDims; d++) {
+			if (min[d] < 0 || max[d] >= ds.dimension(d) || min[d] > max[d]) {
+				throw new IllegalArgumentException("plane bounds out of range");
+			}
+			count *= max[d] - min[d] + 1;
+		}
+		final int[] planes = new int[(int) count];
+		final long[] pos = min.clone();
+		for (int i = 0; i < planes.length; i++) {
+			planes[i] = planeNumber(ds, pos);
+			for (int d = 2; d < numDims; d++) {
+				if (++pos[d] <= max[d]) break;
+				pos[d] = min[d];
+			}
+		}
+		return planes;
+	}
+
+	@Override
+	public RegionStats getStats(final Dataset ds, final int[] planes) {
+		final MomentAccumulator total = new MomentAccumulator(PLANE_STATS);
+		for (final MomentAccumulator acc : planeStats(ds, planes)) {
+			total.merge(acc);
+		}
+		return new RegionStats(total, PLANE_STATS);
+	}
+
+	@Override
+	public DataRange getDataRange(final Dataset ds, final int[] planes) {
+		final RegionStats stats = getStats(ds, planes);
+		if (stats.getSampleCount() == 0) return new DataRange(0, 0);
+		return new DataRange(stats.get(Stat.MINIMUM), stats.get(Stat.MAXIMUM));
+	}
+
+	@Override
+	public <T extends RealType<T>> Histogram1d<T> getHistogram(
+		final Dataset ds, final int[] planes, final double min, final double max,
+		final long binCount)
+	{
+		if (binCount < 1 || binCount > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("invalid bin count: " + binCount);
+		}
+		final Layout layout = new Layout(min, max, binCount);
+		final long[] totals = new long[(int) binCount];
+		for (final int[] counts : planeCounts(ds, planes, layout)) {
+			for (int b = 0; b < counts.length; b++) {
+				totals[b] += counts[b];
+			}
+		}
+		final Histogram1d<T> histogram =
+			new Histogram1d<T>(new Real1dBinMapper<T>(min, max, binCount, false));
+		final long[] binPos = new long[1];
+		for (int b = 0; b < totals.length; b++) {
+			if (totals[b] == 0) continue;
+			binPos[0] = b;
+			histogram.dfd().setFrequency(binPos, totals[b]);
+		}
+		return histogram;
+	}
+
+	@Override
+	public void invalidate(final Dataset ds, final int[] planes) {
+		final DatasetEntry entry = entries.get(ds);
+		if (entry != null) entry.invalidate(planes);
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent evt) {
+		if (evt.isMetaDataOnly()) return;
+		invalidate(evt.getObject(), evt.getPlaneNumbers());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent evt) {
+		entries.remove(evt.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetTypeChangedEvent evt) {
+		entries.remove(evt.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRGBChangedEvent evt) {
+		entries.remove(evt.getObject());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent evt) {
+		entries.remove(evt.getObject());
+	}
+
+	// -- private helpers --
+
+	private DatasetEntry entry(final Dataset ds) {
+		final int planeCount = planeCount(ds);
+		synchronized (entries) {
+			DatasetEntry entry = entries.get(ds);
+			if (entry == null || entry.stats.length != planeCount) {
+				entry = new DatasetEntry(planeCount);
+				entries.put(ds, entry);
+				if (entries.size() > MAX_DATASETS) removeLeastRecentlyUsed();
+			}
+			entry.lastUsed = ++clock;
+			return entry;
+		}
+	}
+
+	/** Drops the entry of the Dataset that was used the longest time ago. */
+	private void removeLeastRecentlyUsed() {
+		Dataset oldest = null;
+		long oldestUse = Long.MAX_VALUE;
+		for (final Map.Entry<Dataset, DatasetEntry> e : entries.entrySet()) {
+			if (e.getKey() != null && e.getValue().lastUsed < oldestUse) {
+				oldest = e.getKey();
+				oldestUse = e.getValue().lastUsed;
+			}
+		}
+		if (oldest != null) entries.remove(oldest);
+	}
+
+	/** Returns the statistics of each of the given planes. */
+	private MomentAccumulator[] planeStats(final Dataset ds, final int[] planes)
+	{
+		final DatasetEntry entry = entry(ds);
+		final MomentAccumulator[] result = new MomentAccumulator[planes.length];
+		while (true) {
+			final List<Integer> missing = new ArrayList<Integer>();
+			final long[] generations;
+			synchronized (entry) {
+				for (int i = 0; i < planes.length; i++) {
+					result[i] = entry.stats[planes[i]];
+					if (result[i] == null) missing.add(planes[i]);
+				}
+				generations = entry.generations(missing);
+			}
+			if (missing.isEmpty()) return result;
+			final MomentAccumulator[] computed =
+				new MomentAccumulator[missing.size()];
+			visitPlanes(ds, missing, new PlaneVisitorFactory() {
+
+				@Override
+				public PlaneVisitor create() {
+					return new StatsVisitor(computed);
+				}
+			});
+			synchronized (entry) {
+				for (int i = 0; i < computed.length; i++) {
+					final int plane = missing.get(i);
+					if (entry.generations[plane] == generations[i]) {
+						entry.stats[plane] = computed[i];
+					}
+				}
+			}
+			if (entry.maySkipRetry(missing, generations)) {
+				fill(result, planes, missing, computed);
+				return result;
+			}
+		}
+	}
+
+	/** Returns the bin counts of each of the given planes. */
+	private int[][] planeCounts(final Dataset ds, final int[] planes,
+		final Layout layout)
+	{
+		final DatasetEntry entry = entry(ds);
+		final int[][] result = new int[planes.length][];
+		while (true) {
+			final List<Integer> missing = new ArrayList<Integer>();
+			final long[] generations;
+			synchronized (entry) {
+				final int[][] cached = entry.counts(layout, false);
+				for (int i = 0; i < planes.length; i++) {
+					result[i] = cached == null ? null : cached[planes[i]];
+					if (result[i] == null) missing.add(planes[i]);
+				}
+				generations = entry.generations(missing);
+			}
+			if (missing.isEmpty()) return result;
+			final int[][] computed = new int[missing.size()][];
+			@SuppressWarnings({ "rawtypes", "unchecked" })
+			final Real1dBinMapper mapper =
+				new Real1dBinMapper(layout.min, layout.max, layout.binCount, false);
+			visitPlanes(ds, missing, new PlaneVisitorFactory() {
+
+				@Override
+				@SuppressWarnings({ "rawtypes", "unchecked" })
+				public PlaneVisitor create() {
+					return new CountVisitor(computed, mapper, ds.getType()
+						.createVariable(), (int) layout.binCount);
+				}
+			});
+			synchronized (entry) {
+				final int[][] cached = entry.counts(layout, true);
+				if (cached != null) {
+					for (int i = 0; i < computed.length; i++) {
+						final int plane = missing.get(i);
+						if (entry.generations[plane] == generations[i]) {
+							cached[plane] = computed[i];
+						}
+					}
+				}
+			}
+			if (entry.maySkipRetry(missing, generations)) {
+				fill(result, planes, missing, computed);
+				return result;
+			}
+		}
+	}
+
+	/** Fills the gaps in a result with the planes computed for them. */
+	private <V> void fill(final V[] result, final int[] planes,
+		final List<Integer> missing, final V[] computed)
+	{
+		for (int i = 0; i < planes.length; i++) {
+			if (result[i] == null) result[i] = computed[missing.indexOf(planes[i])];
+		}
+	}
+
+	/**
+	 * Reads the given planes of a Dataset, several at once. Each worker thread
+	 * gets its own visitor; the visitor is told the index (within the list) of
+	 * each plane it is about to visit.
+	 */
+	private void visitPlanes(final Dataset ds, final List<Integer> planes,
+		final PlaneVisitorFactory factory)
+	{
+		final int workers = ParallelUtils.chunkCount(planes.size(), 1);
+		final AtomicInteger next = new AtomicInteger();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int w = 0; w < workers; w++) {
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final PlaneVisitor visitor = factory.create();
+					int i;
+					while ((i = next.getAndIncrement()) < planes.size()) {
+						visitor.start(i);
+						visitPlane(ds, planes.get(i), visitor);
+					}
+				}
+			});
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
+	}
+
+	/** Hands the values of one plane to a visitor, a row at a time. */
+	private void visitPlane(final Dataset ds, final int plane,
+		final PlaneVisitor visitor)
+	{
+		final Img<?> img = ds.getImgPlus();
+		final int w = (int) ds.dimension(0);
+		final int h = ds.numDimensions() < 2 ? 1 : (int) ds.dimension(1);
+		final double[] row = new double[w];
+		final PlaneAccessor accessor = PlaneAccessor.forType(ds.getType());
+		final Object storage =
+			accessor == null ? null : PlaneAccessor.getStorage(img, plane);
+		if (storage != null) {
+			final int offset = PlaneAccessor.getOffset(img, plane);
+			for (int y = 0; y < h; y++) {
+				accessor.read(storage, offset + y * w, row, 0, w);
+				visitor.visit(row, w);
+			}
+			return;
+		}
+		// NB - data is not array backed; fall back to a cursor over the plane
+		final long[] min = new long[ds.numDimensions()];
+		position(ds, plane, min);
+		final long[] max = min.clone();
+		max[0] = w - 1;
+		if (max.length > 1) max[1] = h - 1;
+		final ImgPlus<? extends RealType<?>> imgPlus = ds.getImgPlus();
+		final Cursor<? extends RealType<?>> cursor =
+			Views.iterable(Views.interval(imgPlus, min, max)).cursor();
+		int i = 0;
+		while (cursor.hasNext()) {
+			row[i++] = cursor.next().getRealDouble();
+			if (i == w) {
+				visitor.visit(row, w);
+				i = 0;
+			}
+		}
+	}
+
+	private static int planeCount(final Dataset ds) {
+		long count = 1;
+		for (int d = 2; d < ds.numDimensions(); d++) {
+			count *= ds.dimension(d);
+		}
+		if (count > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many planes: " + count);
+		}
+		return (int) count;
+	}
+
+	private static int planeNumber(final Dataset ds, final long[] pos) {
+		long plane = 0;
+		long stride = 1;
+		for (int d = 2; d < ds.numDimensions(); d++) {
+			plane += pos[d] * stride;
+			stride *= ds.dimension(d);
+		}
+		return (int) plane;
+	}
+
+	private static void position(final Dataset ds, final int plane,
+		final long[] pos)
+	{
+		long p = plane;
+		for (int d = 2; d < ds.numDimensions(); d++) {
+			pos[d] = p % ds.dimension(d);
+			p /= ds.dimension(d);
+		}
+	}
+
+	// -- Helper classes --
+
+	/** The bin layout of a histogram. */
+	private static class Layout {
+
+		private final double min, max;
+		private final long binCount;
+
+		public Layout(final double min, final double max, final long binCount) {
+			this.min = min;
+			this.max = max;
+			this.binCount = binCount;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Layout)) return false;
+			final Layout other = (Layout) o;
+			return Double.compare(min, other.min) == 0 &&
+				Double.compare(max, other.max) == 0 && binCount == other.binCount;
+		}
+
+		@Override
+		public int hashCode() {
+			final long bits =
+				Double.doubleToLongBits(min) * 31 + Double.doubleToLongBits(max);
+			return (int) (bits ^ (bits >>> 32)) * 31 + (int) binCount;
+		}
+	}
+
+	/**
+	 * What is known about one Dataset. Each plane has a generation number that
+	 * is bumped when the plane is invalidated, so results computed from data
+	 * that changed meanwhile are not kept. Access is synchronized on the entry.
+	 */
+	private static class DatasetEntry {
+
+		private final long[] generations;
+		private final MomentAccumulator[] stats;
+		private final Map<Layout, int[][]> counts;
+
+		/** The {@link #clock} value when this entry was last used. */
+		private long lastUsed;
+
+		public DatasetEntry(final int planeCount) {
+			generations = new long[planeCount];
+			stats = new MomentAccumulator[planeCount];
+			counts = new LinkedHashMap<Layout, int[][]>(16, 0.75f, true) {
+
+				@Override
+				protected boolean removeEldestEntry(
+					final Map.Entry<Layout, int[][]> eldest)
+				{
+					return size() > MAX_LAYOUTS;
+				}
+			};
+		}
+
+		/** Returns the plane counts kept for a layout, or null if there are none. */
+		public int[][] counts(final Layout layout, final boolean create) {
+			int[][] result = counts.get(layout);
+			if (result == null && create &&
+				generations.length * layout.binCount <= MAX_COUNTS_PER_LAYOUT)
+			{
+				result = new int[generations.length][];
+				counts.put(layout, result);
+			}
+			return result;
+		}
+
+		public long[] generations(final List<Integer> planes) {
+			final long[] result = new long[planes.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = generations[planes.get(i)];
+			}
+			return result;
+		}
+
+		/**
+		 * Returns true if none of the given planes was invalidated since their
+		 * generations were taken, so their freshly computed results are current.
+		 */
+		public synchronized boolean maySkipRetry(final List<Integer> planes,
+			final long[] taken)
+		{
+			for (int i = 0; i < taken.length; i++) {
+				if (generations[planes.get(i)] != taken[i]) return false;
+			}
+			return true;
+		}
+
+		public synchronized void invalidate(final int[] planes) {
+			if (planes == null) {
+				for (int p = 0; p < generations.length; p++) {
+					forget(p);
+				}
+			}
+			else {
+				for (final int p : planes) {
+					if (p >= 0 && p < generations.length) forget(p);
+				}
+			}
+		}
+
+		private void forget(final int plane) {
+			generations[plane]++;
+			stats[plane] = null;
+			for (final int[][] planeCounts : counts.values()) {
+				planeCounts[plane] = null;
+			}
+		}
+	}
+
+	private interface PlaneVisitorFactory {
+
+		PlaneVisitor create();
+	}
+
+	/** Receives the values of a plane, a row at a time. */
+	private interface PlaneVisitor {
+
+		/** Begins the plane with the given index in the list being visited. */
+		void start(int index);
+
+		void visit(double[] row, int length);
+	}
+
+	private static class StatsVisitor implements PlaneVisitor {
+
+		private final MomentAccumulator[] results;
+		private MomentAccumulator acc;
+
+		public StatsVisitor(final MomentAccumulator[] results) {
+			this.results = results;
+		}
+
+		@Override
+		public void start(final int index) {
+			acc = new MomentAccumulator(PLANE_STATS);
+			results[index] = acc;
+		}
+
+		@Override
+		public void visit(final double[] row, final int length) {
+			for (int i = 0; i < length; i++) {
+				acc.accumulate(row[i]);
+			}
+		}
+	}
+
+	private static class CountVisitor<T extends RealType<T>> implements
+		PlaneVisitor
+	{
+
+		private final int[][] results;
+		private final Real1dBinMapper<T> mapper;
+		private final T value;
+		private final int binCount;
+		private int[] counts;
+
+		public CountVisitor(final int[][] results, final Real1dBinMapper<T> mapper,
+			final T value, final int binCount)
+		{
+			this.results = results;
+			this.mapper = mapper;
+			this.value = value;
+			this.binCount = binCount;
+		}
+
+		@Override
+		public void start(final int index) {
+			counts = new int[binCount];
+			results[index] = counts;
+		}
+
+		@Override
+		public void visit(final double[] row, final int length) {
+			for (int i = 0; i < length; i++) {
+				value.setReal(row[i]);
+				final long bin = mapper.map(value);
+				if (bin >= 0 && bin < binCount) counts[(int) bin]++;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import imagej.data.Dataset;
+import imagej.data.autoscale.DataRange;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.measure.RegionStats;
+import imagej.data.measure.Stat;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.service.Service;
+
+/**
+ * A service that computes histograms and basic statistics of the XY planes of
+ * {@link Dataset}s and remembers them. Results for several planes are merged
+ * from the per-plane results, so only planes that have changed since they were
+ * last visited are read again. Planes are forgotten when a
+ * {@link DatasetUpdatedEvent} reports them changed.
+ * <p>
+ * Planes are numbered as in {@link Dataset#getPlane(int)}: the X and Y axes
+ * are the first two dimensions and the remaining dimensions vary fastest
+ * first.
+ * </p>
+ */
+public interface HistogramService extends Service {
+
+	/** Returns the numbers of all the planes of a {@link Dataset}. */
+	int[] getPlanes(Dataset ds);
+
+	/**
+	 * Returns the numbers of the planes whose positions lie within the given
+	 * bounds. The bounds have an entry for every dimension of the
+	 * {@link Dataset}; the entries for the X and Y dimensions are ignored.
+	 * 
+	 * @param ds The Dataset whose planes are numbered
+	 * @param min The inclusive lower bound of each dimension
+	 * @param max The inclusive upper bound of each dimension
+	 */
+	int[] getPlanes(Dataset ds, long[] min, long[] max);
+
+	/**
+	 * Returns the {@link Stat#MINIMUM}, {@link Stat#MAXIMUM},
+	 * {@link Stat#ARITHMETIC_MEAN} and {@link Stat#SAMPLE_STD_DEV} of the values
+	 * in the given planes of a {@link Dataset}.
+	 */
+	RegionStats getStats(Dataset ds, int[] planes);
+
+	/** Returns the minimum and maximum values in the given planes. */
+	DataRange getDataRange(Dataset ds, int[] planes);
+
+	/**
+	 * Returns a histogram of the values in the given planes of a
+	 * {@link Dataset}, binned as by a Real1dBinMapper without tail bins. The
+	 * histogram belongs to the caller, who may modify it.
+	 * 
+	 * @param ds The Dataset to count
+	 * @param planes The numbers of the planes to count
+	 * @param min The lower bound of the first bin
+	 * @param max The upper bound of the last bin
+	 * @param binCount The number of bins
+	 */
+	<T extends RealType<T>> Histogram1d<T> getHistogram(Dataset ds,
+		int[] planes, double min, double max, long binCount);
+
+	/**
+	 * Forgets what is known about the given planes of a {@link Dataset}.
+	 * 
+	 * @param ds The Dataset whose data changed
+	 * @param planes The numbers of the changed planes, or null if any plane may
+	 *          have changed
+	 */
+	void invalidate(Dataset ds, int[] planes);
+
+}
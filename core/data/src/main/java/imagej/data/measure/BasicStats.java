@@ -125,6 +125,22 @@ public void calcStats(double[] data) {
 		sn1 = Math.sqrt(s2n1);
 	}
 	
+	/**
+	 * Records the statistics from the sums gathered by a
+	 * {@link MomentAccumulator}. The accumulator must have been created for at
+	 * least the arithmetic mean and the sample variance.
+	 * 
+	 * @param acc
+	 * The accumulator that visited the set of values in the sample.
+	 */
+	public void setStats(MomentAccumulator acc) {
+		xbar = acc.get(Stat.ARITHMETIC_MEAN);
+		s2n = acc.get(Stat.POPULATION_VARIANCE);
+		s2n1 = acc.get(Stat.SAMPLE_VARIANCE);
+		sn = Math.sqrt(s2n);
+		sn1 = Math.sqrt(s2n1);
+	}
+
 	/** Creates a new BasicStats object */
 	public BasicStats create() { return new BasicStats(); }
 }
@@ -35,6 +35,8 @@
 
 package imagej.data.measure;
 
+import java.util.EnumSet;
+
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.pointset.PointSet;
 import net.imglib2.ops.pointset.PointSetIterator;
@@ -68,7 +70,7 @@
 
 	private final Function<long[], T> otherFunc;
 	private final T tmp;
-	private double[] data;
+	private final MomentAccumulator template;
 	private PointSet lastPointSet;
 	private PointSetIterator iter;
 
@@ -84,7 +86,9 @@
 	public BasicStatsFunction(final Function<long[], T> func, final T tmp) {
 		this.otherFunc = func;
 		this.tmp = tmp.createVariable();
-		this.data = null;
+		this.template =
+			new MomentAccumulator(EnumSet.of(Stat.ARITHMETIC_MEAN,
+				Stat.POPULATION_VARIANCE, Stat.SAMPLE_VARIANCE));
 		this.lastPointSet = null;
 		this.iter = null;
 	}
@@ -98,19 +102,17 @@ public BasicStatsFunction(final Function<long[], T> func, final T tmp) {
 	@Override
 	public void compute(final PointSet input, final BasicStats output) {
 		if (iter == null || lastPointSet != input) {
-			// TODO - use an Img<DoubleType> to break limitations
-			data = new double[(int) input.size()];
 			iter = input.iterator();
 		}
 		else iter.reset();
 		lastPointSet = input;
-		int i = 0;
+		final MomentAccumulator acc = template.create();
 		while (iter.hasNext()) {
 			final long[] coord = iter.next();
 			otherFunc.compute(coord, tmp);
-			data[i++] = tmp.getRealDouble();
+			acc.accumulate(tmp.getRealDouble());
 		}
-		output.calcStats(data);
+		output.setStats(acc);
 	}
 
 	/**
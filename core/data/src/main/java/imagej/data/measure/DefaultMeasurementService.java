@@ -37,6 +37,7 @@
 
 import imagej.data.Dataset;
 
+import java.util.EnumSet;
 import java.util.List;
 
 import net.imglib2.img.Img;
@@ -45,6 +46,7 @@
 import net.imglib2.ops.pointset.PointSet;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
@@ -66,6 +68,11 @@ public class DefaultMeasurementService extends AbstractService implements
 	MeasurementService
 {
 
+	// -- Parameters --
+
+	@Parameter
+	private StatisticsService statisticsService;
+
 	// -- MeasurementService methods --
 
 	/**
@@ -140,4 +147,20 @@ public <T extends RealType<T>> RealImageFunction<?, T> imgFunction(
 		return imgFunction(ds.getImgPlus(), outputType);
 	}
 
+	/**
+	 * Measures a set of statistics of the values within a {@link PointSet}
+	 * region of a {@link Dataset}, visiting each value only once.
+	 * 
+	 * @param ds The Dataset to measure.
+	 * @param region The set of points over which to evaluate the statistics.
+	 * @param stats The statistics to compute.
+	 * @return The measured values.
+	 */
+	@Override
+	public RegionStats measure(final Dataset ds, final PointSet region,
+		final EnumSet<Stat> stats)
+	{
+		return statisticsService.computeAll(ds, region, stats);
+	}
+
 }
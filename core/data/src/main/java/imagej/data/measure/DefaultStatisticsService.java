@@ -36,46 +36,37 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Vector;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealAlphaTrimmedMeanFunction;
-import net.imglib2.ops.function.real.RealArithmeticMeanFunction;
 import net.imglib2.ops.function.real.RealContraharmonicMeanFunction;
-import net.imglib2.ops.function.real.RealGeometricMeanFunction;
-import net.imglib2.ops.function.real.RealHarmonicMeanFunction;
 import net.imglib2.ops.function.real.RealImageFunction;
-import net.imglib2.ops.function.real.RealMaxFunction;
 import net.imglib2.ops.function.real.RealMedianFunction;
-import net.imglib2.ops.function.real.RealMidpointFunction;
-import net.imglib2.ops.function.real.RealMinFunction;
-import net.imglib2.ops.function.real.RealPopulationKurtosisExcessFunction;
-import net.imglib2.ops.function.real.RealPopulationKurtosisFunction;
-import net.imglib2.ops.function.real.RealPopulationSkewFunction;
-import net.imglib2.ops.function.real.RealPopulationStdDevFunction;
-import net.imglib2.ops.function.real.RealPopulationVarianceFunction;
-import net.imglib2.ops.function.real.RealProductFunction;
-import net.imglib2.ops.function.real.RealSampleKurtosisExcessFunction;
-import net.imglib2.ops.function.real.RealSampleKurtosisFunction;
-import net.imglib2.ops.function.real.RealSampleSkewFunction;
-import net.imglib2.ops.function.real.RealSampleStdDevFunction;
-import net.imglib2.ops.function.real.RealSampleVarianceFunction;
-import net.imglib2.ops.function.real.RealSumFunction;
-import net.imglib2.ops.function.real.RealSumOfSquaredDeviationsFunction;
 import net.imglib2.ops.function.real.RealTrimmedMeanFunction;
 import net.imglib2.ops.function.real.RealWeightedAverageFunction;
 import net.imglib2.ops.function.real.RealWeightedSumFunction;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
-
-// TODO - make MeasurementService smarter. Compute values without always
-// revisiting the pixels. This current impl goes over pixels once for each
-// measurement. I will mock something up soon. BDZ
+import org.scijava.thread.ThreadService;
 
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
@@ -99,12 +90,20 @@ public class DefaultStatisticsService extends AbstractService implements
 	StatisticsService
 {
 
+	// -- Constants --
+
+	/** The smallest number of samples worth handing to a separate thread. */
+	private static final long MIN_SAMPLES_PER_THREAD = 256 * 1024;
+
 	// -- Parameters --
 
 	// later
 	// @Parameter
 	// private MeasurementService mSrv;
 
+	@Parameter
+	private ThreadService threadService;
+
 	// -- StatisticsService methods --
 
 	@Override
@@ -124,10 +123,7 @@ public double alphaTrimmedMean(final Dataset ds, final double alpha) {
 
 	@Override
 	public double arithmeticMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealArithmeticMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.ARITHMETIC_MEAN);
 	}
 
 	@Override
@@ -152,10 +148,7 @@ public double contraharmomicMean(final Dataset ds, final double order) {
 
 	@Override
 	public double geometricMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealGeometricMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.GEOMETRIC_MEAN);
 	}
 
 	@Override
@@ -165,10 +158,7 @@ public double geometricMean(final Dataset ds) {
 
 	@Override
 	public double harmonicMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealHarmonicMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.HARMONIC_MEAN);
 	}
 
 	@Override
@@ -178,10 +168,7 @@ public double harmonicMean(final Dataset ds) {
 
 	@Override
 	public double maximum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMaxFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.MAXIMUM);
 	}
 
 	@Override
@@ -204,10 +191,7 @@ public double median(final Dataset ds) {
 
 	@Override
 	public double midpoint(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMidpointFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.MIDPOINT);
 	}
 
 	@Override
@@ -217,10 +201,7 @@ public double midpoint(final Dataset ds) {
 
 	@Override
 	public double minimum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMinFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.MINIMUM);
 	}
 
 	@Override
@@ -230,10 +211,7 @@ public double minimum(final Dataset ds) {
 
 	@Override
 	public double populationKurtosis(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationKurtosisFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.POPULATION_KURTOSIS);
 	}
 
 	@Override
@@ -245,10 +223,7 @@ public double populationKurtosis(final Dataset ds) {
 	public double
 		populationKurtosisExcess(final Dataset ds, final PointSet region)
 	{
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationKurtosisExcessFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.POPULATION_KURTOSIS_EXCESS);
 	}
 
 	@Override
@@ -258,10 +233,7 @@ public double populationKurtosisExcess(final Dataset ds) {
 
 	@Override
 	public double populationSkew(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationSkewFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.POPULATION_SKEW);
 	}
 
 	@Override
@@ -271,10 +243,7 @@ public double populationSkew(final Dataset ds) {
 
 	@Override
 	public double populationStdDev(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationStdDevFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.POPULATION_STD_DEV);
 	}
 
 	@Override
@@ -284,10 +253,7 @@ public double populationStdDev(final Dataset ds) {
 
 	@Override
 	public double populationVariance(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationVarianceFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.POPULATION_VARIANCE);
 	}
 
 	@Override
@@ -297,10 +263,7 @@ public double populationVariance(final Dataset ds) {
 
 	@Override
 	public double product(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealProductFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.PRODUCT);
 	}
 
 	@Override
@@ -310,10 +273,7 @@ public double product(final Dataset ds) {
 
 	@Override
 	public double sampleKurtosis(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleKurtosisFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SAMPLE_KURTOSIS);
 	}
 
 	@Override
@@ -323,10 +283,7 @@ public double sampleKurtosis(final Dataset ds) {
 
 	@Override
 	public double sampleKurtosisExcess(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleKurtosisExcessFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SAMPLE_KURTOSIS_EXCESS);
 	}
 
 	@Override
@@ -336,10 +293,7 @@ public double sampleKurtosisExcess(final Dataset ds) {
 
 	@Override
 	public double sampleSkew(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleSkewFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SAMPLE_SKEW);
 	}
 
 	@Override
@@ -349,10 +303,7 @@ public double sampleSkew(final Dataset ds) {
 
 	@Override
 	public double sampleStdDev(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleStdDevFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SAMPLE_STD_DEV);
 	}
 
 	@Override
@@ -362,10 +313,7 @@ public double sampleStdDev(final Dataset ds) {
 
 	@Override
 	public double sampleVariance(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleVarianceFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SAMPLE_VARIANCE);
 	}
 
 	@Override
@@ -375,10 +323,7 @@ public double sampleVariance(final Dataset ds) {
 
 	@Override
 	public double sum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSumFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SUM);
 	}
 
 	@Override
@@ -389,10 +334,7 @@ public double sum(final Dataset ds) {
 	@Override
 	public double sumOfSquaredDeviations(final Dataset ds, final PointSet region)
 	{
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSumOfSquaredDeviationsFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return compute(ds, region, Stat.SUM_OF_SQUARED_DEVIATIONS);
 	}
 
 	@Override
@@ -433,6 +375,18 @@ public double weightedSum(final Dataset ds, final PointSet region,
 		return measure(func, region);
 	}
 
+	@Override
+	public RegionStats computeAll(final Dataset ds, final PointSet region,
+		final EnumSet<Stat> stats)
+	{
+		return new RegionStats(accumulate(ds, region, stats), stats);
+	}
+
+	@Override
+	public RegionStats computeAll(final Dataset ds, final EnumSet<Stat> stats) {
+		return computeAll(ds, allOf(ds), stats);
+	}
+
 	@Override
 	public PointSet allOf(final Dataset ds) {
 		return new HyperVolumePointSet(ds.getDims());
@@ -446,6 +400,168 @@ private RealImageFunction<?, DoubleType> imgFunc(final Dataset ds) {
 		return new RealImageFunction(imgPlus, new DoubleType());
 	}
 
+	private double compute(final Dataset ds, final PointSet region,
+		final Stat stat)
+	{
+		return accumulate(ds, region, EnumSet.of(stat)).get(stat);
+	}
+
+	/**
+	 * Visits every sample of the region once, splitting the work into chunks
+	 * that are accumulated on separate threads and then merged.
+	 */
+	private MomentAccumulator accumulate(final Dataset ds,
+		final PointSet region, final EnumSet<Stat> stats)
+	{
+		final int numThreads =
+			ParallelUtils.chunkCount(region.size(), MIN_SAMPLES_PER_THREAD);
+		return accumulate(ds, region, stats, numThreads);
+	}
+
+	/**
+	 * Visits every sample of the region once using (at most) the given number of
+	 * threads. Package-private so the parallel path can be tested on small
+	 * images.
+	 */
+	MomentAccumulator accumulate(final Dataset ds, final PointSet region,
+		final EnumSet<Stat> stats, final int numThreads)
+	{
+		final MomentAccumulator result = new MomentAccumulator(stats);
+		final long size = region.size();
+		if (size == 0) return result;
+		final List<MomentAccumulator> partials =
+			new ArrayList<MomentAccumulator>();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		if (coversAll(ds, region)) {
+			final Vector<Chunk> chunks =
+				SimpleMultiThreading.divideIntoChunks(size, numThreads);
+			for (final Chunk chunk : chunks) {
+				final MomentAccumulator acc = result.create();
+				partials.add(acc);
+				tasks.add(new Runnable() {
+
+					@Override
+					public void run() {
+						accumulateImg(ds, chunk, acc);
+					}
+				});
+			}
+		}
+		else {
+			final List<PointSet> slabs = slabs(region, size, numThreads);
+			// NB - a region other than a plain hypervolume is only split when its
+			// bounding box is dense, and then each slab's points are filtered by
+			// the region. Each worker gets its own copy of the region because
+			// conditions may keep state.
+			final boolean filter =
+				slabs.size() > 1 && !(region instanceof HyperVolumePointSet);
+			for (final PointSet slab : slabs) {
+				final MomentAccumulator acc = result.create();
+				final PointSet include = filter ? region.copy() : null;
+				partials.add(acc);
+				tasks.add(new Runnable() {
+
+					@Override
+					public void run() {
+						accumulateRegion(ds, slab, include, acc);
+					}
+				});
+			}
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
+		for (final MomentAccumulator acc : partials) {
+			result.merge(acc);
+		}
+		return result;
+	}
+
+	/** Accumulates a chunk of samples visited in the Img's storage order. */
+	private void accumulateImg(final Dataset ds, final Chunk chunk,
+		final MomentAccumulator acc)
+	{
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		cursor.jumpFwd(chunk.getStartPosition());
+		final long count = chunk.getLoopSize();
+		for (long i = 0; i < count; i++) {
+			acc.accumulate(cursor.next().getRealDouble());
+		}
+	}
+
+	/**
+	 * Accumulates the points of a region, skipping those not included in the
+	 * given filter region (if any).
+	 */
+	private void accumulateRegion(final Dataset ds, final PointSet points,
+		final PointSet include, final MomentAccumulator acc)
+	{
+		final RandomAccess<? extends RealType<?>> accessor =
+			ds.getImgPlus().randomAccess();
+		final PointSetIterator iter = points.iterator();
+		while (iter.hasNext()) {
+			final long[] pos = iter.next();
+			if (include != null && !include.includes(pos)) continue;
+			accessor.setPosition(pos);
+			acc.accumulate(accessor.get().getRealDouble());
+		}
+	}
+
+	/**
+	 * Splits a region into disjoint pieces that can be iterated independently,
+	 * so that no worker has to walk past the points of the others. The region's
+	 * bounding box is cut into slabs along its outermost dimension; unless the
+	 * region is a {@link HyperVolumePointSet}, the caller must filter the slabs'
+	 * points by the region. Sparse regions, where filtering the bounding box
+	 * would cost more than walking the points, are returned unsplit.
+	 */
+	private List<PointSet> slabs(final PointSet region, final long size,
+		final int numThreads)
+	{
+		final List<PointSet> result = new ArrayList<PointSet>();
+		final long[] min = region.findBoundMin();
+		final long[] max = region.findBoundMax();
+		int d = min.length - 1;
+		while (d > 0 && max[d] == min[d]) {
+			d--;
+		}
+		final long extent = max[d] - min[d] + 1;
+		final boolean hyperVolume = region instanceof HyperVolumePointSet;
+		if (numThreads <= 1 || extent <= 1 ||
+			(!hyperVolume && size < volume(min, max) / 2))
+		{
+			result.add(region);
+			return result;
+		}
+		final int count = (int) Math.min(numThreads, extent);
+		for (int i = 0; i < count; i++) {
+			final long[] slabMin = min.clone();
+			final long[] slabMax = max.clone();
+			slabMin[d] = min[d] + extent * i / count;
+			slabMax[d] = min[d] + extent * (i + 1) / count - 1;
+			result.add(new HyperVolumePointSet(slabMin, slabMax));
+		}
+		return result;
+	}
+
+	private static double volume(final long[] min, final long[] max) {
+		double volume = 1;
+		for (int d = 0; d < min.length; d++) {
+			volume *= max[d] - min[d] + 1;
+		}
+		return volume;
+	}
+
+	/** Returns true if the region is exactly the full extent of the Dataset. */
+	private boolean coversAll(final Dataset ds, final PointSet region) {
+		if (!(region instanceof HyperVolumePointSet)) return false;
+		if (region.numDimensions() != ds.numDimensions()) return false;
+		final long[] min = region.findBoundMin();
+		final long[] max = region.findBoundMax();
+		for (int d = 0; d < min.length; d++) {
+			if (min[d] != 0 || max[d] != ds.dimension(d) - 1) return false;
+		}
+		return true;
+	}
+
 	private double measure(final Function<PointSet, DoubleType> func,
 		final PointSet region)
 	{
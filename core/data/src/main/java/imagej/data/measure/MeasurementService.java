@@ -37,6 +37,7 @@
 
 import imagej.data.Dataset;
 
+import java.util.EnumSet;
 import java.util.List;
 
 import net.imglib2.img.Img;
@@ -108,4 +109,16 @@ <T extends RealType<T>> RealImageFunction<?, T> imgFunction(
 	<T extends RealType<T>> RealImageFunction<?, T> imgFunction(Dataset ds,
 		T outputType);
 
+	/**
+	 * Measures a set of statistics of the values within a {@link PointSet}
+	 * region of a {@link Dataset}, visiting each value only once.
+	 * 
+	 * @param ds The Dataset to measure.
+	 * @param region The set of points over which to evaluate the statistics.
+	 * @param stats The statistics to compute.
+	 * @return The measured values.
+	 * @see StatisticsService#computeAll(Dataset, PointSet, EnumSet)
+	 */
+	RegionStats measure(Dataset ds, PointSet region, EnumSet<Stat> stats);
+
 }
@@ -0,0 +1,260 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.EnumSet;
+
+/**
+ * Accumulates the running sums needed to compute a set of {@link Stat}s in a
+ * single pass over the data. Central moments are updated incrementally
+ * (Welford/Terriberry) so the results are numerically stable, and two
+ * accumulators that have seen disjoint parts of a region can be combined with
+ * {@link #merge(MomentAccumulator)} (Chan et al.). This allows a region to be
+ * split across threads with each thread filling its own accumulator.
+ * <p>
+ * Only the sums that are needed by the requested statistics are maintained.
+ */
+public class MomentAccumulator {
+
+	// -- instance variables --
+
+	private final int order;
+	private final boolean needLogs;
+	private final boolean needInverses;
+	private final boolean needProduct;
+
+	private long n;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private double sum;
+	private double mean;
+	private double m2;
+	private double m3;
+	private double m4;
+	private double sumLogs;
+	private double sumInverses;
+	private double product = 1;
+
+	// -- constructor --
+
+	/**
+	 * Creates a MomentAccumulator that maintains the sums necessary to compute
+	 * the given statistics.
+	 * 
+	 * @param stats The statistics that will later be computed.
+	 */
+	public MomentAccumulator(final EnumSet<Stat> stats) {
+		int o = 0;
+		for (final Stat stat : stats) {
+			o = Math.max(o, stat.getMomentOrder());
+		}
+		order = o;
+		needLogs = stats.contains(Stat.GEOMETRIC_MEAN);
+		needInverses = stats.contains(Stat.HARMONIC_MEAN);
+		needProduct = stats.contains(Stat.PRODUCT);
+	}
+
+	// -- MomentAccumulator methods --
+
+	/** Creates an empty accumulator tracking the same sums as this one. */
+	public MomentAccumulator create() {
+		return new MomentAccumulator(this);
+	}
+
+	/** Adds a sample value to this accumulator. */
+	public void accumulate(final double value) {
+		final long n1 = n++;
+		if (value < min) min = value;
+		if (value > max) max = value;
+		sum += value;
+		if (needLogs) sumLogs += Math.log(value);
+		if (needInverses) sumInverses += 1 / value;
+		if (needProduct) product *= value;
+		if (order == 0) return;
+		final double dn = n;
+		final double delta = value - mean;
+		final double deltaN = delta / dn;
+		mean += deltaN;
+		if (order == 1) return;
+		final double term1 = delta * deltaN * n1;
+		if (order > 2) {
+			final double deltaN2 = deltaN * deltaN;
+			if (order > 3) {
+				m4 +=
+					term1 * deltaN2 * (dn * dn - 3 * dn + 3) + 6 * deltaN2 * m2 - 4 *
+						deltaN * m3;
+			}
+			m3 += term1 * deltaN * (dn - 2) - 3 * deltaN * m2;
+		}
+		m2 += term1;
+	}
+
+	/**
+	 * Folds the samples seen by another accumulator into this one. The other
+	 * accumulator must have been created for the same set of statistics.
+	 */
+	public void merge(final MomentAccumulator other) {
+		if (other.n == 0) return;
+		if (n == 0) {
+			copyFrom(other);
+			return;
+		}
+		final double na = n;
+		final double nb = other.n;
+		final double nt = na + nb;
+		final double delta = other.mean - mean;
+		final double delta2 = delta * delta;
+		final double newMean = mean + delta * nb / nt;
+		final double newM2 = m2 + other.m2 + delta2 * na * nb / nt;
+		final double newM3 =
+			m3 + other.m3 + delta2 * delta * na * nb * (na - nb) / (nt * nt) + 3 *
+				delta * (na * other.m2 - nb * m2) / nt;
+		final double newM4 =
+			m4 + other.m4 + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) /
+				(nt * nt * nt) + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) /
+				(nt * nt) + 4 * delta * (na * other.m3 - nb * m3) / nt;
+		n += other.n;
+		if (other.min < min) min = other.min;
+		if (other.max > max) max = other.max;
+		sum += other.sum;
+		sumLogs += other.sumLogs;
+		sumInverses += other.sumInverses;
+		product *= other.product;
+		mean = newMean;
+		m2 = newM2;
+		m3 = newM3;
+		m4 = newM4;
+	}
+
+	/** Returns the number of samples accumulated so far. */
+	public long getSampleCount() {
+		return n;
+	}
+
+	/**
+	 * Returns the value of a statistic computed from the samples accumulated so
+	 * far. The statistic must have been among the ones this accumulator was
+	 * created for. Returns 0 for statistics that are undefined for the number
+	 * of samples seen.
+	 */
+	public double get(final Stat stat) {
+		switch (stat) {
+			case ARITHMETIC_MEAN:
+				return n == 0 ? 0 : mean;
+			case GEOMETRIC_MEAN:
+				return n == 0 ? 0 : Math.exp(sumLogs / n);
+			case HARMONIC_MEAN:
+				return n == 0 ? 0 : n / sumInverses;
+			case MAXIMUM:
+				return max;
+			case MIDPOINT:
+				return (min + max) / 2;
+			case MINIMUM:
+				return min;
+			case POPULATION_KURTOSIS:
+				return populationKurtosis();
+			case POPULATION_KURTOSIS_EXCESS:
+				return populationKurtosis() - 3;
+			case POPULATION_SKEW:
+				return populationSkew();
+			case POPULATION_STD_DEV:
+				return Math.sqrt(get(Stat.POPULATION_VARIANCE));
+			case POPULATION_VARIANCE:
+				return n == 0 ? 0 : m2 / n;
+			case PRODUCT:
+				return product;
+			case SAMPLE_KURTOSIS:
+				return sampleKurtosisExcess() + 3;
+			case SAMPLE_KURTOSIS_EXCESS:
+				return sampleKurtosisExcess();
+			case SAMPLE_SKEW:
+				if (n < 3) return 0;
+				return populationSkew() * Math.sqrt(n * (n - 1.0)) / (n - 2);
+			case SAMPLE_STD_DEV:
+				return Math.sqrt(get(Stat.SAMPLE_VARIANCE));
+			case SAMPLE_VARIANCE:
+				return n <= 1 ? 0 : m2 / (n - 1);
+			case SUM:
+				return sum;
+			case SUM_OF_SQUARED_DEVIATIONS:
+				return m2;
+			default:
+				throw new IllegalArgumentException("Unknown statistic: " + stat);
+		}
+	}
+
+	// -- private helpers --
+
+	private MomentAccumulator(final MomentAccumulator template) {
+		order = template.order;
+		needLogs = template.needLogs;
+		needInverses = template.needInverses;
+		needProduct = template.needProduct;
+	}
+
+	private void copyFrom(final MomentAccumulator other) {
+		n = other.n;
+		min = other.min;
+		max = other.max;
+		sum = other.sum;
+		mean = other.mean;
+		m2 = other.m2;
+		m3 = other.m3;
+		m4 = other.m4;
+		sumLogs = other.sumLogs;
+		sumInverses = other.sumInverses;
+		product = other.product;
+	}
+
+	private double populationSkew() {
+		if (n == 0 || m2 == 0) return 0;
+		final double var = m2 / n;
+		return (m3 / n) / Math.pow(var, 1.5);
+	}
+
+	private double populationKurtosis() {
+		if (n == 0 || m2 == 0) return 0;
+		final double var = m2 / n;
+		return (m4 / n) / (var * var);
+	}
+
+	private double sampleKurtosisExcess() {
+		if (n < 4) return 0;
+		final double excess = populationKurtosis() - 3;
+		return ((n + 1) * excess + 6) * (n - 1) / ((n - 2.0) * (n - 3.0));
+	}
+
+}
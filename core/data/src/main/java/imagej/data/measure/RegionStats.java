@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * A set of {@link Stat} values computed together in one pass over a region of
+ * data by {@link StatisticsService#computeAll}. Only the statistics that were
+ * requested are available.
+ */
+public class RegionStats {
+
+	// -- instance variables --
+
+	private final Map<Stat, Double> values;
+	private final long sampleCount;
+
+	// -- constructor --
+
+	/**
+	 * Creates a RegionStats from the sums gathered by a
+	 * {@link MomentAccumulator}.
+	 * 
+	 * @param acc The accumulator that visited the samples.
+	 * @param stats The statistics to compute from the accumulator.
+	 */
+	public RegionStats(final MomentAccumulator acc, final EnumSet<Stat> stats) {
+		values = new EnumMap<Stat, Double>(Stat.class);
+		for (final Stat stat : stats) {
+			values.put(stat, acc.get(stat));
+		}
+		sampleCount = acc.getSampleCount();
+	}
+
+	// -- RegionStats methods --
+
+	/** Returns the number of samples the statistics were computed from. */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/** Returns true if the given statistic was computed. */
+	public boolean has(final Stat stat) {
+		return values.containsKey(stat);
+	}
+
+	/**
+	 * Returns the value of a computed statistic.
+	 * 
+	 * @throws IllegalArgumentException if the statistic was not requested.
+	 */
+	public double get(final Stat stat) {
+		final Double value = values.get(stat);
+		if (value == null) {
+			throw new IllegalArgumentException("Statistic not computed: " + stat);
+		}
+		return value;
+	}
+
+}
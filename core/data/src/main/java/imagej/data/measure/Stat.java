@@ -0,0 +1,66 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+/**
+ * The statistics that can be gathered in a single pass through a region by
+ * {@link StatisticsService#computeAll}. Order statistics (such as the median
+ * or trimmed means) require sorted data and are not included.
+ */
+public enum Stat {
+
+	ARITHMETIC_MEAN(1), GEOMETRIC_MEAN(0), HARMONIC_MEAN(0), MAXIMUM(0),
+		MIDPOINT(0), MINIMUM(0), POPULATION_KURTOSIS(4),
+		POPULATION_KURTOSIS_EXCESS(4), POPULATION_SKEW(3), POPULATION_STD_DEV(2),
+		POPULATION_VARIANCE(2), PRODUCT(0), SAMPLE_KURTOSIS(4),
+		SAMPLE_KURTOSIS_EXCESS(4), SAMPLE_SKEW(3), SAMPLE_STD_DEV(2),
+		SAMPLE_VARIANCE(2), SUM(0), SUM_OF_SQUARED_DEVIATIONS(2);
+
+	private final int order;
+
+	private Stat(final int order) {
+		this.order = order;
+	}
+
+	/**
+	 * Returns the highest central moment that must be accumulated to compute
+	 * this statistic (0 if it does not depend on central moments).
+	 */
+	public int getMomentOrder() {
+		return order;
+	}
+
+}
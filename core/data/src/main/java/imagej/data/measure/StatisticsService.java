@@ -36,14 +36,13 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+
+import java.util.EnumSet;
+
 import net.imglib2.ops.pointset.PointSet;
 
 import org.scijava.service.Service;
 
-// TODO - make MeasurementService smarter. Compute values without always
-// revisiting the pixels. This current impl goes over pixels once for each
-// measurement. I will mock something up soon. BDZ
-
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
 // MeasurementService more directly.
@@ -536,6 +535,30 @@ public interface StatisticsService extends Service {
 	 */
 	double weightedSum(Dataset ds, PointSet region, double[] weights);
 
+	/**
+	 * Computes a set of statistics of the values within a {@link PointSet}
+	 * region of a {@link Dataset}. Each sample is visited only once no matter
+	 * how many statistics are requested, and large regions are split across
+	 * multiple threads.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param region The PointSet region upon which to calculate
+	 * @param stats The statistics to compute
+	 * @return The measured values
+	 */
+	RegionStats computeAll(Dataset ds, PointSet region, EnumSet<Stat> stats);
+
+	/**
+	 * Computes a set of statistics of the values within a {@link Dataset}. Each
+	 * sample is visited only once no matter how many statistics are requested,
+	 * and large datasets are split across multiple threads.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param stats The statistics to compute
+	 * @return The measured values
+	 */
+	RegionStats computeAll(Dataset ds, EnumSet<Stat> stats);
+
 	/**
 	 * A convenience function for defining a {@link PointSet} that encompasses all
 	 * the points within a {@link Dataset}.
@@ -35,8 +35,13 @@
 
 package imagej.data.minmax;
 
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.imglib2.Cursor;
 import net.imglib2.IterableInterval;
@@ -45,6 +50,8 @@
 import net.imglib2.multithreading.Chunk;
 import net.imglib2.multithreading.SimpleMultiThreading;
 import net.imglib2.type.Type;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 
@@ -55,7 +62,10 @@
 
 /**
  * A {@link MinMaxMethod} implementation that forks
- * {@link net.imglib2.algorithm.stats.ComputeMinMax}.
+ * {@link net.imglib2.algorithm.stats.ComputeMinMax}. Real values are found by
+ * a {@link RangeScanner}; other types are compared with
+ * {@link Comparable#compareTo}. Either way the work is spread over the
+ * {@link ThreadService}'s threads.
  * 
  * @author Mark Hiner
  */
@@ -68,6 +78,9 @@
 
 	private final int MAX_UPDATES = 100;
 
+	/** How many positions are processed between progress reports. */
+	private static final int REPORT_INTERVAL = 4096;
+
 	// -- Fields --
 
 	@Parameter
@@ -77,7 +90,7 @@
 	private StatusService statusService;
 
 	// Number of positions processed
-	private long progress = -1l;
+	private final AtomicLong progress = new AtomicLong();
 	// Limit how many times to send status updates
 
 	// Last reported percentage
@@ -96,7 +109,7 @@
 
 	@Override
 	public void initialize(final Img<T> img, final T min, final T max) {
-		initialize(img, min, max);
+		initialize((IterableInterval<T>) img, min, max);
 	}
 
 	@Override
@@ -114,12 +127,12 @@ public void initialize(final IterableInterval<T> interval, final T min,
 	public void initialize(final RandomAccessibleInterval<T> interval,
 		final T min, final T max)
 	{
-		initialize(interval, min, max);
+		initialize(Views.iterable(interval), min, max);
 	}
 
 	@Override
 	public void initialize(final Img<T> img) {
-		initialize(img);
+		initialize((IterableInterval<T>) img);
 	}
 
 	@Override
@@ -151,52 +164,16 @@ public boolean process() {
 		final long startTime = System.currentTimeMillis();
 
 		imageSize = image.size();
+		progress.set(0);
+		reported = -1;
 
-		report();
-
-		final AtomicInteger ai = new AtomicInteger(0);
-		final Thread[] threads = SimpleMultiThreading.newThreads(getNumThreads());
-
-		final Vector<Chunk> threadChunks =
-			SimpleMultiThreading.divideIntoChunks(imageSize, numThreads);
-		final Vector<T> minValues = new Vector<T>();
-		final Vector<T> maxValues = new Vector<T>();
-
-		for (int ithread = 0; ithread < threads.length; ++ithread) {
-			minValues.add(image.firstElement().createVariable());
-			maxValues.add(image.firstElement().createVariable());
-
-			threads[ithread] = threadService.newThread(new Runnable() {
+		report(0);
 
-				@Override
-				public void run() {
-					// Thread ID
-					final int myNumber = ai.getAndIncrement();
-
-					// get chunk of pixels to process
-					final Chunk myChunk = threadChunks.get(myNumber);
-
-					// compute min and max
-					compute(myChunk.getStartPosition(), myChunk.getLoopSize(), minValues
-						.get(myNumber), maxValues.get(myNumber));
-
-				}
-			});
-		}
-
-		SimpleMultiThreading.startAndJoin(threads);
-
-		// compute overall min and max
-		min.set(minValues.get(0));
-		max.set(maxValues.get(0));
-
-		for (int i = 0; i < threads.length; ++i) {
-			T value = minValues.get(i);
-			if (Util.min(min, value) == value) min.set(value);
-
-			value = maxValues.get(i);
-			if (Util.max(max, value) == value) max.set(value);
+		if (min instanceof RealType && !(min instanceof LongType)) {
+			// NB - LongType values do not all fit in a double
+			processReal();
 		}
+		else processComparable();
 
 		processingTime = System.currentTimeMillis() - startTime;
 
@@ -227,11 +204,11 @@ protected void compute(final long startPos, final long loopSize, final T min,
 
 			final T value = cursor.get();
 
-			if (Util.min(min, value) == value) min.set(value);
+			if (min.compareTo(value) > 0) min.set(value);
 
-			if (Util.max(max, value) == value) max.set(value);
+			if (max.compareTo(value) < 0) max.set(value);
 
-			report();
+			if ((j + 1) % REPORT_INTERVAL == 0) report(REPORT_INTERVAL);
 		}
 	}
 
@@ -274,16 +251,66 @@ public String getErrorMessage() {
 
 	// -- Helper Methods --
 
+	private void processReal() {
+		final RangeScanner scanner = new RangeScanner(threadService);
+		@SuppressWarnings("unchecked")
+		final IterableInterval<? extends RealType<?>> realImage =
+			(IterableInterval<? extends RealType<?>>) image;
+		scanner.scan(realImage);
+		((RealType<?>) min).setReal(scanner.getMin());
+		((RealType<?>) max).setReal(scanner.getMax());
+	}
+
+	private void processComparable() {
+		final Vector<Chunk> threadChunks =
+			SimpleMultiThreading.divideIntoChunks(imageSize, getNumThreads());
+		final List<T> minValues = new ArrayList<T>();
+		final List<T> maxValues = new ArrayList<T>();
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+
+		for (int i = 0; i < threadChunks.size(); ++i) {
+			final Chunk myChunk = threadChunks.get(i);
+			final T myMin = image.firstElement().createVariable();
+			final T myMax = image.firstElement().createVariable();
+			minValues.add(myMin);
+			maxValues.add(myMax);
+
+			futures.add(threadService.run(new Runnable() {
+
+				@Override
+				public void run() {
+					// compute min and max
+					compute(myChunk.getStartPosition(), myChunk.getLoopSize(), myMin,
+						myMax);
+				}
+			}));
+		}
+
+		ParallelUtils.waitFor(futures);
+
+		// compute overall min and max
+		min.set(minValues.get(0));
+		max.set(maxValues.get(0));
+
+		for (int i = 0; i < minValues.size(); ++i) {
+			T value = minValues.get(i);
+			if (Util.min(min, value) == value) min.set(value);
+
+			value = maxValues.get(i);
+			if (Util.max(max, value) == value) max.set(value);
+		}
+	}
+
 	private void init() {
 		setNumThreads();
 		initialized = true;
 	}
 
 	// Reports the current progress
-	private void report() {
+	private void report(final long processed) {
 		if (statusService == null) return; // nothing to report to, please move along
-		progress++;
-		final double percentWork = ((double) progress / imageSize) * MAX_UPDATES;
+		final long done = progress.addAndGet(processed);
+		final double percentWork = ((double) done / imageSize) * MAX_UPDATES;
 
 		if (percentWork > reported) {
 			synchronized (this) {
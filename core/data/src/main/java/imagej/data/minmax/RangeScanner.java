@@ -0,0 +1,289 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.minmax;
+
+import imagej.data.PlaneAccessor;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.imglib2.Cursor;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.Img;
+import net.imglib2.multithreading.Chunk;
+import net.imglib2.multithreading.SimpleMultiThreading;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Finds the minimum and maximum of the values of an {@link IterableInterval}
+ * in a single parallel pass. Array and planar images are read straight from
+ * their primitive storage; anything else is read with cursors.
+ * <p>
+ * For integer types of at most {@link #MAX_COUNTED_VALUES} distinct values the
+ * same pass can also count how often each value occurs. Such counts hold
+ * everything a histogram of the data needs, whatever its bin layout, so a
+ * caller that needs both the data range and a histogram over that range can
+ * get them from one read of the data.
+ * </p>
+ */
+public class RangeScanner {
+
+	// -- Constants --
+
+	/** The largest number of distinct values that are counted. */
+	public static final int MAX_COUNTED_VALUES = 65536;
+
+	/** The number of samples handed to a worker thread at a time. */
+	private static final int SEGMENT_SIZE = 64 * 1024;
+
+	// -- instance variables --
+
+	private final ThreadService threadService;
+	private boolean countValues;
+	private double min, max;
+	private long sampleCount;
+	private long[] valueCounts;
+	private long firstValue;
+
+	// -- constructor --
+
+	/**
+	 * Creates a scanner that runs on the given {@link ThreadService}, or on the
+	 * calling thread alone if it is null.
+	 */
+	public RangeScanner(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
+	// -- RangeScanner methods --
+
+	/** Sets whether scans should also count the occurrences of each value. */
+	public void setCountValues(final boolean countValues) {
+		this.countValues = countValues;
+	}
+
+	/** Reads all the values of the given interval. */
+	public void scan(final IterableInterval<? extends RealType<?>> interval) {
+		final RealType<?> type = interval.firstElement();
+		final boolean counting = countValues && isCountable(type);
+		final long first = counting ? (long) type.getMinValue() : 0;
+		final int countSize =
+			counting ? (int) ((long) type.getMaxValue() - first + 1) : 0;
+
+		final List<Partial> partials = new ArrayList<Partial>();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		if (!arrayTasks(interval, type, first, countSize, partials, tasks)) {
+			cursorTasks(interval, first, countSize, partials, tasks);
+		}
+		if (threadService == null) {
+			for (final Runnable task : tasks) {
+				task.run();
+			}
+		}
+		else ParallelUtils.runAndWait(threadService, tasks);
+
+		min = Double.POSITIVE_INFINITY;
+		max = Double.NEGATIVE_INFINITY;
+		sampleCount = 0;
+		valueCounts = counting ? new long[countSize] : null;
+		firstValue = first;
+		for (final Partial p : partials) {
+			if (p.min < min) min = p.min;
+			if (p.max > max) max = p.max;
+			sampleCount += p.count;
+			if (valueCounts != null) {
+				for (int i = 0; i < countSize; i++) {
+					valueCounts[i] += p.valueCounts[i];
+				}
+			}
+		}
+	}
+
+	/** Returns the smallest value found by the last scan. */
+	public double getMin() {
+		return min;
+	}
+
+	/** Returns the largest value found by the last scan. */
+	public double getMax() {
+		return max;
+	}
+
+	/** Returns the number of values read by the last scan. */
+	public long getSampleCount() {
+		return sampleCount;
+	}
+
+	/**
+	 * Returns how often each value occurred in the last scan, or null if values
+	 * were not counted. Entry i counts the value {@link #getFirstValue()} + i.
+	 */
+	public long[] getValueCounts() {
+		return valueCounts;
+	}
+
+	/** Returns the value counted by the first entry of the value counts. */
+	public long getFirstValue() {
+		return firstValue;
+	}
+
+	// -- private helpers --
+
+	private static boolean isCountable(final RealType<?> type) {
+		if (!(type instanceof IntegerType)) return false;
+		final double range = type.getMaxValue() - type.getMinValue() + 1;
+		return range <= MAX_COUNTED_VALUES;
+	}
+
+	/**
+	 * Sets up tasks that read the primitive storage of an array or planar
+	 * image. Returns false if the interval is not such an image.
+	 */
+	private boolean arrayTasks(
+		final IterableInterval<? extends RealType<?>> interval,
+		final RealType<?> type, final long first, final int countSize,
+		final List<Partial> partials, final List<Runnable> tasks)
+	{
+		if (!(interval instanceof Img) || interval.size() == 0) return false;
+		final Img<?> img = (Img<?>) interval;
+		final PlaneAccessor accessor = PlaneAccessor.forType(type);
+		if (accessor == null) return false;
+		if (PlaneAccessor.getStorage(img, 0) == null) return false;
+		final long planeSize =
+			img.numDimensions() < 2 ? img.dimension(0) : img.dimension(0) *
+				img.dimension(1);
+		if (planeSize > Integer.MAX_VALUE) return false;
+		final long planeCount = img.size() / planeSize;
+		final long segmentsPerPlane = (planeSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+		final long segmentCount = planeCount * segmentsPerPlane;
+		final int workers = ParallelUtils.chunkCount(img.size(), SEGMENT_SIZE);
+		final AtomicInteger next = new AtomicInteger();
+		for (int w = 0; w < workers; w++) {
+			final Partial partial = new Partial(countSize);
+			partials.add(partial);
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final double[] buffer = new double[SEGMENT_SIZE];
+					long s;
+					while ((s = next.getAndIncrement()) < segmentCount) {
+						final int plane = (int) (s / segmentsPerPlane);
+						final int start = (int) (s % segmentsPerPlane) * SEGMENT_SIZE;
+						final int length =
+							(int) Math.min(SEGMENT_SIZE, planeSize - start);
+						accessor.read(PlaneAccessor.getStorage(img, plane), PlaneAccessor
+							.getOffset(img, plane) +
+							start, buffer, 0, length);
+						partial.add(buffer, length, first);
+					}
+				}
+			});
+		}
+		return true;
+	}
+
+	/** Sets up tasks that each read a chunk of the interval with a cursor. */
+	private void cursorTasks(
+		final IterableInterval<? extends RealType<?>> interval, final long first,
+		final int countSize, final List<Partial> partials,
+		final List<Runnable> tasks)
+	{
+		final int workers = ParallelUtils.chunkCount(interval.size(), SEGMENT_SIZE);
+		final Vector<Chunk> chunks =
+			SimpleMultiThreading.divideIntoChunks(interval.size(), workers);
+		for (final Chunk chunk : chunks) {
+			final Partial partial = new Partial(countSize);
+			partials.add(partial);
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final double[] buffer = new double[SEGMENT_SIZE];
+					final Cursor<? extends RealType<?>> cursor = interval.cursor();
+					cursor.jumpFwd(chunk.getStartPosition());
+					long remaining = chunk.getLoopSize();
+					while (remaining > 0) {
+						final int length = (int) Math.min(SEGMENT_SIZE, remaining);
+						for (int i = 0; i < length; i++) {
+							buffer[i] = cursor.next().getRealDouble();
+						}
+						partial.add(buffer, length, first);
+						remaining -= length;
+					}
+				}
+			});
+		}
+	}
+
+	/** The results of one worker thread. */
+	private static class Partial {
+
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private long count;
+		private final long[] valueCounts;
+
+		public Partial(final int countSize) {
+			valueCounts = countSize == 0 ? null : new long[countSize];
+		}
+
+		public void add(final double[] values, final int length, final long first)
+		{
+			double mn = min, mx = max;
+			for (int i = 0; i < length; i++) {
+				final double v = values[i];
+				if (v < mn) mn = v;
+				if (v > mx) mx = v;
+			}
+			min = mn;
+			max = mx;
+			count += length;
+			if (valueCounts != null) {
+				for (int i = 0; i < length; i++) {
+					valueCounts[(int) ((long) values[i] - first)]++;
+				}
+			}
+		}
+	}
+
+}
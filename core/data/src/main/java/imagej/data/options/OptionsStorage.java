@@ -0,0 +1,98 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.options;
+
+import imagej.menu.MenuConstants;
+import imagej.options.OptionsPlugin;
+
+import org.scijava.plugin.Menu;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * Runs the Edit::Options::Image Storage dialog.
+ */
+@Plugin(type = OptionsPlugin.class, menu = {
+	@Menu(label = MenuConstants.EDIT_LABEL, weight = MenuConstants.EDIT_WEIGHT,
+		mnemonic = MenuConstants.EDIT_MNEMONIC),
+	@Menu(label = "Options", mnemonic = 'o'),
+	@Menu(label = "Image Storage...", weight = 12.5) })
+public class OptionsStorage extends OptionsPlugin {
+
+	private static final String STORAGE_HEAP = "Memory";
+	private static final String STORAGE_SCRATCH = "Scratch file when large";
+
+	// -- Parameters --
+
+	@Parameter(label = "New and duplicated images",
+		choices = { STORAGE_HEAP, STORAGE_SCRATCH })
+	private String storage = STORAGE_HEAP;
+
+	@Parameter(label = "Large image threshold (MB)", min = "1")
+	private int thresholdMB = 1024;
+
+	// -- OptionsStorage methods --
+
+	/**
+	 * Returns true if an image of the given size should have its pixels kept in
+	 * a scratch file, with only a few planes in memory at any time.
+	 */
+	public boolean isScratchStorage(final long bytes) {
+		return storage.equals(STORAGE_SCRATCH) &&
+			bytes > (long) thresholdMB * 1024 * 1024;
+	}
+
+	/** Returns true if large images are kept in scratch files. */
+	public boolean isScratchStorageEnabled() {
+		return storage.equals(STORAGE_SCRATCH);
+	}
+
+	/** Sets whether large images are kept in scratch files. */
+	public void setScratchStorageEnabled(final boolean enabled) {
+		storage = enabled ? STORAGE_SCRATCH : STORAGE_HEAP;
+	}
+
+	/** Returns the size in megabytes above which an image is large. */
+	public int getThresholdMB() {
+		return thresholdMB;
+	}
+
+	/** Sets the size in megabytes above which an image is large. */
+	public void setThresholdMB(final int thresholdMB) {
+		this.thresholdMB = thresholdMB;
+	}
+
+}
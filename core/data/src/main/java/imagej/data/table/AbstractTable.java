@@ -36,6 +36,7 @@
 package imagej.data.table;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 
 import org.scijava.util.SizableArrayList;
 
@@ -55,6 +56,12 @@
 	/** Number of rows in the table. */
 	private int rowCount;
 
+	/** First column with each (non-null) header. Lazily rebuilt. */
+	private HashMap<String, Integer> colHeaderIndex;
+
+	/** First row with each (non-null) header. Lazily rebuilt. */
+	private HashMap<String, Integer> rowHeaderIndex;
+
 	/** Creates an empty table. */
 	public AbstractTable() {
 		this(0, 0);
@@ -81,6 +88,7 @@ public void setColumnCount(final int colCount) {
 		checkColCount(colCount);
 		setSize(colCount);
 		scaleColumns();
+		colHeaderIndex = null;
 	}
 
 	@Override
@@ -100,20 +108,12 @@ public C appendColumn(final String header) {
 
 	@Override
 	public ArrayList<C> appendColumns(final int count) {
-		final ArrayList<C> result = new ArrayList<C>(count);
-		for (int c = 0; c < count; c++) {
-			result.add(appendColumn());
-		}
-		return result;
+		return insertColumns(getColumnCount(), count);
 	}
 
 	@Override
 	public ArrayList<C> appendColumns(final String... headers) {
-		final ArrayList<C> result = new ArrayList<C>(headers.length);
-		for (final String header : headers) {
-			result.add(appendColumn(header));
-		}
-		return result;
+		return insertColumns(getColumnCount(), headers);
 	}
 
 	@Override
@@ -138,7 +138,9 @@ public ArrayList<C> insertColumns(final int col, final int count) {
 		setColumnCount(newColCount);
 
 		// copy columns after the inserted range into the new position
-		for (int oldC = col; oldC < oldColCount; oldC++) {
+		// NB: This loop goes backwards, so that no column is overwritten before
+		// it has been moved.
+		for (int oldC = oldColCount - 1; oldC >= col; oldC--) {
 			final int newC = oldC + count;
 			set(newC, get(oldC));
 		}
@@ -190,7 +192,7 @@ public ArrayList<C> removeColumns(final int col, final int count) {
 		final int newColCount = oldColCount - count;
 
 		// copy data after the deleted range into the new position
-		for (int oldC = col; oldC < oldColCount; oldC++) {
+		for (int oldC = col + count; oldC < oldColCount; oldC++) {
 			final int newC = oldC - count;
 			set(newC, get(oldC));
 		}
@@ -216,6 +218,7 @@ public int getRowCount() {
 	@Override
 	public void setRowCount(final int rowCount) {
 		checkRowCount(rowCount);
+		if (rowCount < this.rowCount) rowHeaderIndex = null;
 		this.rowCount = rowCount;
 		scaleColumns();
 	}
@@ -232,16 +235,12 @@ public void appendRow(final String header) {
 
 	@Override
 	public void appendRows(final int count) {
-		for (int c = 0; c < count; c++) {
-			appendRow();
-		}
+		insertRows(getRowCount(), count);
 	}
 
 	@Override
 	public void appendRows(final String... headers) {
-		for (final String header : headers) {
-			appendRow(header);
-		}
+		insertRows(getRowCount(), headers);
 	}
 
 	@Override
@@ -261,11 +260,16 @@ public void insertRows(final int row, final int count) {
 		final int oldRowCount = getRowCount();
 		final int newRowCount = oldRowCount + count;
 
+		// rows after the inserted range change index
+		if (row < oldRowCount) rowHeaderIndex = null;
+
 		// expand rows list
 		setRowCount(newRowCount);
 
 		// copy data after the inserted range into the new position
-		for (int oldR = row; oldR < oldRowCount; oldR++) {
+		// NB: This loop goes backwards, so that no row is overwritten before it
+		// has been moved.
+		for (int oldR = oldRowCount - 1; oldR >= row; oldR--) {
 			final int newR = oldR + count;
 			for (int c = 0; c < getColumnCount(); c++) {
 				set(c, newR, get(c, oldR));
@@ -311,7 +315,7 @@ public void removeRow(final int row) {
 
 	@Override
 	public void removeRow(final String header) {
-		final int row = getColumnIndex(header);
+		final int row = getRowIndex(header);
 		if (row < 0) {
 			throw new IndexOutOfBoundsException("No such row: " + header);
 		}
@@ -323,8 +327,9 @@ public void removeRows(final int row, final int count) {
 		checkRow(row, count);
 		final int oldRowCount = getRowCount();
 		final int newRowCount = oldRowCount - count;
+		rowHeaderIndex = null;
 		// copy data after the deleted range into the new position
-		for (int oldR = row; oldR < oldRowCount; oldR++) {
+		for (int oldR = row + count; oldR < oldRowCount; oldR++) {
 			final int newR = oldR - count;
 			setRowHeader(newR, getRowHeader(oldR));
 			for (int c = 0; c < getColumnCount(); c++) {
@@ -357,15 +362,34 @@ public String getColumnHeader(final int col) {
 	@Override
 	public void setColumnHeader(final int col, final String header) {
 		get(col).setHeader(header);
+		colHeaderIndex = null;
 	}
 
 	@Override
 	public int getColumnIndex(final String header) {
-		for (int c = 0; c < getColumnCount(); c++) {
+		if (header == null) {
+			for (int c = 0; c < getColumnCount(); c++) {
+				if (getColumnHeader(c) == null) return c;
+			}
+			return -1;
+		}
+		if (colHeaderIndex != null) {
+			final Integer col = colHeaderIndex.get(header);
+			if (col != null && col < getColumnCount() &&
+				header.equals(getColumnHeader(col)))
+			{
+				return col;
+			}
+		}
+		// NB: Headers can also be changed on the columns themselves, so the
+		// index is rebuilt whenever it does not have the answer.
+		colHeaderIndex = new HashMap<String, Integer>();
+		for (int c = getColumnCount() - 1; c >= 0; c--) {
 			final String h = getColumnHeader(c);
-			if (equal(h, header)) return c;
+			if (h != null) colHeaderIndex.put(h, c);
 		}
-		return -1;
+		final Integer col = colHeaderIndex.get(header);
+		return col == null ? -1 : col;
 	}
 
 	@Override
@@ -383,16 +407,28 @@ public void setRowHeader(final int row, final String header) {
 			rowHeaders.setSize(row + 1);
 		}
 		// update the row header value, where applicable
-		rowHeaders.set(row, header);
+		final String oldHeader = rowHeaders.set(row, header);
+		if (rowHeaderIndex != null) updateRowHeaderIndex(row, oldHeader, header);
 	}
 
 	@Override
 	public int getRowIndex(final String header) {
-		for (int r = 0; r < getRowCount(); r++) {
-			final String h = getRowHeader(r);
-			if (equal(h, header)) return r;
+		if (header == null) {
+			for (int r = 0; r < getRowCount(); r++) {
+				if (getRowHeader(r) == null) return r;
+			}
+			return -1;
+		}
+		if (rowHeaderIndex == null) {
+			rowHeaderIndex = new HashMap<String, Integer>();
+			final int count = Math.min(getRowCount(), rowHeaders.size());
+			for (int r = count - 1; r >= 0; r--) {
+				final String h = rowHeaders.get(r);
+				if (h != null) rowHeaderIndex.put(h, r);
+			}
 		}
-		return -1;
+		final Integer row = rowHeaderIndex.get(header);
+		return row == null ? -1 : row;
 	}
 
 	@Override
@@ -427,6 +463,23 @@ public T get(final String colHeader, final int row) {
 
 	// -- Helper methods --
 
+	/** Keeps the row header index current as a row's header changes. */
+	private void updateRowHeaderIndex(final int row, final String oldHeader,
+		final String newHeader)
+	{
+		if (equal(oldHeader, newHeader)) return;
+		if (oldHeader != null &&
+			Integer.valueOf(row).equals(rowHeaderIndex.get(oldHeader)))
+		{
+			// a later row may carry the old header; rebuild on next lookup
+			rowHeaderIndex = null;
+			return;
+		}
+		if (newHeader == null) return;
+		final Integer first = rowHeaderIndex.get(newHeader);
+		if (first == null || first > row) rowHeaderIndex.put(newHeader, row);
+	}
+
 	/** Initializes and scales all columns to match the row count. */
 	private void scaleColumns() {
 		for (int c = 0; c < getColumnCount(); c++) {
@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Implementation of {@link Column} for {@link String}s, which stores each
+ * distinct value only once. Each row holds the {@code int} code of its value
+ * in the column's dictionary, which suits measurements with a few recurring
+ * labels (such as well or class names) over many rows.
+ */
+public class StringColumn extends AbstractList<String> implements
+	Column<String>
+{
+
+	/** Code of the null value. */
+	private static final int NULL_CODE = -1;
+
+	/** The column header. */
+	private String header;
+
+	/** Dictionary code of each row's value. */
+	private int[] codes = new int[16];
+
+	/** Number of rows in the column. */
+	private int size;
+
+	/** Distinct values of the column, indexed by code. */
+	private final ArrayList<String> values = new ArrayList<String>();
+
+	/** Code of each distinct value. */
+	private final HashMap<String, Integer> valueCodes =
+		new HashMap<String, Integer>();
+
+	public StringColumn() {}
+
+	public StringColumn(final String header) {
+		this.header = header;
+	}
+
+	// -- StringColumn methods --
+
+	/**
+	 * Gets the number of distinct values the column has held. Values are never
+	 * dropped from the dictionary, even once no row holds them anymore.
+	 */
+	public int getDictionarySize() {
+		return values.size();
+	}
+
+	// -- Column methods --
+
+	@Override
+	public String getHeader() {
+		return header;
+	}
+
+	@Override
+	public void setHeader(final String header) {
+		this.header = header;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void setSize(final int size) {
+		if (size < 0) throw new IllegalArgumentException("Invalid size: " + size);
+		ensureCapacity(size);
+		if (size > this.size) Arrays.fill(codes, this.size, size, NULL_CODE);
+		this.size = size;
+	}
+
+	// -- List methods --
+
+	@Override
+	public String get(final int index) {
+		checkIndex(index);
+		return value(codes[index]);
+	}
+
+	@Override
+	public String set(final int index, final String element) {
+		checkIndex(index);
+		final String old = value(codes[index]);
+		codes[index] = code(element);
+		return old;
+	}
+
+	@Override
+	public void add(final int index, final String element) {
+		if (index < 0 || index > size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+		ensureCapacity(size + 1);
+		System.arraycopy(codes, index, codes, index + 1, size - index);
+		codes[index] = code(element);
+		size++;
+		modCount++;
+	}
+
+	@Override
+	public String remove(final int index) {
+		checkIndex(index);
+		final String old = value(codes[index]);
+		System.arraycopy(codes, index + 1, codes, index, size - index - 1);
+		size--;
+		modCount++;
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		size = 0;
+		modCount++;
+	}
+
+	// -- Helper methods --
+
+	private String value(final int code) {
+		return code == NULL_CODE ? null : values.get(code);
+	}
+
+	/** Gets the code of a value, adding it to the dictionary if needed. */
+	private int code(final String value) {
+		if (value == null) return NULL_CODE;
+		final Integer code = valueCodes.get(value);
+		if (code != null) return code;
+		values.add(value);
+		valueCodes.put(value, values.size() - 1);
+		return values.size() - 1;
+	}
+
+	private void ensureCapacity(final int capacity) {
+		if (capacity <= codes.length) return;
+		final int newCapacity = Math.max(capacity, codes.length * 3 / 2 + 1);
+		codes = Arrays.copyOf(codes, newCapacity);
+	}
+
+	private void checkIndex(final int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Invalid index: " + index);
+		}
+	}
+
+}
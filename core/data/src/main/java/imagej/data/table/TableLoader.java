@@ -35,72 +35,54 @@
 
 package imagej.data.table;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
 
 // note: adapted from Wayne Rasband's IJ1 TextReader class
 
 /**
  * Loads a text file containing comma separated values into a
- * {@link ResultsTable}.
+ * {@link ResultsTable}, or into typed {@link Column}s.
+ * <p>
+ * Values may be separated by commas, spaces, tabs or most other punctuation.
+ * The file is read a line at a time in a single pass, with the values of each
+ * column collected into a growing column of the narrowest type that holds all
+ * of them so far: a {@link BoolColumn}, {@link IntColumn}, {@link LongColumn},
+ * {@link DoubleColumn} or, once a column holds text, a {@link StringColumn}.
+ * Files of any size can thus be loaded as long as the resulting table fits in
+ * memory. If every entry of the first line is non-numeric, the line is taken
+ * to hold the column headers; otherwise no column has a header.
+ * </p>
  * 
  * @author Barry DeZonia
  * @author Wayne Rasband
  */
 public class TableLoader {
 
-	// -- instance variables --
-
-	private int rows, cols;
-
-	// -- private legacy text file support methods --
+	// -- public interface --
 
 	/**
-	 * Loads the values of a table stored in a text file as a ResultsTable. Given
-	 * BufferedInputStream must be marked to hold entire contents in buffer. This
-	 * method rewinds the buggered stream so it can read it twice.
+	 * Loads the values of a table stored in a text file as a ResultsTable. The
+	 * stream is read to its end but not closed. Entries that are not numbers
+	 * become NaN.
 	 * 
-	 * @param str The BufferedInputStream containing the data of the text table
+	 * @param str The InputStream containing the data of the text table
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(BufferedInputStream str)
+	public ResultsTable valuesFromTextFile(final InputStream str)
 		throws IOException
 	{
-		countRowsAndCols(str);
-		if (rows == 0) return null;
-		ResultsTable values = new DefaultResultsTable(cols, rows);
-		str.reset();
-		read(str, values);
-		int firstRowNaNCount = 0;
-		for (int i = 0; i < cols; i++) {
-			if (Double.isNaN(values.getValue(i, 0))) firstRowNaNCount++;
-		}
-		if (firstRowNaNCount == cols) { // assume first row is header
-			// throw away first row of non-values
-			rows--;
-			ResultsTable oldValues = values;
-			values = new DefaultResultsTable(cols, rows);
-			for (int c = 0; c < cols; c++) {
-				String colHeader = oldValues.getColumnHeader(c);
-				values.setColumnHeader(c, colHeader);
-			}
-			for (int row = 0; row < rows; row++) {
-				for (int col = 0; col < cols; col++) {
-					double val = oldValues.getValue(col, row + 1);
-					values.setValue(col, row, val);
-				}
-			}
-		}
-		return values;
+		final ColumnBuilder builder = read(str);
+		if (builder == null) return null;
+		return builder.buildResultsTable();
 	}
 
 	/**
@@ -111,7 +93,9 @@ public ResultsTable valuesFromTextFile(BufferedInputStream str)
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(String urlString) throws IOException {
+	public ResultsTable valuesFromTextFile(final String urlString)
+		throws IOException
+	{
 		return valuesFromTextFile(new URL(urlString));
 	}
 
@@ -122,11 +106,14 @@ public ResultsTable valuesFromTextFile(String urlString) throws IOException {
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(File file) throws IOException {
-		FileInputStream fstr = new FileInputStream(file);
-		BufferedInputStream stream = new BufferedInputStream(fstr);
-		stream.mark((int) file.length());
-		return valuesFromTextFile(stream);
+	public ResultsTable valuesFromTextFile(final File file) throws IOException {
+		final InputStream stream = new FileInputStream(file);
+		try {
+			return valuesFromTextFile(stream);
+		}
+		finally {
+			stream.close();
+		}
 	}
 
 	/**
@@ -136,77 +123,311 @@ public ResultsTable valuesFromTextFile(File file) throws IOException {
 	 * @return A ResultsTable containing the values (and headers)
 	 * @throws IOException
 	 */
-	public ResultsTable valuesFromTextFile(URL url) throws IOException {
-		InputStream istr = url.openStream();
-		BufferedInputStream stream = new BufferedInputStream(istr);
-		stream.mark(8000000); // about 8 megabytes: FIXME HACK
-		return valuesFromTextFile(stream);
+	public ResultsTable valuesFromTextFile(final URL url) throws IOException {
+		final InputStream stream = url.openStream();
+		try {
+			return valuesFromTextFile(stream);
+		}
+		finally {
+			stream.close();
+		}
 	}
 
-	// -- private helpers -
-
-	private void countRowsAndCols(InputStream str) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
-		tok.eolIsSignificant(true);
-
-		int words = 0, wordsPrevLine = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			switch (tok.ttype) {
-				case StreamTokenizer.TT_EOL:
-					rows++;
-					if (words == 0) rows--; // ignore empty lines
-					if (rows == 1 && words > 0) cols = words;
-					if (rows > 1 && words != 0 && words != wordsPrevLine) {
-						throw new IOException("Line " + rows +
-							" is not the same length as the first line.");
-					}
-					if (words != 0) wordsPrevLine = words;
-					words = 0;
-					break;
-				case StreamTokenizer.TT_WORD:
-					// System.out.println("read word " + tok.sval);
-					words++;
-					break;
+	/**
+	 * Loads the columns of a table stored in a text file, each as the narrowest
+	 * column type that holds all of its values. The stream is read to its end
+	 * but not closed.
+	 * <p>
+	 * NB: Numbers that precede the first text entry of a column are kept in
+	 * their canonical form, e.g. "1e3" becomes "1000.0".
+	 * </p>
+	 * 
+	 * @param str The InputStream containing the data of the text table
+	 * @return The columns (and their headers), or null if there is no data
+	 * @throws IOException
+	 */
+	public List<Column<?>> columnsFromTextFile(final InputStream str)
+		throws IOException
+	{
+		final ColumnBuilder builder = read(str);
+		if (builder == null) return null;
+		return builder.buildColumns();
+	}
+
+	/**
+	 * Loads the columns of a table stored in a text file, each as the narrowest
+	 * column type that holds all of its values.
+	 * 
+	 * @param file The File containing the text table
+	 * @return The columns (and their headers), or null if there is no data
+	 * @throws IOException
+	 */
+	public List<Column<?>> columnsFromTextFile(final File file)
+		throws IOException
+	{
+		final InputStream stream = new FileInputStream(file);
+		try {
+			return columnsFromTextFile(stream);
+		}
+		finally {
+			stream.close();
+		}
+	}
+
+	// -- private helpers --
+
+	/** Reads a whole text table, or returns null if it has no entries. */
+	private static ColumnBuilder read(final InputStream str) throws IOException {
+		final BufferedReader reader =
+			new BufferedReader(new InputStreamReader(str));
+		final List<String> tokens = new ArrayList<String>();
+		ColumnBuilder builder = null;
+		int lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			tokenize(line, tokens);
+			if (tokens.isEmpty()) continue; // ignore empty lines
+			if (builder == null) builder = new ColumnBuilder(tokens);
+			else if (tokens.size() != builder.getColumnCount()) {
+				throw new IOException("Line " + lineNumber +
+					" is not the same length as the first line.");
+			}
+			else builder.addRow(tokens);
+		}
+		return builder;
+	}
+
+	/**
+	 * Splits a line into its entries. Like IJ1's TextReader, an entry is a run
+	 * of characters other than whitespace, control characters, commas and the
+	 * punctuation {@code !"#$%&'()*}.
+	 */
+	private static void tokenize(final String line, final List<String> tokens) {
+		tokens.clear();
+		final int length = line.length();
+		int start = -1;
+		for (int i = 0; i < length; i++) {
+			final boolean word = isWordChar(line.charAt(i));
+			if (word && start < 0) start = i;
+			else if (!word && start >= 0) {
+				tokens.add(line.substring(start, i));
+				start = -1;
 			}
 		}
-		if (words == cols) rows++; // last line does not end with EOL
+		if (start >= 0) tokens.add(line.substring(start));
+	}
+
+	private static boolean isWordChar(final char c) {
+		return c == '+' || (c >= '-' && c <= '~') || c > 255;
+	}
+
+	/** Parses a number, or returns NaN if the entry is not one. */
+	private static double parse(final String token) {
+		final char c = token.charAt(0);
+		// NB: Avoid the cost of an exception for obviously non-numeric entries.
+		if (!(c >= '0' && c <= '9') && c != '-' && c != '+' && c != '.' &&
+			c != 'I' && c != 'N')
+		{
+			return Double.NaN;
+		}
+		try {
+			return Double.parseDouble(token);
+		}
+		catch (final NumberFormatException e) {
+			return Double.NaN;
+		}
 	}
 
-	private void read(InputStream str, ResultsTable values) throws IOException {
-		Reader r = new BufferedReader(new InputStreamReader(str));
-		StreamTokenizer tok = new StreamTokenizer(r);
-		tok.resetSyntax();
-		tok.wordChars(43, 43);
-		tok.wordChars(45, 126);
-		tok.whitespaceChars(0, 42);
-		tok.whitespaceChars(44, 44);
-		tok.whitespaceChars(127, 255);
-
-		int row = 0, col = 0;
-		while (tok.nextToken() != StreamTokenizer.TT_EOF) {
-			if (tok.ttype == StreamTokenizer.TT_WORD) {
-				double value;
-				try {
-					value = Double.parseDouble(tok.sval);
+	// -- Helper classes --
+
+	/**
+	 * Collects the values of a table, column by column, each in the narrowest
+	 * column type that holds all of its values so far.
+	 */
+	private static class ColumnBuilder {
+
+		// column types, from narrowest to widest
+		private static final int BOOL = 0, INT = 1, LONG = 2, DOUBLE = 3,
+				STRING = 4;
+
+		private final String[] headers;
+		private final Column<?>[] columns;
+		private final int[] kinds;
+		private int rows;
+
+		// the value of the last token classified by kindOf()
+		private long longValue;
+		private double doubleValue;
+
+		/** Starts a table with the first line of the file. */
+		public ColumnBuilder(final List<String> firstLine) {
+			final int cols = firstLine.size();
+			headers = new String[cols];
+			columns = new Column<?>[cols];
+			kinds = new int[cols];
+			boolean allText = true;
+			for (final String token : firstLine) {
+				if (kindOf(token) != STRING) allText = false;
+			}
+			// a line of non-values is the header; otherwise it is data
+			if (allText) firstLine.toArray(headers);
+			else addRow(firstLine);
+		}
+
+		public int getColumnCount() {
+			return columns.length;
+		}
+
+		public void addRow(final List<String> tokens) {
+			for (int c = 0; c < columns.length; c++) {
+				add(c, tokens.get(c));
+			}
+			rows++;
+		}
+
+		public ResultsTable buildResultsTable() {
+			final ResultsTable table =
+				new DefaultResultsTable(columns.length, rows);
+			for (int c = 0; c < columns.length; c++) {
+				table.setColumnHeader(c, headers[c]);
+				final Column<?> column = columns[c];
+				for (int r = 0; r < rows; r++) {
+					table.setValue(c, r, asDouble(kinds[c], column.get(r)));
+				}
+			}
+			return table;
+		}
+
+		public List<Column<?>> buildColumns() {
+			final List<Column<?>> list = new ArrayList<Column<?>>(columns.length);
+			for (int c = 0; c < columns.length; c++) {
+				final Column<?> column =
+					columns[c] == null ? new StringColumn() : columns[c];
+				column.setHeader(headers[c]);
+				list.add(column);
+			}
+			return list;
+		}
+
+		/** Appends a value to a column, widening the column if needed. */
+		private void add(final int c, final String token) {
+			final int kind = kindOf(token);
+			if (columns[c] == null) {
+				kinds[c] = kind;
+				columns[c] = create(kind);
+			}
+			else if (kind != kinds[c]) {
+				final int wider = wider(kinds[c], kind);
+				if (wider != kinds[c]) {
+					columns[c] = convert(columns[c], wider);
+					kinds[c] = wider;
 				}
-				catch (NumberFormatException e) {
-					value = Double.NaN;
-					if (row == 0) values.setColumnHeader(col, tok.sval);
+			}
+			switch (kinds[c]) {
+				case BOOL:
+					((BoolColumn) columns[c]).addValue(token.equals("true"));
+					break;
+				case INT:
+					((IntColumn) columns[c]).addValue((int) longValue);
+					break;
+				case LONG:
+					((LongColumn) columns[c]).addValue(longValue);
+					break;
+				case DOUBLE:
+					((DoubleColumn) columns[c]).addValue(doubleValue);
+					break;
+				default:
+					((StringColumn) columns[c]).add(token);
+			}
+		}
+
+		/**
+		 * Classifies a token as the narrowest column type that can hold it,
+		 * recording its numeric value along the way.
+		 */
+		private int kindOf(final String token) {
+			if (token.equals("true") || token.equals("false")) return BOOL;
+			doubleValue = parse(token);
+			if (Double.isNaN(doubleValue)) {
+				return token.equals("NaN") ? DOUBLE : STRING;
+			}
+			if (!isInteger(token)) return DOUBLE;
+			try {
+				longValue = Long.parseLong(token);
+			}
+			catch (final NumberFormatException e) {
+				return DOUBLE; // too large for a long
+			}
+			doubleValue = longValue;
+			return longValue == (int) longValue ? INT : LONG;
+		}
+
+		/** Returns true if a token is a run of digits with an optional sign. */
+		private static boolean isInteger(final String token) {
+			final int start = token.charAt(0) == '-' ? 1 : 0;
+			if (start == token.length()) return false;
+			for (int i = start; i < token.length(); i++) {
+				final char c = token.charAt(i);
+				if (c < '0' || c > '9') return false;
+			}
+			return true;
+		}
+
+		/** Gets the narrowest column type holding values of both types. */
+		private static int wider(final int kind1, final int kind2) {
+			if (kind1 == BOOL || kind2 == BOOL) return STRING;
+			return Math.max(kind1, kind2);
+		}
+
+		private static Column<?> create(final int kind) {
+			switch (kind) {
+				case BOOL:
+					return new BoolColumn();
+				case INT:
+					return new IntColumn();
+				case LONG:
+					return new LongColumn();
+				case DOUBLE:
+					return new DoubleColumn();
+				default:
+					return new StringColumn();
+			}
+		}
+
+		/** Copies the values of a column into a new column of a wider type. */
+		private static Column<?> convert(final Column<?> column, final int kind) {
+			final int size = column.size();
+			if (kind == LONG) {
+				final LongColumn longs = new LongColumn();
+				longs.setSize(size);
+				for (int r = 0; r < size; r++) {
+					longs.setValue(r, ((Number) column.get(r)).longValue());
 				}
-				values.setValue(col, row, value);
-				col++;
-				if (col == cols) {
-					row++;
-					col = 0;
+				return longs;
+			}
+			if (kind == DOUBLE) {
+				final DoubleColumn doubles = new DoubleColumn();
+				doubles.setSize(size);
+				for (int r = 0; r < size; r++) {
+					doubles.setValue(r, ((Number) column.get(r)).doubleValue());
 				}
+				return doubles;
+			}
+			final StringColumn strings = new StringColumn();
+			for (int r = 0; r < size; r++) {
+				strings.add(String.valueOf(column.get(r)));
 			}
+			return strings;
+		}
+
+		/** Gets a value as a double, or NaN if it is not a number. */
+		private static double asDouble(final int kind, final Object value) {
+			if (kind == BOOL) return Double.NaN;
+			if (kind == STRING) return parse((String) value);
+			return ((Number) value).doubleValue();
 		}
+
 	}
+
 }
@@ -36,8 +36,12 @@
 package imagej.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
@@ -46,6 +50,7 @@
 import net.imglib2.img.planar.PlanarImgFactory;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
 
 import org.junit.Test;
 import org.scijava.Context;
@@ -176,4 +181,69 @@ public void testGetPlane() {
 		testPlanarCase();
 		testNonplanarCase();
 	}
+
+	@Test
+	public void testCopyInto() {
+		final Dataset source = createPlanarDataset();
+		final int planeCount = CPLANES * ZPLANES * TPLANES;
+		for (int p = 0; p < planeCount; p++) {
+			final int[] plane = (int[]) source.getPlane(p, false);
+			for (int i = 0; i < plane.length; i++)
+				plane[i] = 100 * p + i;
+		}
+
+		// planar to planar, copied a plane at a time
+		final Dataset planarCopy = source.duplicateBlank();
+		source.copyInto(planarCopy);
+		for (int p = 0; p < planeCount; p++) {
+			final int[] plane = (int[]) planarCopy.getPlane(p, false);
+			assertNotSame(source.getPlane(p, false), plane);
+			for (int i = 0; i < plane.length; i++)
+				assertEquals(100 * p + i, plane[i]);
+		}
+
+		// planar to cell, copied a sample at a time
+		final Dataset cellCopy = createNonplanarDataset();
+		source.copyInto(cellCopy);
+		for (int p = 0; p < planeCount; p++) {
+			final int[] plane = (int[]) cellCopy.getPlane(p, true);
+			for (int i = 0; i < plane.length; i++)
+				assertEquals(100 * p + i, plane[i]);
+		}
+	}
+
+	@Test
+	public void testDeleteDisposesScratchFile() {
+		final Context context = new Context(DatasetService.class);
+		final LazyPlanarImg<?, ?> lazy = LazyPlanarImgTest.makeSpilled();
+		final File file = lazy.getScratchFile();
+		assertTrue(file.exists());
+
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		final Dataset ds = new DefaultDataset(context, new ImgPlus(lazy));
+		// as when the Dataset is shown in a display, which is then closed
+		ds.incrementReferences();
+		ds.decrementReferences();
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testUnreachableDatasetDeletesScratchFile() {
+		final Context context = new Context(DatasetService.class);
+		@SuppressWarnings({ "rawtypes", "unchecked" })
+		Dataset ds =
+			new DefaultDataset(context, new ImgPlus(LazyPlanarImgTest.makeSpilled()));
+		final File file =
+			((LazyPlanarImg<?, ?>) ds.getImgPlus().getImg()).getScratchFile();
+		assertTrue(file.exists());
+		// as when a duplicate is dropped without ever being displayed
+		ds = null;
+		for (int i = 0; i < 50 && file.exists(); i++) {
+			System.gc();
+			// NB - files of collected images are deleted when new images are made
+			LazyPlanarImg.createBlank(new long[] { 1, 1 }, new UnsignedByteType(),
+				1);
+		}
+		assertFalse(file.exists());
+	}
 }
@@ -0,0 +1,340 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.File;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LazyPlanarImg}.
+ */
+public class LazyPlanarImgTest {
+
+	@Test
+	public void testLoading() {
+		final Img<UnsignedByteType> source = makeSource();
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.create(source, 2);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+		for (int p = 0; p < 5; p++) {
+			assertFalse(lazy.isLoaded(p));
+		}
+
+		// all values are read through, with no more than two planes in memory
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		final RandomAccess<UnsignedByteType> ra = source.randomAccess();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			ra.setPosition(cursor);
+			assertEquals(ra.get().get(), cursor.get().get());
+		}
+		assertFalse(lazy.isLoaded(0));
+		assertTrue(lazy.isLoaded(3));
+		assertTrue(lazy.isLoaded(4));
+	}
+
+	@Test
+	public void testEvictedEditsAreKept() {
+		final Img<UnsignedByteType> source = makeSource();
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.create(source, 1);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+
+		final RandomAccess<UnsignedByteType> ra = img.randomAccess();
+		ra.setPosition(new long[] { 1, 2, 0 });
+		ra.get().set(200);
+		ra.setPosition(3, 2);
+		assertEquals(index(1, 2, 3), ra.get().get());
+		assertFalse(lazy.isLoaded(0));
+
+		ra.setPosition(0, 2);
+		assertEquals(200, ra.get().get());
+		// the source image is left alone
+		final RandomAccess<UnsignedByteType> sourceRA = source.randomAccess();
+		sourceRA.setPosition(new long[] { 1, 2, 0 });
+		assertEquals(index(1, 2, 0), sourceRA.get().get());
+		lazy.dispose();
+	}
+
+	@Test
+	public void testReadingDoesNotSpill() {
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.create(makeSource(), 1);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+		final Cursor<UnsignedByteType> cursor = img.cursor();
+		while (cursor.hasNext()) {
+			cursor.next().get();
+		}
+		final RandomAccess<UnsignedByteType> ra = img.randomAccess();
+		for (int p = 4; p >= 0; p--) {
+			ra.setPosition(p, 2);
+			assertEquals(index(0, 0, p), ra.get().get());
+		}
+		assertNull(lazy.getScratchFile());
+	}
+
+	@Test
+	public void testGetPlaneDoesNotPin() {
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.create(makeSource(), 1);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+		final byte[] plane =
+			(byte[]) img.getPlane(2).getCurrentStorageArray();
+		assertEquals(index(0, 1, 2), plane[4]);
+		plane[4] = 99;
+
+		for (int p = 0; p < 5; p++) {
+			img.getPlane(p);
+		}
+		assertFalse(lazy.isLoaded(2));
+
+		// the edit made before the plane was evicted is kept
+		final byte[] reloaded =
+			(byte[]) img.getPlane(2).getCurrentStorageArray();
+		assertEquals(99, reloaded[4]);
+		assertEquals(index(1, 1, 2), reloaded[5]);
+		lazy.dispose();
+	}
+
+	@Test
+	public void testBlank() {
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.createBlank(new long[] { 4, 3, 5 },
+				new UnsignedByteType(), 1);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+
+		final RandomAccess<UnsignedByteType> ra = img.randomAccess();
+		ra.setPosition(new long[] { 3, 1, 4 });
+		assertEquals(0, ra.get().get());
+		ra.get().set(7);
+		ra.setPosition(0, 2);
+		assertEquals(0, ra.get().get());
+		assertFalse(lazy.isLoaded(4));
+
+		ra.setPosition(4, 2);
+		assertEquals(7, ra.get().get());
+		lazy.dispose();
+	}
+
+	@Test
+	public void testWritesAcrossEviction() {
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.createBlank(new long[] { 4, 3, 5 },
+				new UnsignedByteType(), 1);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+
+		// start writing plane 0 through a cursor...
+		final Cursor<UnsignedByteType> cursor = img.cursor();
+		cursor.fwd();
+		cursor.get().set(1);
+
+		// ...while another access makes the image load all other planes
+		final RandomAccess<UnsignedByteType> ra = img.randomAccess();
+		for (int p = 1; p < 5; p++) {
+			ra.setPosition(p, 2);
+			ra.get().set(p);
+		}
+		assertTrue(lazy.isLoaded(0));
+
+		// ...then finish writing plane 0
+		for (int i = 1; i < 12; i++) {
+			cursor.fwd();
+			cursor.get().set(1);
+		}
+
+		// move the cursor on so that plane 0 can be evicted, and read it back
+		cursor.fwd();
+		ra.setPosition(new long[] { 0, 0, 4 });
+		ra.setPosition(0, 2);
+		assertFalse(lazy.isLoaded(4));
+		for (int y = 0; y < 3; y++) {
+			for (int x = 0; x < 4; x++) {
+				ra.setPosition(x, 0);
+				ra.setPosition(y, 1);
+				assertEquals(1, ra.get().get());
+			}
+		}
+		lazy.dispose();
+	}
+
+	@Test
+	public void testDisposeDeletesScratchFile() {
+		final LazyPlanarImg<?, ?> lazy = makeSpilled();
+		final File file = lazy.getScratchFile();
+		assertNotNull(file);
+		assertTrue(file.exists());
+		lazy.dispose();
+		assertFalse(file.exists());
+		assertNull(lazy.getScratchFile());
+	}
+
+	@Test
+	public void testUnreachableImageDeletesScratchFile() {
+		LazyPlanarImg<?, ?> lazy = makeSpilled();
+		final File file = lazy.getScratchFile();
+		assertTrue(file.exists());
+		lazy = null;
+		for (int i = 0; i < 50 && file.exists(); i++) {
+			System.gc();
+			// NB - files of collected images are deleted when new images are made
+			LazyPlanarImg.createBlank(new long[] { 1, 1 }, new UnsignedByteType(),
+				1);
+		}
+		assertFalse(file.exists());
+	}
+
+	@Test
+	public void testSharedBudget() {
+		// room for two 4x3 planes, shared by two images
+		final LazyPlanarImg.Budget budget = new LazyPlanarImg.Budget(24);
+		final PlanarImg<UnsignedByteType, ?> img1 =
+			LazyPlanarImg.create(makeSource(), 100, budget);
+		final PlanarImg<UnsignedByteType, ?> img2 =
+			LazyPlanarImg.create(makeSource(), 100, budget);
+		final LazyPlanarImg<?, ?> lazy1 = (LazyPlanarImg<?, ?>) img1;
+		final LazyPlanarImg<?, ?> lazy2 = (LazyPlanarImg<?, ?>) img2;
+
+		final RandomAccess<UnsignedByteType> ra1 = img1.randomAccess();
+		for (int p = 0; p < 5; p++) {
+			ra1.setPosition(p, 2);
+			assertEquals(index(0, 0, p), ra1.get().get());
+		}
+		assertTrue(lazy1.isLoaded(3));
+		assertTrue(lazy1.isLoaded(4));
+		assertEquals(24, budget.getUsedBytes());
+
+		// the plane in use by the second image overdraws the budget...
+		final RandomAccess<UnsignedByteType> ra2 = img2.randomAccess();
+		assertEquals(0, ra2.get().get());
+		assertEquals(36, budget.getUsedBytes());
+
+		// ...until the first image loads its next plane
+		ra1.setPosition(0, 2);
+		assertTrue(lazy1.isLoaded(0));
+		assertFalse(lazy1.isLoaded(3));
+		assertFalse(lazy1.isLoaded(4));
+		assertTrue(lazy2.isLoaded(0));
+		assertEquals(24, budget.getUsedBytes());
+
+		lazy1.dispose();
+		lazy2.dispose();
+		assertEquals(0, budget.getUsedBytes());
+	}
+
+	@Test
+	public void testReadOnlyPassesKeepBudget() {
+		// room for two 4x3 planes
+		final LazyPlanarImg.Budget budget = new LazyPlanarImg.Budget(24);
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.create(makeSource(), 100, budget);
+		final LazyPlanarImg<?, ?> lazy = (LazyPlanarImg<?, ?>) img;
+
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			assertEquals(index(cursor.getIntPosition(0), cursor.getIntPosition(1),
+				cursor.getIntPosition(2)), cursor.get().get());
+			assertTrue(loadedCount(lazy) <= 2);
+		}
+		for (int p = 0; p < 5; p++) {
+			final byte[] plane = (byte[]) img.getPlane(p).getCurrentStorageArray();
+			assertEquals(index(3, 2, p), plane[11]);
+			assertTrue(loadedCount(lazy) <= 2);
+			assertTrue(budget.getUsedBytes() <= 24);
+		}
+		assertNull(lazy.getScratchFile());
+		lazy.dispose();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidPlaneCount() {
+		LazyPlanarImg.create(makeSource(), 0);
+	}
+
+	// -- Helper methods --
+
+	/** Makes a 4x3x5 image whose values encode their positions. */
+	private Img<UnsignedByteType> makeSource() {
+		final Img<UnsignedByteType> img =
+			new ArrayImgFactory<UnsignedByteType>().create(new long[] { 4, 3, 5 },
+				new UnsignedByteType());
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().set(
+				index(cursor.getIntPosition(0), cursor.getIntPosition(1), cursor
+					.getIntPosition(2)));
+		}
+		return img;
+	}
+
+	/** Makes a blank image with one of its edited planes in a scratch file. */
+	static LazyPlanarImg<?, ?> makeSpilled() {
+		final PlanarImg<UnsignedByteType, ?> img =
+			LazyPlanarImg.createBlank(new long[] { 4, 3, 5 },
+				new UnsignedByteType(), 1);
+		final RandomAccess<UnsignedByteType> ra = img.randomAccess();
+		ra.get().set(3);
+		ra.setPosition(1, 2);
+		return (LazyPlanarImg<?, ?>) img;
+	}
+
+	private int loadedCount(final LazyPlanarImg<?, ?> lazy) {
+		int count = 0;
+		for (int p = 0; p < lazy.numSlices(); p++) {
+			if (lazy.isLoaded(p)) count++;
+		}
+		return count;
+	}
+
+	private int index(final int x, final int y, final int z) {
+		return 12 * z + 4 * y + x;
+	}
+
+}
@@ -65,6 +65,18 @@ public void test() {
 		assertEquals(97, range.getMax(), 0);
 	}
 
+	@Test
+	public void testConstantImage() {
+		AutoscaleService service = context.getService(AutoscaleService.class);
+		AutoscaleMethod method = service.getAutoscaleMethod("Confidence Interval");
+		Img<ByteType> img = ArrayImgs.bytes(100);
+		for (ByteType b : img)
+			b.set((byte) 7);
+		DataRange range = method.getRange(img);
+		assertEquals(7, range.getMin(), 0);
+		assertEquals(7, range.getMax(), 0);
+	}
+
 	private Img<RealType> getImg() {
 		Img<ByteType> img = ArrayImgs.bytes(100);
 		byte i = 0;
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.display.ColorTable;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link RenderedPlaneCache}.
+ */
+public class RenderedPlaneCacheTest {
+
+	/** The owner of the planes made by {@link #key}. */
+	private static final Object OWNER = new Object();
+
+	@Test
+	public void testKeys() {
+		final RenderedPlaneCache cache = new RenderedPlaneCache(1024);
+		final int[] pixels = new int[16];
+		cache.put(key(3, 0, 255), null, pixels);
+		assertSame(pixels, cache.get(key(3, 0, 255), null));
+		assertTrue(cache.contains(key(3, 0, 255)));
+		assertNull(cache.get(key(4, 0, 255), null));
+		assertNull(cache.get(key(3, 0, 100), null));
+	}
+
+	@Test
+	public void testRegions() {
+		final RenderedPlaneCache cache = new RenderedPlaneCache(1024);
+		cache.put(key(0, 0, 1), new long[] { 10, 10, 20, 20 }, new int[16]);
+		assertFalse(cache.contains(key(0, 0, 1)));
+		assertNull(cache.get(key(0, 0, 1), null));
+		assertNotNull(cache.get(key(0, 0, 1), new long[] { 12, 10, 20, 15 }));
+		assertNull(cache.get(key(0, 0, 1), new long[] { 9, 10, 20, 15 }));
+	}
+
+	@Test
+	public void testEviction() {
+		// room for two planes of 16 pixels
+		final RenderedPlaneCache cache = new RenderedPlaneCache(128);
+		cache.put(key(0, 0, 1), null, new int[16]);
+		cache.put(key(1, 0, 1), null, new int[16]);
+		// touch plane 0, so that plane 1 is the least recently used
+		assertNotNull(cache.get(key(0, 0, 1), null));
+		cache.put(key(2, 0, 1), null, new int[16]);
+		assertTrue(cache.contains(key(0, 0, 1)));
+		assertFalse(cache.contains(key(1, 0, 1)));
+		assertTrue(cache.contains(key(2, 0, 1)));
+		assertEquals(128, cache.getByteCount());
+
+		// planes larger than the whole budget are not kept
+		cache.put(key(3, 0, 1), null, new int[64]);
+		assertFalse(cache.contains(key(3, 0, 1)));
+
+		cache.clear();
+		assertEquals(0, cache.getByteCount());
+		assertFalse(cache.contains(key(0, 0, 1)));
+	}
+
+	@Test
+	public void testOwners() {
+		final RenderedPlaneCache cache = new RenderedPlaneCache(1024);
+		final Object other = new Object();
+		final int[] pixels = new int[16];
+		cache.put(key(0, 0, 1), null, pixels);
+		cache.put(new RenderedPlaneCache.Key(other, 0, 4, 4, new long[] { 0, 0,
+			0 }, new double[] { 0 }, new double[] { 1 }, new ColorTable[1], false),
+			null, new int[16]);
+		assertEquals(128, cache.getByteCount());
+
+		// the same plane of another generation or size is a different plane
+		assertNull(cache.get(new RenderedPlaneCache.Key(OWNER, 1, 4, 4,
+			new long[] { 0, 0, 0 }, new double[] { 0 }, new double[] { 1 },
+			new ColorTable[1], false), null));
+		assertNull(cache.get(new RenderedPlaneCache.Key(OWNER, 0, 8, 2,
+			new long[] { 0, 0, 0 }, new double[] { 0 }, new double[] { 1 },
+			new ColorTable[1], false), null));
+
+		cache.clear(other);
+		assertEquals(64, cache.getByteCount());
+		assertSame(pixels, cache.get(key(0, 0, 1), null));
+	}
+
+	// -- Helper methods --
+
+	private RenderedPlaneCache.Key key(final long z, final double min,
+		final double max)
+	{
+		return new RenderedPlaneCache.Key(OWNER, 0, 4, 4, new long[] { 0, 0, z },
+			new double[] { min }, new double[] { max }, new ColorTable[1], false);
+	}
+
+}
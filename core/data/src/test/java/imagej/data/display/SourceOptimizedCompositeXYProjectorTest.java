@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link SourceOptimizedCompositeXYProjector}.
+ */
+public class SourceOptimizedCompositeXYProjectorTest {
+
+	private static final int WIDTH = 20, HEIGHT = 10;
+
+	@Test
+	public void testViewport() {
+		final ARGBScreenImage target = new ARGBScreenImage(WIDTH, HEIGHT);
+		final SourceOptimizedCompositeXYProjector<UnsignedByteType, Img<UnsignedByteType>, ARGBScreenImage> projector =
+			createProjector(target);
+		projector.map();
+		assertTrue(projector.isComplete());
+		assertRendered(target, 0, 0, WIDTH - 1, HEIGHT - 1);
+
+		clear(target);
+		projector.setViewport(2, 3, 5, 4);
+		projector.map();
+		assertFalse(projector.isComplete());
+		assertRendered(target, 2, 3, 5, 4);
+
+		projector.mapAll();
+		assertTrue(projector.isComplete());
+		assertRendered(target, 0, 0, WIDTH - 1, HEIGHT - 1);
+
+		// a viewport larger than the target covers all of it
+		projector.setViewport(-5, -5, WIDTH + 5, HEIGHT + 5);
+		projector.map();
+		assertTrue(projector.isComplete());
+	}
+
+	// -- Helper methods --
+
+	private SourceOptimizedCompositeXYProjector<UnsignedByteType, Img<UnsignedByteType>, ARGBScreenImage>
+		createProjector(final ARGBScreenImage target)
+	{
+		final Img<UnsignedByteType> img =
+			new ArrayImgFactory<UnsignedByteType>().create(new long[] { WIDTH,
+				HEIGHT, 1 }, new UnsignedByteType());
+		int i = 0;
+		for (final UnsignedByteType t : img) {
+			t.set(1 + i++ % 200);
+		}
+		final ArrayList<Converter<UnsignedByteType, ARGBType>> converters =
+			new ArrayList<Converter<UnsignedByteType, ARGBType>>();
+		converters.add(new RealLUTConverter<UnsignedByteType>(0, 255,
+			ColorTables.GRAYS));
+		return new SourceOptimizedCompositeXYProjector<UnsignedByteType, Img<UnsignedByteType>, ARGBScreenImage>(
+			img, target, converters, 2);
+	}
+
+	private void clear(final ARGBScreenImage target) {
+		final int[] pixels = target.getData();
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 0;
+		}
+	}
+
+	/** Checks that exactly the given rectangle of the target was rendered. */
+	private void assertRendered(final ARGBScreenImage target, final int minX,
+		final int minY, final int maxX, final int maxY)
+	{
+		final int[] pixels = target.getData();
+		for (int y = 0; y < HEIGHT; y++) {
+			for (int x = 0; x < WIDTH; x++) {
+				final boolean inside = x >= minX && x <= maxX && y >= minY && y <= maxY;
+				assertEquals("(" + x + ", " + y + ")", inside, pixels[y * WIDTH + x] != 0);
+			}
+		}
+	}
+
+}
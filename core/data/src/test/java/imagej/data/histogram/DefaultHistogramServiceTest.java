@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.histogram;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.measure.RegionStats;
+import imagej.data.measure.Stat;
+
+import java.lang.ref.WeakReference;
+
+import net.imglib2.Cursor;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultHistogramService}.
+ */
+public class DefaultHistogramServiceTest {
+
+	private static final long[] DIMENSIONS = { 5, 4, 2, 3 };
+
+	private final Context context = new Context(DatasetService.class,
+		HistogramService.class);
+
+	private final HistogramService histogramService = context
+		.getService(HistogramService.class);
+
+	@Test
+	public void testPlanes() {
+		final Dataset ds = createDataset(new PlanarImgFactory<UnsignedByteType>());
+		assertArrayEquals(new int[] { 0, 1, 2, 3, 4, 5 }, histogramService
+			.getPlanes(ds));
+		final long[] min = { 0, 0, 1, 0 };
+		final long[] max = { 0, 0, 1, 2 };
+		assertArrayEquals(new int[] { 1, 3, 5 }, histogramService.getPlanes(ds,
+			min, max));
+	}
+
+	@Test
+	public void testStats() {
+		final Dataset ds = createDataset(new PlanarImgFactory<UnsignedByteType>());
+		final RegionStats stats =
+			histogramService.getStats(ds, histogramService.getPlanes(ds));
+		assertEquals(120, stats.getSampleCount());
+		assertEquals(0, stats.get(Stat.MINIMUM), 0);
+		assertEquals(5 * 10 + 19, stats.get(Stat.MAXIMUM), 0);
+		final RegionStats plane3 =
+			histogramService.getStats(ds, new int[] { 3 });
+		assertEquals(30, plane3.get(Stat.MINIMUM), 0);
+		assertEquals(49, plane3.get(Stat.MAXIMUM), 0);
+	}
+
+	@Test
+	public void testHistogramMatchesCountedData() {
+		final Dataset planar =
+			createDataset(new PlanarImgFactory<UnsignedByteType>());
+		final Dataset cell = createDataset(new CellImgFactory<UnsignedByteType>());
+		for (final Dataset ds : new Dataset[] { planar, cell }) {
+			final Histogram1d<UnsignedByteType> expected = countAll(ds);
+			final Histogram1d<UnsignedByteType> actual =
+				histogramService.getHistogram(ds, histogramService.getPlanes(ds), 0,
+					100, 25);
+			assertCountsEqual(expected, actual);
+		}
+	}
+
+	@Test
+	public void testUpdatedPlaneIsRecounted() {
+		final Dataset ds = createDataset(new PlanarImgFactory<UnsignedByteType>());
+		final int[] planes = histogramService.getPlanes(ds);
+		// fill the caches
+		histogramService.getHistogram(ds, planes, 0, 100, 25);
+		histogramService.getStats(ds, planes);
+
+		final byte[] plane = new byte[20];
+		for (int i = 0; i < plane.length; i++) {
+			plane[i] = 99;
+		}
+		ds.setPlane(2, plane);
+
+		final Histogram1d<UnsignedByteType> actual =
+			histogramService.getHistogram(ds, planes, 0, 100, 25);
+		assertCountsEqual(countAll(ds), actual);
+		final RegionStats stats = histogramService.getStats(ds, new int[] { 2 });
+		assertEquals(99, stats.get(Stat.MINIMUM), 0);
+		assertEquals(99, stats.get(Stat.MAXIMUM), 0);
+	}
+
+	@Test
+	public void testDatasetsAreNotRetained() {
+		Dataset ds = createDataset(new PlanarImgFactory<UnsignedByteType>());
+		histogramService.getHistogram(ds, histogramService.getPlanes(ds), 0, 100,
+			25);
+		final WeakReference<Dataset> ref = new WeakReference<Dataset>(ds);
+		ds = null;
+		for (int i = 0; i < 50 && ref.get() != null; i++) {
+			System.gc();
+		}
+		assertNull(ref.get());
+	}
+
+	// -- Helper methods --
+
+	/** Creates a Dataset whose plane p holds the values 10p to 10p+19. */
+	private Dataset createDataset(final ImgFactory<UnsignedByteType> factory) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Img<UnsignedByteType> img =
+			factory.create(DIMENSIONS, new UnsignedByteType());
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		final long[] pos = new long[DIMENSIONS.length];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(pos);
+			final long p = pos[2] + DIMENSIONS[2] * pos[3];
+			cursor.get().set((int) (10 * p + pos[0] + DIMENSIONS[0] * pos[1]));
+		}
+		return datasetService.create(new ImgPlus<UnsignedByteType>(img));
+	}
+
+	@SuppressWarnings("unchecked")
+	private Histogram1d<UnsignedByteType> countAll(final Dataset ds) {
+		final Histogram1d<UnsignedByteType> hist =
+			histogramService.getHistogram(ds, new int[0], 0, 100, 25);
+		hist.countData((Img<UnsignedByteType>) ds.getImgPlus());
+		return hist;
+	}
+
+	private void assertCountsEqual(final Histogram1d<?> expected,
+		final Histogram1d<?> actual)
+	{
+		assertEquals(expected.getBinCount(), actual.getBinCount());
+		assertEquals(expected.distributionCount(), actual.distributionCount());
+		for (long b = 0; b < expected.getBinCount(); b++) {
+			assertEquals(expected.frequency(b), actual.frequency(b));
+		}
+	}
+
+}
@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.EnumSet;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.ops.condition.Condition;
+import net.imglib2.ops.pointset.ConditionalPointSet;
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultStatisticsService}, comparing the parallel
+ * accumulation with the serial one.
+ */
+public class DefaultStatisticsServiceTest {
+
+	private static final long[] DIMENSIONS = { 64, 48, 3 };
+
+	private final Context context = new Context(DatasetService.class,
+		StatisticsService.class);
+
+	private final DefaultStatisticsService statisticsService =
+		(DefaultStatisticsService) context.getService(StatisticsService.class);
+
+	private final Dataset dataset = createDataset();
+
+	@Test
+	public void testWholeImage() {
+		assertParallelMatchesSerial(statisticsService.allOf(dataset));
+	}
+
+	@Test
+	public void testHyperVolume() {
+		final PointSet region =
+			new HyperVolumePointSet(new long[] { 3, 5, 0 }, new long[] { 60, 40, 2 });
+		assertParallelMatchesSerial(region);
+	}
+
+	@Test
+	public void testConditionalRegion() {
+		final PointSet region =
+			new ConditionalPointSet(new HyperVolumePointSet(DIMENSIONS),
+				new Checkerboard());
+		assertParallelMatchesSerial(region);
+	}
+
+	@Test
+	public void testComputeAll() {
+		final EnumSet<Stat> stats = EnumSet.allOf(Stat.class);
+		final PointSet region =
+			new HyperVolumePointSet(new long[] { 1, 1, 1 }, new long[] { 10, 20, 2 });
+		final RegionStats result =
+			statisticsService.computeAll(dataset, region, stats);
+		final MomentAccumulator expected = new MomentAccumulator(stats);
+		final Cursor<UnsignedByteType> cursor = img().localizingCursor();
+		final long[] pos = new long[DIMENSIONS.length];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(pos);
+			if (region.includes(pos)) expected.accumulate(cursor.get().getRealDouble());
+		}
+		assertEquals(10 * 20 * 2, result.getSampleCount());
+		for (final Stat stat : stats) {
+			assertClose(stat, expected.get(stat), result.get(stat));
+		}
+	}
+
+	// -- Helper methods --
+
+	private void assertParallelMatchesSerial(final PointSet region) {
+		final EnumSet<Stat> stats = EnumSet.allOf(Stat.class);
+		final MomentAccumulator serial =
+			statisticsService.accumulate(dataset, region, stats, 1);
+		final MomentAccumulator parallel =
+			statisticsService.accumulate(dataset, region, stats, 4);
+		assertEquals(region.size(), serial.getSampleCount());
+		assertEquals(serial.getSampleCount(), parallel.getSampleCount());
+		for (final Stat stat : stats) {
+			assertClose(stat, serial.get(stat), parallel.get(stat));
+		}
+	}
+
+	private void assertClose(final Stat stat, final double expected,
+		final double actual)
+	{
+		final double tol = 1e-9 * Math.max(1, Math.abs(expected));
+		assertEquals(stat.toString(), expected, actual, tol);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Img<UnsignedByteType> img() {
+		return (Img<UnsignedByteType>) dataset.getImgPlus();
+	}
+
+	/** Creates a Dataset filled with (reproducible) values from 1 to 250. */
+	private Dataset createDataset() {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Img<UnsignedByteType> img =
+			new PlanarImgFactory<UnsignedByteType>().create(DIMENSIONS,
+				new UnsignedByteType());
+		final Random random = new Random(42);
+		for (final UnsignedByteType value : img) {
+			value.set(1 + random.nextInt(250));
+		}
+		return datasetService.create(new ImgPlus<UnsignedByteType>(img));
+	}
+
+	// -- Helper classes --
+
+	/** Includes every other point. */
+	private static class Checkerboard implements Condition<long[]> {
+
+		@Override
+		public boolean isTrue(final long[] point) {
+			long sum = 0;
+			for (final long p : point) {
+				sum += p;
+			}
+			return sum % 2 == 0;
+		}
+
+		@Override
+		public Checkerboard copy() {
+			return new Checkerboard();
+		}
+	}
+
+}
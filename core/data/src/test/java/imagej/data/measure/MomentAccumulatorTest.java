@@ -0,0 +1,168 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MomentAccumulator}.
+ */
+public class MomentAccumulatorTest {
+
+	private static final double[] DATA = { 4, 7, 13, 16, 1, 9, 2, 8, 25, 3 };
+
+	@Test
+	public void testSinglePass() {
+		final MomentAccumulator acc =
+			new MomentAccumulator(EnumSet.allOf(Stat.class));
+		for (final double v : DATA) {
+			acc.accumulate(v);
+		}
+		assertMatchesTwoPass(acc);
+	}
+
+	@Test
+	public void testMerge() {
+		final MomentAccumulator template =
+			new MomentAccumulator(EnumSet.allOf(Stat.class));
+		final MomentAccumulator a = template.create();
+		final MomentAccumulator b = template.create();
+		final MomentAccumulator c = template.create();
+		for (int i = 0; i < DATA.length; i++) {
+			if (i < 3) a.accumulate(DATA[i]);
+			else b.accumulate(DATA[i]);
+		}
+		// merging into an empty accumulator and merging an empty one are no-ops
+		c.merge(a);
+		c.merge(template.create());
+		c.merge(b);
+		assertMatchesTwoPass(c);
+	}
+
+	@Test
+	public void testEmpty() {
+		final MomentAccumulator acc =
+			new MomentAccumulator(EnumSet.allOf(Stat.class));
+		assertEquals(0, acc.getSampleCount());
+		assertEquals(0, acc.get(Stat.ARITHMETIC_MEAN), 0);
+		assertEquals(0, acc.get(Stat.SAMPLE_VARIANCE), 0);
+		assertEquals(0, acc.get(Stat.SUM), 0);
+	}
+
+	@Test
+	public void testRegionStats() {
+		final EnumSet<Stat> stats = EnumSet.of(Stat.MINIMUM, Stat.MAXIMUM);
+		final MomentAccumulator acc = new MomentAccumulator(stats);
+		for (final double v : DATA) {
+			acc.accumulate(v);
+		}
+		final RegionStats result = new RegionStats(acc, stats);
+		assertEquals(DATA.length, result.getSampleCount());
+		assertEquals(1, result.get(Stat.MINIMUM), 0);
+		assertEquals(25, result.get(Stat.MAXIMUM), 0);
+		assertEquals(false, result.has(Stat.SUM));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRegionStatsMissing() {
+		final EnumSet<Stat> stats = EnumSet.of(Stat.MINIMUM);
+		new RegionStats(new MomentAccumulator(stats), stats).get(Stat.SUM);
+	}
+
+	// -- Helper methods --
+
+	private void assertMatchesTwoPass(final MomentAccumulator acc) {
+		final int n = DATA.length;
+		double sum = 0, sumInv = 0, sumLog = 0, prod = 1;
+		for (final double v : DATA) {
+			sum += v;
+			sumInv += 1 / v;
+			sumLog += Math.log(v);
+			prod *= v;
+		}
+		final double mean = sum / n;
+		double m2 = 0, m3 = 0, m4 = 0;
+		for (final double v : DATA) {
+			final double dev = v - mean;
+			m2 += dev * dev;
+			m3 += dev * dev * dev;
+			m4 += dev * dev * dev * dev;
+		}
+		final double popVar = m2 / n;
+		final double popSkew = (m3 / n) / Math.pow(popVar, 1.5);
+		final double popKurt = (m4 / n) / (popVar * popVar);
+		final double tol = 1e-9;
+
+		assertEquals(n, acc.getSampleCount());
+		assertEquals(mean, acc.get(Stat.ARITHMETIC_MEAN), tol);
+		assertEquals(Math.exp(sumLog / n), acc.get(Stat.GEOMETRIC_MEAN), tol);
+		assertEquals(n / sumInv, acc.get(Stat.HARMONIC_MEAN), tol);
+		assertEquals(1, acc.get(Stat.MINIMUM), 0);
+		assertEquals(25, acc.get(Stat.MAXIMUM), 0);
+		assertEquals(13, acc.get(Stat.MIDPOINT), 0);
+		assertEquals(prod, acc.get(Stat.PRODUCT), tol);
+		assertEquals(sum, acc.get(Stat.SUM), tol);
+		assertEquals(m2, acc.get(Stat.SUM_OF_SQUARED_DEVIATIONS), tol);
+		assertEquals(popVar, acc.get(Stat.POPULATION_VARIANCE), tol);
+		assertEquals(m2 / (n - 1), acc.get(Stat.SAMPLE_VARIANCE), tol);
+		assertEquals(Math.sqrt(popVar), acc.get(Stat.POPULATION_STD_DEV), tol);
+		assertEquals(popSkew, acc.get(Stat.POPULATION_SKEW), tol);
+		assertEquals(popKurt, acc.get(Stat.POPULATION_KURTOSIS), tol);
+		assertEquals(popKurt - 3, acc.get(Stat.POPULATION_KURTOSIS_EXCESS), tol);
+
+		// the adjusted Fisher-Pearson coefficients, from the sample deviation
+		final double s = Math.sqrt(m2 / (n - 1));
+		double z3 = 0, z4 = 0;
+		for (final double v : DATA) {
+			final double z = (v - mean) / s;
+			z3 += z * z * z;
+			z4 += z * z * z * z;
+		}
+		final double sampleSkew = n * z3 / ((n - 1.0) * (n - 2.0));
+		final double sampleKurtExcess =
+			n * (n + 1.0) * z4 / ((n - 1.0) * (n - 2.0) * (n - 3.0)) - 3.0 *
+				(n - 1.0) * (n - 1.0) / ((n - 2.0) * (n - 3.0));
+		assertEquals(s, acc.get(Stat.SAMPLE_STD_DEV), tol);
+		assertEquals(sampleSkew, acc.get(Stat.SAMPLE_SKEW), tol);
+		assertEquals(sampleKurtExcess, acc.get(Stat.SAMPLE_KURTOSIS_EXCESS), tol);
+		assertEquals(sampleKurtExcess + 3, acc.get(Stat.SAMPLE_KURTOSIS), tol);
+	}
+
+}
@@ -116,6 +116,56 @@ public void testStructure() {
 		}
 	}
 
+	@Test
+	public void testHeaderLookups() {
+		final ResultsTable table = createTable();
+		for (int c = 0; c < HEADERS.length; c++) {
+			assertEquals(c, table.getColumnIndex(HEADERS[c]));
+		}
+		assertEquals(-1, table.getColumnIndex("ERA"));
+
+		// headers changed on the columns themselves are found too
+		table.get(1).setHeader("Years old");
+		assertEquals(1, table.getColumnIndex("Years old"));
+		assertEquals(-1, table.getColumnIndex("Age"));
+
+		for (int r = 0; r < table.getRowCount(); r++) {
+			table.setRowHeader(r, "Season " + (r + 1));
+		}
+		assertEquals(0, table.getRowIndex("Season 1"));
+		assertEquals(20, table.getRowIndex("Season 21"));
+		assertEquals(-1, table.getRowIndex("Season 22"));
+
+		table.setRowHeader(4, "Season 1");
+		assertEquals(0, table.getRowIndex("Season 1"));
+		assertEquals(-1, table.getRowIndex("Season 5"));
+		table.setRowHeader(0, null);
+		assertEquals(4, table.getRowIndex("Season 1"));
+	}
+
+	@Test
+	public void testRemoveRows() {
+		final ResultsTable table = createTable();
+		for (int r = 0; r < table.getRowCount(); r++) {
+			table.setRowHeader(r, "" + (int) DATA[r][0]);
+		}
+		table.removeRows(2, 3);
+		assertEquals(DATA.length - 3, table.getRowCount());
+		assertEquals(1, table.getRowIndex("1979"));
+		assertEquals(-1, table.getRowIndex("1980"));
+		assertEquals(2, table.getRowIndex("1983"));
+		for (int r = 2; r < table.getRowCount(); r++) {
+			for (int c = 0; c < HEADERS.length; c++) {
+				assertEquals(DATA[r + 3][c], table.getValue(c, r), 0);
+			}
+		}
+
+		table.removeRow("1998");
+		assertEquals(DATA.length - 4, table.getRowCount());
+		assertEquals(-1, table.getRowIndex("1998"));
+		assertEquals("1997", table.getRowHeader(table.getRowCount() - 1));
+	}
+
 	// TODO - Add more tests.
 
 }
@@ -0,0 +1,144 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.table;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TableLoader}.
+ */
+public class TableLoaderTest {
+
+	@Test
+	public void testHeaders() throws IOException {
+		final ResultsTable table =
+			load("Area,Mean\tLabel\n12,3.5,x\n\n-4, 1e3 ,y\n");
+		assertEquals(3, table.getColumnCount());
+		assertEquals(2, table.getRowCount());
+		assertEquals("Area", table.getColumnHeader(0));
+		assertEquals("Mean", table.getColumnHeader(1));
+		assertEquals("Label", table.getColumnHeader(2));
+		assertEquals(12, table.getValue(0, 0), 0);
+		assertEquals(3.5, table.getValue(1, 0), 0);
+		assertTrue(Double.isNaN(table.getValue(2, 0)));
+		assertEquals(-4, table.getValue(0, 1), 0);
+		assertEquals(1000, table.getValue(1, 1), 0);
+	}
+
+	@Test
+	public void testNoHeaders() throws IOException {
+		final StringBuilder sb = new StringBuilder();
+		for (int r = 0; r < 1000; r++) {
+			sb.append(r).append(' ').append(2 * r).append('\n');
+		}
+		final ResultsTable table = load(sb.toString());
+		assertEquals(2, table.getColumnCount());
+		assertEquals(1000, table.getRowCount());
+		assertNull(table.getColumnHeader(0));
+		assertEquals(999, table.getValue(0, 999), 0);
+		assertEquals(1998, table.getValue(1, 999), 0);
+	}
+
+	@Test
+	public void testMixedFirstLine() throws IOException {
+		final ResultsTable table = load("A 1\nB 2\n");
+		assertEquals(2, table.getRowCount());
+		assertNull(table.getColumnHeader(0));
+		assertNull(table.getColumnHeader(1));
+		assertEquals(1, table.getValue(1, 0), 0);
+	}
+
+	@Test
+	public void testColumnTypes() throws IOException {
+		final List<Column<?>> columns =
+			loadColumns("Id Mean Label Ok Big\n1 3.5 x true 5\n" +
+				"2 1e3 y false 9999999999\n3 2 7 true 1\n");
+		assertEquals(5, columns.size());
+		assertTrue(columns.get(0) instanceof IntColumn);
+		assertEquals("Id", columns.get(0).getHeader());
+		assertEquals(3, ((IntColumn) columns.get(0)).getValue(2));
+		assertTrue(columns.get(1) instanceof DoubleColumn);
+		assertEquals(1000, ((DoubleColumn) columns.get(1)).getValue(1), 0);
+		assertTrue(columns.get(2) instanceof StringColumn);
+		assertEquals("7", columns.get(2).get(2));
+		assertTrue(columns.get(3) instanceof BoolColumn);
+		assertTrue(((BoolColumn) columns.get(3)).getValue(0));
+		assertTrue(columns.get(4) instanceof LongColumn);
+		assertEquals(9999999999L, ((LongColumn) columns.get(4)).getValue(1));
+		assertEquals(5, ((LongColumn) columns.get(4)).getValue(0));
+	}
+
+	@Test
+	public void testColumnWidenedToText() throws IOException {
+		final List<Column<?>> columns = loadColumns("1 a\n2 b\nx c\n");
+		assertNull(columns.get(0).getHeader());
+		assertTrue(columns.get(0) instanceof StringColumn);
+		assertEquals("1", columns.get(0).get(0));
+		assertEquals("x", columns.get(0).get(2));
+	}
+
+	@Test
+	public void testEmpty() throws IOException {
+		assertNull(load("\n\n"));
+	}
+
+	@Test(expected = IOException.class)
+	public void testRaggedLines() throws IOException {
+		load("1,2,3\n4,5\n");
+	}
+
+	// -- Helper methods --
+
+	private ResultsTable load(final String text) throws IOException {
+		final InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+		return new TableLoader().valuesFromTextFile(in);
+	}
+
+	private List<Column<?>> loadColumns(final String text) throws IOException {
+		final InputStream in = new ByteArrayInputStream(text.getBytes("UTF-8"));
+		return new TableLoader().columnsFromTextFile(in);
+	}
+
+}
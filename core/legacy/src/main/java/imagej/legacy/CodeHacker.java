@@ -107,6 +107,7 @@ public class CodeHacker {
 	protected final ClassLoader classLoader;
 	private final Set<CtClass> handledClasses = new LinkedHashSet<CtClass>();
 	private boolean onlyLogExceptions;
+	private PatchedClassCache cache;
 
 	public CodeHacker(final ClassLoader classLoader, final ClassPool classPool) {
 		this.classLoader = classLoader;
@@ -786,10 +787,41 @@ public void loadClasses() {
 		while (iter.hasNext()) {
 			final CtClass classRef = iter.next();
 			if (!classRef.isFrozen() && classRef.isModified()) {
-				loadClass(classRef);
+				final Class<?> loaded = loadClass(classRef);
+				if (cache != null) cacheClass(classRef, loaded);
 			}
 			iter.remove();
 		}
+		if (cache != null) cache.commit();
+	}
+
+	/**
+	 * Sets the cache to which {@link #loadClasses()} writes the bytecode of the
+	 * patched classes, so later startups can skip patching altogether.
+	 */
+	void setCache(final PatchedClassCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Records the bytecode of a patched class in the cache, or forgets the whole
+	 * patch set if the class could not be loaded: a partial patch set must
+	 * never be cached.
+	 */
+	private void cacheClass(final CtClass classRef, final Class<?> loaded) {
+		if (loaded == null) {
+			cache.discard();
+			cache = null;
+			return;
+		}
+		try {
+			// NB - the class file is complete once toClass() has been called
+			cache.add(classRef.getName(), classRef.toBytecode());
+		}
+		catch (final Exception e) {
+			cache.discard();
+			cache = null;
+		}
 	}
 
 	/** Gets the Javassist class object corresponding to the given class name. */
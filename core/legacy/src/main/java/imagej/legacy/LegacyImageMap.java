@@ -36,11 +36,14 @@
 package imagej.legacy;
 
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.gui.ImageWindow;
 import ij.gui.Roi;
 import imagej.data.Dataset;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.overlay.Overlay;
 import imagej.display.event.DisplayDeletedEvent;
 import imagej.legacy.translate.DefaultImageTranslator;
@@ -52,12 +55,17 @@
 import imagej.ui.viewer.image.ImageDisplayViewer;
 
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.scijava.AbstractContextual;
@@ -121,6 +129,21 @@ public class LegacyImageMap extends AbstractContextual {
 	private Set<WeakReference<ImagePlus>> legacyModeImages =
 			new HashSet<WeakReference<ImagePlus>>();
 
+	/**
+	 * Table of the changes to each {@link ImageDisplay}'s active {@link Dataset}
+	 * since the display was last synchronized with its {@link ImagePlus}. A
+	 * display without an entry has never been synchronized.
+	 */
+	private final Map<ImageDisplay, SyncState> syncStates;
+
+	/**
+	 * The {@link ImagePlus} instances legacy ImageJ may have modified since they
+	 * were last synchronized with their {@link ImageDisplay}s, as reported by the
+	 * {@link ImagePlus} patches. Changes made without going through the patched
+	 * methods are caught by comparing against the {@link SyncState}.
+	 */
+	private final Set<ImagePlus> changedLegacyImages;
+
 	/**
 	 * The {@link ImageTranslator} to use when creating {@link ImagePlus} and
 	 * {@link ImageDisplay} objects corresponding to one another.
@@ -145,6 +168,10 @@ public LegacyImageMap(final DefaultLegacyService legacyService) {
 		this.legacyService = legacyService;
 		imagePlusTable = new ConcurrentHashMap<ImageDisplay, ImagePlus>();
 		displayTable = new ConcurrentHashMap<ImagePlus, ImageDisplay>();
+		syncStates = new HashMap<ImageDisplay, SyncState>();
+		changedLegacyImages =
+			Collections.synchronizedSet(Collections
+				.newSetFromMap(new WeakHashMap<ImagePlus, Boolean>()));
 		imageTranslator = new DefaultImageTranslator(legacyService);
 	}
 
@@ -304,8 +331,79 @@ public Collection<ImagePlus> getImagePlusInstances() {
 		return result;
 	}
 
+	/**
+	 * Gets the numbers of the planes of the given {@link ImageDisplay}'s active
+	 * {@link Dataset} whose sample values changed since the display was last
+	 * synchronized with its {@link ImagePlus}.
+	 * 
+	 * @return the changed plane numbers, an empty array if no pixels changed, or
+	 *         null if any plane may have changed
+	 * @see #markSynchronized(ImageDisplay)
+	 */
+	public int[] getChangedPlanes(final ImageDisplay display) {
+		final ImagePlus imp = lookupImagePlus(display);
+		if (imp == null || changedLegacyImages.contains(imp)) return null;
+		final Dataset ds = imageDisplayService.getActiveDataset(display);
+		synchronized (syncStates) {
+			final SyncState state = syncStates.get(display);
+			if (state == null || state.dataset != ds) return null;
+			if (state.isLegacyImageChanged(imp)) return null;
+			return state.getChangedPlanes();
+		}
+	}
+
+	/**
+	 * Returns true if legacy ImageJ may have modified the pixels of the given
+	 * {@link ImagePlus} since it was last synchronized with its
+	 * {@link ImageDisplay}: if one of the patched {@link ImagePlus} methods
+	 * reported a change, if its processor, stack or any of its plane arrays was
+	 * replaced, or if it is flagged as changed and its pixels differ from those
+	 * at synchronization.
+	 */
+	public boolean isLegacyImageChanged(final ImagePlus imp) {
+		if (changedLegacyImages.contains(imp)) return true;
+		final ImageDisplay display = lookupDisplay(imp);
+		if (display == null) return true;
+		synchronized (syncStates) {
+			final SyncState state = syncStates.get(display);
+			return state == null || state.isLegacyImageChanged(imp);
+		}
+	}
+
+	/**
+	 * Records that legacy ImageJ may have modified the pixels of the given
+	 * {@link ImagePlus}. Called from the {@link ImagePlus} patches.
+	 */
+	public void legacyImageChanged(final ImagePlus imp) {
+		if (imp == null) return;
+		changedLegacyImages.add(imp);
+	}
+
+	/**
+	 * Records that the given {@link ImageDisplay} and its {@link ImagePlus} have
+	 * just been synchronized, so that only later changes need harmonizing.
+	 */
+	public void markSynchronized(final ImageDisplay display) {
+		final ImagePlus imp = lookupImagePlus(display);
+		if (imp != null) changedLegacyImages.remove(imp);
+		final Dataset ds = imageDisplayService.getActiveDataset(display);
+		synchronized (syncStates) {
+			if (ds == null || imp == null) syncStates.remove(display);
+			else syncStates.put(display, new SyncState(ds, imp));
+		}
+	}
+
 	// -- Helper methods --
 
+	/** Records changed planes against every display showing the Dataset. */
+	private void datasetChanged(final Dataset ds, final int[] planeNumbers) {
+		synchronized (syncStates) {
+			for (final SyncState state : syncStates.values()) {
+				if (state.dataset == ds) state.planesChanged(planeNumbers);
+			}
+		}
+	}
+
 	private void addMapping(final ImageDisplay display, final ImagePlus imp) {
 		// System.out.println("CREATE MAPPING "+display+" to "+imp+
 		// " isComposite()="+imp.isComposite());
@@ -334,9 +432,13 @@ private void removeMapping(final ImageDisplay display, final ImagePlus imp) {
 
 		if (display != null) {
 			imagePlusTable.remove(display);
+			synchronized (syncStates) {
+				syncStates.remove(display);
+			}
 		}
 		if (imp != null) {
 			displayTable.remove(imp);
+			changedLegacyImages.remove(imp);
 			LegacyUtils.deleteImagePlus(imp);
 		}
 	}
@@ -371,4 +473,129 @@ protected void onEvent(final DisplayDeletedEvent event) {
 		}
 	}
 
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (event.isMetaDataOnly()) return;
+		datasetChanged(event.getObject(), event.getPlaneNumbers());
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		datasetChanged(event.getObject(), null);
+	}
+
+	// -- Helper classes --
+
+	/**
+	 * The planes of a {@link Dataset} changed since its display was last
+	 * synchronized, plus what its {@link ImagePlus} looked like at that time.
+	 */
+	private static class SyncState {
+
+		private final Dataset dataset;
+		private final BitSet changedPlanes = new BitSet();
+		private boolean allChanged;
+
+		// NB - legacy ImageJ code often replaces planes wholesale (e.g.,
+		// ImageStack.setPixels) without telling anyone, so we remember the
+		// identity of every plane array to detect such changes later.
+		private final WeakReference<ImagePlus> imp;
+		private final Object processor;
+		private final Object stack;
+		private final Object[] planeArrays;
+		private final boolean changes;
+
+		// NB - the changes flag stays set until the image is saved or reverted,
+		// so later edits of an already changed image only show in its pixels.
+		private final int[] planeSums;
+
+		public SyncState(final Dataset dataset, final ImagePlus imp) {
+			this.dataset = dataset;
+			this.imp = new WeakReference<ImagePlus>(imp);
+			processor = imp.getProcessor();
+			stack = imp.getStackSize() > 1 ? imp.getStack() : null;
+			planeArrays = getPlanes(imp);
+			changes = imp.changes;
+			planeSums = changes ? checksums(planeArrays) : null;
+		}
+
+		public boolean isLegacyImageChanged(final ImagePlus image) {
+			if (imp.get() != image) return true;
+			if (image.changes && !changes) return true;
+			if (image.getProcessor() != processor) return true;
+			if (image.getStackSize() > 1 && image.getStack() != stack) return true;
+			final Object[] current = getPlanes(image);
+			if (current.length != planeArrays.length) return true;
+			for (int i = 0; i < planeArrays.length; i++) {
+				if (current[i] != planeArrays[i]) return true;
+			}
+			if (image.changes) {
+				// planes of a virtual stack cannot be compared without loading them
+				if (current.length == 0) return true;
+				for (int i = 0; i < current.length; i++) {
+					if (checksum(current[i]) != planeSums[i]) return true;
+				}
+			}
+			return false;
+		}
+
+		public void planesChanged(final int[] planeNumbers) {
+			if (planeNumbers == null) allChanged = true;
+			else {
+				for (final int planeNum : planeNumbers) {
+					if (planeNum >= 0) changedPlanes.set(planeNum);
+				}
+			}
+		}
+
+		public int[] getChangedPlanes() {
+			if (allChanged) return null;
+			final int[] planes = new int[changedPlanes.cardinality()];
+			int i = 0;
+			for (int p = changedPlanes.nextSetBit(0); p >= 0; p =
+				changedPlanes.nextSetBit(p + 1))
+			{
+				planes[i++] = p;
+			}
+			return planes;
+		}
+
+		/**
+		 * Gets the plane arrays of the given {@link ImagePlus}, without loading
+		 * the planes of a virtual stack.
+		 */
+		private static Object[] getPlanes(final ImagePlus image) {
+			if (image.getStackSize() == 1) {
+				final Object pixels =
+					image.getProcessor() == null ? null : image.getProcessor()
+						.getPixels();
+				return new Object[] { pixels };
+			}
+			final ImageStack imageStack = image.getStack();
+			if (imageStack.isVirtual()) return new Object[0];
+			final Object[] pixels = new Object[imageStack.getSize()];
+			for (int i = 0; i < pixels.length; i++) {
+				pixels[i] = imageStack.getPixels(i + 1);
+			}
+			return pixels;
+		}
+
+		private static int[] checksums(final Object[] planes) {
+			final int[] sums = new int[planes.length];
+			for (int i = 0; i < planes.length; i++) {
+				sums[i] = checksum(planes[i]);
+			}
+			return sums;
+		}
+
+		/** Computes a hash of the contents of a legacy ImageJ plane array. */
+		private static int checksum(final Object plane) {
+			if (plane instanceof byte[]) return Arrays.hashCode((byte[]) plane);
+			if (plane instanceof short[]) return Arrays.hashCode((short[]) plane);
+			if (plane instanceof float[]) return Arrays.hashCode((float[]) plane);
+			if (plane instanceof int[]) return Arrays.hashCode((int[]) plane);
+			return 0;
+		}
+	}
+
 }
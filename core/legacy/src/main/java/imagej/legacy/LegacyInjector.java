@@ -50,10 +50,28 @@
  */
 public class LegacyInjector {
 	private CodeHacker hacker;
+	private ClassLoader classLoader;
 
-	/** Overrides class behavior of ImageJ1 classes by injecting method hooks. */
+	/**
+	 * Overrides class behavior of ImageJ1 classes by injecting method hooks.
+	 * The patched classes are cached on disk, so that subsequent startups can
+	 * define them directly without running Javassist.
+	 */
 	public void injectHooks(final ClassLoader classLoader) {
+		this.classLoader = classLoader;
+		final PatchedClassCache cache =
+			PatchedClassCache.forClassLoader(classLoader);
+		if (cache != null && cache.defineClasses(classLoader)) {
+			try {
+				LegacyJavaAgent.stop();
+			} catch (Throwable t) {
+				// ignore
+			}
+			setLegacyService(new DummyLegacyService());
+			return;
+		}
 		hacker = new CodeHacker(classLoader);
+		hacker.setCache(cache);
 		injectHooks(hacker);
 	}
 
@@ -105,6 +123,10 @@ protected void injectHooks(final CodeHacker hacker) {
 		// override behavior of ij.ImagePlus
 		hacker.insertAtBottomOfMethod("ij.ImagePlus", "public void updateAndDraw()");
 		hacker.insertAtBottomOfMethod("ij.ImagePlus", "public void repaintWindow()");
+		hacker.insertAtBottomOfMethod("ij.ImagePlus",
+			"public void setProcessor(java.lang.String title, ij.process.ImageProcessor ip)");
+		hacker.insertAtBottomOfMethod("ij.ImagePlus",
+			"public void setStack(java.lang.String title, ij.ImageStack newStack)");
 		hacker.insertAtBottomOfMethod("ij.ImagePlus",
 			"public void show(java.lang.String statusMessage)");
 		hacker.insertAtBottomOfMethod("ij.ImagePlus", "public void hide()");
@@ -172,7 +194,9 @@ void setLegacyService(final LegacyService legacyService) {
 		}
 
 		try {
-			final Class<?> ij = hacker.classLoader.loadClass("ij.IJ");
+			final ClassLoader loader =
+				classLoader != null ? classLoader : hacker.classLoader;
+			final Class<?> ij = loader.loadClass("ij.IJ");
 			Field field = ij.getDeclaredField("_legacyService");
 			field.setAccessible(true);
 			field.set(null, legacyService);
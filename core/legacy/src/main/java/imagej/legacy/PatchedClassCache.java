@@ -0,0 +1,451 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy;
+
+import java.awt.GraphicsEnvironment;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLDecoder;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javassist.ClassPool;
+
+import org.scijava.util.ClassUtils;
+
+/**
+ * An on-disk cache of the ImageJ 1.x classes patched by the
+ * {@link CodeHacker}.
+ * <p>
+ * The cache is keyed by the checksums of <i>ij.jar</i> and of the
+ * <i>ij-legacy</i> jar (which holds the patches), plus the bits of the
+ * environment that the patches depend on. When the key matches, the patched
+ * classes are defined straight from the cached bytecode instead of being
+ * parsed and recompiled with Javassist.
+ * </p>
+ * <p>
+ * The index of each cache entry records the size and SHA-1 digest of every
+ * class file, and all of them are checked before any class is defined. A
+ * damaged entry is deleted, and the classes are patched from scratch instead.
+ * Entries that have not been used for {@link #MAX_AGE_DAYS} days are pruned
+ * whenever a new one is written.
+ * </p>
+ * <p>
+ * The cache directory defaults to <i>$HOME/.imagej/legacy-cache/</i>; it can
+ * be changed with the <code>imagej.legacy.cache</code> system property, and
+ * setting that property to <code>none</code> disables the cache.
+ * </p>
+ */
+class PatchedClassCache {
+
+	private static final String CACHE_PROPERTY = "imagej.legacy.cache";
+	private static final String INDEX_FILE = "classes.lst";
+	private static final String UTF8 = "UTF-8";
+	private static final String TMP_INFIX = ".tmp-";
+
+	/** How long an unused cache entry is kept around. */
+	static final int MAX_AGE_DAYS = 30;
+
+	private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+	private final File directory;
+	private final String key;
+	private final Map<String, byte[]> pending =
+		new LinkedHashMap<String, byte[]>();
+
+	// -- Constructor --
+
+	PatchedClassCache(final File cacheRoot, final String key) {
+		this.directory = new File(cacheRoot, key);
+		this.key = key;
+	}
+
+	// -- PatchedClassCache methods --
+
+	/**
+	 * Creates the cache for the ImageJ 1.x classes visible to the given class
+	 * loader, or returns null if caching is disabled or the classes' origin
+	 * cannot be fingerprinted (e.g. when running from class directories).
+	 */
+	public static PatchedClassCache forClassLoader(final ClassLoader loader) {
+		final File cacheRoot = getCacheRoot();
+		if (cacheRoot == null) return null;
+		final File ijJar = getJar(loader.getResource("ij/IJ.class"));
+		final File legacyJar = getJar(ClassUtils.getLocation(CodeHacker.class));
+		if (ijJar == null || legacyJar == null) return null;
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			update(digest, ijJar);
+			update(digest, legacyJar);
+			// the patches differ depending on these
+			update(digest, String.valueOf(ClassUtils.getLocation(ClassPool.class)));
+			update(digest, String.valueOf(GraphicsEnvironment.isHeadless()));
+			update(digest, String.valueOf(ClassUtils
+				.hasClass("com.apple.eawt.ApplicationListener")));
+			update(digest, System.getenv("IJ_PREFS_DIR"));
+			update(digest, System.getenv("user.home"));
+			update(digest, System.getProperty("os.name"));
+			return new PatchedClassCache(cacheRoot, toHex(digest.digest()));
+		}
+		catch (final NoSuchAlgorithmException e) {
+			return null;
+		}
+		catch (final IOException e) {
+			return null;
+		}
+	}
+
+	/** Gets the key identifying this cache's patch set. */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * Defines the cached classes in the given class loader, in the order they
+	 * were originally loaded.
+	 * 
+	 * @return false if there are no usable cached classes for this key, in which
+	 *         case the classes need to be patched from scratch
+	 */
+	public boolean defineClasses(final ClassLoader loader) {
+		final Map<String, byte[]> classes = readClasses();
+		if (classes == null) return false;
+		for (final String name : classes.keySet()) {
+			// NB - defining a class twice fails; leave it to the CodeHacker to
+			// complain about classes loaded before the patches were applied
+			if (isLoaded(loader, name)) return false;
+		}
+		String name = null;
+		try {
+			for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				name = entry.getKey();
+				defineClass(loader, name, entry.getValue());
+			}
+		}
+		catch (final LinkageError e) {
+			// NB - any classes defined so far stay defined; the CodeHacker warns
+			// about them, but patches the rest normally
+			System.err.println("Warning: invalid cached class " + name + " in " +
+				directory + ": " + e);
+			delete(directory);
+			return false;
+		}
+		catch (final RuntimeException e) {
+			System.err.println("Warning: cannot define cached class " + name + ": " +
+				e.getMessage());
+			return false;
+		}
+		// mark the entry as recently used, so it is not pruned
+		directory.setLastModified(System.currentTimeMillis());
+		return true;
+	}
+
+	/** Records the bytecode of a patched class, to be written by {@link #commit()}. */
+	public void add(final String className, final byte[] bytecode) {
+		pending.put(className, bytecode);
+	}
+
+	/** Forgets the classes recorded so far, e.g. because patching failed. */
+	public void discard() {
+		pending.clear();
+	}
+
+	/**
+	 * Writes the recorded classes to disk. The cache entry appears atomically:
+	 * the files are written to a temporary directory which is then renamed.
+	 */
+	public void commit() {
+		if (pending.isEmpty() || directory.isDirectory()) return;
+		final File parent = directory.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) return;
+		final File tmp = new File(parent, key + TMP_INFIX + System.nanoTime());
+		try {
+			if (!tmp.mkdir()) return;
+			final Writer index =
+				new OutputStreamWriter(new FileOutputStream(new File(tmp, INDEX_FILE)),
+					UTF8);
+			try {
+				for (final Map.Entry<String, byte[]> entry : pending.entrySet()) {
+					final OutputStream out =
+						new FileOutputStream(new File(tmp, entry.getKey() + ".class"));
+					try {
+						out.write(entry.getValue());
+					}
+					finally {
+						out.close();
+					}
+					index.write(entry.getKey() + "\t" + entry.getValue().length + "\t" +
+						sha1(entry.getValue()) + "\n");
+				}
+			}
+			finally {
+				index.close();
+			}
+			// NB - another process may have won the race; that is fine
+			if (!tmp.renameTo(directory)) delete(tmp);
+			prune(parent);
+		}
+		catch (final IOException e) {
+			System.err.println("Warning: could not cache patched classes in " +
+				directory);
+			delete(tmp);
+		}
+		finally {
+			pending.clear();
+		}
+	}
+
+	// -- Helper methods --
+
+	private static File getCacheRoot() {
+		final String property = System.getProperty(CACHE_PROPERTY);
+		if ("none".equals(property)) return null;
+		if (property != null) return new File(property);
+		final String userHome = System.getProperty("user.home");
+		if (userHome == null) return null;
+		return new File(new File(userHome, ".imagej"), "legacy-cache");
+	}
+
+	/** Returns the local .jar file a URL points into, or null. */
+	private static File getJar(final URL url) {
+		if (url == null) return null;
+		String path = url.toString();
+		if (path.startsWith("jar:")) {
+			final int bang = path.indexOf("!/");
+			if (bang < 0) return null;
+			path = path.substring(4, bang);
+		}
+		if (!path.startsWith("file:") || !path.endsWith(".jar")) return null;
+		try {
+			final File file = new File(URLDecoder.decode(path.substring(5), UTF8));
+			return file.isFile() ? file : null;
+		}
+		catch (final UnsupportedEncodingException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the cached classes, or returns null if there are none. If any class
+	 * file is missing, truncated or otherwise does not match the index, the
+	 * whole entry is deleted and null is returned.
+	 */
+	private Map<String, byte[]> readClasses() {
+		final File indexFile = new File(directory, INDEX_FILE);
+		if (!indexFile.isFile()) return null;
+		try {
+			final List<String> lines = new ArrayList<String>();
+			final BufferedReader reader =
+				new BufferedReader(new InputStreamReader(
+					new FileInputStream(indexFile), UTF8));
+			try {
+				for (;;) {
+					final String line = reader.readLine();
+					if (line == null) break;
+					if (line.length() > 0) lines.add(line);
+				}
+			}
+			finally {
+				reader.close();
+			}
+			final Map<String, byte[]> classes = new LinkedHashMap<String, byte[]>();
+			for (final String line : lines) {
+				final String[] fields = line.split("\t");
+				if (fields.length != 3) throw new IOException("Invalid index: " + line);
+				final File file = new File(directory, fields[0] + ".class");
+				if (file.length() != Long.parseLong(fields[1])) {
+					throw new IOException("Wrong size: " + file);
+				}
+				final byte[] bytecode = readFile(file);
+				if (!sha1(bytecode).equals(fields[2])) {
+					throw new IOException("Wrong checksum: " + file);
+				}
+				classes.put(fields[0], bytecode);
+			}
+			return classes;
+		}
+		catch (final IOException e) {
+			System.err.println("Warning: invalid patched class cache " + directory +
+				": " + e.getMessage());
+			delete(directory);
+			return null;
+		}
+		catch (final NumberFormatException e) {
+			System.err.println("Warning: invalid patched class cache " + directory);
+			delete(directory);
+			return null;
+		}
+	}
+
+	/** Returns true if the given class loader already defined the class. */
+	private static boolean isLoaded(final ClassLoader loader, final String name)
+	{
+		try {
+			final Method find =
+				ClassLoader.class.getDeclaredMethod("findLoadedClass", String.class);
+			find.setAccessible(true);
+			return find.invoke(loader, name) != null;
+		}
+		catch (final Exception e) {
+			return false;
+		}
+	}
+
+	private static void defineClass(final ClassLoader loader,
+		final String name, final byte[] bytecode)
+	{
+		try {
+			final Method define =
+				ClassLoader.class.getDeclaredMethod("defineClass", String.class,
+					byte[].class, int.class, int.class);
+			define.setAccessible(true);
+			define.invoke(loader, name, bytecode, 0, bytecode.length);
+		}
+		catch (final InvocationTargetException e) {
+			if (e.getCause() instanceof LinkageError) {
+				throw (LinkageError) e.getCause();
+			}
+			throw new RuntimeException("Cannot define cached class: " + name, e
+				.getCause());
+		}
+		catch (final Exception e) {
+			throw new RuntimeException("Cannot define cached class: " + name, e);
+		}
+	}
+
+	/**
+	 * Deletes the cache entries in the given directory which have not been used
+	 * for {@link #MAX_AGE_DAYS} days, as well as temporary directories left
+	 * behind by crashed writers.
+	 */
+	private static void prune(final File cacheRoot) {
+		final File[] list = cacheRoot.listFiles();
+		if (list == null) return;
+		final long now = System.currentTimeMillis();
+		for (final File file : list) {
+			if (!file.isDirectory()) continue;
+			final long age = now - file.lastModified();
+			final boolean tmp = file.getName().contains(TMP_INFIX);
+			if (age > (tmp ? DAY_MILLIS : MAX_AGE_DAYS * DAY_MILLIS)) delete(file);
+		}
+	}
+
+	private static String sha1(final byte[] bytes) {
+		try {
+			return toHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static byte[] readFile(final File file) throws IOException {
+		final InputStream in = new FileInputStream(file);
+		try {
+			final ByteArrayOutputStream out =
+				new ByteArrayOutputStream((int) file.length());
+			final byte[] buffer = new byte[65536];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void update(final MessageDigest digest, final File file)
+		throws IOException
+	{
+		final InputStream in = new FileInputStream(file);
+		try {
+			final byte[] buffer = new byte[65536];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				digest.update(buffer, 0, count);
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void update(final MessageDigest digest, final String value)
+		throws IOException
+	{
+		digest.update(String.valueOf(value).getBytes(UTF8));
+		digest.update((byte) 0);
+	}
+
+	private static String toHex(final byte[] bytes) {
+		final StringBuilder builder = new StringBuilder();
+		for (final byte b : bytes) {
+			builder.append(String.format("%02x", b & 0xff));
+		}
+		return builder.toString();
+	}
+
+	private static void delete(final File directory) {
+		final File[] list = directory.listFiles();
+		if (list != null) {
+			for (final File file : list)
+				file.delete();
+		}
+		directory.delete();
+	}
+
+}
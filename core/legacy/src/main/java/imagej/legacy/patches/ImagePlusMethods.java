@@ -36,7 +36,9 @@
 package imagej.legacy.patches;
 
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.WindowManager;
+import ij.process.ImageProcessor;
 import imagej.data.display.ImageDisplay;
 import imagej.legacy.LegacyOutputTracker;
 import imagej.legacy.LegacyService;
@@ -57,6 +59,7 @@ private ImagePlusMethods() {
 	/** Appends {@link ImagePlus#updateAndDraw()}. */
 	public static void updateAndDraw(final LegacyService legacyService, final ImagePlus obj) {
 		if (obj == null) return;
+		imageChanged(legacyService, obj);
 		if (!obj.isProcessor()) return;
 		if (obj.getWindow() == null) return;
 		if (!legacyService.isLegacyMode()) {
@@ -75,6 +78,7 @@ public static void updateAndDraw(final LegacyService legacyService, final ImageP
 	/** Appends {@link ImagePlus#repaintWindow()}. */
 	public static void repaintWindow(final LegacyService legacyService, final ImagePlus obj) {
 		if (obj == null) return;
+		imageChanged(legacyService, obj);
 		if (obj.getWindow() == null) return;
 		if (!legacyService.isLegacyMode()) {
 			if (!Utils.isLegacyThread(Thread.currentThread())) return;
@@ -89,6 +93,24 @@ public static void repaintWindow(final LegacyService legacyService, final ImageP
 		//WindowManager.setCurrentWindow(obj.getWindow());
 	}
 
+	/** Appends {@link ImagePlus#setProcessor(String, ImageProcessor)}. */
+	public static void setProcessor(final LegacyService legacyService,
+		final ImagePlus obj, @SuppressWarnings("unused") final String title,
+		@SuppressWarnings("unused") final ImageProcessor ip)
+	{
+		if (obj == null) return;
+		imageChanged(legacyService, obj);
+	}
+
+	/** Appends {@link ImagePlus#setStack(String, ImageStack)}. */
+	public static void setStack(final LegacyService legacyService,
+		final ImagePlus obj, @SuppressWarnings("unused") final String title,
+		@SuppressWarnings("unused") final ImageStack newStack)
+	{
+		if (obj == null) return;
+		imageChanged(legacyService, obj);
+	}
+
 	/** Appends {@link ImagePlus#show(String message)}. */
 	public static void show(final LegacyService legacyService, final ImagePlus obj,
 		@SuppressWarnings("unused") final String message)
@@ -138,4 +160,21 @@ public static void close(final LegacyService legacyService, final ImagePlus obj)
 		if (!legacyService.isLegacyMode() && !Utils.isLegacyThread(Thread.currentThread())) return;
 		LegacyOutputTracker.addClosed(obj);
 	}
+
+	// -- Helper methods --
+
+	/**
+	 * Marks the pixels of the given {@link ImagePlus} as possibly modified, so
+	 * that the next harmonization translates them. This happens before any
+	 * window or thread checks: batch mode images have no window either.
+	 */
+	private static void imageChanged(final LegacyService legacyService,
+		final ImagePlus obj)
+	{
+		try {
+			legacyService.getImageMap().legacyImageChanged(obj);
+		} catch (UnsupportedOperationException e) {
+			// ignore: the dummy legacy service does not have an image map
+		}
+	}
 }
@@ -75,6 +75,12 @@ public class LegacyCommand implements Command {
 
 	private static final String THREAD_NAME = "IJ1 legacy thread";
 
+	/**
+	 * How long to wait for a single plugin thread to die before checking
+	 * whether it has since become one of the threads we ignore.
+	 */
+	private static final long RECHECK_MILLIS = 200;
+
 	@Parameter
 	private String className;
 
@@ -198,20 +204,21 @@ public void run() {
 			
 			// set ImageJ1's colors
 			legacyService.syncColors();
+
+			// NB - an interrupt must not cut harmonization short: the parallel
+			// harmonizers refuse to start on an interrupted thread and would leave
+			// datasets half translated. So we hold any interrupt until the end.
+			boolean interrupted = false;
 			
 			try {
 				// execute the legacy plugin
 				IJ.runPlugIn(className, arg);
 
-				// we always sleep at least once to make sure plugin has time to hatch
-				// it's first thread if its going to create any.
-				try {
-					Thread.sleep(50);
-				}
-				catch (final InterruptedException e) {/**/}
-
-				// wait for any threads hatched by plugin to terminate
-				waitForPluginThreads();
+				// wait for any threads hatched by plugin to terminate. NB - no need to
+				// give the plugin time to hatch them: Thread.start() adds a thread to
+				// its group before returning.
+				interrupted = Thread.interrupted();
+				interrupted |= waitForPluginThreads();
 
 				// sync modern displays to match existing legacy images
 				outputs = updateDisplaysFromImagePluses();
@@ -234,6 +241,7 @@ public void run() {
 				final String msg = "ImageJ 1.x plugin threw exception";
 				log.error(msg, e);
 				notifyUser(msg);
+				interrupted |= Thread.interrupted();
 				// make sure our ImagePluses are in sync with original Datasets
 				updateImagePlusesFromDisplays();
 				// return no outputs
@@ -247,31 +255,51 @@ public void run() {
 			}
 			
 			rtHarmonizer.setModernImageJResultsTable();
+
+			if (interrupted) Thread.currentThread().interrupt();
 		}
 
-		private void waitForPluginThreads() {
+		/**
+		 * Waits until every non-whitelisted thread of this command's group has
+		 * terminated. Keeps waiting when interrupted, since the plugin threads may
+		 * still be changing images; returns whether an interrupt was received so
+		 * the caller can restore it once it is safe to do so.
+		 */
+		private boolean waitForPluginThreads() {
 //			log.debug("LegacyCommand: begin waitForPluginThreads()");
+			boolean interrupted = false;
 			while (true) {
-				boolean allDead = true;
-				final List<Thread> currentThreads = getCurrentThreads();
-				for (final Thread thread : currentThreads) {
-					if (thread == Thread.currentThread()) continue;
-					// Ignore some threads that IJ1 hatches that never terminate
-					if (whitelisted(thread)) continue;
-					if (thread.isAlive()) {
-						// System.out.println(thread.getName() + " thread is alive");
-						// reportThreadInfo(thread, currentThreads, threadsToIgnore);
-						allDead = false;
-						break;
-					}
-				}
-				if (allDead) break;
+				final Thread thread = findLiveThread();
+				if (thread == null) break;
+				// NB - join() returns as soon as the thread dies, rather than on the
+				// next tick of a polling loop. The timeout only bounds how long we go
+				// without noticing that a thread has become whitelisted.
 				try {
-					Thread.sleep(200);
+					thread.join(RECHECK_MILLIS);
+				}
+				catch (final InterruptedException e) {
+					interrupted = true;
 				}
-				catch (final Exception e) {/**/}
 			}
 //			log.debug("LegacyCommand: end waitForPluginThreads()");
+			return interrupted;
+		}
+
+		/**
+		 * Returns a live thread of this command's group that we need to wait for,
+		 * or null if there is none.
+		 */
+		private Thread findLiveThread() {
+			for (final Thread thread : getCurrentThreads()) {
+				if (thread == Thread.currentThread()) continue;
+				// Ignore some threads that IJ1 hatches that never terminate
+				if (whitelisted(thread)) continue;
+				if (thread.isAlive()) {
+					// System.out.println(thread.getName() + " thread is alive");
+					return thread;
+				}
+			}
+			return null;
 		}
 
 		private List<Thread> getCurrentThreads() {
@@ -283,7 +311,8 @@ private List<Thread> getCurrentThreads() {
 				numThreads = group.enumerate(threads);
 				size *= 2;
 			}
-			while (numThreads > threads.length);
+			// NB - enumerate() silently drops threads that do not fit
+			while (numThreads == threads.length);
 			final List<Thread> threadList = new LinkedList<Thread>();
 			for (int i = 0; i < numThreads; i++)
 				threadList.add(threads[i]);
@@ -337,8 +366,9 @@ private boolean whitelisted(final Thread thread) {
 		// rather than having harmonization or something else fail.
 
 		private void updateImagePlusesFromDisplays() {
-			// TODO - track events and keep a dirty bit, then only harmonize those
-			// displays that have changed. See ticket #546.
+			// NB - the image map tracks which planes changed on either side since
+			// the last synchronization, so only those pixels get translated. See
+			// ticket #546.
 			final List<ImageDisplay> imageDisplays =
 				imageDisplayService.getImageDisplays();
 			for (final ImageDisplay display : imageDisplays) {
@@ -353,8 +383,10 @@ private void updateImagePlusesFromDisplays() {
 					// NB - it is possible a runtime exception in an IJ1 plugin left the
 					// ImagePlus in a locked state. Make sure its unlocked going forward.
 					imp.unlock();
-					harmonizer.updateLegacyImage(display, imp);
+					harmonizer.updateLegacyImage(display, imp, map
+						.getChangedPlanes(display));
 				}
+				map.markSynchronized(display);
 				harmonizer.registerType(imp);
 			}
 		}
@@ -375,12 +407,14 @@ private List<ImageDisplay> updateDisplaysFromImagePluses() {
 			if (currImp != null) {
 				ImageDisplay display = map.lookupDisplay(currImp);
 				if (display != null) {
-					harmonizer.updateDisplay(display, currImp);
+					harmonizer.updateDisplay(display, currImp, map
+						.isLegacyImageChanged(currImp));
 				}
 				else {
 					display = map.registerLegacyImage(currImp);
 					displays.add(display);
 				}
+				if (display != null) map.markSynchronized(display);
 			}
 
 			// also harmonize any outputs
@@ -405,6 +439,7 @@ private List<ImageDisplay> updateDisplaysFromImagePluses() {
 						}
 						else harmonizer.updateDisplay(display, imp);
 					}
+					map.markSynchronized(display);
 					displays.add(display);
 				}
 			}
@@ -46,6 +46,7 @@
 
 import org.scijava.AbstractContextual;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Creates {@link ImageDisplay}s from {@link ImagePlus}es containing color data.
@@ -75,6 +76,9 @@ public class ColorDisplayCreator extends AbstractContextual implements
 	@Parameter
 	private DatasetService datasetService;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// NB - OverlayHarmonizer required because IJ1 plugins can hatch displays
 	// while avoiding the Harmonizer. Not required in the Display->ImagePlus
 	// direction as Harmonizer always catches that case.
@@ -83,7 +87,7 @@ public class ColorDisplayCreator extends AbstractContextual implements
 
 	public ColorDisplayCreator(final LegacyService legacyService) {
 		setContext(legacyService.getContext());
-		pixelHarmonizer = new ColorPixelHarmonizer();
+		pixelHarmonizer = new ColorPixelHarmonizer(threadService);
 		colorTableHarmonizer = new ColorTableHarmonizer(imageDisplayService);
 		metadataHarmonizer = new MetadataHarmonizer();
 		compositeHarmonizer = new CompositeHarmonizer();
@@ -39,13 +39,21 @@
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
-import net.imglib2.RandomAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.meta.Axes;
-import net.imglib2.type.numeric.RealType;
+
+import org.scijava.thread.ThreadService;
 
 /**
  * Supports bidirectional synchronization between color {@link ImagePlus}es and
  * merged {@link Dataset}s.
+ * <p>
+ * Data is translated a whole plane at a time. Planes of non-virtual stacks are
+ * independent of each other and are translated concurrently when a
+ * {@link ThreadService} is available.
  * 
  * @author Barry DeZonia
  */
@@ -53,9 +61,25 @@ public class ColorPixelHarmonizer implements DataHarmonizer {
 
 	// -- instance variables --
 
+	private final ThreadService threadService;
 	private double[] savedPlane;
 	private int savedPos;
 
+	// -- constructors --
+
+	/** Creates a harmonizer that translates one plane after another. */
+	public ColorPixelHarmonizer() {
+		this(null);
+	}
+
+	/**
+	 * Creates a harmonizer that translates the planes of non-virtual stacks
+	 * concurrently on the given {@link ThreadService} (if not null).
+	 */
+	public ColorPixelHarmonizer(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
 	// -- public api --
 
 	// NOTE: to propagate a VirtualStack's first plane pixel changes we save it
@@ -77,63 +101,73 @@ public void savePlane(int pos, double[] plane) {
 	/**
 	 * Assigns the data values of a color {@link Dataset} from a paired
 	 * {@link ImagePlus}. Assumes the Dataset and ImagePlus have compatible
-	 * dimensions and are both of type color. Gets values via
-	 * {@link ImageProcessor}::get(). Does not change the Dataset's metadata.
+	 * dimensions and are both of type color. Gets values as
+	 * {@link ImageProcessor}::get() reports them. Does not change the Dataset's
+	 * metadata.
 	 */
 	@Override
 	public void updateDataset(final Dataset ds, final ImagePlus imp) {
-		final int xIndex = ds.dimensionIndex(Axes.X);
-		final int yIndex = ds.dimensionIndex(Axes.Y);
 		final int cIndex = ds.dimensionIndex(Axes.CHANNEL);
 		final int zIndex = ds.dimensionIndex(Axes.Z);
 		final int tIndex = ds.dimensionIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
+		final int numDims = ds.getDims().length;
+		final int planeSize = imp.getWidth() * imp.getHeight();
 		final int cSize = imp.getNChannels();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
 		final ImageStack stack = imp.getStack();
+		final boolean virtual = stack.isVirtual();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
 		int imagejPlaneNumber = 1;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
 		int slice = imp.getCurrentSlice();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) accessor.setPosition(t, tIndex);
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) accessor.setPosition(z, zIndex);
 				for (int c = 0; c < cSize; c++) {
-					final ImageProcessor proc = stack.getProcessor(imagejPlaneNumber++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int y = 0; y < ySize; y++) {
-						accessor.setPosition(y, yIndex);
-						for (int x = 0; x < xSize; x++) {
-							accessor.setPosition(x, xIndex);
-							// NOTE: to propagate a VirtualStack's first plane pixel changes
-							// we save it early in the harmonization process and refer to it
-							// later. This code is part of that process
-							final int value;
-							if (savedPos == imagejPlaneNumber - 1) {
-								int index = xSize * y + x;
-								value = (int) savedPlane[index];
-							}
-							else {
-								value = proc.get(x, y);
+					final long[] pos = new long[numDims];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
+					final int channel = 3 * c;
+					final ImageProcessor proc = stack.getProcessor(imagejPlaneNumber);
+					// NOTE: to propagate a VirtualStack's first plane pixel changes
+					// we save it early in the harmonization process and refer to it
+					// later. This code is part of that process
+					final double[] saved =
+						savedPos == imagejPlaneNumber ? savedPlane : null;
+					imagejPlaneNumber++;
+					final Runnable task = new Runnable() {
+
+						@Override
+						public void run() {
+							final double[] r = new double[planeSize];
+							final double[] g = new double[planeSize];
+							final double[] b = new double[planeSize];
+							final Object pixels = proc.getPixels();
+							final int[] rgb =
+								pixels instanceof int[] ? (int[]) pixels : null;
+							for (int i = 0; i < planeSize; i++) {
+								final int value;
+								if (saved != null) value = (int) saved[i];
+								else if (rgb != null) value = rgb[i];
+								else value = proc.get(i);
+								r[i] = (value >> 16) & 0xff;
+								g[i] = (value >> 8) & 0xff;
+								b[i] = (value >> 0) & 0xff;
 							}
-							final int rValue = (value >> 16) & 0xff;
-							final int gValue = (value >> 8) & 0xff;
-							final int bValue = (value >> 0) & 0xff;
-							accessor.setPosition(c * 3, cIndex);
-							accessor.get().setReal(rValue);
-							accessor.fwd(cIndex);
-							accessor.get().setReal(gValue);
-							accessor.fwd(cIndex);
-							accessor.get().setReal(bValue);
+							pos[cIndex] = channel;
+							LegacyUtils.writeDatasetPlane(r, ds, pos);
+							pos[cIndex] = channel + 1;
+							LegacyUtils.writeDatasetPlane(g, ds, pos);
+							pos[cIndex] = channel + 2;
+							LegacyUtils.writeDatasetPlane(b, ds, pos);
 						}
-					}
+					};
+					// NB - virtual stacks reuse state between getProcessor() calls
+					if (virtual) task.run();
+					else tasks.add(task);
 				}
 			}
 		}
+		LegacyUtils.runPlaneTasks(threadService, ds, tasks, true);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
@@ -146,61 +180,107 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 	 * Assigns the data values of a color {@link ImagePlus} from a paired
 	 * {@link Dataset}. Assumes the Dataset and ImagePlus have compatible
 	 * dimensions and that the data planes are not directly mapped. Also assumes
-	 * that the Dataset has isRGBMerged() true. Sets values via
-	 * {@link ImageProcessor}::set(). Does not change the ImagePlus' metadata.
+	 * that the Dataset has isRGBMerged() true. Sets values as
+	 * {@link ImageProcessor}::set() would. Does not change the ImagePlus'
+	 * metadata.
 	 */
 	@Override
 	public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
-		final int xIndex = ds.dimensionIndex(Axes.X);
-		final int yIndex = ds.dimensionIndex(Axes.Y);
+		updateLegacyImage(ds, imp, null);
+	}
+
+	/**
+	 * Assigns the data values of a color {@link ImagePlus} from a paired
+	 * {@link Dataset}, visiting only the legacy planes whose red, green or blue
+	 * samples lie in one of the given Dataset plane numbers. A null array of
+	 * plane numbers updates every plane.
+	 * 
+	 * @see #updateLegacyImage(Dataset, ImagePlus)
+	 */
+	public void updateLegacyImage(final Dataset ds, final ImagePlus imp,
+		final int[] planeNumbers)
+	{
+		final PlaneFilter filter = new PlaneFilter(ds, planeNumbers);
 		final int cIndex = ds.dimensionIndex(Axes.CHANNEL);
 		final int zIndex = ds.dimensionIndex(Axes.Z);
 		final int tIndex = ds.dimensionIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
+		final int numDims = ds.getDims().length;
+		final int planeSize = imp.getWidth() * imp.getHeight();
 		final int cSize = imp.getNChannels();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
 		final ImageStack stack = imp.getStack();
+		final boolean virtual = stack.isVirtual();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
 		int imagejPlaneNumber = 1;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
 		int slice = imp.getCurrentSlice();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) accessor.setPosition(t, tIndex);
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) accessor.setPosition(z, zIndex);
 				for (int c = 0; c < cSize; c++) {
+					final long[] pos = new long[numDims];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
+					final int channel = 3 * c;
+					if (!acceptsChannels(filter, pos, cIndex, channel)) {
+						imagejPlaneNumber++;
+						continue;
+					}
 					final ImageProcessor proc = stack.getProcessor(imagejPlaneNumber++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int y = 0; y < ySize; y++) {
-						accessor.setPosition(y, yIndex);
-						for (int x = 0; x < xSize; x++) {
-							accessor.setPosition(x, xIndex);
-
-							accessor.setPosition(3 * c, cIndex);
-							final int rValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							accessor.fwd(cIndex);
-							final int gValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							accessor.fwd(cIndex);
-							final int bValue = ((int) accessor.get().getRealDouble()) & 0xff;
-
-							final int intValue =
-								(0xff << 24) | (rValue << 16) | (gValue << 8) | (bValue);
+					final Runnable task = new Runnable() {
 
-							proc.set(x, y, intValue);
+						@Override
+						public void run() {
+							final double[] r = new double[planeSize];
+							final double[] g = new double[planeSize];
+							final double[] b = new double[planeSize];
+							pos[cIndex] = channel;
+							LegacyUtils.readDatasetPlane(ds, pos, r);
+							pos[cIndex] = channel + 1;
+							LegacyUtils.readDatasetPlane(ds, pos, g);
+							pos[cIndex] = channel + 2;
+							LegacyUtils.readDatasetPlane(ds, pos, b);
+							final Object pixels = proc.getPixels();
+							final int[] rgb =
+								pixels instanceof int[] ? (int[]) pixels : null;
+							for (int i = 0; i < planeSize; i++) {
+								final int rValue = ((int) r[i]) & 0xff;
+								final int gValue = ((int) g[i]) & 0xff;
+								final int bValue = ((int) b[i]) & 0xff;
+								final int intValue =
+									(0xff << 24) | (rValue << 16) | (gValue << 8) | (bValue);
+								if (rgb != null) rgb[i] = intValue;
+								else proc.set(i, intValue);
+							}
 						}
-					}
+					};
+					// NB - virtual stacks reuse state between getProcessor() calls
+					if (virtual) task.run();
+					else tasks.add(task);
 				}
 			}
 		}
+		LegacyUtils.runPlaneTasks(threadService, ds, tasks, false);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
 		stack.getProcessor(slice);
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Returns true if any of the three RGB channel planes starting at the given
+	 * channel are accepted by the filter.
+	 */
+	private boolean acceptsChannels(final PlaneFilter filter, final long[] pos,
+		final int cIndex, final int firstChannel)
+	{
+		if (filter.acceptsAll() || cIndex < 0) return true;
+		for (int i = 0; i < 3; i++) {
+			pos[cIndex] = firstChannel + i;
+			if (filter.accepts(pos)) return true;
+		}
+		return false;
+	}
+
 }
@@ -36,22 +36,34 @@
 package imagej.legacy.translate;
 
 import ij.ImagePlus;
+import ij.ImageStack;
 import ij.VirtualStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
 import imagej.data.DatasetService;
+import imagej.data.Extents;
+import imagej.data.Position;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.display.DisplayService;
 import imagej.legacy.LegacyService;
 import net.imglib2.RandomAccess;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
+import net.imglib2.meta.ImgPlus;
 import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
 
 import org.scijava.AbstractContextual;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Creates {@link ImageDisplay}s containing gray data values from
@@ -86,6 +98,9 @@ public class GrayDisplayCreator extends AbstractContextual implements
 	@Parameter
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// NB - OverlayHarmonizer required because IJ1 plugins can hatch displays
 	// while avoiding the Harmonizer. Not required in the Display->ImagePlus
 	// direction as Harmonizer always catches that case.
@@ -94,7 +109,7 @@ public class GrayDisplayCreator extends AbstractContextual implements
 
 	public GrayDisplayCreator(final LegacyService legacyService) {
 		setContext(legacyService.getContext());
-		pixelHarmonizer = new GrayPixelHarmonizer();
+		pixelHarmonizer = new GrayPixelHarmonizer(threadService);
 		colorTableHarmonizer =
 			new ColorTableHarmonizer(imageDisplayService);
 		metadataHarmonizer = new MetadataHarmonizer();
@@ -272,6 +287,11 @@ private void setDatasetGrayDataFromColorImp(final Dataset ds,
 	 * Makes a planar {@link Dataset} whose dimensions match a given
 	 * {@link ImagePlus}. Assumes it will never be called with
 	 * any kind of color ImagePlus. Does not set metadata of Dataset.
+	 * <p>
+	 * Whenever possible the planes of the returned Dataset are the very arrays
+	 * of the ImagePlus' {@link ImageStack}, so no second copy of the pixels is
+	 * ever allocated. Otherwise a blank Dataset is allocated and populating it
+	 * is left to other utility methods.
 	 */
 	private Dataset makeExactDataset(final ImagePlus imp,
 		final AxisType[] preferredOrder)
@@ -285,17 +305,123 @@ private Dataset makeExactDataset(final ImagePlus imp,
 		final AxisType[] axes = LegacyUtils.orderedAxes(preferredOrder, inputDims);
 		final long[] dims = LegacyUtils.orderedDims(axes, inputDims);
 		final String name = imp.getTitle();
-		final int bitsPerPixel = imp.getBitDepth();
-		final boolean signed = isSigned(imp);
-		final boolean floating = isFloating(imp);
-		final Dataset ds =
-			datasetService.create(dims, name, axes, bitsPerPixel, signed, floating);
+		Dataset ds = makeSharedDataset(imp, dims, name, axes);
+		if (ds == null) {
+			final int bitsPerPixel = imp.getBitDepth();
+			final boolean signed = isSigned(imp);
+			final boolean floating = isFloating(imp);
+			ds =
+				datasetService.create(dims, name, axes, bitsPerPixel, signed, floating);
+		}
 
 		DatasetUtils.initColorTables(ds);
 
 		return ds;
 	}
 
+	/**
+	 * Makes a planar {@link Dataset} whose planes are the pixel arrays of a
+	 * given gray {@link ImagePlus}. Returns null if the ImagePlus' planes cannot
+	 * be shared.
+	 */
+	private Dataset makeSharedDataset(final ImagePlus imp, final long[] dims,
+		final String name, final AxisType[] axes)
+	{
+		final Object[] planes = getStackPlanes(imp, dims, axes);
+		if (planes == null) return null;
+		switch (imp.getBitDepth()) {
+			case 8: {
+				final PlanarImg<UnsignedByteType, ByteArray> img =
+					new PlanarImg<UnsignedByteType, ByteArray>(dims, 1);
+				for (int i = 0; i < planes.length; i++) {
+					img.setPlane(i, new ByteArray((byte[]) planes[i]));
+				}
+				img.setLinkedType(new UnsignedByteType(img));
+				return datasetService.create(new ImgPlus<UnsignedByteType>(img, name,
+					axes));
+			}
+			case 16: {
+				final PlanarImg<UnsignedShortType, ShortArray> img =
+					new PlanarImg<UnsignedShortType, ShortArray>(dims, 1);
+				for (int i = 0; i < planes.length; i++) {
+					img.setPlane(i, new ShortArray((short[]) planes[i]));
+				}
+				img.setLinkedType(new UnsignedShortType(img));
+				return datasetService.create(new ImgPlus<UnsignedShortType>(img, name,
+					axes));
+			}
+			case 32: {
+				final PlanarImg<FloatType, FloatArray> img =
+					new PlanarImg<FloatType, FloatArray>(dims, 1);
+				for (int i = 0; i < planes.length; i++) {
+					img.setPlane(i, new FloatArray((float[]) planes[i]));
+				}
+				img.setLinkedType(new FloatType(img));
+				return datasetService.create(new ImgPlus<FloatType>(img, name, axes));
+			}
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Gathers the pixel arrays of an {@link ImagePlus} in the plane order of a
+	 * {@link Dataset} with the given dimensions and axes. Returns null if any
+	 * plane is missing or not of the ImagePlus' primitive type.
+	 */
+	private Object[] getStackPlanes(final ImagePlus imp, final long[] dims,
+		final AxisType[] axes)
+	{
+		final int cCount = imp.getNChannels();
+		final int zCount = imp.getNSlices();
+		final int tCount = imp.getNFrames();
+
+		final int cIndex = axisIndex(axes, Axes.CHANNEL);
+		final int zIndex = axisIndex(axes, Axes.Z);
+		final int tIndex = axisIndex(axes, Axes.TIME);
+
+		final long[] planeDims = new long[dims.length - 2];
+		for (int i = 0; i < planeDims.length; i++)
+			planeDims[i] = dims[i + 2];
+		final Extents planeExtents = new Extents(planeDims);
+		final Position planePos = planeExtents.createPosition();
+
+		final Object[] planes = new Object[(int) planeExtents.numElements()];
+		if (imp.getStackSize() == 1) {
+			planes[0] = imp.getProcessor().getPixels();
+		}
+		else {
+			final ImageStack stack = imp.getStack();
+			int stackPosition = 1;
+			for (int t = 0; t < tCount; t++) {
+				if (tIndex >= 0) planePos.setPosition(t, tIndex - 2);
+				for (int z = 0; z < zCount; z++) {
+					if (zIndex >= 0) planePos.setPosition(z, zIndex - 2);
+					for (int c = 0; c < cCount; c++) {
+						if (cIndex >= 0) planePos.setPosition(c, cIndex - 2);
+						planes[(int) planePos.getIndex()] =
+							stack.getPixels(stackPosition++);
+					}
+				}
+			}
+		}
+		final int bitDepth = imp.getBitDepth();
+		for (final Object plane : planes) {
+			if (bitDepth == 8 && !(plane instanceof byte[])) return null;
+			if (bitDepth == 16 && !(plane instanceof short[])) return null;
+			if (bitDepth == 32 && !(plane instanceof float[])) return null;
+		}
+		return planes;
+	}
+
+	/** Returns the index of an axis within an array, or -1 if absent. */
+	private int axisIndex(final AxisType[] axes, final AxisType axis) {
+		for (int i = 0; i < axes.length; i++) {
+			if (axes[i] == axis) return i;
+		}
+		return -1;
+	}
+
 	/**
 	 * Makes a gray {@link Dataset} from a gray {@link ImagePlus}. Assumes it will
 	 * never be given a color RGB Imageplus. Does not populate the data of the
@@ -59,6 +59,7 @@
 import org.scijava.AbstractContextual;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Creates {@link ImagePlus}es from {@link ImageDisplay}s containing gray data.
@@ -84,11 +85,14 @@ public class GrayImagePlusCreator extends AbstractContextual implements
 	@Parameter
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// -- public interface --
 
 	public GrayImagePlusCreator(LegacyService legacyService) {
 		setContext(legacyService.getContext());
-		pixelHarmonizer = new GrayPixelHarmonizer();
+		pixelHarmonizer = new GrayPixelHarmonizer(threadService);
 		colorTableHarmonizer = new ColorTableHarmonizer(imageDisplayService);
 		metadataHarmonizer = new MetadataHarmonizer();
 		planeHarmonizer = new PlaneHarmonizer(log);
@@ -39,18 +39,27 @@
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
-import net.imglib2.RandomAccess;
+
+import java.util.ArrayList;
+import java.util.List;
+
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.ShortType;
 
+import org.scijava.thread.ThreadService;
+
 /**
  * Supports bidirectional synchronization between {@link ImagePlus}es and gray
  * {@link Dataset}s. Single channel color {@link ImagePlus}es are not supported
  * here. But multichannel color {@link ImagePlus}es are handled and treated as
  * gray data.
+ * <p>
+ * Data is translated a whole plane at a time. Planes of non-virtual stacks are
+ * independent of each other and are translated concurrently when a
+ * {@link ThreadService} is available.
  * 
  * @author Barry DeZonia
  */
@@ -58,9 +67,25 @@ public class GrayPixelHarmonizer implements DataHarmonizer {
 
 	// -- instance variables --
 
+	private final ThreadService threadService;
 	private double[] savedPlane;
 	private int savedPos;
 
+	// -- constructors --
+
+	/** Creates a harmonizer that translates one plane after another. */
+	public GrayPixelHarmonizer() {
+		this(null);
+	}
+
+	/**
+	 * Creates a harmonizer that translates the planes of non-virtual stacks
+	 * concurrently on the given {@link ThreadService} (if not null).
+	 */
+	public GrayPixelHarmonizer(final ThreadService threadService) {
+		this.threadService = threadService;
+	}
+
 	// -- public api --
 
 	// NOTE: to propagate a VirtualStack's first plane pixel changes we save it
@@ -83,67 +108,67 @@ public void savePlane(int pos, double[] plane) {
 	 * Assigns the data values of a {@link Dataset} from a paired
 	 * {@link ImagePlus}. Assumes the Dataset and ImagePlus have compatible
 	 * dimensions and that the data planes are not directly mapped. Gets values
-	 * via {@link ImageProcessor}::getf(). In cases where there is a narrowing of
-	 * data into modern ImageJ types the data is range clamped. Does not change
-	 * the Dataset's metadata.
+	 * as {@link ImageProcessor}::getf() reports them. In cases where there is a
+	 * narrowing of data into modern ImageJ types the data is range clamped. Does
+	 * not change the Dataset's metadata.
 	 */
 	@Override
 	public void updateDataset(final Dataset ds, final ImagePlus imp) {
 		final RealType<?> type = ds.getType();
 		final double typeMin = type.getMinValue();
 		final double typeMax = type.getMaxValue();
-		final boolean signed16BitData = type instanceof ShortType;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
+		final double offset = type instanceof ShortType ? 32768.0 : 0.0;
 		final long[] dims = ds.getDims();
 		final AxisType[] axes = ds.getAxes();
-		final int xIndex = ds.dimensionIndex(Axes.X);
-		final int yIndex = ds.dimensionIndex(Axes.Y);
 		final int zIndex = ds.dimensionIndex(Axes.Z);
 		final int tIndex = ds.dimensionIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
+		final int planeSize = imp.getWidth() * imp.getHeight();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
 		final int cSize = imp.getNChannels();
 		final ImageStack stack = imp.getStack();
+		final boolean virtual = stack.isVirtual();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
 		int planeNum = 1;
-		final long[] pos = new long[dims.length];
 		int slice = imp.getCurrentSlice();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) pos[tIndex] = t;
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) pos[zIndex] = z;
 				for (int c = 0; c < cSize; c++) {
+					final long[] pos = new long[dims.length];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
 					LegacyUtils.fillChannelIndices(dims, axes, c, pos);
-					ImageProcessor proc = stack.getProcessor(planeNum++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int x = 0; x < xSize; x++) {
-						if (xIndex >= 0) pos[xIndex] = x;
-						for (int y = 0; y < ySize; y++) {
-							if (yIndex >= 0) pos[yIndex] = y;
-							accessor.setPosition(pos);
-							// NOTE: to propagate a VirtualStack's first plane pixel changes
-							// we save it early in the harmonization process and refer to it
-							// later. This code is part of that process
-							double value;
-							if (savedPos == planeNum - 1) {
-								int index = xSize * y + x;
-								value = savedPlane[index];
+					final ImageProcessor proc = stack.getProcessor(planeNum);
+					// NOTE: to propagate a VirtualStack's first plane pixel changes
+					// we save it early in the harmonization process and refer to it
+					// later. This code is part of that process
+					final double[] saved = savedPos == planeNum ? savedPlane : null;
+					planeNum++;
+					final Runnable task = new Runnable() {
+
+						@Override
+						public void run() {
+							final double[] values = new double[planeSize];
+							if (saved != null) {
+								System.arraycopy(saved, 0, values, 0, planeSize);
 							}
-							else {
-								value = proc.getf(x, y);
+							else LegacyUtils.readLegacyPlane(proc, values);
+							for (int i = 0; i < planeSize; i++) {
+								double value = values[i] - offset;
+								if (value < typeMin) value = typeMin;
+								else if (value > typeMax) value = typeMax;
+								values[i] = value;
 							}
-							if (signed16BitData) value -= 32768.0;
-							if (value < typeMin) value = typeMin;
-							else if (value > typeMax) value = typeMax;
-							accessor.get().setReal(value);
+							LegacyUtils.writeDatasetPlane(values, ds, pos);
 						}
-					}
+					};
+					// NB - virtual stacks reuse state between getProcessor() calls
+					if (virtual) task.run();
+					else tasks.add(task);
 				}
 			}
 		}
+		LegacyUtils.runPlaneTasks(threadService, ds, tasks, true);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
@@ -156,56 +181,81 @@ public void updateDataset(final Dataset ds, final ImagePlus imp) {
 	 * Assigns the data values of an {@link ImagePlus} from a paired
 	 * {@link Dataset}. Assumes the Dataset and ImagePlus are not directly mapped.
 	 * It is possible that multiple modern ImageJ axes are encoded as a single set
-	 * of channels in the ImagePlus. Sets values via {@link ImageProcessor}
-	 * ::setf(). Some special case code is in place to assure that BitType images
-	 * go to legacy ImageJ as 0/255 value images. Does not change the ImagePlus'
-	 * metadata.
+	 * of channels in the ImagePlus. Sets values as {@link ImageProcessor}
+	 * ::setf() would. Some special case code is in place to assure that BitType
+	 * images go to legacy ImageJ as 0/255 value images. Does not change the
+	 * ImagePlus' metadata.
 	 */
 	@Override
 	public void updateLegacyImage(final Dataset ds, final ImagePlus imp) {
+		updateLegacyImage(ds, imp, null);
+	}
+
+	/**
+	 * Assigns the data values of an {@link ImagePlus} from a paired
+	 * {@link Dataset}, visiting only the legacy planes backed by the given
+	 * Dataset plane numbers. A null array of plane numbers updates every plane.
+	 * 
+	 * @see #updateLegacyImage(Dataset, ImagePlus)
+	 */
+	public void updateLegacyImage(final Dataset ds, final ImagePlus imp,
+		final int[] planeNumbers)
+	{
+		final PlaneFilter filter = new PlaneFilter(ds, planeNumbers);
 		final RealType<?> type = ds.getType();
-		final boolean signed16BitData = type instanceof ShortType;
+		final double offset = type instanceof ShortType ? 32768.0 : 0.0;
 		final boolean bitData = type instanceof BitType;
-		final RandomAccess<? extends RealType<?>> accessor =
-			ds.getImgPlus().randomAccess();
 		final long[] dims = ds.getDims();
 		final AxisType[] axes = ds.getAxes();
-		final int xIndex = ds.dimensionIndex(Axes.X);
-		final int yIndex = ds.dimensionIndex(Axes.Y);
 		final int zIndex = ds.dimensionIndex(Axes.Z);
 		final int tIndex = ds.dimensionIndex(Axes.TIME);
-		final int xSize = imp.getWidth();
-		final int ySize = imp.getHeight();
+		final int planeSize = imp.getWidth() * imp.getHeight();
 		final int zSize = imp.getNSlices();
 		final int tSize = imp.getNFrames();
 		final int cSize = imp.getNChannels();
 		final ImageStack stack = imp.getStack();
+		final boolean virtual = stack.isVirtual();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
 		int planeNum = 1;
-		final long[] pos = new long[dims.length];
 		int slice = imp.getCurrentSlice();
 		for (int t = 0; t < tSize; t++) {
-			if (tIndex >= 0) pos[tIndex] = t;
 			for (int z = 0; z < zSize; z++) {
-				if (zIndex >= 0) pos[zIndex] = z;
 				for (int c = 0; c < cSize; c++) {
+					final long[] pos = new long[dims.length];
+					if (tIndex >= 0) pos[tIndex] = t;
+					if (zIndex >= 0) pos[zIndex] = z;
 					LegacyUtils.fillChannelIndices(dims, axes, c, pos);
+					if (!filter.accepts(pos)) {
+						planeNum++;
+						continue;
+					}
 					final ImageProcessor proc = stack.getProcessor(planeNum++);
-					// TEMP HACK THAT FIXES VIRT STACK PROB BUT SLOW
-					// imp.setPosition(planeNum - 1);
-					for (int x = 0; x < xSize; x++) {
-						if (xIndex >= 0) pos[xIndex] = x;
-						for (int y = 0; y < ySize; y++) {
-							if (yIndex >= 0) pos[yIndex] = y;
-							accessor.setPosition(pos);
-							double value = accessor.get().getRealDouble();
-							if (signed16BitData) value += 32768.0;
-							else if (bitData) if (value > 0) value = 255;
-							proc.setf(x, y, (float)value);
+					final Runnable task = new Runnable() {
+
+						@Override
+						public void run() {
+							final double[] values = new double[planeSize];
+							LegacyUtils.readDatasetPlane(ds, pos, values);
+							if (bitData) {
+								for (int i = 0; i < planeSize; i++) {
+									if (values[i] > 0) values[i] = 255;
+								}
+							}
+							else if (offset != 0) {
+								for (int i = 0; i < planeSize; i++) {
+									values[i] += offset;
+								}
+							}
+							LegacyUtils.writeLegacyPlane(values, proc);
 						}
-					}
+					};
+					// NB - virtual stacks reuse state between getProcessor() calls
+					if (virtual) task.run();
+					else tasks.add(task);
 				}
 			}
 		}
+		LegacyUtils.runPlaneTasks(threadService, ds, tasks, false);
 		// NOTE: the stack.getProcessor() calls that have been called so far have
 		// changed the current plane's pixels for virtual stacks. So reset pixels
 		// to correct plane's values
@@ -53,6 +53,7 @@
 import org.scijava.AbstractContextual;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Provides methods for synchronizing data between an {@link ImageDisplay} and
@@ -83,6 +84,9 @@ public class Harmonizer extends AbstractContextual {
 	@Parameter
 	private LogService log;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// -- constructor --
 
 	public Harmonizer(final LegacyService legacyService,
@@ -91,8 +95,8 @@ public Harmonizer(final LegacyService legacyService,
 		setContext(legacyService.getContext());
 		imageTranslator = trans;
 		bitDepthMap = new HashMap<ImagePlus, Integer>();
-		grayPixelHarmonizer = new GrayPixelHarmonizer();
-		colorPixelHarmonizer = new ColorPixelHarmonizer();
+		grayPixelHarmonizer = new GrayPixelHarmonizer(threadService);
+		colorPixelHarmonizer = new ColorPixelHarmonizer(threadService);
 		colorTableHarmonizer = new ColorTableHarmonizer(imageDisplayService);
 		metadataHarmonizer = new MetadataHarmonizer();
 		compositeHarmonizer = new CompositeHarmonizer();
@@ -111,6 +115,19 @@ public Harmonizer(final LegacyService legacyService,
 	 */
 	public void
 		updateLegacyImage(final ImageDisplay display, final ImagePlus imp)
+	{
+		updateLegacyImage(display, imp, null);
+	}
+
+	/**
+	 * Changes the data within an {@link ImagePlus} to match data in a
+	 * {@link ImageDisplay}, translating only the sample values of the given
+	 * {@link Dataset} plane numbers. A null array of plane numbers translates
+	 * every plane; an empty one leaves the pixels alone. Type, shape and
+	 * metadata are always harmonized.
+	 */
+	public void updateLegacyImage(final ImageDisplay display,
+		final ImagePlus imp, final int[] planeNumbers)
 	{
 		final Dataset ds = imageDisplayService.getActiveDataset(display);
 		/*
@@ -133,9 +150,12 @@ else if (ds.getType() instanceof UnsignedByteType) {
 			{
 				rebuildImagePlusData(display, imp);
 			}
+			else if (planeNumbers != null && planeNumbers.length == 0) {
+				// pixels unchanged since the last synchronization
+			}
 			else if (imp.getType() == ImagePlus.COLOR_RGB) {
 				if (!imp.getStack().isVirtual()) {
-					colorPixelHarmonizer.updateLegacyImage(ds, imp);
+					colorPixelHarmonizer.updateLegacyImage(ds, imp, planeNumbers);
 				}
 			}
 			else if (LegacyUtils.datasetIsIJ1Compatible(ds)) {
@@ -143,7 +163,7 @@ else if (LegacyUtils.datasetIsIJ1Compatible(ds)) {
 			}
 			else {
 				if (!imp.getStack().isVirtual()) {
-					grayPixelHarmonizer.updateLegacyImage(ds, imp);
+					grayPixelHarmonizer.updateLegacyImage(ds, imp, planeNumbers);
 				}
 			}
 		}
@@ -162,6 +182,18 @@ else if (LegacyUtils.datasetIsIJ1Compatible(ds)) {
 	 * data (an empty stack).
 	 */
 	public void updateDisplay(final ImageDisplay display, final ImagePlus imp) {
+		updateDisplay(display, imp, true);
+	}
+
+	/**
+	 * Changes the data within a {@link ImageDisplay} to match data in an
+	 * {@link ImagePlus}. When pixelsChanged is false the sample values are only
+	 * translated if the type or shape of the ImagePlus changed; metadata is
+	 * always harmonized.
+	 */
+	public void updateDisplay(final ImageDisplay display, final ImagePlus imp,
+		final boolean pixelsChanged)
+	{
 
 		// NB - if ImagePlus is degenerate the following code can fail. This is
 		// because imglib cannot represent an empty data container. So we catch
@@ -200,7 +232,7 @@ public void updateDisplay(final ImageDisplay display, final ImagePlus imp) {
 		if ((typeChanged) || (!dimensionsCompatible(ds, imp))) {
 			rebuildDatasetData(ds, imp);
 		}
-		else { // ImagePlus type and shape unchanged
+		else if (pixelsChanged) { // ImagePlus type and shape unchanged
 			if (imp.getType() == ImagePlus.COLOR_RGB) {
 				colorPixelHarmonizer.updateDataset(ds, imp);
 			}
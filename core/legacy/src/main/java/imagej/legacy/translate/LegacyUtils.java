@@ -39,12 +39,23 @@
 import ij.WindowManager;
 import ij.gui.ImageWindow;
 import ij.macro.Interpreter;
+import ij.process.ImageProcessor;
 import imagej.data.Dataset;
+import imagej.data.PlaneAccessor;
+import imagej.util.ParallelUtils;
+
+import java.util.List;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
+import net.imglib2.img.planar.PlanarImg;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.thread.ThreadService;
+
 /**
  * A bag of static methods used throughout the translation layer
  * 
@@ -360,9 +371,191 @@ static long calcIJ1ChannelPos(long[] dims, AxisType[] axes, long[] pos) {
 		}
 		return ij1Pos;
 	}
+
+	/**
+	 * Returns the number of the plane containing the given position of a
+	 * {@link Dataset} whose first two axes are X and Y. Only the non-XY
+	 * coordinates of the position are considered.
+	 */
+	static long planeIndex(final long[] dims, final long[] pos) {
+		long index = 0;
+		long stride = 1;
+		for (int i = 2; i < dims.length; i++) {
+			index += pos[i] * stride;
+			stride *= dims[i];
+		}
+		return index;
+	}
+
+	/**
+	 * Copies the raw values of a gray legacy plane into a double buffer, as
+	 * {@link ImageProcessor}::getf() would report them.
+	 */
+	static void readLegacyPlane(final ImageProcessor proc, final double[] dst) {
+		final Object pixels = proc.getPixels();
+		if (pixels instanceof byte[]) {
+			final byte[] b = (byte[]) pixels;
+			for (int i = 0; i < dst.length; i++)
+				dst[i] = b[i] & 0xff;
+		}
+		else if (pixels instanceof short[]) {
+			final short[] s = (short[]) pixels;
+			for (int i = 0; i < dst.length; i++)
+				dst[i] = s[i] & 0xffff;
+		}
+		else if (pixels instanceof float[]) {
+			final float[] f = (float[]) pixels;
+			for (int i = 0; i < dst.length; i++)
+				dst[i] = f[i];
+		}
+		else {
+			for (int i = 0; i < dst.length; i++)
+				dst[i] = proc.getf(i);
+		}
+	}
+
+	/**
+	 * Copies a double buffer into a gray legacy plane, narrowing each value the
+	 * way {@link ImageProcessor}::setf() does.
+	 */
+	static void writeLegacyPlane(final double[] src, final ImageProcessor proc) {
+		final Object pixels = proc.getPixels();
+		if (pixels instanceof byte[]) {
+			final byte[] b = (byte[]) pixels;
+			for (int i = 0; i < src.length; i++)
+				b[i] = (byte) (float) src[i];
+		}
+		else if (pixels instanceof short[]) {
+			final short[] s = (short[]) pixels;
+			for (int i = 0; i < src.length; i++)
+				s[i] = (short) (float) src[i];
+		}
+		else if (pixels instanceof float[]) {
+			final float[] f = (float[]) pixels;
+			for (int i = 0; i < src.length; i++)
+				f[i] = (float) src[i];
+		}
+		else {
+			for (int i = 0; i < src.length; i++)
+				proc.setf(i, (float) src[i]);
+		}
+	}
+
+	/**
+	 * Copies the XY plane of a {@link Dataset} containing the given position
+	 * into a row-major double buffer. Reads the primitive plane storage directly
+	 * when possible, otherwise walks the plane row by row.
+	 */
+	static void readDatasetPlane(final Dataset ds, final long[] pos,
+		final double[] dst)
+	{
+		final Img<? extends RealType<?>> img = ds.getImgPlus();
+		final PlaneAccessor accessor = planeAccessor(ds);
+		if (accessor != null) {
+			final int planeNum = (int) planeIndex(ds.getDims(), pos);
+			final Object storage = PlaneAccessor.getStorage(img, planeNum);
+			if (storage != null) {
+				accessor.read(storage, PlaneAccessor.getOffset(img, planeNum), dst, 0,
+					dst.length);
+				return;
+			}
+		}
+		final int xIndex = ds.dimensionIndex(Axes.X);
+		final int yIndex = ds.dimensionIndex(Axes.Y);
+		final int xSize = (int) ds.dimension(xIndex);
+		final int ySize = (int) ds.dimension(yIndex);
+		final RandomAccess<? extends RealType<?>> ra = img.randomAccess();
+		ra.setPosition(pos);
+		int i = 0;
+		for (int y = 0; y < ySize; y++) {
+			ra.setPosition(0, xIndex);
+			ra.setPosition(y, yIndex);
+			for (int x = 0; x < xSize; x++) {
+				dst[i++] = ra.get().getRealDouble();
+				ra.fwd(xIndex);
+			}
+		}
+	}
+
+	/**
+	 * Copies a row-major double buffer into the XY plane of a {@link Dataset}
+	 * containing the given position. Writes the primitive plane storage
+	 * directly when possible, otherwise walks the plane row by row.
+	 */
+	static void writeDatasetPlane(final double[] src, final Dataset ds,
+		final long[] pos)
+	{
+		final Img<? extends RealType<?>> img = ds.getImgPlus();
+		final PlaneAccessor accessor = planeAccessor(ds);
+		if (accessor != null) {
+			final int planeNum = (int) planeIndex(ds.getDims(), pos);
+			final Object storage = PlaneAccessor.getStorage(img, planeNum);
+			if (storage != null) {
+				accessor.write(src, 0, storage, PlaneAccessor.getOffset(img, planeNum),
+					src.length);
+				return;
+			}
+		}
+		final int xIndex = ds.dimensionIndex(Axes.X);
+		final int yIndex = ds.dimensionIndex(Axes.Y);
+		final int xSize = (int) ds.dimension(xIndex);
+		final int ySize = (int) ds.dimension(yIndex);
+		final RandomAccess<? extends RealType<?>> ra = img.randomAccess();
+		ra.setPosition(pos);
+		int i = 0;
+		for (int y = 0; y < ySize; y++) {
+			ra.setPosition(0, xIndex);
+			ra.setPosition(y, yIndex);
+			for (int x = 0; x < xSize; x++) {
+				ra.get().setReal(src[i++]);
+				ra.fwd(xIndex);
+			}
+		}
+	}
+	
+	/**
+	 * Runs the per-plane tasks of a {@link Dataset} translation. Tasks run
+	 * concurrently when a {@link ThreadService} is given, unless they write to
+	 * the {@link Dataset} and its XY planes may share storage words: bit-packed
+	 * types in an ArrayImg or CellImg pack neighbouring planes into the same
+	 * longs, so concurrent writes would lose bits.
+	 */
+	static void runPlaneTasks(final ThreadService threadService,
+		final Dataset ds, final List<Runnable> tasks, final boolean writesDataset)
+	{
+		if (tasks.isEmpty()) return;
+		if (threadService == null || (writesDataset && !planesSeparate(ds))) {
+			for (final Runnable task : tasks) {
+				task.run();
+			}
+		}
+		else ParallelUtils.runAndWait(threadService, tasks);
+	}
 	
 	// -- private helper methods --
 
+	/**
+	 * Returns true if each XY plane of a {@link Dataset} is written without
+	 * touching the storage of any other plane.
+	 */
+	private static boolean planesSeparate(final Dataset ds) {
+		if (ds.dimensionIndex(Axes.X) != 0) return false;
+		if (ds.dimensionIndex(Axes.Y) != 1) return false;
+		if (ds.getImgPlus().getImg() instanceof PlanarImg) return true;
+		return planeAccessor(ds) != null &&
+			PlaneAccessor.getStorage(ds.getImgPlus(), 0) != null;
+	}
+
+	/**
+	 * Returns a {@link PlaneAccessor} for a {@link Dataset} whose planes are
+	 * contiguous XY runs in its storage, or null if there is none.
+	 */
+	private static PlaneAccessor planeAccessor(final Dataset ds) {
+		if (ds.dimensionIndex(Axes.X) != 0) return null;
+		if (ds.dimensionIndex(Axes.Y) != 1) return null;
+		return PlaneAccessor.forType(ds.getType());
+	}
+
 	/**
 	 * Gets a dimension for a given axis from a list of dimensions in XYCZT order.
 	 */
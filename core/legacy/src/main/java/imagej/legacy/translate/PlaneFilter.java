@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy.translate;
+
+import imagej.data.Dataset;
+
+import java.util.BitSet;
+
+import net.imglib2.meta.Axes;
+
+/**
+ * Decides which planes of a {@link Dataset} need their sample values
+ * harmonized, given the plane numbers reported as changed since the last
+ * synchronization.
+ */
+class PlaneFilter {
+
+	// -- instance variables --
+
+	private final long[] dims;
+	private final BitSet planes;
+
+	// -- constructor --
+
+	/**
+	 * Creates a filter accepting the given plane numbers of the given
+	 * {@link Dataset}. A null array of plane numbers accepts every plane, as
+	 * does a Dataset whose first two axes are not X and Y.
+	 */
+	public PlaneFilter(final Dataset ds, final int[] planeNumbers) {
+		dims = ds.getDims();
+		if (planeNumbers == null || ds.dimensionIndex(Axes.X) != 0 ||
+			ds.dimensionIndex(Axes.Y) != 1)
+		{
+			planes = null;
+		}
+		else {
+			planes = new BitSet();
+			for (final int planeNum : planeNumbers) {
+				if (planeNum >= 0) planes.set(planeNum);
+			}
+		}
+	}
+
+	// -- public interface --
+
+	/** Returns true if every plane is accepted. */
+	public boolean acceptsAll() {
+		return planes == null;
+	}
+
+	/**
+	 * Returns true if the plane containing the given position is accepted. Only
+	 * the non-XY coordinates of the position are considered.
+	 */
+	public boolean accepts(final long[] pos) {
+		if (planes == null) return true;
+		final long index = LegacyUtils.planeIndex(dims, pos);
+		return index <= Integer.MAX_VALUE && planes.get((int) index);
+	}
+
+}
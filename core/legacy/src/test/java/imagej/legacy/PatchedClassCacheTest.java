@@ -0,0 +1,247 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link PatchedClassCache}.
+ */
+public class PatchedClassCacheTest {
+
+	private File root;
+
+	@Before
+	public void setUp() throws IOException {
+		root = File.createTempFile("legacy-cache", "");
+		assertTrue(root.delete());
+		assertTrue(root.mkdir());
+	}
+
+	@After
+	public void tearDown() {
+		delete(root);
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		final String name = Dummy.class.getName();
+		final PatchedClassCache cache = new PatchedClassCache(root, "key");
+		assertFalse(cache.defineClasses(new TestLoader()));
+
+		cache.add(name, bytecode(Dummy.class));
+		cache.commit();
+		assertTrue(new File(root, "key").isDirectory());
+
+		final TestLoader loader = new TestLoader();
+		assertTrue(new PatchedClassCache(root, "key").defineClasses(loader));
+		final Class<?> c = loader.loadClass(name);
+		assertSame(loader, c.getClassLoader());
+		assertEquals(name, c.getName());
+
+		// a different key misses
+		assertFalse(new PatchedClassCache(root, "other").defineClasses(
+			new TestLoader()));
+	}
+
+	@Test
+	public void testDiscard() {
+		final PatchedClassCache cache = new PatchedClassCache(root, "key");
+		cache.add(Dummy.class.getName(), new byte[] { 1, 2, 3 });
+		cache.discard();
+		cache.commit();
+		assertFalse(new File(root, "key").exists());
+	}
+
+	@Test
+	public void testTruncatedClass() throws Exception {
+		commit("key", bytecode(Dummy.class));
+		final File classFile =
+			new File(new File(root, "key"), Dummy.class.getName() + ".class");
+		final byte[] truncated = new byte[(int) classFile.length() / 2];
+		System.arraycopy(bytecode(Dummy.class), 0, truncated, 0, truncated.length);
+		write(classFile, truncated);
+
+		assertFalse(new PatchedClassCache(root, "key").defineClasses(
+			new TestLoader()));
+		assertFalse(new File(root, "key").exists());
+	}
+
+	@Test
+	public void testCorruptClass() throws Exception {
+		final byte[] bytecode = bytecode(Dummy.class);
+		commit("key", bytecode);
+		final byte[] corrupt = bytecode.clone();
+		corrupt[corrupt.length / 2] ^= 0x55;
+		write(new File(new File(root, "key"), Dummy.class.getName() + ".class"),
+			corrupt);
+
+		assertFalse(new PatchedClassCache(root, "key").defineClasses(
+			new TestLoader()));
+		assertFalse(new File(root, "key").exists());
+	}
+
+	@Test
+	public void testInvalidBytecode() {
+		// the index matches, but the class cannot be defined
+		commit("key", new byte[] { 1, 2, 3 });
+		assertFalse(new PatchedClassCache(root, "key").defineClasses(
+			new TestLoader()));
+		assertFalse(new File(root, "key").exists());
+	}
+
+	@Test
+	public void testAlreadyLoaded() throws Exception {
+		commit("key", bytecode(Dummy.class));
+		final TestLoader loader = new TestLoader();
+		assertTrue(new PatchedClassCache(root, "key").defineClasses(loader));
+		assertFalse(new PatchedClassCache(root, "key").defineClasses(loader));
+		// nothing is wrong with the cache itself
+		assertTrue(new File(root, "key").isDirectory());
+	}
+
+	@Test
+	public void testPrune() throws Exception {
+		final File stale = new File(root, "stale");
+		final File recent = new File(root, "recent");
+		final File crashed = new File(root, "other.tmp-1234");
+		assertTrue(stale.mkdir() && recent.mkdir() && crashed.mkdir());
+		final long day = 24L * 60 * 60 * 1000;
+		final long now = System.currentTimeMillis();
+		assertTrue(stale.setLastModified(now - (PatchedClassCache.MAX_AGE_DAYS + 1) *
+			day));
+		assertTrue(crashed.setLastModified(now - 2 * day));
+
+		commit("key", bytecode(Dummy.class));
+		assertTrue(new File(root, "key").isDirectory());
+		assertTrue(recent.isDirectory());
+		assertFalse(stale.exists());
+		assertFalse(crashed.exists());
+	}
+
+	@Test
+	public void testDisabled() {
+		final String previous = System.getProperty("imagej.legacy.cache");
+		System.setProperty("imagej.legacy.cache", "none");
+		try {
+			assertNull(PatchedClassCache.forClassLoader(getClass()
+				.getClassLoader()));
+		}
+		finally {
+			if (previous == null) System.clearProperty("imagej.legacy.cache");
+			else System.setProperty("imagej.legacy.cache", previous);
+		}
+	}
+
+	// -- Helper methods --
+
+	private void commit(final String key, final byte[] bytecode) {
+		final PatchedClassCache cache = new PatchedClassCache(root, key);
+		cache.add(Dummy.class.getName(), bytecode);
+		cache.commit();
+		assertTrue(new File(root, key).isDirectory());
+	}
+
+	private static void write(final File file, final byte[] bytes)
+		throws IOException
+	{
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(bytes);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static byte[] bytecode(final Class<?> c) throws IOException {
+		final String resource = c.getName().replace('.', '/') + ".class";
+		final InputStream in = c.getClassLoader().getResourceAsStream(resource);
+		try {
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[4096];
+			for (;;) {
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				out.write(buffer, 0, count);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static void delete(final File file) {
+		final File[] list = file.listFiles();
+		if (list != null) {
+			for (final File child : list)
+				delete(child);
+		}
+		file.delete();
+	}
+
+	// -- Helper classes --
+
+	/** A class to define from the cache. */
+	public static class Dummy {
+		// nothing to see here
+	}
+
+	/** A class loader which cannot see the test classes. */
+	private static class TestLoader extends ClassLoader {
+
+		public TestLoader() {
+			super(null);
+		}
+	}
+
+}
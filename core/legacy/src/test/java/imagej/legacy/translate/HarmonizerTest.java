@@ -0,0 +1,225 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.legacy.translate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import ij.ImagePlus;
+import ij.ImageStack;
+import ij.gui.NewImage;
+import ij.process.ByteProcessor;
+import imagej.data.Dataset;
+import imagej.data.display.ImageDisplay;
+import imagej.data.display.ImageDisplayService;
+import imagej.legacy.DefaultLegacyService;
+import imagej.legacy.LegacyImageMap;
+import imagej.legacy.LegacyOutputTracker;
+import imagej.legacy.LegacyService;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link Harmonizer}, in particular that changes legacy ImageJ
+ * makes without redrawing its image still reach the {@link Dataset}.
+ */
+public class HarmonizerTest {
+
+	static {
+		/*
+		 * We absolutely require that the LegacyInjector did its job before we
+		 * use the ImageJ 1.x classes here, so that the classes are properly
+		 * patched before use.
+		 */
+		DefaultLegacyService.preinit();
+	}
+
+	private static final int WIDTH = 4, HEIGHT = 3, DEPTH = 3;
+
+	private Context context;
+	private LegacyImageMap map;
+	private Harmonizer harmonizer;
+
+	@Before
+	public void setUp() {
+		synchronized (DefaultLegacyService.class) {
+			context = new Context(LegacyService.class);
+		}
+		final LegacyService legacyService = context.getService(LegacyService.class);
+		map = legacyService.getImageMap();
+		harmonizer =
+			new Harmonizer(legacyService, new DefaultImageTranslator(legacyService));
+	}
+
+	@After
+	public void tearDown() {
+		LegacyOutputTracker.clearOutputs();
+		synchronized (DefaultLegacyService.class) {
+			context.dispose();
+			context = null;
+		}
+	}
+
+	@Test
+	public void testUnchangedImage() {
+		final ImagePlus imp = createImage(DEPTH);
+		final ImageDisplay display = map.registerLegacyImage(imp);
+		map.markSynchronized(display);
+		assertFalse(map.isLegacyImageChanged(imp));
+		assertEquals(0, map.getChangedPlanes(display).length);
+	}
+
+	@Test
+	public void testStackPlaneReplacedWithoutRedraw() {
+		final ImagePlus imp = createImage(DEPTH);
+		final ImageDisplay display = map.registerLegacyImage(imp);
+		map.markSynchronized(display);
+
+		final ImageStack stack = imp.getStack();
+		stack.setPixels(filledPlane(77), 2);
+
+		assertTrue(map.isLegacyImageChanged(imp));
+		assertNull(map.getChangedPlanes(display));
+		harmonizer.updateDisplay(display, imp, map.isLegacyImageChanged(imp));
+		map.markSynchronized(display);
+
+		final Dataset ds = getDataset(display);
+		assertPlaneEquals(ds, 0, 0);
+		assertPlaneEquals(ds, 1, 77);
+		assertPlaneEquals(ds, 2, 0);
+		assertFalse(map.isLegacyImageChanged(imp));
+	}
+
+	@Test
+	public void testProcessorReplacedWithoutRedraw() {
+		final ImagePlus imp = createImage(1);
+		final ImageDisplay display = map.registerLegacyImage(imp);
+		map.markSynchronized(display);
+
+		imp.setProcessor(new ByteProcessor(WIDTH, HEIGHT, filledPlane(42), null));
+
+		assertTrue(map.isLegacyImageChanged(imp));
+		harmonizer.updateDisplay(display, imp, map.isLegacyImageChanged(imp));
+		assertPlaneEquals(getDataset(display), 0, 42);
+	}
+
+	@Test
+	public void testChangesFlag() {
+		final ImagePlus imp = createImage(1);
+		final ImageDisplay display = map.registerLegacyImage(imp);
+		map.markSynchronized(display);
+
+		// NB - writes straight into the plane array cannot be seen, but plugins
+		// that do so normally flag the image as changed
+		final byte[] pixels = (byte[]) imp.getProcessor().getPixels();
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 9;
+		}
+		imp.changes = true;
+
+		assertTrue(map.isLegacyImageChanged(imp));
+		harmonizer.updateDisplay(display, imp, map.isLegacyImageChanged(imp));
+		assertPlaneEquals(getDataset(display), 0, 9);
+	}
+
+	@Test
+	public void testChangesFlagAlreadySet() {
+		final ImagePlus imp = createImage(DEPTH);
+		imp.changes = true;
+		final ImageDisplay display = map.registerLegacyImage(imp);
+		map.markSynchronized(display);
+		assertFalse(map.isLegacyImageChanged(imp));
+
+		// NB - the flag stays set, so only the pixels tell about this edit
+		final byte[] pixels = (byte[]) imp.getStack().getPixels(3);
+		for (int i = 0; i < pixels.length; i++) {
+			pixels[i] = 5;
+		}
+
+		assertTrue(map.isLegacyImageChanged(imp));
+		harmonizer.updateDisplay(display, imp, map.isLegacyImageChanged(imp));
+		map.markSynchronized(display);
+
+		final Dataset ds = getDataset(display);
+		assertPlaneEquals(ds, 0, 0);
+		assertPlaneEquals(ds, 2, 5);
+		assertFalse(map.isLegacyImageChanged(imp));
+	}
+
+	// -- Helper methods --
+
+	private ImagePlus createImage(final int depth) {
+		return NewImage.createByteImage("test", WIDTH, HEIGHT, depth,
+			NewImage.FILL_BLACK);
+	}
+
+	private byte[] filledPlane(final int value) {
+		final byte[] plane = new byte[WIDTH * HEIGHT];
+		for (int i = 0; i < plane.length; i++) {
+			plane[i] = (byte) value;
+		}
+		return plane;
+	}
+
+	private Dataset getDataset(final ImageDisplay display) {
+		return context.getService(ImageDisplayService.class).getActiveDataset(
+			display);
+	}
+
+	private void assertPlaneEquals(final Dataset ds, final int plane,
+		final int value)
+	{
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		final long[] pos = new long[ds.numDimensions()];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(pos);
+			if (pos.length > 2 && pos[2] != plane) continue;
+			access.setPosition(pos);
+			assertEquals(value, access.get().getRealDouble(), 0);
+		}
+	}
+
+}
@@ -40,6 +40,8 @@
 import ij.ImagePlus;
 import ij.ImageStack;
 import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ShortProcessor;
 import imagej.data.Extents;
 import imagej.data.Position;
 import net.imglib2.meta.Axes;
@@ -116,4 +118,55 @@ public void testRasterization() {
 		}
 	}
 
+	@Test
+	public void testPlaneIndex() {
+		final long[] dims = new long[] { 4, 3, 2, 5, 7 };
+		final long[] pos = new long[dims.length];
+		long expected = 0;
+		for (int t = 0; t < dims[4]; t++) {
+			pos[4] = t;
+			for (int z = 0; z < dims[3]; z++) {
+				pos[3] = z;
+				for (int c = 0; c < dims[2]; c++) {
+					pos[2] = c;
+					// X and Y coordinates are ignored
+					pos[0] = c;
+					pos[1] = z % dims[1];
+					assertEquals(expected++, LegacyUtils.planeIndex(dims, pos));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLegacyPlaneRoundTrip() {
+		final double[] values = new double[] { 0, 1, 127, 128, 200, 255 };
+		final double[] copy = new double[values.length];
+
+		final ByteProcessor bp = new ByteProcessor(3, 2);
+		LegacyUtils.writeLegacyPlane(values, bp);
+		LegacyUtils.readLegacyPlane(bp, copy);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], copy[i], 0);
+			assertEquals(bp.getf(i), copy[i], 0);
+		}
+
+		final ShortProcessor sp = new ShortProcessor(3, 2);
+		values[5] = 65535;
+		LegacyUtils.writeLegacyPlane(values, sp);
+		LegacyUtils.readLegacyPlane(sp, copy);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], copy[i], 0);
+			assertEquals(sp.getf(i), copy[i], 0);
+		}
+
+		final FloatProcessor fp = new FloatProcessor(3, 2);
+		values[5] = -1.25;
+		LegacyUtils.writeLegacyPlane(values, fp);
+		LegacyUtils.readLegacyPlane(fp, copy);
+		for (int i = 0; i < values.length; i++) {
+			assertEquals(values[i], copy[i], 0);
+		}
+	}
+
 }
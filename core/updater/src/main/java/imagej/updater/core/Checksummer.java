@@ -44,6 +44,7 @@
 import imagej.updater.util.Util;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
@@ -61,6 +62,12 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.ZipException;
 
 /**
@@ -74,9 +81,16 @@ public class Checksummer extends AbstractProgressable {
 	private FilesCollection files;
 	private int counter, total;
 	private Map<String, FileObject.Version> cachedChecksums;
+	private Map<String, String> cachedJarDigests;
 	private boolean isWindows; // time tax for Redmont
 	private Map<String, List<StringAndFile>> queue;
 
+	/**
+	 * Guards the caches, counters and progress listeners, which are accessed
+	 * from all digesting threads.
+	 */
+	private final Object lock = new Object();
+
 	public Checksummer(final FilesCollection files, final Progress progress) {
 		this.files = files;
 		if (progress != null) addProgress(progress);
@@ -90,6 +104,7 @@ protected static class StringAndFile {
 		private File file;
 		public long timestamp;
 		public String checksum;
+		private boolean digested;
 
 		protected StringAndFile(final String path, final File file) {
 			this.path = path;
@@ -170,22 +185,7 @@ protected void queue(final String path, final File file) {
 	protected void handle(final String unversioned) {
 		final List<StringAndFile> pairs = queue.get(unversioned);
 		for (final StringAndFile pair : pairs) {
-			addItem(pair.path);
-
-			if (pair.file.exists()) try {
-				pair.timestamp = Util.getTimestamp(pair.file);
-				pair.checksum = getDigest(pair.path, pair.file, pair.timestamp);
-			}
-			catch (final ZipException e) {
-				files.log.error("Problem digesting " + pair.file);
-			}
-			catch (final Exception e) {
-				files.log.error(e);
-			}
-
-			counter += (int) pair.file.length();
-			itemDone(pair.path);
-			setCount(counter, total);
+			if (!pair.digested) digest(pair);
 		}
 
 		if (pairs.size() == 1) {
@@ -246,6 +246,102 @@ else if (obsoletes.size() > 0)
 		handle(pair);
 	}
 
+	/**
+	 * Determines the timestamp and checksum of a single file.
+	 * 
+	 * @param pair the file
+	 */
+	protected void digest(final StringAndFile pair) {
+		synchronized (lock) {
+			addItem(pair.path);
+		}
+
+		if (pair.file.exists()) try {
+			pair.timestamp = Util.getTimestamp(pair.file);
+			pair.checksum = getDigest(pair.path, pair.file, pair.timestamp);
+		}
+		catch (final ZipException e) {
+			files.log.error("Problem digesting " + pair.file);
+		}
+		catch (final Exception e) {
+			files.log.error(e);
+		}
+		pair.digested = true;
+
+		synchronized (lock) {
+			counter += (int) pair.file.length();
+			itemDone(pair.path);
+			setCount(counter, total);
+		}
+	}
+
+	/**
+	 * Digests the given files on as many threads as there are processors.
+	 * 
+	 * @param pairs the files
+	 */
+	protected void digest(final List<StringAndFile> pairs) {
+		final int threadCount =
+			Math.min(pairs.size(), Runtime.getRuntime().availableProcessors());
+		if (threadCount < 2) return; // handle() digests them one by one
+
+		synchronized (lock) {
+			if (cachedChecksums == null) readCachedChecksums();
+		}
+
+		final AtomicInteger next = new AtomicInteger();
+		final ExecutorService executor =
+			Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Checksummer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		final List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < threadCount; i++) {
+			futures.add(executor.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					try {
+						for (;;) {
+							final int index = next.getAndIncrement();
+							if (index >= pairs.size()) break;
+							digest(pairs.get(index));
+						}
+					}
+					catch (final RuntimeException e) {
+						// e.g. canceled; stop the other threads, too
+						next.set(pairs.size());
+						throw e;
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+
+		RuntimeException failure = null;
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				next.set(pairs.size());
+				if (failure == null) failure = new RuntimeException(e);
+			}
+			catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof Error) throw (Error) cause;
+				if (failure == null) failure = (RuntimeException) cause;
+			}
+		}
+		if (failure != null) throw failure;
+	}
+
 	protected static StringAndFile pickNewest(final List<StringAndFile> list) {
 		int index = 0;
 		if (list.size() > 1) {
@@ -373,10 +469,14 @@ protected void handle(final StringAndFile pair) {
 
 	protected void handleQueue() {
 		total = 0;
+		final List<StringAndFile> pairs = new ArrayList<StringAndFile>();
 		for (final String unversioned : queue.keySet())
-			for (final StringAndFile pair : queue.get(unversioned))
+			for (final StringAndFile pair : queue.get(unversioned)) {
 				total += (int) pair.file.length();
+				pairs.add(pair);
+			}
 		counter = 0;
+		digest(pairs);
 		for (final String unversioned : queue.keySet())
 			handle(unversioned);
 		done();
@@ -476,6 +576,7 @@ public void updateFromLocal() {
 
 	protected void readCachedChecksums() {
 		cachedChecksums = new TreeMap<String, FileObject.Version>();
+		cachedJarDigests = new HashMap<String, String>();
 		final File file = files.prefix(".checksums");
 		if (!file.exists()) return;
 		try {
@@ -491,6 +592,10 @@ protected void readCachedChecksums() {
 					final long timestamp =
 						Long.parseLong(line.substring(space + 1, space2));
 					final String filename = line.substring(space2 + 1);
+					if (filename.startsWith("#")) {
+						cachedJarDigests.put(filename.substring(1), checksum);
+						continue;
+					}
 					cachedChecksums.put(filename, new FileObject.Version(checksum,
 						timestamp));
 				}
@@ -507,19 +612,31 @@ protected void readCachedChecksums() {
 	protected void writeCachedChecksums() {
 		if (cachedChecksums == null) return;
 		final File file = files.prefix(".checksums");
+		// write to a temporary file first, so that no reader sees a partial file
+		final File tmp = files.prefix(".checksums.tmp");
 		// file.canWrite() not applicable, as the file need not exist
 		try {
-			final Writer writer = new FileWriter(file);
+			final Writer writer = new BufferedWriter(new FileWriter(tmp));
+			final Set<String> checksums = new HashSet<String>();
 			for (final String filename : cachedChecksums.keySet())
 				if (filename.startsWith(":") || files.prefix(filename).exists()) {
 					final FileObject.Version version = cachedChecksums.get(filename);
 					writer.write(version.checksum + " " + version.timestamp + " " +
 						filename + "\n");
+					checksums.add(version.checksum);
+				}
+			// keep only the .jar digests of the files that are still there
+			for (final Map.Entry<String, String> entry : cachedJarDigests.entrySet())
+				if (checksums.contains(entry.getValue())) {
+					writer.write(entry.getValue() + " 0 #" + entry.getKey() + "\n");
 				}
 			writer.close();
+			if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+				tmp.delete();
+			}
 		}
 		catch (final IOException e) {
-			// ignore
+			tmp.delete();
 		}
 	}
 
@@ -527,16 +644,26 @@ protected String getDigest(final String path, final File file,
 		final long timestamp) throws IOException, NoSuchAlgorithmException,
 		ZipException
 	{
-		if (cachedChecksums == null) readCachedChecksums();
-		FileObject.Version version = cachedChecksums.get(path);
+		FileObject.Version version;
+		synchronized (lock) {
+			if (cachedChecksums == null) readCachedChecksums();
+			version = cachedChecksums.get(path);
+		}
 		if (version == null || timestamp != version.timestamp) {
 			final String checksum = path.equals("plugins/Fiji_Updater.jar") ?
 				Util.getJarDigest(file, false, false, false) :
+				path.endsWith(".jar") ? getJarDigest(file) :
 				Util.getDigest(path, file);
 			version = new FileObject.Version(checksum, timestamp);
-			cachedChecksums.put(path, version);
+			synchronized (lock) {
+				cachedChecksums.put(path, version);
+			}
+		}
+		final boolean hasObsoletes;
+		synchronized (lock) {
+			hasObsoletes = cachedChecksums.containsKey(":" + version.checksum);
 		}
-		if (!cachedChecksums.containsKey(":" + version.checksum)) {
+		if (!hasObsoletes) {
 			final List<String> obsoletes = Util.getObsoleteDigests(path, file);
 			if (obsoletes != null) {
 				final StringBuilder builder = new StringBuilder();
@@ -544,10 +671,32 @@ protected String getDigest(final String path, final File file,
 					if (builder.length() > 0) builder.append(':');
 					builder.append(obsolete);
 				}
-				cachedChecksums.put(":" + version.checksum, new FileObject.Version(
-					builder.toString(), timestamp));
+				synchronized (lock) {
+					cachedChecksums.put(":" + version.checksum, new FileObject.Version(
+						builder.toString(), timestamp));
+				}
 			}
 		}
 		return version.checksum;
 	}
+
+	/**
+	 * Gets the digest of a .jar file, reusing the digest of an earlier .jar
+	 * file with the very same bytes. That way, a .jar file whose timestamp
+	 * changed (e.g. because it was copied) need not be decompressed again.
+	 */
+	private String getJarDigest(final File file) throws IOException {
+		final String fingerprint = Util.getJarFingerprint(file);
+		String checksum;
+		synchronized (lock) {
+			checksum = cachedJarDigests.get(fingerprint);
+		}
+		if (checksum == null) {
+			checksum = Util.getJarDigest(file);
+			synchronized (lock) {
+				cachedJarDigests.put(fingerprint, checksum);
+			}
+		}
+		return checksum;
+	}
 }
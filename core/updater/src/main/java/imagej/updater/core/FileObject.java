@@ -39,10 +39,12 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -192,6 +194,9 @@ public Action getNoAction() {
 	private Set<String> platforms;
 	private Set<String> categories;
 
+	// the collections whose index lists this file; see changed()
+	private List<WeakReference<FilesCollection>> indexingCollections;
+
 	public FileObject(final String updateSite, final String filename,
 		final long filesize, final String checksum, final long timestamp,
 		final Status status)
@@ -228,6 +233,7 @@ public void merge(final FileObject upstream) {
 			current = upstream.current;
 			status = upstream.status;
 			action = upstream.action;
+			changed();
 		}
 		else {
 			final Version other = upstream.current;
@@ -415,6 +421,7 @@ public void addPreviousVersion(final String checksum, final long timestamp, fina
 
 	public void setNoAction() {
 		action = status.getNoAction();
+		changed();
 	}
 
 	public void setAction(final FilesCollection files, final Action action) {
@@ -442,6 +449,7 @@ public void setAction(final FilesCollection files, final Action action) {
 			originalUpdateSite = null;
 		}
 		this.action = action;
+		changed();
 	}
 
 	public boolean setFirstValidAction(final FilesCollection files,
@@ -475,6 +483,7 @@ else if (isObsolete() || status == Status.UPDATEABLE) {
 				filename + " is already uploaded");
 			setVersion(localChecksum, localTimestamp);
 		}
+		changed();
 	}
 
 	@Deprecated
@@ -812,4 +821,38 @@ public String toDebug() {
 	public String toString() {
 		return filename;
 	}
+
+	/**
+	 * Tells the collections listing this file in their index that its status or
+	 * action changed.
+	 */
+	private void changed() {
+		if (indexingCollections == null) return;
+		for (final Iterator<WeakReference<FilesCollection>> iter =
+			indexingCollections.iterator(); iter.hasNext();)
+		{
+			final FilesCollection files = iter.next().get();
+			if (files == null) iter.remove();
+			else files.fileChanged(this);
+		}
+	}
+
+	void addIndexingCollection(final FilesCollection files) {
+		if (indexingCollections == null) {
+			indexingCollections = new ArrayList<WeakReference<FilesCollection>>(1);
+		}
+		for (final WeakReference<FilesCollection> reference : indexingCollections)
+			if (reference.get() == files) return;
+		indexingCollections.add(new WeakReference<FilesCollection>(files));
+	}
+
+	void removeIndexingCollection(final FilesCollection files) {
+		if (indexingCollections == null) return;
+		for (final Iterator<WeakReference<FilesCollection>> iter =
+			indexingCollections.iterator(); iter.hasNext();)
+		{
+			final FilesCollection other = iter.next().get();
+			if (other == null || other == files) iter.remove();
+		}
+	}
 }
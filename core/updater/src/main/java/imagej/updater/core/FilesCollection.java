@@ -58,8 +58,10 @@
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -96,6 +98,9 @@ public class FilesCollection extends LinkedHashMap<String, FileObject>
 	private DependencyAnalyzer dependencyAnalyzer;
 	public final Util util;
 
+	// the index of the files by status and action; see getIndex()
+	private Index index;
+
 	/**
 	 * This constructor takes the imagejRoot primarily for testing purposes.
 	 * 
@@ -392,7 +397,8 @@ public FilesCollection clone(final Iterable<FileObject> iterable) {
 	}
 
 	public Iterable<FileObject> toUploadOrRemove() {
-		return filter(or(is(Action.UPLOAD), is(Action.REMOVE)));
+		return indexed(or(is(Action.UPLOAD), is(Action.REMOVE)), Action.UPLOAD,
+			Action.REMOVE);
 	}
 
 	public Iterable<FileObject> toUpload() {
@@ -400,7 +406,7 @@ public Iterable<FileObject> toUpload() {
 	}
 
 	public Iterable<FileObject> toUpload(final boolean includeMetadataChanges) {
-		if (!includeMetadataChanges) return filter(is(Action.UPLOAD));
+		if (!includeMetadataChanges) return indexed(is(Action.UPLOAD), Action.UPLOAD);
 		return filter(or(is(Action.UPLOAD), new Filter() {
 
 			@Override
@@ -411,31 +417,33 @@ public boolean matches(final FileObject file) {
 	}
 
 	public Iterable<FileObject> toUpload(final String updateSite) {
-		return filter(and(is(Action.UPLOAD), isUpdateSite(updateSite)));
+		return indexed(and(is(Action.UPLOAD), isUpdateSite(updateSite)),
+			Action.UPLOAD);
 	}
 
 	public Iterable<FileObject> toUninstall() {
-		return filter(is(Action.UNINSTALL));
+		return indexed(is(Action.UNINSTALL), Action.UNINSTALL);
 	}
 
 	public Iterable<FileObject> toRemove() {
-		return filter(is(Action.REMOVE));
+		return indexed(is(Action.REMOVE), Action.REMOVE);
 	}
 
 	public Iterable<FileObject> toUpdate() {
-		return filter(is(Action.UPDATE));
+		return indexed(is(Action.UPDATE), Action.UPDATE);
 	}
 
 	public Iterable<FileObject> upToDate() {
-		return filter(is(Action.INSTALLED));
+		return indexed(is(Action.INSTALLED), Action.INSTALLED);
 	}
 
 	public Iterable<FileObject> toInstall() {
-		return filter(is(Action.INSTALL));
+		return indexed(is(Action.INSTALL), Action.INSTALL);
 	}
 
 	public Iterable<FileObject> toInstallOrUpdate() {
-		return filter(oneOf(Action.INSTALL, Action.UPDATE));
+		return indexed(oneOf(Action.INSTALL, Action.UPDATE), Action.INSTALL,
+			Action.UPDATE);
 	}
 
 	public Iterable<FileObject> notHidden() {
@@ -443,7 +451,7 @@ public Iterable<FileObject> notHidden() {
 	}
 
 	public Iterable<FileObject> uninstalled() {
-		return filter(is(Status.NOT_INSTALLED));
+		return indexed(is(Status.NOT_INSTALLED), Status.NOT_INSTALLED);
 	}
 
 	public Iterable<FileObject> installed() {
@@ -452,8 +460,8 @@ public Iterable<FileObject> installed() {
 	}
 
 	public Iterable<FileObject> locallyModified() {
-		return filter(oneOf(Status.MODIFIED,
-			Status.OBSOLETE_MODIFIED));
+		return indexed(oneOf(Status.MODIFIED, Status.OBSOLETE_MODIFIED),
+			Status.MODIFIED, Status.OBSOLETE_MODIFIED);
 	}
 
 	public Iterable<FileObject> forUpdateSite(final String name) {
@@ -485,7 +493,7 @@ public Iterable<FileObject> managedFiles() {
 	}
 
 	public Iterable<FileObject> localOnly() {
-		return filter(is(Status.LOCAL_ONLY));
+		return indexed(is(Status.LOCAL_ONLY), Status.LOCAL_ONLY);
 	}
 
 	public Iterable<FileObject> shownByDefault() {
@@ -496,7 +504,8 @@ public Iterable<FileObject> shownByDefault() {
 		final Status[] oneOf =
 			{ Status.UPDATEABLE, Status.NEW, Status.OBSOLETE,
 				Status.OBSOLETE_MODIFIED };
-		return filter(or(oneOf(oneOf), is(Action.INSTALL)));
+		return indexed(or(oneOf(oneOf), is(Action.INSTALL)), Status.UPDATEABLE,
+			Status.NEW, Status.OBSOLETE, Status.OBSOLETE_MODIFIED, Action.INSTALL);
 	}
 
 	public Iterable<FileObject> uploadable() {
@@ -510,13 +519,151 @@ public boolean matches(final FileObject file) {
 	}
 
 	public Iterable<FileObject> changes() {
-		return filter(new Filter() {
+		return new Iterable<FileObject>() {
 
 			@Override
-			public boolean matches(final FileObject file) {
-				return file.getAction() != file.getStatus().getNoAction();
+			public Iterator<FileObject> iterator() {
+				final Index index = getIndex();
+				return new FilteredIterator(not(isNoAction()), index
+					.snapshot(Collections.singleton(index.changes)));
 			}
-		});
+		};
+	}
+
+	/**
+	 * The files by status and action, plus the files with a pending change.
+	 * <p>
+	 * The files tell the collection when their status or action changes, and
+	 * the index moves just that file.
+	 * </p>
+	 */
+	private static class Index {
+
+		private final FilesCollection files;
+		private final Map<FileObject, Location> locations =
+			new IdentityHashMap<FileObject, Location>();
+		private int nextPosition;
+		private final Comparator<FileObject> order = new Comparator<FileObject>()
+		{
+
+			@Override
+			public int compare(final FileObject file1, final FileObject file2) {
+				return locations.get(file1).position - locations.get(file2).position;
+			}
+		};
+		private final Map<Status, Set<FileObject>> byStatus =
+			new EnumMap<Status, Set<FileObject>>(Status.class);
+		private final Map<Action, Set<FileObject>> byAction =
+			new EnumMap<Action, Set<FileObject>>(Action.class);
+		private final Set<FileObject> changes = new TreeSet<FileObject>(order);
+
+		/** What a file is listed under, and where it is in the collection. */
+		private static class Location {
+
+			private final int position;
+			private Status status;
+			private Action action;
+
+			private Location(final int position) {
+				this.position = position;
+			}
+		}
+
+		private Index(final FilesCollection files) {
+			this.files = files;
+			for (final FileObject file : files)
+				add(file);
+		}
+
+		private void add(final FileObject file) {
+			if (locations.containsKey(file)) return;
+			locations.put(file, new Location(nextPosition++));
+			file.addIndexingCollection(files);
+			update(file);
+		}
+
+		/** Adds a file in the place of the one with the same name. */
+		private void replace(final FileObject previous, final FileObject file) {
+			if (previous == file) return;
+			final Location location = locations.get(previous);
+			if (location == null) {
+				add(file);
+				return;
+			}
+			remove(previous);
+			locations.put(file, new Location(location.position));
+			file.addIndexingCollection(files);
+			update(file);
+		}
+
+		private void remove(final FileObject file) {
+			final Location location = locations.get(file);
+			if (location == null) return;
+			get(byStatus, location.status).remove(file);
+			get(byAction, location.action).remove(file);
+			changes.remove(file);
+			locations.remove(file);
+			file.removeIndexingCollection(files);
+		}
+
+		private void removeAll() {
+			for (final FileObject file : locations.keySet())
+				file.removeIndexingCollection(files);
+			locations.clear();
+		}
+
+		/** Moves a file to the lists matching its current status and action. */
+		private void update(final FileObject file) {
+			final Location location = locations.get(file);
+			if (location == null) return;
+			final Status status = file.getStatus();
+			final Action action = file.getAction();
+			if (location.status != status) {
+				if (location.status != null) get(byStatus, location.status).remove(file);
+				get(byStatus, status).add(file);
+				location.status = status;
+			}
+			if (location.action != action) {
+				if (location.action != null) get(byAction, location.action).remove(file);
+				get(byAction, action).add(file);
+				location.action = action;
+			}
+			if (action != status.getNoAction()) changes.add(file);
+			else changes.remove(file);
+		}
+
+		private Set<FileObject> get(final Status status) {
+			return get(byStatus, status);
+		}
+
+		private Set<FileObject> get(final Action action) {
+			return get(byAction, action);
+		}
+
+		/**
+		 * Copies the files of the given lists, in the order of the collection.
+		 * The copy can be iterated while the files' status or action change.
+		 */
+		private List<FileObject> snapshot(final Collection<Set<FileObject>> sets) {
+			if (sets.size() == 1) {
+				return new ArrayList<FileObject>(sets.iterator().next());
+			}
+			final Set<FileObject> result = new TreeSet<FileObject>(order);
+			for (final Set<FileObject> set : sets)
+				result.addAll(set);
+			return new ArrayList<FileObject>(result);
+		}
+
+		private <K> Set<FileObject> get(final Map<K, Set<FileObject>> map,
+			final K key)
+		{
+			Set<FileObject> set = map.get(key);
+			if (set == null) {
+				set = new TreeSet<FileObject>(order);
+				map.put(key, set);
+			}
+			return set;
+		}
 	}
 
 	public static class FilteredIterator implements Iterator<FileObject> {
@@ -738,6 +885,55 @@ public Iterable<FileObject> filter(final Filter filter) {
 		return filter(filter, this);
 	}
 
+	/**
+	 * Like {@link #filter(Filter)}, but only looks at the files the index lists
+	 * under the given statuses and actions. The filter must not match any other
+	 * file.
+	 */
+	protected Iterable<FileObject> indexed(final Filter filter,
+		final Enum<?>... keys)
+	{
+		return new Iterable<FileObject>() {
+
+			@Override
+			public Iterator<FileObject> iterator() {
+				final Index index = getIndex();
+				final List<Set<FileObject>> sets = new ArrayList<Set<FileObject>>();
+				for (final Enum<?> key : keys)
+					sets.add(key instanceof Status ? index.get((Status) key) : index
+						.get((Action) key));
+				return new FilteredIterator(filter, index.snapshot(sets));
+			}
+		};
+	}
+
+	/**
+	 * Gets the index of the files by status and action.
+	 * <p>
+	 * The index is built when it is first needed, and then kept up-to-date as
+	 * files are added or removed, and as their status or action change. That
+	 * way, the views that are queried over and over again by the user
+	 * interface only look at the files they return.
+	 * </p>
+	 */
+	private Index getIndex() {
+		// LinkedHashMap's bulk operations bypass add() and remove()
+		if (index != null && index.locations.size() != size()) discardIndex();
+		if (index == null) index = new Index(this);
+		return index;
+	}
+
+	private void discardIndex() {
+		if (index == null) return;
+		index.removeAll();
+		index = null;
+	}
+
+	/** Called by a file of this collection whose status or action changed. */
+	void fileChanged(final FileObject file) {
+		if (index != null) index.update(file);
+	}
+
 	public FileObject
 		getFileFromDigest(final String filename, final String digest)
 	{
@@ -773,11 +969,11 @@ public boolean has(final Filter filter) {
 	}
 
 	public boolean hasChanges() {
-		return has(not(isNoAction()));
+		return changes().iterator().hasNext();
 	}
 
 	public boolean hasUploadOrRemove() {
-		return has(oneOf(Action.UPLOAD, Action.REMOVE));
+		return toUploadOrRemove().iterator().hasNext();
 	}
 
 	public boolean hasForcableUpdates() {
@@ -787,13 +983,23 @@ public boolean hasForcableUpdates() {
 	}
 
 	public Iterable<FileObject> updateable(final boolean evenForcedOnes) {
-		return filter(new Filter() {
+		final List<Enum<?>> keys = new ArrayList<Enum<?>>();
+		keys.add(Action.UPDATE);
+		keys.add(Action.INSTALL);
+		keys.add(Status.UPDATEABLE);
+		keys.add(Status.OBSOLETE);
+		if (evenForcedOnes) {
+			for (final Status status : Status.values())
+				if (status.isValid(Action.UPDATE)) keys.add(status);
+			keys.add(Status.OBSOLETE_MODIFIED);
+		}
+		return indexed(new Filter() {
 
 			@Override
 			public boolean matches(final FileObject file) {
 				return file.isUpdateable(evenForcedOnes) && file.isUpdateablePlatform(FilesCollection.this);
 			}
-		});
+		}, keys.toArray(new Enum<?>[keys.size()]));
 	}
 
 	public void markForUpdate(final boolean evenForcedUpdates) {
@@ -990,7 +1196,8 @@ public FileObject get(@SuppressWarnings("unused") final int index) {
 	}
 
 	public void add(final FileObject file) {
-		super.put(file.getFilename(true), file);
+		final FileObject previous = super.put(file.getFilename(true), file);
+		if (index != null) index.replace(previous, file);
 	}
 
 	@Override
@@ -1005,9 +1212,17 @@ public FileObject put(final String key, final FileObject file) {
 
 	@Override
 	public FileObject remove(final Object file) {
-		if (file instanceof FileObject) super.remove(((FileObject) file).getFilename(true));
-		if (file instanceof String) return super.remove(FileObject.getFilename((String)file, true));
-		return null;
+		FileObject removed = null;
+		if (file instanceof FileObject) removed = super.remove(((FileObject) file).getFilename(true));
+		if (file instanceof String) removed = super.remove(FileObject.getFilename((String)file, true));
+		if (removed != null && index != null) index.remove(removed);
+		return file instanceof String ? removed : null;
+	}
+
+	@Override
+	public void clear() {
+		discardIndex();
+		super.clear();
 	}
 
 	@Override
@@ -36,24 +36,51 @@
 package imagej.updater.core;
 
 import imagej.updater.util.AbstractProgressable;
+import imagej.updater.util.Downloader;
 import imagej.updater.util.Util;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.net.URLEncoder;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.zip.GZIPInputStream;
 
 /**
  * Directly in charge of downloading and saving start-up files (i.e.: XML file
  * and related).
+ * <p>
+ * The indexes of all update sites are downloaded at the same time, into a
+ * cache in the {@value #INDEX_CACHE} directory. HTTP update sites are asked
+ * only for indexes that changed since they were cached (using the
+ * <i>ETag</i> and <i>Last-Modified</i> headers); unchanged indexes are read
+ * from the cache. The indexes are parsed in the order of the update sites,
+ * since later sites may shadow files of earlier ones.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
 public class XMLFileDownloader extends AbstractProgressable {
 
+	/** The directory, relative to the ImageJ root, caching the indexes. */
+	public final static String INDEX_CACHE = ".index-cache";
+
 	private FilesCollection files;
 	private Collection<String> updateSites;
 	private String warnings;
@@ -78,35 +105,70 @@ public void start(boolean closeProgressAtEnd) {
 		if (updateSites == null || updateSites.size() == 0) return;
 		setTitle("Updating the index of available files");
 		final XMLFileReader reader = new XMLFileReader(files);
-		final int current = 0, total = updateSites.size();
+		final int total = updateSites.size();
+		int current = 0;
 		warnings = "";
-		for (final String name : updateSites) {
-			final UpdateSite updateSite = files.getUpdateSite(name, true);
-			final String title =
-				"Updating from " + (name.equals("") ? "main" : name) + " site: " + updateSite.getURL();
-			addItem(title);
-			setCount(current, total);
-			try {
-				final URLConnection connection =
-					files.util.openConnection(new URL(updateSite.getURL() + Util.XML_COMPRESSED));
-				final long lastModified = connection.getLastModified();
-				final int fileSize = connection.getContentLength();
-				final InputStream in =
-					getInputStream(new GZIPInputStream(connection.getInputStream()),
-						fileSize);
-				reader.read(name, in, updateSite.getTimestamp());
-				in.close();
-				updateSite.setLastModified(lastModified);
+
+		final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.min(total, Integer.getInteger("imagej.updater.connections",
+				Downloader.DEFAULT_MAX_CONNECTIONS)), new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable runnable) {
+					final Thread thread = new Thread(runnable, "Updater index download");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		try {
+			final Map<String, Future<Index>> indexes =
+				new LinkedHashMap<String, Future<Index>>();
+			for (final String name : updateSites) {
+				final UpdateSite updateSite = files.getUpdateSite(name, true);
+				indexes.put(name, executor.submit(new Callable<Index>() {
+
+					@Override
+					public Index call() throws IOException {
+						return fetch(name, updateSite);
+					}
+				}));
 			}
-			catch (final Exception e) {
-				if (e instanceof FileNotFoundException) {
-					// it was deleted
-					updateSite.setLastModified(0);
+
+			for (final Map.Entry<String, Future<Index>> entry : indexes.entrySet()) {
+				final String name = entry.getKey();
+				final UpdateSite updateSite = files.getUpdateSite(name, true);
+				final String title =
+					"Updating from " + (name.equals("") ? "main" : name) + " site: " + updateSite.getURL();
+				addItem(title);
+				setCount(current, total);
+				try {
+					final Index index = get(entry.getValue());
+					final InputStream in =
+						getInputStream(new GZIPInputStream(new FileInputStream(index.file)),
+							(int) index.file.length());
+					try {
+						reader.read(name, in, updateSite.getTimestamp());
+					}
+					finally {
+						in.close();
+						if (!index.cached) index.file.delete();
+					}
+					updateSite.setLastModified(index.lastModified);
+				}
+				catch (final Exception e) {
+					if (e instanceof FileNotFoundException) {
+						// it was deleted
+						updateSite.setLastModified(0);
+					}
+					files.log.error(e);
+					warnings += "Could not update from site '" + name + "': " + e;
 				}
-				files.log.error(e);
-				warnings += "Could not update from site '" + name + "': " + e;
+				itemDone(title);
+				current++;
 			}
-			itemDone(title);
+		}
+		finally {
+			executor.shutdownNow();
 		}
 		if (closeProgressAtEnd) {
 			done();
@@ -158,4 +220,127 @@ public void close() throws IOException {
 			}
 		};
 	}
+
+	// -- Helper methods --
+
+	private static Index get(final Future<Index> future) throws Exception {
+		try {
+			return future.get();
+		}
+		catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Exception) throw (Exception) cause;
+			throw e;
+		}
+	}
+
+	/**
+	 * Makes sure that the cache holds the current index of the given update
+	 * site, downloading it unless the cached copy is known to be current.
+	 */
+	private Index fetch(final String name, final UpdateSite updateSite)
+		throws IOException
+	{
+		final String url = updateSite.getURL() + Util.XML_COMPRESSED;
+		final File directory = files.prefix(INDEX_CACHE);
+		final boolean cached = directory.isDirectory() || directory.mkdirs();
+		final String key = URLEncoder.encode(name, "UTF-8");
+		final File file =
+			cached ? new File(directory, key + ".xml.gz") : File.createTempFile(
+				"index-", ".xml.gz");
+		final File metadataFile = new File(directory, key + ".properties");
+
+		final Properties metadata = new Properties();
+		if (cached && file.exists() && metadataFile.exists()) {
+			final InputStream in = new FileInputStream(metadataFile);
+			try {
+				metadata.load(in);
+			}
+			finally {
+				in.close();
+			}
+			if (!url.equals(metadata.getProperty("url"))) metadata.clear();
+		}
+
+		final URLConnection connection = files.util.openConnection(new URL(url));
+		connection.setUseCaches(false);
+		final String etag = metadata.getProperty("etag");
+		final long cachedLastModified =
+			Long.parseLong(metadata.getProperty("last-modified", "0"));
+		if (etag != null) connection.setRequestProperty("If-None-Match", etag);
+		if (cachedLastModified > 0) connection.setIfModifiedSince(cachedLastModified);
+
+		if (connection instanceof HttpURLConnection &&
+			metadata.getProperty("url") != null &&
+			((HttpURLConnection) connection).getResponseCode() ==
+				HttpURLConnection.HTTP_NOT_MODIFIED)
+		{
+			((HttpURLConnection) connection).disconnect();
+			return new Index(file, cachedLastModified, true);
+		}
+
+		final long lastModified = connection.getLastModified();
+		final File tmp = cached ? new File(file.getPath() + ".tmp") : file;
+		try {
+			final InputStream in = connection.getInputStream();
+			final OutputStream out = new FileOutputStream(tmp);
+			try {
+				final byte[] buffer = new byte[65536];
+				for (;;) {
+					final int count = in.read(buffer);
+					if (count < 0) break;
+					out.write(buffer, 0, count);
+				}
+			}
+			finally {
+				in.close();
+				out.close();
+			}
+		}
+		catch (final IOException e) {
+			tmp.delete();
+			if (cached) {
+				file.delete();
+				metadataFile.delete();
+			}
+			throw e;
+		}
+		if (!cached) return new Index(file, lastModified, false);
+
+		metadataFile.delete();
+		if (file.exists() && !file.delete() || !tmp.renameTo(file)) {
+			throw new IOException("Could not write " + file);
+		}
+		metadata.clear();
+		metadata.setProperty("url", url);
+		metadata.setProperty("last-modified", "" + lastModified);
+		final String newETag = connection.getHeaderField("ETag");
+		if (newETag != null) metadata.setProperty("etag", newETag);
+		final OutputStream out = new FileOutputStream(metadataFile);
+		try {
+			metadata.store(out, "Index of the update site '" + name + "'");
+		}
+		finally {
+			out.close();
+		}
+		return new Index(file, lastModified, true);
+	}
+
+	// -- Helper classes --
+
+	/** A downloaded (or cached) index of an update site. */
+	private static class Index {
+
+		private final File file;
+		private final long lastModified;
+		private final boolean cached;
+
+		public Index(final File file, final long lastModified,
+			final boolean cached)
+		{
+			this.file = file;
+			this.lastModified = lastModified;
+			this.cached = cached;
+		}
+	}
 }
@@ -35,63 +35,230 @@
 
 package imagej.updater.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.zip.ZipException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Maps class names to the .jar files containing them.
  * 
  * The same class can be contained in multiple .jar files, of course.
  * 
+ * The class names of every .jar file are cached in the
+ * {@value DependencyAnalyzer#CACHE_DIRECTORY} directory, so that only .jar
+ * files whose size or modification time changed need to be opened. Those are
+ * read in parallel.
+ * 
  * @author Johannes Schindelin
  */
 @SuppressWarnings("serial")
 public class Class2JarFilesMap extends HashMap<String, ArrayList<String>> {
 
+	private final static int CACHE_VERSION = 1;
+
 	protected final File imagejRoot;
 
 	public Class2JarFilesMap(final File imagejRoot) {
 		this.imagejRoot = imagejRoot;
-		addDirectory("plugins");
-		addDirectory("jars");
+		final List<String> jars = new ArrayList<String>();
+		addDirectory("plugins", jars);
+		addDirectory("jars", jars);
+
+		final Map<String, CachedJar> cache = readCache();
+		final Map<String, CachedJar> classes = listClasses(jars, cache);
+		for (final String jar : jars) {
+			final CachedJar cached = classes.get(jar);
+			if (cached == null) continue;
+			for (final String className : cached.classNames)
+				addClass(className, jar);
+		}
+		if (!classes.equals(cache)) writeCache(classes);
 	}
 
-	private void addDirectory(final String directory) {
+	private void addDirectory(final String directory, final List<String> jars) {
 		final File dir = new File(imagejRoot, directory);
 		if (!dir.isDirectory()) return;
 		final String[] list = dir.list();
 		for (int i = 0; i < list.length; i++) {
 			final String path = directory + "/" + list[i];
-			if (list[i].endsWith(".jar")) try {
-				addJar(path);
+			if (list[i].endsWith(".jar")) jars.add(path);
+			else addDirectory(path, jars);
+		}
+	}
+
+	/**
+	 * Gets the class names of the given .jar files, reusing the cached ones of
+	 * the files that did not change.
+	 */
+	private Map<String, CachedJar> listClasses(final List<String> jars,
+		final Map<String, CachedJar> cache)
+	{
+		final Map<String, CachedJar> result =
+			new LinkedHashMap<String, CachedJar>();
+		final Map<String, Future<CachedJar>> futures =
+			new LinkedHashMap<String, Future<CachedJar>>();
+		ExecutorService executor = null;
+		try {
+			for (final String jar : jars) {
+				final File file = new File(imagejRoot, jar);
+				final CachedJar cached = cache.get(jar);
+				if (cached != null && cached.isCurrent(file)) {
+					result.put(jar, cached);
+					continue;
+				}
+				if (executor == null) {
+					executor =
+						Executors.newFixedThreadPool(Runtime.getRuntime()
+							.availableProcessors(), new ThreadFactory() {
+
+							@Override
+							public Thread newThread(final Runnable runnable) {
+								final Thread thread =
+									new Thread(runnable, "Class2JarFilesMap");
+								thread.setDaemon(true);
+								return thread;
+							}
+						});
+				}
+				futures.put(jar, executor.submit(new Callable<CachedJar>() {
+
+					@Override
+					public CachedJar call() throws IOException {
+						return readJar(file);
+					}
+				}));
 			}
-			catch (final IOException e) {
-				UpdaterUserInterface.get().log("Warning: could not open " + path);
+
+			for (final Map.Entry<String, Future<CachedJar>> entry : futures
+				.entrySet())
+			{
+				try {
+					result.put(entry.getKey(), entry.getValue().get());
+				}
+				catch (final ExecutionException e) {
+					UpdaterUserInterface.get().log(
+						"Warning: could not open " + entry.getKey());
+				}
+				catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RuntimeException(e);
+				}
 			}
-			else addDirectory(path);
 		}
+		finally {
+			if (executor != null) executor.shutdownNow();
+		}
+		return result;
 	}
 
-	private void addJar(final String jar) throws IOException {
+	private static CachedJar readJar(final File file) throws IOException {
+		final long length = file.length(), lastModified = file.lastModified();
+		final List<String> classNames = new ArrayList<String>();
+		final JarFile jar = new JarFile(file);
 		try {
-			final JarFile file = new JarFile(new File(imagejRoot, jar));
-			final Enumeration<JarEntry> entries = file.entries();
+			final Enumeration<JarEntry> entries = jar.entries();
 			while (entries.hasMoreElements()) {
 				final String name = (entries.nextElement()).getName();
-				if (name.endsWith(".class")) addClass(Util.stripSuffix(name, ".class")
-					.replace('/', '.'), jar);
+				if (name.endsWith(".class")) classNames.add(Util.stripSuffix(name,
+					".class").replace('/', '.'));
 			}
-			file.close();
 		}
-		catch (final ZipException e) {
-			UpdaterUserInterface.get().log("Warning: could not open " + jar);
+		finally {
+			jar.close();
+		}
+		return new CachedJar(length, lastModified, classNames);
+	}
+
+	private File getCacheFile() {
+		return new File(new File(imagejRoot, DependencyAnalyzer.CACHE_DIRECTORY),
+			"classes");
+	}
+
+	private Map<String, CachedJar> readCache() {
+		final Map<String, CachedJar> result = new HashMap<String, CachedJar>();
+		final File file = getCacheFile();
+		if (!file.exists()) return result;
+		try {
+			final DataInputStream in =
+				new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+					new FileInputStream(file))));
+			try {
+				if (in.readInt() != CACHE_VERSION) return result;
+				for (int count = in.readInt(); count > 0; count--) {
+					final String jar = in.readUTF();
+					final long length = in.readLong();
+					final long lastModified = in.readLong();
+					final int classCount = in.readInt();
+					final List<String> classNames = new ArrayList<String>(classCount);
+					for (int i = 0; i < classCount; i++)
+						classNames.add(in.readUTF());
+					result.put(jar, new CachedJar(length, lastModified, classNames));
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (final IOException e) {
+			// ignore invalid cache
+			result.clear();
+		}
+		return result;
+	}
+
+	private void writeCache(final Map<String, CachedJar> classes) {
+		final File file = getCacheFile();
+		final File tmp = new File(file.getPath() + ".tmp");
+		final File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) return;
+		try {
+			final DataOutputStream out =
+				new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+					new FileOutputStream(tmp))));
+			try {
+				out.writeInt(CACHE_VERSION);
+				out.writeInt(classes.size());
+				for (final Map.Entry<String, CachedJar> entry : classes.entrySet()) {
+					final CachedJar cached = entry.getValue();
+					out.writeUTF(entry.getKey());
+					out.writeLong(cached.length);
+					out.writeLong(cached.lastModified);
+					out.writeInt(cached.classNames.size());
+					for (final String className : cached.classNames)
+						out.writeUTF(className);
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+				tmp.delete();
+			}
+		}
+		catch (final IOException e) {
+			// the cache is only an optimization
+			tmp.delete();
 		}
 	}
 
@@ -145,4 +312,38 @@ public static void printJarsForClass(final Class2JarFilesMap map,
 		System.out.println();
 	}
 
+	// -- Helper classes --
+
+	/** The class names of a .jar file with the size and time they are from. */
+	private static class CachedJar {
+
+		private final long length, lastModified;
+		private final List<String> classNames;
+
+		public CachedJar(final long length, final long lastModified,
+			final List<String> classNames)
+		{
+			this.length = length;
+			this.lastModified = lastModified;
+			this.classNames = classNames;
+		}
+
+		public boolean isCurrent(final File file) {
+			return file.length() == length && file.lastModified() == lastModified;
+		}
+
+		@Override
+		public boolean equals(final Object other) {
+			if (!(other instanceof CachedJar)) return false;
+			final CachedJar jar = (CachedJar) other;
+			return length == jar.length && lastModified == jar.lastModified &&
+				classNames.equals(jar.classNames);
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (length ^ lastModified) ^ classNames.hashCode();
+		}
+	}
+
 }
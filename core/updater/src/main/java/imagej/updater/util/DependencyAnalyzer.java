@@ -39,9 +39,18 @@
 import imagej.updater.core.FileObject.Status;
 import imagej.updater.util.ByteCodeAnalyzer.Mode;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -51,6 +60,8 @@
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.regex.Matcher;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.scijava.util.FileUtils;
 
@@ -64,15 +75,29 @@
  * you load a ton of classes into a classloader). The magic numbers and offsets
  * are taken from
  * http://java.sun.com/docs/books/jvms/second_edition/html/ClassFile.doc.html
+ * <p>
+ * The names of the classes referenced by a .jar file are cached in the
+ * {@value #CACHE_DIRECTORY} directory, together with a fingerprint of the .jar
+ * file's contents (see {@link Util#getJarFingerprint(File)}). Only .jar files
+ * whose contents changed need to be analyzed again. The superclasses and
+ * interfaces of the referenced classes are not cached: they are looked up in
+ * the current class path, which may differ from run to run.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
 public class DependencyAnalyzer {
 
+	/** The directory, relative to the ImageJ root, caching the analyses. */
+	public final static String CACHE_DIRECTORY = ".dependency-cache";
+
+	private final static int CACHE_VERSION = 2;
+
 	private final Class2JarFilesMap map;
 
 	public DependencyAnalyzer(final File imagejRoot) {
 		map = new Class2JarFilesMap(imagejRoot);
+		pruneCache(imagejRoot);
 	}
 
 	public Iterable<String> getDependencies(final File imagejRoot,
@@ -92,19 +117,12 @@ public Iterable<String> getDependencies(final File imagejRoot,
 
 		final Set<String> result = new LinkedHashSet<String>();
 		final Set<String> handled = new HashSet<String>();
-
-		final JarFile jar = new JarFile(file);
-		for (final JarEntry entry : Collections.list(jar.entries())) {
-			if (!entry.getName().endsWith(".class")) continue;
-
-			final InputStream input = jar.getInputStream(entry);
-			final byte[] code = Util.readStreamAsBytes(input);
-			final ByteCodeAnalyzer analyzer = new ByteCodeAnalyzer(code, Mode.INTERFACES);
-
+		for (final List<String> referenced : getReferencedClasses(imagejRoot,
+			path, file))
+		{
 			final Set<String> allClassNames = new HashSet<String>();
-			for (final String name : analyzer)
+			for (final String name : referenced)
 				addClassAndInterfaces(allClassNames, handled, name);
-
 			classNameLoop:
 			for (final String name : allClassNames) {
 				UpdaterUserInterface.get().debug(
@@ -136,10 +154,139 @@ public Iterable<String> getDependencies(final File imagejRoot,
 				}
 			}
 		}
-		jar.close();
 		return result;
 	}
 
+	/**
+	 * Gets the names of the classes referenced by each class in the given .jar
+	 * file, from the cache if the .jar file's contents did not change.
+	 * <p>
+	 * These are just the names found in the bytecode; they do not depend on the
+	 * class path, and can therefore be cached.
+	 * </p>
+	 */
+	private List<List<String>> getReferencedClasses(final File imagejRoot,
+		final String path, final File file) throws IOException
+	{
+		final String fingerprint = Util.getJarFingerprint(file);
+		final File cache = getCacheFile(imagejRoot, path);
+		List<List<String>> result = readCache(cache, fingerprint);
+		if (result != null) return result;
+
+		result = new ArrayList<List<String>>();
+		final JarFile jar = new JarFile(file);
+		try {
+			for (final JarEntry entry : Collections.list(jar.entries())) {
+				if (!entry.getName().endsWith(".class")) continue;
+
+				final InputStream input = jar.getInputStream(entry);
+				final byte[] code = Util.readStreamAsBytes(input);
+				final ByteCodeAnalyzer analyzer = new ByteCodeAnalyzer(code, Mode.INTERFACES);
+
+				final Set<String> names = new LinkedHashSet<String>();
+				for (final String name : analyzer)
+					if (name != null) names.add(name);
+				if (!names.isEmpty()) result.add(new ArrayList<String>(names));
+			}
+		}
+		finally {
+			jar.close();
+		}
+		writeCache(cache, fingerprint, result);
+		return result;
+	}
+
+	private static File getCacheFile(final File imagejRoot, final String path)
+		throws IOException
+	{
+		return new File(new File(imagejRoot, CACHE_DIRECTORY), URLEncoder.encode(
+			path, "UTF-8"));
+	}
+
+	private static List<List<String>> readCache(final File file,
+		final String fingerprint)
+	{
+		if (!file.exists()) return null;
+		try {
+			final DataInputStream in =
+				new DataInputStream(new BufferedInputStream(new GZIPInputStream(
+					new FileInputStream(file))));
+			try {
+				if (in.readInt() != CACHE_VERSION ||
+					!fingerprint.equals(in.readUTF())) return null;
+				final int count = in.readInt();
+				final List<List<String>> result = new ArrayList<List<String>>(count);
+				for (int i = 0; i < count; i++) {
+					final int nameCount = in.readInt();
+					final List<String> names = new ArrayList<String>(nameCount);
+					for (int j = 0; j < nameCount; j++)
+						names.add(in.readUTF());
+					result.add(names);
+				}
+				return result;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (final IOException e) {
+			return null;
+		}
+	}
+
+	private static void writeCache(final File file, final String fingerprint,
+		final List<List<String>> referencedClasses)
+	{
+		final File directory = file.getParentFile();
+		if (!directory.isDirectory() && !directory.mkdirs()) return;
+		final File tmp = new File(file.getPath() + ".tmp");
+		try {
+			final DataOutputStream out =
+				new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(
+					new FileOutputStream(tmp))));
+			try {
+				out.writeInt(CACHE_VERSION);
+				out.writeUTF(fingerprint);
+				out.writeInt(referencedClasses.size());
+				for (final List<String> names : referencedClasses) {
+					out.writeInt(names.size());
+					for (final String name : names)
+						out.writeUTF(name);
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (!tmp.renameTo(file) && (!file.delete() || !tmp.renameTo(file))) {
+				tmp.delete();
+			}
+		}
+		catch (final IOException e) {
+			// the cache is only an optimization
+			tmp.delete();
+		}
+	}
+
+	/** Removes the cached analyses of .jar files that no longer exist. */
+	private static void pruneCache(final File imagejRoot) {
+		final File[] list = new File(imagejRoot, CACHE_DIRECTORY).listFiles();
+		if (list == null) return;
+		for (final File file : list) {
+			final String name = file.getName();
+			if (!name.endsWith(".jar")) continue;
+			try {
+				final String path = URLDecoder.decode(name, "UTF-8");
+				if (!new File(imagejRoot, path).exists()) file.delete();
+			}
+			catch (final IllegalArgumentException e) {
+				file.delete();
+			}
+			catch (final UnsupportedEncodingException e) {
+				// cannot happen; UTF-8 is always supported
+			}
+		}
+	}
+
 	protected void addClassAndInterfaces(final Set<String> allClassNames,
 		final Set<String> handled, final String className)
 	{
@@ -35,32 +35,84 @@
 
 package imagej.updater.util;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Direct responsibility: Download a list of files given their respective URLs
  * to their respective destinations. Updates its download status to its
  * Observer as well.
+ * <p>
+ * Several files are downloaded at the same time (see
+ * {@link #setMaxConnections(int)}). Each file is first written next to its
+ * destination, with the suffix {@value #PARTIAL_SUFFIX}, and only moved to
+ * the destination once it is complete. Should the connection drop, the
+ * download is resumed where it stopped using an HTTP range request; likewise,
+ * a partial file left over from an earlier attempt is continued rather than
+ * downloaded anew. The ETag (or Last-Modified date) of the file is recorded
+ * next to the partial file, with the suffix {@value #VALIDATOR_SUFFIX}, and
+ * sent along as <i>If-Range</i> header so that a file changed on the server
+ * is downloaded from scratch instead of being appended to outdated bytes.
+ * </p>
  * 
  * @author Johannes Schindelin
  */
 public class Downloader extends AbstractProgressable {
 
+	/** Suffix of files that are still being downloaded. */
+	public final static String PARTIAL_SUFFIX = ".part";
+
+	/** Suffix of the files recording which version a partial file belongs to. */
+	public final static String VALIDATOR_SUFFIX = PARTIAL_SUFFIX + ".validator";
+
+	/**
+	 * The default number of files downloaded at the same time, unless set via
+	 * the <i>imagej.updater.connections</i> system property.
+	 */
+	public final static int DEFAULT_MAX_CONNECTIONS = 4;
+
+	/** The number of times a dropped download is resumed before giving up. */
+	protected final static int MAX_RETRIES = 3;
+
+	/** The delay before the first retry; it doubles with every further one. */
+	protected final static long RETRY_DELAY_MILLIS = 500;
+
 	protected int count, total, itemCount, itemTotal;
 	protected long lastModified;
 
 	protected String error;
-	protected boolean cancelled;
+	protected volatile boolean cancelled;
 
 	private final Util util;
 
+	/**
+	 * Guards the counters and the progress listeners, which are updated from
+	 * all download threads. This is not the downloader itself, as subclasses
+	 * may hold that monitor while waiting for the downloads to finish.
+	 */
+	private final Object lock = new Object();
+
+	private int maxConnections = Integer.getInteger(
+		"imagej.updater.connections", DEFAULT_MAX_CONNECTIONS);
+
 	@Deprecated
 	public Downloader() {
 		this(null, null);
@@ -76,10 +128,23 @@ public Downloader(final Progress progress, final Util util) {
 		this.util = util == null ? new Util(null) : util;
 	}
 
-	public synchronized void cancel() {
+	public void cancel() {
 		cancelled = true;
 	}
 
+	/** Sets the maximal number of files to download at the same time. */
+	public void setMaxConnections(final int maxConnections) {
+		if (maxConnections < 1) {
+			throw new IllegalArgumentException("Invalid connection count: " +
+				maxConnections);
+		}
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
 	public synchronized void start(final Downloadable justOne) throws IOException
 	{
 		start(Collections.singleton(justOne));
@@ -90,59 +155,310 @@ public void start(final Iterable<Downloadable> files) throws IOException {
 		cancelled = false;
 
 		count = total = itemCount = itemTotal = 0;
+		final List<Downloadable> list = new ArrayList<Downloadable>();
 		for (final Downloadable file : files) {
 			total += file.getFilesize();
 			itemTotal++;
+			list.add(file);
 		}
 
 		setTitle("Downloading...");
 
-		for (final Downloadable current : files) {
-			if (cancelled) break;
-			download(current);
+		if (maxConnections < 2 || list.size() < 2) {
+			for (final Downloadable current : list) {
+				if (cancelled) break;
+				download(current);
+			}
 		}
+		else downloadConcurrently(list);
 		done();
 	}
 
-	protected synchronized void download(final Downloadable current)
+	protected void download(final Downloadable current) throws IOException {
+		final File destination = current.getDestination();
+		final File partial = new File(destination.getPath() + PARTIAL_SUFFIX);
+		final File validator = new File(destination.getPath() + VALIDATOR_SUFFIX);
+		final File parentDirectory = destination.getParentFile();
+		if (parentDirectory != null) parentDirectory.mkdirs();
+
+		synchronized (lock) {
+			addItem(current);
+		}
+
+		final ItemCount counter = new ItemCount(current.getFilesize());
+		for (int attempt = 0;; attempt++) {
+			try {
+				if (!fetch(current, partial, validator, counter)) return; // canceled
+				break;
+			}
+			catch (final PermanentFailure e) {
+				throw e;
+			}
+			catch (final IOException e) {
+				if (cancelled || attempt >= MAX_RETRIES) throw e;
+				try {
+					Thread.sleep(RETRY_DELAY_MILLIS << attempt);
+				}
+				catch (final InterruptedException e2) {
+					Thread.currentThread().interrupt();
+					throw e;
+				}
+			}
+		}
+
+		if (destination.exists() && !destination.delete()) {
+			throw new IOException("Could not remove '" + destination + "'");
+		}
+		if (!partial.renameTo(destination)) {
+			throw new IOException("Could not move '" + partial + "' to '" +
+				destination + "'");
+		}
+		validator.delete();
+		synchronized (lock) {
+			itemCount++;
+			itemDone(current);
+		}
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Downloads the given files on a pool of threads. The first failure stops
+	 * all remaining downloads, and is rethrown once they are finished.
+	 */
+	private void downloadConcurrently(final List<Downloadable> list)
 		throws IOException
 	{
-		final URLConnection connection = util.openConnection(new URL(current.getURL()));
+		final ExecutorService executor =
+			Executors.newFixedThreadPool(Math.min(maxConnections, list.size()),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(final Runnable runnable) {
+						final Thread thread = new Thread(runnable, "Updater download");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+		final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (final Downloadable current : list) {
+			futures.add(executor.submit(new Callable<Void>() {
+
+				@Override
+				public Void call() throws IOException {
+					if (!cancelled) download(current);
+					return null;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		Throwable failure = null;
+		for (final Future<Void> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				cancel();
+				if (failure == null) failure = e;
+			}
+			catch (final ExecutionException e) {
+				cancel();
+				if (failure == null) failure = e.getCause();
+			}
+		}
+		if (failure == null) return;
+		if (failure instanceof IOException) throw (IOException) failure;
+		if (failure instanceof RuntimeException) throw (RuntimeException) failure;
+		if (failure instanceof Error) throw (Error) failure;
+		throw new IOException(failure);
+	}
+
+	/**
+	 * Downloads a file, or what is missing of it, into the given partial file.
+	 * <p>
+	 * The partial file is only resumed if the validator file records which
+	 * version of the file it holds, and the server confirms (via
+	 * <i>If-Range</i>) that this is still the current version. Otherwise, the
+	 * download starts over.
+	 * </p>
+	 * 
+	 * @return false if the download was canceled
+	 * @throws PermanentFailure if the server refused to serve the file
+	 * @throws IOException if the download failed or was cut short
+	 */
+	private boolean fetch(final Downloadable current, final File partial,
+		final File validatorFile, final ItemCount counter) throws IOException
+	{
+		final String validator = readValidator(validatorFile);
+		if (validator == null) partial.delete();
+		final long offset = partial.length();
+		final URLConnection connection =
+			util.openConnection(new URL(current.getURL()));
 		connection.setUseCaches(false);
-		lastModified = connection.getLastModified();
+		if (offset > 0) {
+			connection.setRequestProperty("Range", "bytes=" + offset + "-");
+			connection.setRequestProperty("If-Range", validator);
+		}
+		final long lastModified = connection.getLastModified();
+		boolean append = false;
+		if (connection instanceof HttpURLConnection) {
+			final int code = ((HttpURLConnection) connection).getResponseCode();
+			if (code == 416) {
+				// the partial file does not fit the current file; start over
+				discard(partial, validatorFile);
+				throw new IOException("Cannot resume " + current.getURL());
+			}
+			if (code >= 400 && code < 500) {
+				throw new PermanentFailure("Could not download " + current.getURL() +
+					": " + code + " " +
+					((HttpURLConnection) connection).getResponseMessage());
+			}
+			append = offset > 0 && code == HttpURLConnection.HTTP_PARTIAL;
+		}
+		final String currentValidator = getValidator(connection);
+		if (append && !validator.equals(currentValidator)) {
+			// the server ignored the If-Range header
+			discard(partial, validatorFile);
+			throw new IOException(current.getURL() + " changed on the server");
+		}
 		int currentTotal = connection.getContentLength();
-		if (currentTotal < 0) currentTotal = (int) current.getFilesize();
+		final long expected =
+			currentTotal < 0 ? -1 : (append ? offset : 0) + currentTotal;
+		if (expected >= 0) currentTotal = (int) expected;
+		else currentTotal = (int) current.getFilesize();
 
-		final File destination = current.getDestination();
-		addItem(current);
+		synchronized (lock) {
+			this.lastModified = lastModified;
+		}
+		counter.reset(append ? offset : 0, currentTotal);
 
-		final File parentDirectory = destination.getParentFile();
-		if (parentDirectory != null) parentDirectory.mkdirs();
 		final InputStream in = connection.getInputStream();
-		final OutputStream out = new FileOutputStream(destination);
-
-		int currentCount = 0;
-		int total = this.total;
-		if (total == 0) total =
-			(count + currentTotal) * itemTotal / (itemCount + 1);
-
-		final byte[] buffer = new byte[65536];
-		for (;;) {
-			if (cancelled) break;
-			final int count = in.read(buffer);
-			if (count < 0) break;
-			out.write(buffer, 0, count);
-			currentCount += count;
-			this.count += count;
-			setCount(this.count, total);
+		if (!append) validatorFile.delete();
+		final OutputStream out = new FileOutputStream(partial, append);
+		if (!append) writeValidator(validatorFile, currentValidator);
+		try {
+			final byte[] buffer = new byte[65536];
+			for (;;) {
+				if (cancelled) return false;
+				final int count = in.read(buffer);
+				if (count < 0) break;
+				out.write(buffer, 0, count);
+				counter.add(count);
+			}
+		}
+		finally {
+			in.close();
+			out.close();
+		}
+		if (expected >= 0 && partial.length() < expected) {
+			throw new IOException("Download of " + current.getURL() +
+				" ended prematurely");
+		}
+		return true;
+	}
+
+	/**
+	 * Determines what identifies the version of the file served by the given
+	 * connection: its strong ETag if there is one, its Last-Modified date
+	 * otherwise.
+	 * 
+	 * @return the validator, or null if the connection provides none
+	 */
+	private static String getValidator(final URLConnection connection) {
+		final String etag = connection.getHeaderField("ETag");
+		if (etag != null && !etag.startsWith("W/")) return etag;
+		return connection.getHeaderField("Last-Modified");
+	}
+
+	private static String readValidator(final File file) throws IOException {
+		if (!file.exists()) return null;
+		final BufferedReader reader =
+			new BufferedReader(new InputStreamReader(new FileInputStream(file),
+				"UTF-8"));
+		try {
+			final String line = reader.readLine();
+			return line == null || line.length() == 0 ? null : line;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private static void writeValidator(final File file, final String validator)
+		throws IOException
+	{
+		if (validator == null) return;
+		final OutputStream out = new FileOutputStream(file);
+		try {
+			out.write(validator.getBytes("UTF-8"));
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static void discard(final File partial, final File validator) {
+		partial.delete();
+		validator.delete();
+	}
+
+	/** Adds to the number of bytes downloaded, and reports the progress. */
+	private void addCount(final int delta, final int currentCount,
+		final int currentTotal)
+	{
+		synchronized (lock) {
+			count += delta;
+			int total = this.total;
+			if (total == 0) total =
+				(count - currentCount + currentTotal) * itemTotal / (itemCount + 1);
+			setCount(count, total);
 			setItemCount(currentCount, currentTotal);
 		}
-		in.close();
-		out.close();
-		itemDone(current);
 	}
 
-	public long getLastModified() {
-		return lastModified;
+	// -- Helper classes --
+
+	/** A failure that cannot be helped by retrying, such as a 404. */
+	private static class PermanentFailure extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		public PermanentFailure(final String message) {
+			super(message);
+		}
+
+	}
+
+	/**
+	 * Tracks the number of bytes downloaded for one file, keeping the total
+	 * count accurate when a download has to start over.
+	 */
+	private class ItemCount {
+
+		private int currentCount, currentTotal;
+
+		public ItemCount(final long filesize) {
+			currentTotal = (int) filesize;
+		}
+
+		public void reset(final long currentCount, final int currentTotal) {
+			final int delta = (int) currentCount - this.currentCount;
+			this.currentCount = (int) currentCount;
+			this.currentTotal = currentTotal;
+			addCount(delta, this.currentCount, currentTotal);
+		}
+
+		public void add(final int delta) {
+			currentCount += delta;
+			addCount(delta, currentCount, currentTotal);
+		}
+
 	}
+
 }
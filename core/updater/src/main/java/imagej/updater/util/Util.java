@@ -48,6 +48,8 @@
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
@@ -172,7 +174,7 @@ public static String getDigest(final String path, final File file)
 		if (path.endsWith(".jar")) return getJarDigest(file);
 		final MessageDigest digest = getDigest();
 		digest.update(path.getBytes("ASCII"));
-		if (file != null) updateDigest(new FileInputStream(file), digest);
+		if (file != null) updateDigest(file, digest);
 		return toHex(digest.digest());
 	}
 
@@ -212,6 +214,39 @@ public static void updateDigest(final InputStream input,
 		digestStream.close();
 	}
 
+	/**
+	 * Updates the digest with the contents of a file.
+	 * <p>
+	 * Larger files are memory-mapped instead of copied through a buffer. This
+	 * is not done on Windows, where a mapped file cannot be deleted or replaced
+	 * until the mapping is garbage-collected.
+	 * </p>
+	 */
+	public static void updateDigest(final File file, final MessageDigest digest)
+		throws IOException
+	{
+		final long size = file.length();
+		if (size < MAP_THRESHOLD || getPlatform().startsWith("win")) {
+			updateDigest(new FileInputStream(file), digest);
+			return;
+		}
+		final FileInputStream in = new FileInputStream(file);
+		try {
+			final FileChannel channel = in.getChannel();
+			final long length = channel.size();
+			for (long offset = 0; offset < length; offset += MAP_CHUNK) {
+				digest.update(channel.map(MapMode.READ_ONLY, offset, Math.min(
+					MAP_CHUNK, length - offset)));
+			}
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private final static long MAP_THRESHOLD = 1 << 20;
+	private final static long MAP_CHUNK = 1 << 26;
+
 	public final static char[] hex = { '0', '1', '2', '3', '4', '5', '6', '7',
 		'8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
 
@@ -265,6 +300,26 @@ public static String getJarDigest(final File file, boolean treatPropertiesSpecia
 		return toHex(digest.digest());
 	}
 
+	/**
+	 * Gets a fingerprint of a .jar file: the SHA-1 of its raw bytes. Unlike
+	 * {@link #getJarDigest(File)}, this does not decompress anything, yet it
+	 * identifies the file's contents just as reliably.
+	 * 
+	 * @param file the .jar file
+	 * @return the fingerprint, in hex
+	 */
+	public static String getJarFingerprint(final File file) throws IOException {
+		MessageDigest digest = null;
+		try {
+			digest = getDigest();
+		}
+		catch (final NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+		updateDigest(file, digest);
+		return toHex(digest.digest());
+	}
+
 	private static class JarEntryComparator implements Comparator<JarEntry> {
 
 		@Override
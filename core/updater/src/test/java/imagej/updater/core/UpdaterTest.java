@@ -67,6 +67,7 @@
 import imagej.updater.core.FileObject.Status;
 import imagej.updater.test.Dependencee;
 import imagej.updater.test.Dependency;
+import imagej.updater.util.DependencyAnalyzer;
 import imagej.updater.util.Util;
 
 import java.io.File;
@@ -75,6 +76,7 @@
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarOutputStream;
@@ -243,6 +245,22 @@ public void testFilters() throws Exception {
 		assertCount(3, files.uploadable());
 	}
 
+	@Test
+	public void testIndexCache() throws Exception {
+		files = initialize("macros/test.ijm");
+		files = readDb(files);
+		final File index = new File(files.prefix(XMLFileDownloader.INDEX_CACHE),
+			FilesCollection.DEFAULT_UPDATE_SITE + ".xml.gz");
+		assertTrue(index.exists());
+		assertStatus(Status.INSTALLED, files, "macros/test.ijm");
+
+		// only HTTP update sites are asked whether the cached index is current
+		writeGZippedFile(index.getParentFile(), index.getName(),
+			"<pluginRecords/>");
+		files = readDb(files);
+		assertStatus(Status.INSTALLED, files, "macros/test.ijm");
+	}
+
 	@Test
 	public void testUpdater() throws Exception {
 		final String filename = "macros/hello.ijm";
@@ -489,6 +507,91 @@ public void testReChecksumming() throws Exception {
 		assertStatus(Status.INSTALLED, files.get("jars/new.jar"));
 	}
 
+	@Test
+	public void testChecksumCache() throws Exception {
+		files = initialize("jars/new.jar", "macros/new.ijm");
+		final File jar = files.prefix("jars/new.jar");
+		final String checksum = files.get("jars/new.jar").localChecksum;
+
+		// a copied .jar file gets a new timestamp, but the same digest
+		assertTrue(jar.setLastModified(jar.lastModified() - 3600000));
+		new Checksummer(files, progress).updateFromLocal();
+		assertEquals(checksum, files.get("jars/new.jar").localChecksum);
+		assertStatus(Status.INSTALLED, files.get("jars/new.jar"));
+		assertStatus(Status.INSTALLED, files.get("macros/new.ijm"));
+		assertTrue(files.prefix(".checksums").exists());
+		assertFalse(files.prefix(".checksums.tmp").exists());
+
+		writeFile(files, "jars/new.jar", "modified");
+		new Checksummer(files, progress).updateFromLocal();
+		assertStatus(Status.MODIFIED, files.get("jars/new.jar"));
+	}
+
+	@Test
+	public void testIndexedViews() throws Exception {
+		final FilesCollection collection = new FilesCollection(null);
+		final FileObject a =
+			new FileObject(FilesCollection.DEFAULT_UPDATE_SITE, "macros/a.ijm", 1,
+				"a", 0, Status.INSTALLED);
+		final FileObject b =
+			new FileObject(FilesCollection.DEFAULT_UPDATE_SITE, "macros/b.ijm", 1,
+				"b", 0, Status.NOT_INSTALLED);
+		final FileObject c =
+			new FileObject(null, "macros/c.ijm", 1, "c", 0, Status.LOCAL_ONLY);
+		collection.add(a);
+		collection.add(b);
+		collection.add(c);
+
+		assertCount(1, collection.uninstalled());
+		assertCount(1, collection.localOnly());
+		assertCount(2, collection.forUpdateSite(FilesCollection.DEFAULT_UPDATE_SITE));
+		assertCount(0, collection.changes());
+		assertFalse(collection.hasChanges());
+
+		// the views follow changes of the files
+		b.setAction(collection, Action.INSTALL);
+		assertSame(b, collection.toInstallOrUpdate().iterator().next());
+		assertCount(1, collection.changes());
+		assertTrue(collection.hasChanges());
+		a.setStatus(Status.MODIFIED);
+		assertSame(a, collection.locallyModified().iterator().next());
+		a.updateSite = null;
+		assertCount(1, collection.forUpdateSite(FilesCollection.DEFAULT_UPDATE_SITE));
+
+		// ... and additions and removals
+		collection.remove(b);
+		assertCount(0, collection.toInstallOrUpdate());
+		assertCount(0, collection.uninstalled());
+		collection.add(b);
+		assertCount(1, collection.toInstallOrUpdate());
+
+		// the views keep the order of the collection
+		c.setStatus(Status.MODIFIED);
+		final Iterator<FileObject> iterator = collection.locallyModified().iterator();
+		assertSame(a, iterator.next());
+		assertSame(c, iterator.next());
+		assertFalse(iterator.hasNext());
+
+		// a file shared with another collection updates both indexes
+		final FilesCollection clone = collection.clone(collection.locallyModified());
+		assertCount(2, clone.locallyModified());
+		a.setStatus(Status.INSTALLED);
+		assertCount(1, clone.locallyModified());
+		assertCount(1, collection.locallyModified());
+		clone.remove(c);
+		c.setStatus(Status.LOCAL_ONLY);
+		assertCount(0, clone.localOnly());
+		assertCount(1, collection.localOnly());
+
+		// the views can be iterated while the files change
+		b.setStatus(Status.MODIFIED);
+		c.setStatus(Status.MODIFIED);
+		for (final FileObject file : collection.locallyModified())
+			file.setStatus(Status.INSTALLED);
+		assertCount(0, collection.locallyModified());
+		assertCount(3, collection.upToDate());
+	}
+
 	@Test
 	public void testStripVersionFromFilename() {
 		assertEquals("jars/bio-formats.jar", FileObject.getFilename("jars/bio-formats-4.4-imagej-2.0.0-beta1.jar", true));
@@ -1143,6 +1246,35 @@ public void byteCodeAnalyzer() throws Exception {
 		assertEquals("jars/dependency.jar", dependencee.getDependencies().iterator().next().filename);
 	}
 
+	@Test
+	public void dependencyCache() throws Exception {
+		files = initialize();
+		writeJar(files, "jars/dependencee.jar", Dependencee.class);
+		writeJar(files, "jars/dependency.jar", Dependency.class);
+		new Checksummer(files, progress).updateFromLocal();
+		files.updateDependencies(files.get("jars/dependencee.jar"));
+		final File cache = files.prefix(DependencyAnalyzer.CACHE_DIRECTORY);
+		assertTrue(new File(cache, "classes").exists());
+		assertTrue(new File(cache, "jars%2Fdependencee.jar").exists());
+
+		// a fresh analyzer must come to the same conclusion using the cache
+		files = new FilesCollection(files.prefix(""));
+		files.read();
+		new Checksummer(files, progress).updateFromLocal();
+		final FileObject dependencee = files.get("jars/dependencee.jar");
+		files.updateDependencies(dependencee);
+		assertCount(1, dependencee.getDependencies());
+		assertEquals("jars/dependency.jar", dependencee.getDependencies().iterator().next().filename);
+
+		// the analyses of removed .jar files are pruned
+		assertTrue(files.prefix("jars/dependencee.jar").delete());
+		files = new FilesCollection(files.prefix(""));
+		files.read();
+		new Checksummer(files, progress).updateFromLocal();
+		files.updateDependencies(files.get("jars/dependency.jar"));
+		assertFalse(new File(cache, "jars%2Fdependencee.jar").exists());
+	}
+
 	@Test
 	public void keepObsoleteRecords() throws Exception {
 		files = initialize("jars/obsolete.jar");
@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.updater.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link Downloader}, using a local HTTP server.
+ */
+public class DownloaderTest {
+
+	private final static Pattern RANGE = Pattern.compile("bytes=(\\d+)-");
+
+	private HttpServer server;
+	private ExecutorService executor;
+	private File tmp;
+	private final Map<String, byte[]> contents = new HashMap<String, byte[]>();
+	private final Map<String, String> etags = new HashMap<String, String>();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final AtomicInteger rangeRequests = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final AtomicInteger maxActive = new AtomicInteger();
+	private volatile boolean flaky;
+
+	@Before
+	public void setUp() throws IOException {
+		tmp = File.createTempFile("downloader-test-", "");
+		assertTrue(tmp.delete());
+		assertTrue(tmp.mkdir());
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		executor.shutdown();
+		delete(tmp);
+	}
+
+	@Test
+	public void testConcurrentDownloads() throws IOException {
+		final List<Downloadable> list = new ArrayList<Downloadable>();
+		for (int i = 0; i < 8; i++) {
+			list.add(add("file" + i, 100000 + i * 1000));
+		}
+		final Downloader downloader = new Downloader(null, new Util(null));
+		downloader.setMaxConnections(3);
+		downloader.start(list);
+		for (final Downloadable file : list) {
+			assertContents(file);
+		}
+		assertTrue(maxActive.get() <= 3);
+		assertEquals(list.size(), downloader.itemCount);
+		assertEquals(downloader.total, downloader.count);
+	}
+
+	@Test
+	public void testResume() throws IOException {
+		flaky = true;
+		final List<Downloadable> list = new ArrayList<Downloadable>();
+		list.add(add("a", 200000));
+		list.add(add("b", 300000));
+		final Downloader downloader = new Downloader(null, new Util(null));
+		downloader.start(list);
+		for (final Downloadable file : list) {
+			assertContents(file);
+		}
+		assertEquals(2, rangeRequests.get());
+		assertEquals(downloader.total, downloader.count);
+	}
+
+	@Test
+	public void testPartialFile() throws IOException {
+		final Downloadable file = add("partial", 50000);
+		final byte[] expected = contents.get("partial");
+		writePartial(file, expected, etags.get("partial"));
+
+		new Downloader(null, new Util(null)).start(file);
+		assertContents(file);
+		assertEquals(1, rangeRequests.get());
+	}
+
+	@Test
+	public void testPartialFileWithoutValidator() throws IOException {
+		final Downloadable file = add("partial", 50000);
+		final byte[] outdated = new byte[20000];
+		writePartial(file, outdated, null);
+
+		new Downloader(null, new Util(null)).start(file);
+		assertContents(file);
+		assertEquals(0, rangeRequests.get());
+	}
+
+	@Test
+	public void testChangedFileIsNotResumed() throws IOException {
+		final Downloadable file = add("changed", 50000);
+		final byte[] outdated = new byte[20000];
+		writePartial(file, outdated, "\"outdated\"");
+
+		new Downloader(null, new Util(null)).start(file);
+		assertContents(file);
+		assertEquals(0, rangeRequests.get());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	public void testMissingFileIsNotRetried() throws IOException {
+		final Downloadable file = add("missing", 1000);
+		contents.remove("missing");
+		try {
+			new Downloader(null, new Util(null)).start(file);
+			fail("Expected an IOException");
+		}
+		catch (final IOException e) {
+			// expected
+		}
+		assertEquals(1, requests.get());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidConnections() {
+		new Downloader(null, new Util(null)).setMaxConnections(0);
+	}
+
+	// -- Helper methods --
+
+	private Downloadable add(final String name, final int size) {
+		final byte[] data = new byte[size];
+		for (int i = 0; i < size; i++) {
+			data[i] = (byte) (i * 31 + name.hashCode());
+		}
+		contents.put(name, data);
+		etags.put(name, "\"" + name + "-" + size + "\"");
+		final File destination = new File(tmp, "sub/" + name);
+		final String url =
+			"http://127.0.0.1:" + server.getAddress().getPort() + "/" + name;
+		return new Downloadable() {
+
+			@Override
+			public File getDestination() {
+				return destination;
+			}
+
+			@Override
+			public String getURL() {
+				return url;
+			}
+
+			@Override
+			public long getFilesize() {
+				return size;
+			}
+		};
+	}
+
+	private void serve(final HttpExchange exchange) throws IOException {
+		final int current = active.incrementAndGet();
+		for (;;) {
+			final int max = maxActive.get();
+			if (current <= max || maxActive.compareAndSet(max, current)) break;
+		}
+		try {
+			final String name = exchange.getRequestURI().getPath().substring(1);
+			final byte[] data = contents.get(name);
+			if (data == null) {
+				requests.incrementAndGet();
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			requests.incrementAndGet();
+			final String etag = etags.get(name);
+			exchange.getResponseHeaders().set("ETag", etag);
+			int offset = 0;
+			String range = exchange.getRequestHeaders().getFirst("Range");
+			final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+			if (range != null && !etag.equals(ifRange)) range = null;
+			if (range != null) {
+				final Matcher matcher = RANGE.matcher(range);
+				assertTrue(matcher.matches());
+				offset = Integer.parseInt(matcher.group(1));
+				rangeRequests.incrementAndGet();
+			}
+			final int length = data.length - offset;
+			exchange.sendResponseHeaders(range == null ? 200 : 206, length);
+			final OutputStream out = exchange.getResponseBody();
+			if (flaky && range == null) {
+				// drop the connection half-way through
+				out.write(data, offset, length / 2);
+				out.flush();
+				exchange.close();
+				return;
+			}
+			out.write(data, offset, length);
+			out.close();
+		}
+		finally {
+			active.decrementAndGet();
+		}
+	}
+
+	/** Writes the first 20000 bytes of a download, and optionally its ETag. */
+	private void writePartial(final Downloadable file, final byte[] data,
+		final String etag) throws IOException
+	{
+		final String path = file.getDestination().getPath();
+		assertTrue(file.getDestination().getParentFile().mkdirs());
+		OutputStream out = new FileOutputStream(path + Downloader.PARTIAL_SUFFIX);
+		out.write(data, 0, 20000);
+		out.close();
+		if (etag == null) return;
+		out = new FileOutputStream(path + Downloader.VALIDATOR_SUFFIX);
+		out.write(etag.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private void assertContents(final Downloadable file) throws IOException {
+		final File destination = file.getDestination();
+		assertTrue(destination.exists());
+		assertFalse(new File(destination.getPath() + Downloader.PARTIAL_SUFFIX)
+			.exists());
+		assertFalse(new File(destination.getPath() + Downloader.VALIDATOR_SUFFIX)
+			.exists());
+		final byte[] expected = contents.get(destination.getName());
+		final byte[] actual = new byte[(int) destination.length()];
+		final InputStream in = new FileInputStream(destination);
+		int offset = 0;
+		while (offset < actual.length) {
+			final int count = in.read(actual, offset, actual.length - offset);
+			if (count < 0) break;
+			offset += count;
+		}
+		in.close();
+		assertArrayEquals(expected, actual);
+	}
+
+	private static void delete(final File file) {
+		final File[] list = file.listFiles();
+		if (list != null) for (final File child : list) {
+			delete(child);
+		}
+		file.delete();
+	}
+
+}
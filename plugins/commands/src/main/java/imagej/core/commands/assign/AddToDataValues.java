@@ -88,4 +88,9 @@ public void setValue(double value) {
 	public RealAddConstant<DoubleType,DoubleType> getOperation() {
 		return new RealAddConstant<DoubleType,DoubleType>(value);
 	}
+
+	@Override
+	public PrimitiveOperation getPrimitiveOperation() {
+		return PrimitiveOperations.add(value);
+	}
 }
@@ -103,6 +103,8 @@ public void run() {
 					op, new DoubleType(), dataset, overlay,
 					view.getPlanePosition());
 		
+		transform.setPrimitiveOperation(PrimitiveOperations.exp());
+		transform.setCancelable(this);
 		transform.run();
 	}
 
@@ -35,10 +35,17 @@
 
 package imagej.core.commands.assign;
 
+import imagej.Cancelable;
 import imagej.data.Dataset;
 import imagej.data.Position;
 import imagej.data.display.ImageDisplay;
 import imagej.data.overlay.Overlay;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.imglib2.img.Img;
 import net.imglib2.meta.Axes;
 import net.imglib2.ops.condition.Condition;
@@ -50,6 +57,10 @@
 import net.imglib2.ops.input.PointInputIteratorFactory;
 import net.imglib2.ops.operation.complex.unary.ComplexUnaryOperation;
 import net.imglib2.type.numeric.ComplexType;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
 
 /**
  * Helper class for use by many plugins that apply a {@link
@@ -57,13 +68,24 @@
  * current selection of the active {@link Dataset} of the given {@link
  * ImageDisplay}. The given {@link ComplexUnaryOperation} is applied on a pixel
  * by pixel basis.
+ * <p>
+ * When the {@link Dataset} is backed by primitive arrays the region is split
+ * into chunks of rows that are transformed in parallel, each worker thread
+ * using its own copy of the operation. A {@link PrimitiveOperation} can be
+ * supplied to bypass the {@link ComplexUnaryOperation} in that case. Other
+ * Datasets are transformed with an {@link ImageAssignment}.
  * 
  * @author Barry DeZonia
  */
 public class InplaceUnaryTransform<I extends ComplexType<I>, O extends ComplexType<O>> {
 
+	/** Minimum number of samples in a chunk of work handed to a thread. */
+	private static final int MIN_CHUNK_SAMPLES = 64 * 1024;
+
 	// -- instance variables --
 
+	private final ComplexUnaryOperation<O,O> operation;
+	private final O outType;
 	private final ImageAssignment<I,O,long[]> assigner1;
 	private final ImageAssignment<I,O,long[]> assigner2;
 	private final ImageAssignment<I,O,long[]> assigner3;
@@ -71,6 +93,11 @@
 	private long[] origin;
 	private long[] span;
 	private Condition<long[]> condition;
+	private long[] fullOrigin;
+	private long[] fullSpan;
+	private int[] planeNumbers;
+	private PrimitiveOperation primitiveOperation;
+	private Cancelable cancelable;
 
 	// -- constructor --
 
@@ -81,8 +108,12 @@ public InplaceUnaryTransform(
 			Dataset dataset,
 			Overlay overlay)
 	{
+		this.operation = operation;
+		this.outType = outType;
 		this.dataset = dataset;
 		setRegion(dataset, overlay);
+		fullOrigin = origin.clone();
+		fullSpan = span.clone();
 		@SuppressWarnings("unchecked")
 		final Img<I> img = (Img<I>)dataset.getImgPlus();
 		final ComplexImageFunction<I,O> f1 =
@@ -107,8 +138,12 @@ public InplaceUnaryTransform(
 			Overlay overlay,
 			Position planePos)
 	{
+		this.operation = operation;
+		this.outType = outType;
 		this.dataset = dataset;
 		setRegion(dataset, overlay, planePos);
+		fullOrigin = origin.clone();
+		fullSpan = span.clone();
 		@SuppressWarnings("unchecked")
 		final Img<I> img = (Img<I>)dataset.getImgPlus();
 		final ComplexImageFunction<I,O> f1 =
@@ -122,6 +157,8 @@ public InplaceUnaryTransform(
 		int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
 		if (rgb) {
 			origin[chIndex] = 0;
+			fullOrigin[chIndex] = 0;
+			fullSpan[chIndex] = 3;
 		}
 		assigner1 =
 			new ImageAssignment<I,O, long[]>(img, origin, span, function,
@@ -140,16 +177,36 @@ public InplaceUnaryTransform(
 			assigner2 = null;
 			assigner3 = null;
 		}
+		planeNumbers = findPlaneNumbers();
 	}
 
-	
 	// -- public interface --
 
 	public void run() {
-		if (assigner1 != null) assigner1.assign();
-		if (assigner2 != null) assigner2.assign();
-		if (assigner3 != null) assigner3.assign();
-		dataset.update();
+		if (!runPlanar()) {
+			if (assigner1 != null && !isCanceled()) assigner1.assign();
+			if (assigner2 != null && !isCanceled()) assigner2.assign();
+			if (assigner3 != null && !isCanceled()) assigner3.assign();
+		}
+		if (planeNumbers != null) dataset.updatePlanes(planeNumbers);
+		else dataset.update();
+	}
+
+	/**
+	 * Sets a {@link PrimitiveOperation} equivalent to this transform's
+	 * {@link ComplexUnaryOperation}, to be used where the data allows it.
+	 */
+	public void setPrimitiveOperation(final PrimitiveOperation op) {
+		primitiveOperation = op;
+	}
+
+	/**
+	 * Sets the object whose cancelation stops the transform. Cancelation is
+	 * checked between chunks of work, so a canceled transform may leave part
+	 * of the region transformed.
+	 */
+	public void setCancelable(final Cancelable cancelable) {
+		this.cancelable = cancelable;
 	}
 
 	public long[] getRegionOrigin() { return origin; }
@@ -158,6 +215,85 @@ public void run() {
 
 	// -- private helpers --
 
+	private boolean isCanceled() {
+		return cancelable != null && cancelable.isCanceled();
+	}
+
+	/**
+	 * Transforms the region a row at a time, in parallel, when the Dataset's
+	 * data lives in primitive arrays. Returns false if it does not.
+	 */
+	private boolean runPlanar() {
+		if (!(outType instanceof RealType)) return false;
+		final PlanarRegion region =
+			PlanarRegion.create(dataset, fullOrigin, fullSpan);
+		if (region == null) return false;
+
+		final long rowCount = region.getRowCount();
+		final int rowLength = region.getRowLength();
+		final long rowsPerChunk = Math.max(1, MIN_CHUNK_SAMPLES / rowLength);
+		final long chunkCount = (rowCount + rowsPerChunk - 1) / rowsPerChunk;
+		final Context context = dataset.getContext();
+		final ThreadService threadService =
+			context == null ? null : context.getService(ThreadService.class);
+		final int workers =
+			threadService == null ? 1 : ParallelUtils.chunkCount(rowCount *
+				rowLength, MIN_CHUNK_SAMPLES);
+
+		final AtomicLong nextChunk = new AtomicLong();
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final RowWorker worker = new RowWorker(region);
+					long c;
+					while (!isCanceled() &&
+						(c = nextChunk.getAndIncrement()) < chunkCount)
+					{
+						final long start = c * rowsPerChunk;
+						final long end = Math.min(rowCount, start + rowsPerChunk);
+						for (long row = start; row < end; row++) {
+							worker.process(row);
+						}
+					}
+				}
+			});
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
+		return true;
+	}
+
+	/**
+	 * Returns the numbers of the planes the region touches, or null if the
+	 * Dataset's planes are not laid out as XY planes.
+	 */
+	private int[] findPlaneNumbers() {
+		if (dataset.dimensionIndex(Axes.X) != 0) return null;
+		if (dataset.dimensionIndex(Axes.Y) != 1) return null;
+		final int numDims = dataset.numDimensions();
+		int count = 1;
+		for (int d = 2; d < numDims; d++)
+			count *= fullSpan[d];
+		final int[] planes = new int[count];
+		final long[] pos = fullOrigin.clone();
+		for (int i = 0; i < count; i++) {
+			long plane = 0;
+			long stride = 1;
+			for (int d = 2; d < numDims; d++) {
+				plane += pos[d] * stride;
+				stride *= dataset.dimension(d);
+			}
+			planes[i] = (int) plane;
+			for (int d = 2; d < numDims; d++) {
+				if (++pos[d] < fullOrigin[d] + fullSpan[d]) break;
+				pos[d] = fullOrigin[d];
+			}
+		}
+		return planes;
+	}
+
 	/** All planes version */
 	private void setRegion(Dataset ds, Overlay overlay) {
 
@@ -253,4 +389,60 @@ private LongRect findXYRegion(Dataset ds, Overlay overlay, int xIndex, int yInde
 	private class LongRect {
 		public long x, y, w, h;
 	}
+
+	/** Transforms rows of a {@link PlanarRegion}, holding per-thread state. */
+	private class RowWorker {
+
+		private final PlanarRegion region;
+		private final ComplexUnaryOperation<O,O> op;
+		private final Condition<long[]> cond;
+		private final O input;
+		private final O output;
+		private final double[] values;
+		private final double[] original;
+		private final long[] position;
+
+		public RowWorker(final PlanarRegion region) {
+			this.region = region;
+			op = primitiveOperation == null ? operation.copy() : null;
+			cond = condition == null ? null : condition.copy();
+			input = outType.createVariable();
+			output = outType.createVariable();
+			values = new double[region.getRowLength()];
+			original =
+				cond == null || primitiveOperation == null ? null
+					: new double[values.length];
+			position = new long[dataset.numDimensions()];
+		}
+
+		public void process(final long row) {
+			final int length = values.length;
+			region.read(row, values, 0);
+			if (cond != null) region.localize(row, position);
+			final long x0 = position[0];
+			if (primitiveOperation != null) {
+				if (cond != null) System.arraycopy(values, 0, original, 0, length);
+				primitiveOperation.compute(values, 0, length);
+				if (cond != null) {
+					for (int i = 0; i < length; i++) {
+						position[0] = x0 + i;
+						if (!cond.isTrue(position)) values[i] = original[i];
+					}
+				}
+			}
+			else {
+				for (int i = 0; i < length; i++) {
+					if (cond != null) {
+						position[0] = x0 + i;
+						if (!cond.isTrue(position)) continue;
+					}
+					input.setReal(values[i]);
+					op.compute(input, output);
+					values[i] = output.getRealDouble();
+				}
+			}
+			region.write(values, 0, row);
+		}
+	}
+
 }
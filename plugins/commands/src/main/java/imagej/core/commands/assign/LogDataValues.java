@@ -103,6 +103,8 @@ public void run() {
 					op, new DoubleType(), dataset, overlay,
 					view.getPlanePosition());
 		
+		transform.setPrimitiveOperation(PrimitiveOperations.log());
+		transform.setCancelable(this);
 		transform.run();
 	}
 
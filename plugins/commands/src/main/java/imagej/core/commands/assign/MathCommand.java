@@ -87,6 +87,8 @@
 	// -- instance variables --
 
 	private O outType;
+	private PlanarRegion planarRegion;
+	private double[] planarBackup;
 	private Img<DoubleType> dataBackup;
 	private PointSetIterator iter;
 	private RandomAccess<? extends RealType<?>> dataAccess;
@@ -145,6 +147,15 @@ public void setPreview(final boolean preview) {
 
 	public abstract ComplexUnaryOperation<O,O> getOperation();
 
+	/**
+	 * Returns a {@link PrimitiveOperation} that computes the same values as
+	 * {@link #getOperation()}, or null if there is none. Subclasses may
+	 * override this to speed up the common case of array backed data.
+	 */
+	public PrimitiveOperation getPrimitiveOperation() {
+		return null;
+	}
+
 	// -- private helpers --
 
 	private void initialize() {
@@ -155,49 +166,65 @@ private void initialize() {
 
 		InplaceUnaryTransform<?,?> xform =
 				getPreviewTransform(dataset, overlay);
-		PointSet region =
-			determineRegion(dataset, xform.getRegionOrigin(), xform.getRegionSpan());
-		iter = region.iterator();
-		ArrayImgFactory<DoubleType> factory = new ArrayImgFactory<DoubleType>();
-		dataBackup = factory.create(new long[] { region.size() }, new DoubleType());
-		backupAccess = dataBackup.randomAccess();
-		dataAccess = dataset.getImgPlus().randomAccess();
+		final long[] origin = xform.getRegionOrigin().clone();
+		final long[] span = xform.getRegionSpan().clone();
+		if (dataset.isRGBMerged()) {
+			int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
+			origin[chIndex] = 0;
+			span[chIndex] = 3;
+		}
 
 		// check dimensions of Dataset
-		final long w = xform.getRegionSpan()[0];
-		final long h = xform.getRegionSpan()[1];
+		final long w = span[0];
+		final long h = span[1];
 		if (w * h > Integer.MAX_VALUE)
 			throw new IllegalArgumentException(
 				"preview region too large to copy into memory");
+
+		planarRegion = PlanarRegion.create(dataset, origin, span);
+		if (planarRegion != null) {
+			final long size =
+				planarRegion.getRowCount() * planarRegion.getRowLength();
+			if (size <= Integer.MAX_VALUE) {
+				planarBackup = new double[(int) size];
+				return;
+			}
+			planarRegion = null;
+		}
+		PointSet region = determineRegion(origin, span);
+		iter = region.iterator();
+		ArrayImgFactory<DoubleType> factory = new ArrayImgFactory<DoubleType>();
+		dataBackup = factory.create(new long[] { region.size() }, new DoubleType());
+		backupAccess = dataBackup.randomAccess();
+		dataAccess = dataset.getImgPlus().randomAccess();
 	}
 
 	private InplaceUnaryTransform<I,O> getPreviewTransform(
 				Dataset ds, Overlay ov)
 	{
-		return new InplaceUnaryTransform<I,O>(
-					getOperation(), outType, ds, ov, planePos);
+		return configure(new InplaceUnaryTransform<I,O>(
+					getOperation(), outType, ds, ov, planePos));
 	}
 	
 	private InplaceUnaryTransform<I,O> getFinalTransform(
 			Dataset ds, Overlay ov)
 	{
 		if (allPlanes)
-			return new InplaceUnaryTransform<I,O>(
-					getOperation(), outType, ds, ov);
+			return configure(new InplaceUnaryTransform<I,O>(
+					getOperation(), outType, ds, ov));
 		return getPreviewTransform(ds, ov);
 	}
 
-	private PointSet determineRegion(Dataset ds, long[] planeOrigin,
-		long[] planeSpan)
+	private InplaceUnaryTransform<I,O> configure(
+			InplaceUnaryTransform<I,O> xform)
 	{
-		// copy data to a double[]
-		final long[] origin = planeOrigin.clone();
-		final long[] offsets = planeSpan.clone();
-		if (ds.isRGBMerged()) {
-			int chIndex = ds.dimensionIndex(Axes.CHANNEL);
-			origin[chIndex] = 0;
-			offsets[chIndex] = 3;
-		}
+		xform.setPrimitiveOperation(getPrimitiveOperation());
+		xform.setCancelable(this);
+		return xform;
+	}
+
+	private PointSet determineRegion(long[] origin, long[] span) {
+		final long[] offsets = span.clone();
 		for (int i = 0; i < offsets.length; i++)
 			offsets[i]--;
 		return new HyperVolumePointSet(origin, new long[origin.length], offsets);
@@ -207,9 +234,17 @@ private PointSet determineRegion(Dataset ds, long[] planeOrigin,
 	// We are backing up preview region to doubles. This can cause precision
 	// loss for long backed datasets with large values. But using dataset's
 	// getPlane()/setPlane() code takes more ram/time than needed. And it has
-	// various container limitations.
+	// various container limitations. When the data lives in primitive arrays
+	// the region is copied a row at a time instead of a point at a time.
 
 	private void savePreviewRegion() {
+		if (planarRegion != null) {
+			final int rowLength = planarRegion.getRowLength();
+			for (long row = 0; row < planarRegion.getRowCount(); row++) {
+				planarRegion.read(row, planarBackup, (int) (row * rowLength));
+			}
+			return;
+		}
 		iter.reset();
 		long pos = 0;
 		while (iter.hasNext()) {
@@ -221,6 +256,14 @@ private void savePreviewRegion() {
 	}
 
 	private void restorePreviewRegion() {
+		if (planarRegion != null) {
+			final int rowLength = planarRegion.getRowLength();
+			for (long row = 0; row < planarRegion.getRowCount(); row++) {
+				planarRegion.write(planarBackup, (int) (row * rowLength), row);
+			}
+			dataset.update();
+			return;
+		}
 		iter.reset();
 		long pos = 0;
 		while (iter.hasNext()) {
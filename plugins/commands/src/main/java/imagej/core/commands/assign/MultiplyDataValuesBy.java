@@ -77,6 +77,11 @@ public RealMultiplyConstant<DoubleType, DoubleType> getOperation() {
 		return new RealMultiplyConstant<DoubleType, DoubleType>(value);
 	}
 
+	@Override
+	public PrimitiveOperation getPrimitiveOperation() {
+		return PrimitiveOperations.multiply(value);
+	}
+
 	public double getValue() {
 		return value;
 	}
@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+import imagej.data.Dataset;
+import imagej.data.PlaneAccessor;
+import net.imglib2.img.Img;
+import net.imglib2.meta.Axes;
+
+/**
+ * A box shaped region of a {@link Dataset} whose data lives in primitive
+ * arrays, one XY plane per array (or all planes in a single array). The
+ * region is visited as a sequence of rows that each span the region's X
+ * extent, so values can be moved in and out of the image a row at a time
+ * rather than a pixel at a time.
+ */
+class PlanarRegion {
+
+	// -- instance variables --
+
+	private final Img<?> img;
+	private final PlaneAccessor accessor;
+	private final long[] dims;
+	private final long[] origin;
+	private final long[] span;
+	private final int rowLength;
+	private final long rowCount;
+
+	// -- constructor --
+
+	private PlanarRegion(final Img<?> img, final PlaneAccessor accessor,
+		final long[] origin, final long[] span)
+	{
+		this.img = img;
+		this.accessor = accessor;
+		this.dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		this.origin = origin.clone();
+		this.span = span.clone();
+		rowLength = (int) span[0];
+		long rows = 1;
+		for (int d = 1; d < span.length; d++)
+			rows *= span[d];
+		rowCount = rows;
+	}
+
+	// -- public interface --
+
+	/**
+	 * Creates a PlanarRegion covering the given box of the given
+	 * {@link Dataset}. Returns null if the Dataset's data cannot be reached as
+	 * primitive arrays, if X and Y are not its first two axes, or if the box
+	 * does not lie within the Dataset.
+	 */
+	public static PlanarRegion create(final Dataset ds, final long[] origin,
+		final long[] span)
+	{
+		if (ds.dimensionIndex(Axes.X) != 0) return null;
+		if (ds.dimensionIndex(Axes.Y) != 1) return null;
+		final Img<?> img = ds.getImgPlus();
+		final PlaneAccessor accessor = PlaneAccessor.forType(ds.getType());
+		if (accessor == null) return null;
+		long planeCount = 1;
+		for (int d = 0; d < img.numDimensions(); d++) {
+			if (span[d] <= 0) return null;
+			if (origin[d] < 0) return null;
+			if (origin[d] + span[d] > img.dimension(d)) return null;
+			if (d >= 2) planeCount *= img.dimension(d);
+		}
+		if (img.dimension(0) * img.dimension(1) > Integer.MAX_VALUE) return null;
+		if (planeCount > Integer.MAX_VALUE) return null;
+		if (PlaneAccessor.getStorage(img, 0) == null) return null;
+		return new PlanarRegion(img, accessor, origin, span);
+	}
+
+	/** Returns the number of rows in the region. */
+	public long getRowCount() {
+		return rowCount;
+	}
+
+	/** Returns the number of values in each row of the region. */
+	public int getRowLength() {
+		return rowLength;
+	}
+
+	/**
+	 * Fills the given position with the coordinates of the first value of the
+	 * given row.
+	 */
+	public void localize(final long row, final long[] position) {
+		position[0] = origin[0];
+		long r = row;
+		for (int d = 1; d < span.length; d++) {
+			position[d] = origin[d] + r % span[d];
+			r /= span[d];
+		}
+	}
+
+	/** Copies the values of the given row into the given array. */
+	public void read(final long row, final double[] dst, final int dstOffset) {
+		final int plane = planeNumber(row);
+		accessor.read(PlaneAccessor.getStorage(img, plane), rowOffset(row, plane),
+			dst, dstOffset, rowLength);
+	}
+
+	/** Copies values from the given array into the given row. */
+	public void write(final double[] src, final int srcOffset, final long row) {
+		final int plane = planeNumber(row);
+		accessor.write(src, srcOffset, PlaneAccessor.getStorage(img, plane),
+			rowOffset(row, plane), rowLength);
+	}
+
+	// -- private helpers --
+
+	private int planeNumber(final long row) {
+		long r = row / span[1];
+		long plane = 0;
+		long stride = 1;
+		for (int d = 2; d < span.length; d++) {
+			plane += (origin[d] + r % span[d]) * stride;
+			r /= span[d];
+			stride *= dims[d];
+		}
+		return (int) plane;
+	}
+
+	private int rowOffset(final long row, final int plane) {
+		final long y = origin[1] + row % span[1];
+		return (int) (PlaneAccessor.getOffset(img, plane) + y * dims[0] +
+			origin[0]);
+	}
+
+}
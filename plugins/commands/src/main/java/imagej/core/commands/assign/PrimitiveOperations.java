@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign;
+
+/**
+ * Factory methods for the {@link PrimitiveOperation}s that stand in for the
+ * most commonly used math operations.
+ */
+public final class PrimitiveOperations {
+
+	private PrimitiveOperations() {
+		// prevent instantiation of utility class
+	}
+
+	/** Equivalent of RealAddConstant. */
+	public static PrimitiveOperation add(final double constant) {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] += constant;
+			}
+		};
+	}
+
+	/** Equivalent of RealSubtractConstant. */
+	public static PrimitiveOperation subtract(final double constant) {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] -= constant;
+			}
+		};
+	}
+
+	/** Equivalent of RealMultiplyConstant. */
+	public static PrimitiveOperation multiply(final double constant) {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] *= constant;
+			}
+		};
+	}
+
+	/** Equivalent of RealConstant. */
+	public static PrimitiveOperation set(final double constant) {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] = constant;
+			}
+		};
+	}
+
+	/** Equivalent of RealAbs. */
+	public static PrimitiveOperation abs() {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] = Math.abs(values[i]);
+			}
+		};
+	}
+
+	/** Equivalent of RealSqr. */
+	public static PrimitiveOperation square() {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] *= values[i];
+			}
+		};
+	}
+
+	/** Equivalent of RealSqrt. */
+	public static PrimitiveOperation sqrt() {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] = Math.sqrt(values[i]);
+			}
+		};
+	}
+
+	/** Equivalent of RealLog. */
+	public static PrimitiveOperation log() {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] = Math.log(values[i]);
+			}
+		};
+	}
+
+	/** Equivalent of RealExp. */
+	public static PrimitiveOperation exp() {
+		return new PrimitiveOperation() {
+
+			@Override
+			public void compute(final double[] values, final int offset,
+				final int length)
+			{
+				for (int i = offset; i < offset + length; i++)
+					values[i] = Math.exp(values[i]);
+			}
+		};
+	}
+
+}
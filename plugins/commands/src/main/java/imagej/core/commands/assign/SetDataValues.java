@@ -78,6 +78,11 @@ public RealConstant<DoubleType, DoubleType> getOperation() {
 		return new RealConstant<DoubleType, DoubleType>(value);
 	}
 
+	@Override
+	public PrimitiveOperation getPrimitiveOperation() {
+		return PrimitiveOperations.set(value);
+	}
+
 	public double getValue() {
 		return value;
 	}
@@ -104,6 +104,8 @@ public void run() {
 					op, new DoubleType(), dataset, overlay,
 					view.getPlanePosition());
 		
+		transform.setPrimitiveOperation(PrimitiveOperations.square());
+		transform.setCancelable(this);
 		transform.run();
 	}
 
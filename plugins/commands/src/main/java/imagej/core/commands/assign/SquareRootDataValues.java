@@ -106,6 +106,8 @@ public void run() {
 					op, new DoubleType(), dataset, overlay,
 					view.getPlanePosition());
 		
+		transform.setPrimitiveOperation(PrimitiveOperations.sqrt());
+		transform.setCancelable(this);
 		transform.run();
 	}
 
@@ -77,6 +77,11 @@ public RealSubtractConstant<DoubleType, DoubleType> getOperation() {
 		return new RealSubtractConstant<DoubleType, DoubleType>(value);
 	}
 
+	@Override
+	public PrimitiveOperation getPrimitiveOperation() {
+		return PrimitiveOperations.subtract(value);
+	}
+
 	public double getValue() {
 		return value;
 	}
@@ -100,25 +100,48 @@ public enum NeighborhoodType {RADIAL, RECTANGULAR}
 	private String cancelReason;
 
 	private Neighborhood userProvidedNeighborhood = null;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
 	
 	// -- public API --
 	
 	public abstract Function<PointSet,DoubleType> getFunction(
 		Function<long[],DoubleType> otherFunc);
 
+	/**
+	 * Returns the {@link SlidingWindowReducer} operation equivalent to this
+	 * plugin's function, or null if there is none. When not null, rectangular
+	 * neighborhoods over integer images are filtered incrementally rather than
+	 * by evaluating the function over every neighborhood.
+	 */
+	protected SlidingWindowReducer.Operation getSlidingWindowOperation() {
+		return null;
+	}
+
 	@Override
 	public void run() {
 		Neighborhood neighborhood = determineNeighborhood(input.numDimensions());
 		if (neighborhood == null) return;
 		@SuppressWarnings("unchecked")
 		ImgPlus<U> inputImg = (ImgPlus<U>) input.getImgPlus();
+		SlidingWindowReducer.Operation op = getSlidingWindowOperation();
+		if (op != null &&
+			SlidingWindowReducer.isCompatible(inputImg, neighborhood))
+		{
+			SlidingWindowReducer<U> reducer =
+				new SlidingWindowReducer<U>(context, inputImg, op, neighborhood);
+			reducer.setNumThreads(numThreads);
+			output = reducer.reduceNoise(neighborhood.getDescription());
+			return;
+		}
 		OutOfBoundsMirrorFactory<U, RandomAccessibleInterval<U>> oobFactory =
 				new OutOfBoundsMirrorFactory<U,RandomAccessibleInterval<U>>(Boundary.DOUBLE);
 		Function<long[],DoubleType> otherFunc =
 				new RealImageFunction<U,DoubleType>(inputImg, oobFactory, new DoubleType());
-		PointSet ps = neighborhood.getPoints();
 		Reducer<U,DoubleType> reducer =
-				new Reducer<U,DoubleType>(context, inputImg, getFunction(otherFunc), ps);
+				new Reducer<U,DoubleType>(context, inputImg, getFunction(otherFunc),
+					neighborhood);
+		reducer.setNumThreads(numThreads);
 		output = reducer.reduceNoise(neighborhood.getDescription());
 	}
 
@@ -138,6 +161,21 @@ public void setNeighborhood(Neighborhood n) {
 		userProvidedNeighborhood = n;
 	}
 	
+	/**
+	 * Sets the number of threads the noise reduction is spread across. A value
+	 * of 1 runs the reduction serially. Defaults to the number of processors.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+		this.numThreads = numThreads;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
 	public NeighborhoodType getNeighborhoodType() {
 		return neighType;
 	}
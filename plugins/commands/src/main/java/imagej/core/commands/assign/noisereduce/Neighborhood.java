@@ -45,4 +45,10 @@
 public interface Neighborhood {
 	public PointSet getPoints();
 	public String getDescription();
+
+	/**
+	 * Creates an independent copy of this neighborhood, for use by another
+	 * thread.
+	 */
+	public Neighborhood copy();
 }
@@ -68,4 +68,9 @@ public Function<PointSet, DoubleType> getFunction(
 		return new RealMedianFunction<DoubleType>(otherFunc);
 	}
 
+	@Override
+	protected SlidingWindowReducer.Operation getSlidingWindowOperation() {
+		return SlidingWindowReducer.Operation.MEDIAN;
+	}
+
 }
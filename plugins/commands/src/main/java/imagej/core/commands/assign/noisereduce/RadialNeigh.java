@@ -77,4 +77,14 @@ public String getDescription() {
 			" pixel radial neighborhood";
 	}
 
+	/**
+	 * Creates a new RadialNeigh of the same size. NB - a copy of the points of
+	 * this neighborhood would still be tested against the origin of the
+	 * original points, so the copy is rebuilt from scratch instead.
+	 */
+	@Override
+	public RadialNeigh copy() {
+		return new RadialNeigh(numDims, radius);
+	}
+
 }
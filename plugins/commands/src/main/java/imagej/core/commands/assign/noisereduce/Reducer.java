@@ -37,6 +37,12 @@
 
 import imagej.data.Dataset;
 import imagej.data.DefaultDataset;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.imglib2.meta.ImgPlus;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.img.SerialImageAssignment;
@@ -48,30 +54,53 @@
 import org.scijava.Context;
 import org.scijava.app.StatusService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
- * TODO
+ * Applies a neighborhood {@link Function} at every point of an image, writing
+ * the results to a new {@link Dataset}.
+ * <p>
+ * The output space is divided into tiles that are handed out to a number of
+ * worker threads. Each worker owns a copy of the function and of the
+ * neighborhood, so that functions and neighborhoods with internal state (such
+ * as the scratch buffers of the median functions, or the condition of a
+ * {@link RadialNeigh}) are never shared between threads and are reused from
+ * point to point and tile to tile.
  * 
  * @author Barry DeZonia
  */
 public class Reducer<U extends RealType<U>,V extends RealType<V>>
 {
+	// -- constants --
+
+	/** The number of rows of a plane that are processed as one tile. */
+	private static final long TILE_ROWS = 32;
+
+	/** The number of samples per tile of a one dimensional image. */
+	private static final long TILE_SAMPLES = 4096;
+
+	// -- instance variables --
+
 	private final Context context;
 	
 	private final Function<PointSet,V> inputFunction;
 	
-	private final PointSet neighborhood;
+	private final Neighborhood neighborhood;
 	
 	private final ImgPlus<U> input;
 
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
 	@Parameter(required = false)
 	private StatusService statusService;
 	
+	@Parameter
+	private ThreadService threadService;
+
 	// -- public interface --
 
-	
 	public Reducer(Context context, ImgPlus<U> input, Function<PointSet,V> func,
-		PointSet neighborhood)
+		Neighborhood neighborhood)
 	{
 		this.context = context;
 		context.inject(this);
@@ -80,40 +109,116 @@ public Reducer(Context context, ImgPlus<U> input, Function<PointSet,V> func,
 		this.neighborhood = neighborhood;
 	}
 
-	// NOTE - because the neighborhood could be a spherical neighborhood that
-	// relies on a WithinRadiusOfPointCondition we cannot parallelize this
-	// algorithm. If we did we'd get one point per Thread with only one being
-	// updated correctly. One can see by trial that using a regular
-	// ImageAssignment here results in only a portion of the image getting noise
-	// reduced.
-	
+	/**
+	 * Creates a Reducer over a plain {@link PointSet} neighborhood. Each worker
+	 * thread uses its own {@link PointSet#copy()} of the neighborhood, so it
+	 * must not hold state that refers back to the original PointSet. Use
+	 * {@link #Reducer(Context, ImgPlus, Function, Neighborhood)} for
+	 * neighborhoods (such as a {@link RadialNeigh}) that do.
+	 */
+	public Reducer(Context context, ImgPlus<U> input, Function<PointSet,V> func,
+		PointSet neighborhood)
+	{
+		this(context, input, func, new PointSetNeighborhood(neighborhood));
+	}
+
+	/**
+	 * Sets the number of worker threads used by {@link #reduceNoise(String)}.
+	 * A value of 1 processes the image serially on the calling thread.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+		this.numThreads = numThreads;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
 	public Dataset reduceNoise(String neighDescrip) {
 		notifyUserAtStart(neighDescrip);
-		ImgPlus<U> newImg = input.copy();
-		long[] dims = new long[newImg.numDimensions()];
+		final ImgPlus<U> newImg = input.copy();
+		final long[] dims = new long[newImg.numDimensions()];
 		newImg.dimensions(dims);
-		PointSet space = new HyperVolumePointSet(dims);
-		PointSetInputIterator inputIterator =
-				new PointSetInputIterator(space, neighborhood);
-		long[] outputOrigin = new long[input.numDimensions()];
-		long[] outputSpan = outputOrigin.clone();
-		input.dimensions(outputSpan);
-		// NB - regular ImageAssignement won't work here for radial neighborhood due
-		// to the duplication of neighborhoods for parallelization and its
-		// interference with the WithinRadiusOfPointSetOriginCondition.
-		SerialImageAssignment<U,V,PointSet> assigner =
-				new SerialImageAssignment<U,V,PointSet>(
-					newImg,
-					inputFunction,
-					inputIterator,
-					null);
-		assigner.assign();
+		final long[] tileDims = tileDimensions(dims);
+		final long[] tileCounts = new long[dims.length];
+		long totalTiles = 1;
+		for (int i = 0; i < dims.length; i++) {
+			tileCounts[i] = (dims[i] + tileDims[i] - 1) / tileDims[i];
+			totalTiles *= tileCounts[i];
+		}
+		final long tiles = totalTiles;
+		final AtomicLong nextTile = new AtomicLong();
+		final int workers = (int) Math.max(1, Math.min(numThreads, tiles));
+		final List<Runnable> tasks = new ArrayList<Runnable>(workers);
+		for (int w = 0; w < workers; w++) {
+			// NB - the function and neighborhood are duplicated here on the calling
+			// thread so that the workers never touch the shared originals.
+			final Function<PointSet,V> func =
+				w == 0 ? inputFunction : inputFunction.copy();
+			final PointSet neigh =
+				w == 0 ? neighborhood.getPoints() : neighborhood.copy().getPoints();
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					long t;
+					while ((t = nextTile.getAndIncrement()) < tiles) {
+						final PointSet tile = tile(t, dims, tileDims, tileCounts);
+						final PointSetInputIterator inputIterator =
+							new PointSetInputIterator(tile, neigh);
+						final SerialImageAssignment<U,V,PointSet> assigner =
+							new SerialImageAssignment<U,V,PointSet>(newImg, func,
+								inputIterator, null);
+						assigner.assign();
+					}
+				}
+			});
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
 		notifyUserAtEnd(neighDescrip);
 		return new DefaultDataset(context, newImg);
 	}
 
 	// -- private interface --
 	
+	/**
+	 * Tiles are whole rows of a plane, {@link #TILE_ROWS} rows at a time, so
+	 * that each worker walks memory in storage order.
+	 */
+	private long[] tileDimensions(long[] dims) {
+		final long[] tileDims = new long[dims.length];
+		for (int i = 0; i < dims.length; i++) {
+			tileDims[i] = 1;
+		}
+		if (dims.length == 1) {
+			tileDims[0] = Math.min(dims[0], TILE_SAMPLES);
+		}
+		else if (dims.length > 1) {
+			tileDims[0] = dims[0];
+			tileDims[1] = Math.min(dims[1], TILE_ROWS);
+		}
+		return tileDims;
+	}
+
+	private PointSet tile(long index, long[] dims, long[] tileDims,
+		long[] tileCounts)
+	{
+		final long[] origin = new long[dims.length];
+		final long[] span = new long[dims.length];
+		long remainder = index;
+		for (int i = 0; i < dims.length; i++) {
+			origin[i] = (remainder % tileCounts[i]) * tileDims[i];
+			remainder /= tileCounts[i];
+			span[i] = Math.min(tileDims[i], dims[i] - origin[i]);
+		}
+		final PointSet tile = new HyperVolumePointSet(span);
+		tile.translate(origin);
+		return tile;
+	}
+
 	private void notifyUserAtStart(String neighDescrip) {
 		if (statusService != null)
 			statusService.showStatus(neighDescrip + " ... beginning processing");
@@ -123,4 +228,29 @@ private void notifyUserAtEnd(String neighDescrip) {
 		if (statusService != null)
 			statusService.showStatus(neighDescrip + " ... completed processing");
 	}
+
+	/** Adapts a stateless {@link PointSet} to the {@link Neighborhood} API. */
+	private static class PointSetNeighborhood implements Neighborhood {
+
+		private final PointSet points;
+
+		public PointSetNeighborhood(PointSet points) {
+			this.points = points;
+		}
+
+		@Override
+		public PointSet getPoints() {
+			return points;
+		}
+
+		@Override
+		public String getDescription() {
+			return points.toString();
+		}
+
+		@Override
+		public Neighborhood copy() {
+			return new PointSetNeighborhood(points.copy());
+		}
+	}
 }
@@ -0,0 +1,457 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import imagej.data.Dataset;
+import imagej.data.DefaultDataset;
+import imagej.util.ParallelUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+import org.scijava.Context;
+import org.scijava.app.StatusService;
+import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Computes rank filters (median, min, max, midpoint) over a rectangular XY
+ * neighborhood of an integer image in near constant time per pixel,
+ * regardless of the neighborhood size.
+ * <p>
+ * The median is found from a running histogram that is updated one column at
+ * a time as the window slides along a row (Huang). Min and max are computed
+ * separably along X and then Y, with the van Herk/Gil-Werman algorithm which
+ * needs three comparisons per pixel for any window width. Out of bounds
+ * values are mirrored with the boundary pixel repeated, as done by the
+ * general {@link Reducer} path.
+ * <p>
+ * Only images of integer types spanning at most {@link #MAX_BINS} values are
+ * supported; see {@link #isCompatible(ImgPlus, Neighborhood)}.
+ */
+public class SlidingWindowReducer<U extends RealType<U>> {
+
+	// -- constants --
+
+	/** The operations this reducer can compute. */
+	public enum Operation {
+		MEDIAN, MIN, MAX, MIDPOINT
+	}
+
+	/** The largest number of distinct values a supported type can hold. */
+	public static final long MAX_BINS = 65536;
+
+	/** The number of output rows computed by each unit of work. */
+	private static final int BAND_ROWS = 64;
+
+	// -- instance variables --
+
+	private final Context context;
+
+	private final ImgPlus<U> input;
+
+	private final Operation operation;
+
+	/** Window extents, relative to the output pixel, in X and Y. */
+	private final int loX, hiX, loY, hiY;
+
+	private int numThreads = Runtime.getRuntime().availableProcessors();
+
+	@Parameter(required = false)
+	private StatusService statusService;
+
+	@Parameter
+	private ThreadService threadService;
+
+	// -- public interface --
+
+	public SlidingWindowReducer(Context context, ImgPlus<U> input,
+		Operation operation, Neighborhood neighborhood)
+	{
+		if (!isCompatible(input, neighborhood)) {
+			throw new IllegalArgumentException(
+				"Unsupported image type or neighborhood shape");
+		}
+		this.context = context;
+		context.inject(this);
+		this.input = input;
+		this.operation = operation;
+		final long[][] bounds = bounds(neighborhood.getPoints());
+		loX = (int) bounds[0][0];
+		hiX = (int) bounds[1][0];
+		loY = (int) bounds[0][1];
+		hiY = (int) bounds[1][1];
+	}
+
+	/**
+	 * Returns true if the given image and neighborhood can be handled by a
+	 * SlidingWindowReducer: the image must be at least two dimensional and of an
+	 * integer type with at most {@link #MAX_BINS} possible values, and the
+	 * neighborhood must be a full rectangle in the XY plane.
+	 */
+	public static boolean isCompatible(ImgPlus<?> input,
+		Neighborhood neighborhood)
+	{
+		if (!(neighborhood instanceof RectangularNeigh)) return false;
+		if (input.numDimensions() < 2) return false;
+		final Object type = input.firstElement();
+		if (!(type instanceof IntegerType)) return false;
+		final IntegerType<?> intType = (IntegerType<?>) type;
+		final double range = intType.getMaxValue() - intType.getMinValue() + 1;
+		if (range > MAX_BINS) return false;
+		final PointSet points = neighborhood.getPoints();
+		final long[][] bounds = bounds(points);
+		long expectedSize = 1;
+		for (int d = 0; d < bounds[0].length; d++) {
+			if (d >= 2 && (bounds[0][d] != 0 || bounds[1][d] != 0)) return false;
+			expectedSize *= bounds[1][d] - bounds[0][d] + 1;
+		}
+		if (expectedSize > Integer.MAX_VALUE) return false;
+		return points.size() == expectedSize;
+	}
+
+	/**
+	 * Sets the number of worker threads used by {@link #reduceNoise(String)}.
+	 */
+	public void setNumThreads(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Thread count must be positive");
+		}
+		this.numThreads = numThreads;
+	}
+
+	public int getNumThreads() {
+		return numThreads;
+	}
+
+	public Dataset reduceNoise(String neighDescrip) {
+		notifyUserAtStart(neighDescrip);
+		final ImgPlus<U> newImg = input.copy();
+		final int numDims = input.numDimensions();
+		final int width = (int) input.dimension(0);
+		final int height = (int) input.dimension(1);
+		long planeCount = 1;
+		for (int d = 2; d < numDims; d++) {
+			planeCount *= input.dimension(d);
+		}
+		final int bandsPerPlane = (height + BAND_ROWS - 1) / BAND_ROWS;
+		final long units = planeCount * bandsPerPlane;
+		final AtomicLong nextUnit = new AtomicLong();
+		final int workers = (int) Math.max(1, Math.min(numThreads, units));
+		final List<Runnable> tasks = new ArrayList<Runnable>(workers);
+		for (int w = 0; w < workers; w++) {
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final Worker worker = new Worker(newImg, width, height);
+					long u;
+					while ((u = nextUnit.getAndIncrement()) < units) {
+						final long plane = u / bandsPerPlane;
+						final int y0 = (int) (u % bandsPerPlane) * BAND_ROWS;
+						final int y1 = Math.min(height, y0 + BAND_ROWS);
+						worker.process(plane, y0, y1);
+					}
+				}
+			});
+		}
+		ParallelUtils.runAndWait(threadService, tasks);
+		notifyUserAtEnd(neighDescrip);
+		return new DefaultDataset(context, newImg);
+	}
+
+	// -- private interface --
+
+	/** Returns the bounds of a neighborhood relative to its origin. */
+	private static long[][] bounds(PointSet points) {
+		final long[] origin = points.getOrigin();
+		final long[] min = points.findBoundMin();
+		final long[] max = points.findBoundMax();
+		for (int d = 0; d < origin.length; d++) {
+			min[d] -= origin[d];
+			max[d] -= origin[d];
+		}
+		return new long[][] { min, max };
+	}
+
+	/** Mirrors an index into [0, n), repeating the boundary pixel. */
+	private static int mirror(long i, int n) {
+		final long period = 2L * n;
+		long m = i % period;
+		if (m < 0) m += period;
+		return (int) (m < n ? m : period - 1 - m);
+	}
+
+	/**
+	 * Computes running minima (or maxima) of window size k over src[0..n+k-1)
+	 * into dst[0..n), using the van Herk/Gil-Werman block decomposition.
+	 */
+	private static void vanHerk(int[] src, int n, int k, int[] g, int[] h,
+		int[] dst, boolean max)
+	{
+		final int len = n + k - 1;
+		for (int start = 0; start < len; start += k) {
+			final int end = Math.min(len, start + k);
+			g[start] = src[start];
+			for (int i = start + 1; i < end; i++) {
+				g[i] = max ? Math.max(g[i - 1], src[i]) : Math.min(g[i - 1], src[i]);
+			}
+			h[end - 1] = src[end - 1];
+			for (int i = end - 2; i >= start; i--) {
+				h[i] = max ? Math.max(h[i + 1], src[i]) : Math.min(h[i + 1], src[i]);
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			final int a = h[i];
+			final int b = g[i + k - 1];
+			dst[i] = max ? Math.max(a, b) : Math.min(a, b);
+		}
+	}
+
+	private void notifyUserAtStart(String neighDescrip) {
+		if (statusService != null)
+			statusService.showStatus(neighDescrip + " ... beginning processing");
+	}
+
+	private void notifyUserAtEnd(String neighDescrip) {
+		if (statusService != null)
+			statusService.showStatus(neighDescrip + " ... completed processing");
+	}
+
+	/**
+	 * The per-thread state of the reducer: accessors and scratch buffers that
+	 * are reused from band to band.
+	 */
+	private class Worker {
+
+		private final RandomAccess<U> in;
+		private final RandomAccess<U> out;
+		private final int width, height;
+		private final int winW, winH;
+		private final long[] planePos;
+		private final int offset;
+		private final int[] xMap;
+		private final int[] hist;
+		private int[] rows = new int[0];
+		private final int[] line, lineG, lineH, lineOut;
+		private int[] minRows = new int[0];
+		private int[] maxRows = new int[0];
+		private final double[] result;
+
+		public Worker(ImgPlus<U> output, int width, int height) {
+			this.in = input.randomAccess();
+			this.out = output.randomAccess();
+			this.width = width;
+			this.height = height;
+			winW = hiX - loX + 1;
+			winH = hiY - loY + 1;
+			planePos = new long[input.numDimensions()];
+			offset = (int) ((IntegerType<?>) input.firstElement()).getMinValue();
+			xMap = new int[width + winW - 1];
+			for (int i = 0; i < xMap.length; i++) {
+				xMap[i] = mirror(i + loX, width);
+			}
+			hist = operation == Operation.MEDIAN ? new int[(int) MAX_BINS] : null;
+			final int lineLen = Math.max(width + winW, height + winH);
+			line = new int[lineLen];
+			lineG = new int[lineLen];
+			lineH = new int[lineLen];
+			lineOut = new int[lineLen];
+			result = new double[width];
+		}
+
+		/** Filters output rows [y0, y1) of the given plane. */
+		public void process(long plane, int y0, int y1) {
+			setPlane(plane);
+			final int rowCount = y1 - y0 + winH - 1;
+			if (rows.length < rowCount * width) rows = new int[rowCount * width];
+			for (int r = 0; r < rowCount; r++) {
+				readRow(mirror(y0 + loY + r, height), r);
+			}
+			if (operation == Operation.MEDIAN) median(y0, y1);
+			else minMax(y0, y1, rowCount);
+		}
+
+		private void setPlane(long plane) {
+			long remainder = plane;
+			for (int d = 2; d < planePos.length; d++) {
+				final long dim = input.dimension(d);
+				planePos[d] = remainder % dim;
+				remainder /= dim;
+			}
+			in.setPosition(planePos);
+			out.setPosition(planePos);
+		}
+
+		private void readRow(int y, int r) {
+			in.setPosition(0, 0);
+			in.setPosition(y, 1);
+			final int base = r * width;
+			for (int x = 0; x < width; x++) {
+				rows[base + x] = (int) in.get().getRealDouble() - offset;
+				in.fwd(0);
+			}
+		}
+
+		private void writeRow(int y) {
+			out.setPosition(0, 0);
+			out.setPosition(y, 1);
+			for (int x = 0; x < width; x++) {
+				out.get().setReal(result[x]);
+				out.fwd(0);
+			}
+		}
+
+		private void median(int y0, int y1) {
+			final int count = winW * winH;
+			final int rank = (count - 1) / 2;
+			final boolean even = count % 2 == 0;
+			for (int y = y0; y < y1; y++) {
+				final int base = (y - y0) * width;
+				for (int c = 0; c < winW; c++) {
+					addColumn(base, xMap[c], 1);
+				}
+				int m = 0;
+				int below = 0;
+				for (int x = 0; x < width; x++) {
+					if (x > 0) {
+						final int oldCol = xMap[x - 1];
+						final int newCol = xMap[x + winW - 1];
+						for (int r = 0; r < winH; r++) {
+							final int vOld = rows[base + r * width + oldCol];
+							hist[vOld]--;
+							if (vOld < m) below--;
+							final int vNew = rows[base + r * width + newCol];
+							hist[vNew]++;
+							if (vNew < m) below++;
+						}
+					}
+					// move the cursor until it sits on the bin holding the rank
+					while (below > rank) {
+						m--;
+						below -= hist[m];
+					}
+					while (below + hist[m] <= rank) {
+						below += hist[m];
+						m++;
+					}
+					if (!even || below + hist[m] > rank + 1) {
+						result[x] = m + offset;
+					}
+					else {
+						int next = m + 1;
+						while (hist[next] == 0) next++;
+						result[x] = (m + next) / 2.0 + offset;
+					}
+				}
+				// empty the histogram for the next row
+				for (int c = width - 1; c < width + winW - 1; c++) {
+					addColumn(base, xMap[c], -1);
+				}
+				writeRow(y);
+			}
+		}
+
+		private void addColumn(int base, int col, int delta) {
+			for (int r = 0; r < winH; r++) {
+				hist[rows[base + r * width + col]] += delta;
+			}
+		}
+
+		private void minMax(int y0, int y1, int rowCount) {
+			final boolean wantMin = operation != Operation.MAX;
+			final boolean wantMax = operation != Operation.MIN;
+			if (wantMin && minRows.length < rowCount * width) {
+				minRows = new int[rowCount * width];
+			}
+			if (wantMax && maxRows.length < rowCount * width) {
+				maxRows = new int[rowCount * width];
+			}
+			// horizontal pass
+			for (int r = 0; r < rowCount; r++) {
+				final int base = r * width;
+				for (int i = 0; i < xMap.length; i++) {
+					line[i] = rows[base + xMap[i]];
+				}
+				if (wantMin) {
+					vanHerk(line, width, winW, lineG, lineH, lineOut, false);
+					System.arraycopy(lineOut, 0, minRows, base, width);
+				}
+				if (wantMax) {
+					vanHerk(line, width, winW, lineG, lineH, lineOut, true);
+					System.arraycopy(lineOut, 0, maxRows, base, width);
+				}
+			}
+			// vertical pass, one column at a time, written back into row 0.. of
+			// the horizontal results
+			final int outRows = y1 - y0;
+			for (int x = 0; x < width; x++) {
+				if (wantMin) verticalPass(minRows, x, rowCount, outRows, false);
+				if (wantMax) verticalPass(maxRows, x, rowCount, outRows, true);
+			}
+			for (int y = y0; y < y1; y++) {
+				final int base = (y - y0) * width;
+				for (int x = 0; x < width; x++) {
+					final double value;
+					if (operation == Operation.MIN) value = minRows[base + x];
+					else if (operation == Operation.MAX) value = maxRows[base + x];
+					else value = (minRows[base + x] + maxRows[base + x]) / 2.0;
+					result[x] = value + offset;
+				}
+				writeRow(y);
+			}
+		}
+
+		private void verticalPass(int[] buf, int x, int rowCount, int outRows,
+			boolean max)
+		{
+			for (int r = 0; r < rowCount; r++) {
+				line[r] = buf[r * width + x];
+			}
+			vanHerk(line, outRows, winH, lineG, lineH, lineOut, max);
+			for (int r = 0; r < outRows; r++) {
+				buf[r * width + x] = lineOut[r];
+			}
+		}
+	}
+}
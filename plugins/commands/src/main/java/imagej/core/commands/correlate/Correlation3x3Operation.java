@@ -36,7 +36,7 @@
 package imagej.core.commands.correlate;
 
 import imagej.core.commands.neigh.Neighborhood3x3Operation;
-import imagej.core.commands.neigh.Neighborhood3x3Watcher;
+import imagej.core.commands.neigh.Neighborhood3x3RowWatcher;
 import imagej.data.Dataset;
 import imagej.util.RealRect;
 
@@ -100,7 +100,7 @@ public void run() {
 	 * CorrelateWatcher tallies that information and returns appropriate values as
 	 * necessary.
 	 */
-	private class CorrelateWatcher implements Neighborhood3x3Watcher {
+	private class CorrelateWatcher implements Neighborhood3x3RowWatcher {
 
 		private double scale;
 		private double sum;
@@ -158,6 +158,39 @@ public double calcOutputValue() {
 			return value;
 		}
 
+		/**
+		 * Correlates a whole row at once. Same calculation as visiting each
+		 * location and calling calcOutputValue() for each pixel.
+		 */
+		@Override
+		public void calcOutputRow(final double[] above, final double[] row,
+			final double[] below, final double[] output, final int length)
+		{
+			final double k0 = kernel[0], k1 = kernel[1], k2 = kernel[2];
+			final double k3 = kernel[3], k4 = kernel[4], k5 = kernel[5];
+			final double k6 = kernel[6], k7 = kernel[7], k8 = kernel[8];
+			for (int i = 0; i < length; i++) {
+				output[i] =
+					k0 * above[i] + k1 * above[i + 1] + k2 * above[i + 2] + k3 *
+						row[i] + k4 * row[i + 1] + k5 * row[i + 2] + k6 * below[i] + k7 *
+						below[i + 1] + k8 * below[i + 2];
+			}
+			if (integerDataset) {
+				final double halfScale = scale / 2;
+				for (int i = 0; i < length; i++) {
+					double value = (output[i] + halfScale) / scale;
+					if (value < typeMinValue) value = typeMinValue;
+					if (value > typeMaxValue) value = typeMaxValue;
+					output[i] = value;
+				}
+			}
+			else {
+				for (int i = 0; i < length; i++) {
+					output[i] /= scale;
+				}
+			}
+		}
+
 	}
 
 }
@@ -43,10 +43,17 @@
 import imagej.data.display.OverlayService;
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.histogram.HistogramService;
+import imagej.data.measure.MomentAccumulator;
+import imagej.data.measure.RegionStats;
+import imagej.data.measure.Stat;
 import imagej.data.widget.HistogramBundle;
 import imagej.module.MutableModuleItem;
 import imagej.ui.UIService;
 import imagej.widget.Button;
+
+import java.util.EnumSet;
+
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.histogram.DiscreteFrequencyDistribution;
@@ -101,6 +108,9 @@
 	@Parameter
 	private OverlayService overlayService;
 
+	@Parameter
+	private HistogramService histogramService;
+
 	@Parameter
 	private ImageDisplay display;
 
@@ -152,8 +162,7 @@
 	private double[] stdDevs;
 	private double[] mins;
 	private double[] maxes;
-	private double[] sum1s;
-	private double[] sum2s;
+	private MomentAccumulator[] accumulators;
 	private long sampleCount;
 	private double binWidth;
 	private double dataMin;
@@ -351,14 +360,10 @@ private void setTitle(int histNum) {
 
 	private void calcBinInfo() {
 		// calc the data ranges - 1st pass thru data
-		dataMin = Double.POSITIVE_INFINITY;
-		dataMax = Double.NEGATIVE_INFINITY;
-		Cursor<? extends RealType<?>> cursor = dataset.getImgPlus().cursor();
-		while (cursor.hasNext()) {
-			double val = cursor.next().getRealDouble();
-			if (val < dataMin) dataMin = val;
-			if (val > dataMax) dataMax = val;
-		}
+		RegionStats range =
+			histogramService.getStats(dataset, histogramService.getPlanes(dataset));
+		dataMin = range.get(Stat.MINIMUM);
+		dataMax = range.get(Stat.MAXIMUM);
 		if (dataMin > dataMax) {
 			dataMin = 0;
 			dataMax = 0;
@@ -399,17 +404,21 @@ private void allocateDataStructures() {
 			histograms[i] = new Histogram1d<T>(mapper);
 		means = new double[histograms.length];
 		stdDevs = new double[histograms.length];
-		sum1s = new double[histograms.length];
-		sum2s = new double[histograms.length];
 		mins = new double[histograms.length];
 		maxes = new double[histograms.length];
-		for (int i = 0; i < histograms.length; i++) {
-			mins[i] = Double.POSITIVE_INFINITY;
-			maxes[i] = Double.NEGATIVE_INFINITY;
-		}
+		accumulators = new MomentAccumulator[histograms.length];
+		EnumSet<Stat> stats =
+			EnumSet.of(Stat.ARITHMETIC_MEAN, Stat.SAMPLE_STD_DEV, Stat.MINIMUM,
+				Stat.MAXIMUM);
+		for (int i = 0; i < histograms.length; i++)
+			accumulators[i] = new MomentAccumulator(stats);
 	}
 
 	private void computeStats() {
+		if (channels == 1) {
+			computeCachedStats();
+			return;
+		}
 		// calc stats - 2nd pass thru data
 		int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
 		int composH = histograms.length - 1;
@@ -435,10 +444,7 @@ private void computeStats() {
 				if (index >= binCount) index = binCount - 1;
 				int c = (int) chan;
 				histograms[c].increment(index);
-				sum1s[c] += val;
-				sum2s[c] += val * val;
-				if (val < mins[c]) mins[c] = val;
-				if (val > maxes[c]) maxes[c] = val;
+				accumulators[c].accumulate(val);
 				sampleCount++;
 			}
 			composVal /= channels;
@@ -446,18 +452,37 @@ private void computeStats() {
 			// NB in float case the max data point overflows the index range
 			if (index >= binCount) index = binCount - 1;
 			histograms[composH].increment(index);
-			sum1s[composH] += composVal;
-			sum2s[composH] += composVal * composVal;
-			if (composVal < mins[composH]) mins[composH] = composVal;
-			if (composVal > maxes[composH]) maxes[composH] = composVal;
+			accumulators[composH].accumulate(composVal);
 		}
 		// calc means etc.
-		long pixels = sampleCount / channels;
 		for (int i = 0; i < histograms.length; i++) {
-			means[i] = sum1s[i] / pixels;
-			stdDevs[i] =
-				Math.sqrt((sum2s[i] - ((sum1s[i] * sum1s[i]) / pixels)) / (pixels - 1));
+			means[i] = accumulators[i].get(Stat.ARITHMETIC_MEAN);
+			stdDevs[i] = accumulators[i].get(Stat.SAMPLE_STD_DEV);
+			mins[i] = accumulators[i].get(Stat.MINIMUM);
+			maxes[i] = accumulators[i].get(Stat.MAXIMUM);
+		}
+	}
+
+	// A single channel's histogram is its composite histogram, and both can be
+	// merged from the plane histograms the HistogramService keeps. The bins
+	// match the ones computeStats() fills by hand.
+
+	private void computeCachedStats() {
+		final int[] planes = histogramService.getPlanes(dataset);
+		final double histMax = dataMin + binCount * binWidth;
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] =
+				histogramService.getHistogram(dataset, planes, dataMin, histMax,
+					binCount);
+		}
+		final RegionStats stats = histogramService.getStats(dataset, planes);
+		for (int i = 0; i < histograms.length; i++) {
+			means[i] = stats.get(Stat.ARITHMETIC_MEAN);
+			stdDevs[i] = stats.get(Stat.SAMPLE_STD_DEV);
+			mins[i] = stats.get(Stat.MINIMUM);
+			maxes[i] = stats.get(Stat.MAXIMUM);
 		}
+		sampleCount = stats.getSampleCount();
 	}
 
 	private void build() {
@@ -36,6 +36,7 @@
 package imagej.core.commands.display.interactive;
 
 import imagej.command.Command;
+import imagej.data.autoscale.AutoscaleMethod;
 import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
 import imagej.data.command.InteractiveImageCommand;
@@ -94,6 +95,8 @@
 	private static final String PLANE = "Plane";
 	private static final String GLOBAL = "Global";
 
+	private static final String AUTO_METHOD = "Confidence Interval";
+
 	// -- Parameter fields --
 
 	@Parameter
@@ -123,6 +126,9 @@
 
 	@Parameter(label = "Default", callback = "setDefault")
 	private Button defaultButton;
+
+	@Parameter(label = "Auto", callback = "setAuto")
+	private Button autoButton;
 	
 	@Parameter(label = "Range:",
 		style = ChoiceWidget.RADIO_BUTTON_HORIZONTAL_STYLE, choices = { PLANE,
@@ -234,6 +240,25 @@ protected void setDefault() {
 		updateDisplay();
 	}
 
+	/**
+	 * Called when the auto button is pressed. Sets min and max to the range
+	 * that holds all but the tails of the plane or global value distribution.
+	 */
+	@SuppressWarnings("unchecked")
+	protected void setAuto() {
+		AutoscaleMethod method = autoscaleService.getAutoscaleMethod(AUTO_METHOD);
+		if (method == null) method = autoscaleService.getDefaultAutoscaleMethod();
+		DataRange range;
+		if (rangeChoice.equals(PLANE)) {
+			range = method.getRange(Views.iterable(view.xyPlane()));
+		}
+		else range = autoscaleService.getDatasetRange(method, view.getData());
+		min = range.getMin();
+		max = range.getMax();
+		minMaxChanged();
+		updateDisplay();
+	}
+
 	// -- Helper methods --
 
 	// TODO we have a couple refresh problems
@@ -37,12 +37,12 @@
 
 import imagej.command.Command;
 import imagej.data.Dataset;
-import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
 import imagej.data.command.InteractiveImageCommand;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.event.AxisPositionEvent;
+import imagej.data.histogram.HistogramService;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.data.threshold.ThresholdMethod;
 import imagej.data.threshold.ThresholdService;
@@ -55,15 +55,10 @@
 import imagej.widget.Button;
 import imagej.widget.NumberWidget;
 import net.imglib2.Cursor;
-import net.imglib2.IterableInterval;
 import net.imglib2.histogram.Histogram1d;
-import net.imglib2.histogram.Real1dBinMapper;
-import net.imglib2.img.Img;
 import net.imglib2.meta.AxisType;
 import net.imglib2.meta.ImgPlus;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.IntervalView;
-import net.imglib2.view.Views;
 
 import org.scijava.ItemIO;
 import org.scijava.event.EventHandler;
@@ -176,7 +171,7 @@
 	private ImageDisplayService imgDispSrv;
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private HistogramService histogramService;
 
 	@Parameter
 	private UIService uiSrv;
@@ -218,7 +213,7 @@ protected void initValues() {
 
 		minMax = calcDataRange();
 
-		fullHistogram = buildHistogram(true, null);
+		fullHistogram = buildHistogram(true);
 		planeHistogram = null;
 		invalidPlaneHist = true;
 
@@ -375,7 +370,7 @@ private Histogram1d<T> histogram() {
 		if (invalidPlaneHist) {
 			// null is on purpose. we want new histograms to certainly update the
 			// HistogramBundle so plane changes always reflected in panel.
-			planeHistogram = buildHistogram(false, null);
+			planeHistogram = buildHistogram(false);
 			invalidPlaneHist = false;
 		}
 		return planeHistogram;
@@ -403,27 +398,17 @@ else if (displayType.equals(OVER_UNDER)) {
 
 	private DataRange calcDataRange() {
 		Dataset ds = imgDispSrv.getActiveDataset(display);
-		return autoscaleService.getDefaultIntervalRange(ds.getImgPlus());
+		return histogramService.getDataRange(ds, histogramService.getPlanes(ds));
 	}
 
 	// builds the histogram from either the whole data range or the currently
-	// viewed plane
+	// viewed plane. The HistogramService keeps the counts of every plane, so
+	// flipping between methods or planes does not recount unchanged data.
 
-	private Histogram1d<T> buildHistogram(boolean allData,
-		Histogram1d<T> existingHist)
-	{
-		// return buildHistogramFromPointSets(allData, existingHist);
-		return buildHistogramFromViews(allData, existingHist);
-	}
-
-	private Histogram1d<T> buildHistogramFromViews(boolean allData,
-		Histogram1d<T> existingHist)
-	{
+	private Histogram1d<T> buildHistogram(boolean allData) {
 		Dataset ds = imgDispSrv.getActiveDataset(display);
 		long[] min = new long[ds.numDimensions()];
 		long[] max = min.clone();
-		max[0] = ds.dimension(0) - 1;
-		max[1] = ds.dimension(1) - 1;
 		for (int d = 2; d < ds.numDimensions(); d++) {
 			if (allData) {
 				min[d] = 0;
@@ -436,47 +421,24 @@ private Histogram1d<T> buildHistogramFromViews(boolean allData,
 				max[d] = pos;
 			}
 		}
-		@SuppressWarnings("unchecked")
-		Img<T> img = (Img<T>) ds.getImgPlus();
-		IntervalView<T> view = Views.interval(img, min, max);
-		IterableInterval<T> data = Views.iterable(view);
-		final Histogram1d<T> histogram;
-		if (existingHist == null) {
-			// +1 needed for int but maybe not float
-			histogram = allocateHistogram(ds.isInteger(), minMax);
-		}
-		else {
-			existingHist.resetCounters();
-			histogram = existingHist;
-		}
-		histogram.countData(data);
-		return histogram;
+		int[] planes = histogramService.getPlanes(ds, min, max);
+		// +1 needed for int but maybe not float
+		long binCount = binCount(ds.isInteger(), minMax);
+		return histogramService.getHistogram(ds, planes, minMax.getMin(), minMax
+			.getMax(), binCount);
 	}
 
-	private Histogram1d<T> allocateHistogram(boolean dataIsIntegral,
-		DataRange dataRange)
-	{
+	private long binCount(boolean dataIsIntegral, DataRange dataRange) {
 		double range = dataRange.getExtent();
 		if (dataIsIntegral) range++;
-		Real1dBinMapper<T> binMapper = null;
 		// TODO - size of histogram affects speed of all autothresh methods
 		// What is the best way to determine size?
 		// Do we want some power of two as size? For now yes.
 		final int MaxBinCount = 16384;
 		for (int binCount = 256; binCount <= MaxBinCount; binCount *= 2) {
-			if (range <= binCount) {
-				binMapper =
-					new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), binCount,
-						false);
-				break;
-			}
-		}
-		if (binMapper == null) {
-			binMapper =
-				new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), MaxBinCount,
-					false);
+			if (range <= binCount) return binCount;
 		}
-		return new Histogram1d<T>(binMapper);
+		return MaxBinCount;
 	}
 
 	private long calcBin(long binCount, double val) {
@@ -36,19 +36,51 @@
 package imagej.core.commands.misc;
 
 import imagej.command.Command;
-import imagej.command.UnimplementedCommand;
+import imagej.command.ContextCommand;
+import imagej.core.commands.assign.noisereduce.NoiseReductionMedian;
+import imagej.core.commands.assign.noisereduce.RectangularNeigh;
+import imagej.core.commands.correlate.Correlation3x3Operation;
+import imagej.core.commands.typechange.TypeChanger;
+import imagej.data.Dataset;
+import imagej.data.autoscale.DataRange;
+import imagej.data.display.DatasetView;
 import imagej.data.display.ImageDisplay;
+import imagej.data.display.ImageDisplayService;
+import imagej.data.histogram.HistogramService;
+import imagej.data.measure.Stat;
+import imagej.data.measure.StatisticsService;
+import imagej.data.minmax.DefaultMinMaxMethod;
+import imagej.data.minmax.MinMaxMethod;
+import imagej.data.table.DefaultResultsTable;
+import imagej.data.table.ResultsTable;
+import imagej.data.threshold.ThresholdMethod;
+import imagej.data.threshold.ThresholdService;
 import imagej.menu.MenuConstants;
+import imagej.util.RealRect;
 
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import net.imglib2.histogram.Histogram1d;
+
+import org.scijava.ItemIO;
+import org.scijava.app.StatusService;
 import org.scijava.plugin.Menu;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
-// TODO - replace the kind of functionality that IJ1's Benchmark command has.
-// It needs to display changes as they happen (something the legacy plugin can't
-// do inside modern ImageJ).
-
 /**
+ * Times a quick selection of common operations on the active image and reports
+ * the results in a {@link ResultsTable}. Each operation is run once to warm
+ * up, then timed over several repetitions. Operations that modify data work on
+ * a copy of the image, so the image itself is left untouched; refreshing that
+ * copy is not part of the timing.
+ * <p>
+ * For thorough, statistically sound measurements across pixel types and image
+ * sizes, use the JMH benchmarks of the ij-benchmarks module instead.
+ * </p>
+ * 
  * @author Barry DeZonia
  */
 @Plugin(type = Command.class, iconPath = "/icons/commands/bricks.png",
@@ -56,14 +88,81 @@
 		@Menu(label = MenuConstants.PLUGINS_LABEL,
 			weight = MenuConstants.PLUGINS_WEIGHT,
 			mnemonic = MenuConstants.PLUGINS_MNEMONIC), @Menu(label = "Utilities"),
-		@Menu(label = "Benchmark") })
-public class Benchmark extends UnimplementedCommand {
+		@Menu(label = "Benchmark") }, headless = true)
+public class Benchmark extends ContextCommand {
+
+	// -- constants --
+
+	/** Number of timed runs of each operation. */
+	private static final int REPETITIONS = 3;
+
+	private static final String[] HEADERS = { "Best (ms)", "Mean (ms)",
+		"Megapixels/s" };
 
 	// -- Parameters --
 
+	@Parameter
+	private ImageDisplayService imageDisplayService;
+
+	@Parameter
+	private StatisticsService statisticsService;
+
+	@Parameter
+	private HistogramService histogramService;
+
+	@Parameter
+	private ThresholdService thresholdService;
+
+	@Parameter
+	private StatusService statusService;
+
 	@Parameter
 	private ImageDisplay display;
 
+	@Parameter(label = "Benchmark Results", type = ItemIO.OUTPUT)
+	private ResultsTable results;
+
+	// -- Command methods --
+
+	@Override
+	public void run() {
+		final Dataset dataset = imageDisplayService.getActiveDataset(display);
+		if (dataset == null) {
+			cancel("No image to benchmark");
+			return;
+		}
+		final List<Task> tasks = createTasks(dataset);
+		final double megapixels = dataset.getImgPlus().size() / 1e6;
+
+		results = new DefaultResultsTable(HEADERS.length, tasks.size());
+		for (int col = 0; col < HEADERS.length; col++) {
+			results.setColumnHeader(col, HEADERS[col]);
+		}
+		for (int row = 0; row < tasks.size(); row++) {
+			final Task task = tasks.get(row);
+			statusService.showStatus(row, tasks.size(), "Benchmarking " +
+				task.getName() + "...");
+			task.prepare();
+			task.run(); // warm up
+			long best = Long.MAX_VALUE, total = 0;
+			for (int i = 0; i < REPETITIONS; i++) {
+				if (isCanceled()) return;
+				task.prepare();
+				final long start = System.nanoTime();
+				task.run();
+				final long time = System.nanoTime() - start;
+				best = Math.min(best, time);
+				total += time;
+			}
+			final double bestMillis = best / 1e6;
+			results.setRowHeader(row, task.getName());
+			results.setValue(0, row, bestMillis);
+			results.setValue(1, row, total / 1e6 / REPETITIONS);
+			results.setValue(2, row, megapixels / (bestMillis / 1000));
+		}
+		statusService.clearStatus();
+	}
+
 	// -- accessors --
 
 	public void setImageDisplay(final ImageDisplay disp) {
@@ -74,4 +173,138 @@ public ImageDisplay getImageDisplay() {
 		return display;
 	}
 
+	public ResultsTable getResults() {
+		return results;
+	}
+
+	// -- private helpers --
+
+	private List<Task> createTasks(final Dataset dataset) {
+		final List<Task> tasks = new ArrayList<Task>();
+		tasks.add(new Task("Statistics") {
+
+			@Override
+			public void run() {
+				statisticsService.computeAll(dataset, EnumSet.of(Stat.MINIMUM,
+					Stat.MAXIMUM, Stat.ARITHMETIC_MEAN, Stat.SAMPLE_STD_DEV));
+			}
+		});
+		final MinMaxMethod<?> minmax = new DefaultMinMaxMethod();
+		getContext().inject(minmax);
+		tasks.add(new Task("Min/Max") {
+
+			@Override
+			@SuppressWarnings({ "rawtypes", "unchecked" })
+			public void run() {
+				((MinMaxMethod) minmax).initialize(dataset.getImgPlus());
+				minmax.process();
+			}
+		});
+		final Dataset scratch = dataset.duplicate();
+		final ThresholdMethod otsu = thresholdService.getThresholdMethod("Otsu");
+		if (otsu != null) {
+			tasks.add(new Task("Histogram + Otsu threshold") {
+
+				@Override
+				public void prepare() {
+					// NB - measure the computation, not the cache; the histograms of
+					// the image itself are left alone
+					scratch.copyDataFrom(dataset);
+					histogramService.invalidate(scratch, null);
+				}
+
+				@Override
+				public void run() {
+					final int[] planes = histogramService.getPlanes(scratch);
+					final DataRange range =
+						histogramService.getDataRange(scratch, planes);
+					final Histogram1d<?> histogram =
+						histogramService.getHistogram(scratch, planes, range.getMin(),
+							range.getMax(), 256);
+					otsu.getThreshold(histogram);
+				}
+			});
+		}
+		final DatasetView view = imageDisplayService.getActiveDatasetView(display);
+		if (view != null) {
+			tasks.add(new Task("Rendering") {
+
+				@Override
+				public void run() {
+					view.getProjector().map();
+				}
+			});
+		}
+		final RealRect selection =
+			new RealRect(0, 0, dataset.dimension(0), dataset.dimension(1));
+		tasks.add(new Task("3x3 smooth") {
+
+			@Override
+			public void prepare() {
+				scratch.copyDataFrom(dataset);
+			}
+
+			@Override
+			public void run() {
+				new Correlation3x3Operation(scratch, selection, new double[] { 1, 1, 1,
+					1, 1, 1, 1, 1, 1 }).run();
+			}
+		});
+		tasks.add(new Task("3x3 median") {
+
+			@Override
+			@SuppressWarnings("rawtypes")
+			public void run() {
+				final NoiseReductionMedian median = new NoiseReductionMedian();
+				getContext().inject(median);
+				median.setInput(dataset);
+				median.setNeighborhood(new RectangularNeigh(new long[] { 1, 1 },
+					new long[] { 1, 1 }));
+				median.run();
+			}
+		});
+		tasks.add(new Task("Convert to 32-bit float") {
+
+			private Dataset copy;
+
+			@Override
+			public void prepare() {
+				copy = dataset.duplicate();
+			}
+
+			@Override
+			@SuppressWarnings("rawtypes")
+			public void run() {
+				final TypeChanger changer = new TypeChanger();
+				changer.setContext(getContext());
+				changer.setInput("data", copy);
+				changer.setInput("typeName", "32-bit signed float");
+				changer.setInput("combineChannels", false);
+				changer.run();
+			}
+		});
+		return tasks;
+	}
+
+	// -- Helper classes --
+
+	/** A named operation to time. */
+	private abstract static class Task implements Runnable {
+
+		private final String name;
+
+		public Task(final String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/** Readies the next run; this part is not timed. */
+		public void prepare() {
+			// nothing by default
+		}
+	}
+
 }
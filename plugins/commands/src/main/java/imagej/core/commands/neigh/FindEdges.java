@@ -97,7 +97,7 @@ public ImageDisplay getDisplay() {
 
 	// -- private interface --
 
-	private class FindEdgesWatcher implements Neighborhood3x3Watcher {
+	private class FindEdgesWatcher implements Neighborhood3x3RowWatcher {
 
 		/**
 		 * n - contains a local copy of the 9 values of a 3x3 neighborhood
@@ -159,6 +159,34 @@ public double calcOutputValue() {
 
 			return value;
 		}
+
+		/**
+		 * Calculates the values of a whole row of pixels. Same algorithm as
+		 * calcOutputValue().
+		 */
+		@Override
+		public void calcOutputRow(final double[] above, final double[] row,
+			final double[] below, final double[] output, final int length)
+		{
+			for (int i = 0; i < length; i++) {
+				final double sum1 =
+					above[i] + 2 * above[i + 1] + above[i + 2] - below[i] - 2 *
+						below[i + 1] - below[i + 2];
+
+				final double sum2 =
+					above[i] + 2 * row[i] + below[i] - above[i + 2] - 2 * row[i + 2] -
+						below[i + 2];
+
+				double value = Math.sqrt(sum1 * sum1 + sum2 * sum2);
+
+				if (integerDataset) {
+					if (value < typeMinValue) value = typeMinValue;
+					if (value > typeMaxValue) value = typeMaxValue;
+				}
+
+				output[i] = value;
+			}
+		}
 	}
 
 }
@@ -37,8 +37,15 @@
 
 import imagej.data.Dataset;
 import imagej.data.Extents;
+import imagej.data.PlaneAccessor;
 import imagej.data.Position;
+import imagej.util.ParallelUtils;
 import imagej.util.RealRect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
 import net.imglib2.Cursor;
 import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessible;
@@ -46,10 +53,19 @@
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.view.Views;
 
+import org.scijava.thread.ThreadService;
+
 /**
  * Neighborhood3x3Operation - a helper class for 3x3 neighborhood operation
  * plugins such as SmoothDataValues, SharpenDataValues, and FindEdges. Does the
  * work of communicating with a Neighborhood3x3Watcher.
+ * <p>
+ * When the watcher is a {@link Neighborhood3x3RowWatcher} and the image is an
+ * array or planar image of a primitive type, the operation works directly on
+ * the plane arrays: it keeps three rolling row buffers per plane (so no copy of
+ * the image is needed), lets the watcher compute whole rows at once, and
+ * processes planes in parallel. Otherwise every neighborhood is visited
+ * through a generic out of bounds accessor.
  * 
  * @author Barry DeZonia
  */
@@ -80,6 +96,7 @@ public Neighborhood3x3Operation(final Dataset input,
 
 	public void run() {
 		checkInput();
+		if (runPlanar()) return;
 		setupWorkingData();
 		runAssignment();
 	}
@@ -101,6 +118,57 @@ private void checkInput() {
 		// input.getImage().numDimensions() + " dimensions");
 	}
 
+	/**
+	 * Runs the operation on the primitive plane arrays if possible. Returns
+	 * false if the image or watcher does not allow it.
+	 */
+	private boolean runPlanar() {
+		if (!(watcher instanceof Neighborhood3x3RowWatcher)) return false;
+		final Img<? extends RealType<?>> img = input.getImgPlus();
+		if (img.numDimensions() < 2) return false;
+		final PlaneAccessor accessor = PlaneAccessor.forType(input.getType());
+		if (accessor == null) return false;
+		if (PlaneAccessor.getStorage(img, 0) == null) return false;
+		final long w = img.dimension(0);
+		final long h = img.dimension(1);
+		if (w * h > Integer.MAX_VALUE) return false;
+		long count = 1;
+		for (int i = 2; i < img.numDimensions(); i++)
+			count *= img.dimension(i);
+		final long planeCount = count;
+
+		if (selection.width == 0) selection.width = (int) w;
+		if (selection.height == 0) selection.height = (int) h;
+
+		final Neighborhood3x3RowWatcher rowWatcher =
+			(Neighborhood3x3RowWatcher) watcher;
+		rowWatcher.setup();
+
+		final AtomicLong nextPlane = new AtomicLong();
+		final int workers =
+			(int) Math.min(planeCount, Runtime.getRuntime().availableProcessors());
+		final List<Runnable> tasks = new ArrayList<Runnable>();
+		for (int i = 0; i < workers; i++) {
+			tasks.add(new Runnable() {
+
+				@Override
+				public void run() {
+					final PlaneWorker worker =
+						new PlaneWorker(img, accessor, rowWatcher, (int) w, (int) h);
+					long p;
+					while ((p = nextPlane.getAndIncrement()) < planeCount) {
+						worker.process((int) p);
+					}
+				}
+			});
+		}
+		final ThreadService threadService =
+			input.getContext().getService(ThreadService.class);
+		ParallelUtils.runAndWait(threadService, tasks);
+		input.update();
+		return true;
+	}
+
 	private void setupWorkingData() {
 		inputImage = input.getImgPlus();
 		inputImageCopy = cloneImage(inputImage);
@@ -181,6 +249,85 @@ private void applyOperationToPlane(final Position planePos) {
 		}
 	}
 
+	/**
+	 * Mirrors an index into [0, n) without repeating the boundary pixel, as
+	 * {@link Views#extendMirrorSingle} does.
+	 */
+	private static int mirrorSingle(final long i, final int n) {
+		if (n == 1) return 0;
+		final long period = 2L * n - 2;
+		long m = i % period;
+		if (m < 0) m += period;
+		return (int) (m < n ? m : period - m);
+	}
+
+	/**
+	 * Processes whole planes for one thread, reusing its row buffers from plane
+	 * to plane.
+	 */
+	private class PlaneWorker {
+
+		private final Img<? extends RealType<?>> img;
+		private final PlaneAccessor accessor;
+		private final Neighborhood3x3RowWatcher rowWatcher;
+		private final int w, h;
+		private final int minX, minY, width, height;
+		private double[] above, row, below;
+		private final double[] output;
+
+		public PlaneWorker(final Img<? extends RealType<?>> img,
+			final PlaneAccessor accessor, final Neighborhood3x3RowWatcher rowWatcher,
+			final int w, final int h)
+		{
+			this.img = img;
+			this.accessor = accessor;
+			this.rowWatcher = rowWatcher;
+			this.w = w;
+			this.h = h;
+			minX = (int) selection.x;
+			minY = (int) selection.y;
+			width = (int) selection.width;
+			height = (int) selection.height;
+			above = new double[width + 2];
+			row = new double[width + 2];
+			below = new double[width + 2];
+			output = new double[width];
+		}
+
+		public void process(final int planeNumber) {
+			final Object storage = PlaneAccessor.getStorage(img, planeNumber);
+			final int offset = PlaneAccessor.getOffset(img, planeNumber);
+			// NB - rows are overwritten in place as we go. The row above is always
+			// kept in a buffer before it is overwritten, and the only row below
+			// that can have been overwritten already (the mirrored one past the
+			// bottom edge) is that same row.
+			readRow(storage, offset, mirrorSingle(minY - 1, h), above);
+			readRow(storage, offset, minY, row);
+			for (int y = minY; y < minY + height; y++) {
+				if (y + 1 < h) readRow(storage, offset, y + 1, below);
+				else if (h > 1) System.arraycopy(above, 0, below, 0, width + 2);
+				else System.arraycopy(row, 0, below, 0, width + 2);
+				rowWatcher.calcOutputRow(above, row, below, output, width);
+				accessor.write(output, 0, storage, offset + y * w + minX, width);
+				final double[] tmp = above;
+				above = row;
+				row = below;
+				below = tmp;
+			}
+		}
+
+		private void readRow(final Object storage, final int offset, final int y,
+			final double[] buffer)
+		{
+			final int rowStart = offset + y * w;
+			accessor.read(storage, rowStart + minX, buffer, 1, width);
+			accessor.read(storage, rowStart + mirrorSingle(minX - 1, w), buffer, 0,
+				1);
+			accessor.read(storage, rowStart + mirrorSingle(minX + width, w), buffer,
+				width + 1, 1);
+		}
+	}
+
 	// TODO - eliminate when ImgLib allows ability to duplicate/clone an Img
 	// TODO - find a way to eliminate use of raw types here
 	@SuppressWarnings({ "rawtypes", "unchecked" })
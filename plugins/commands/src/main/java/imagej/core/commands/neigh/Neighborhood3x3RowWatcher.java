@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.neigh;
+
+/**
+ * A {@link Neighborhood3x3Watcher} that can also calculate the output values of
+ * a whole row of pixels at once. {@link Neighborhood3x3Operation} uses this to
+ * work directly on rows of primitive data instead of visiting every location
+ * of every neighborhood one at a time.
+ */
+public interface Neighborhood3x3RowWatcher extends Neighborhood3x3Watcher {
+
+	/**
+	 * Calculates the output values of a run of consecutive pixels of one row.
+	 * The input rows hold length + 2 values: element i + 1 holds the value at
+	 * the i-th output pixel, and elements 0 and length + 1 hold its out of run
+	 * neighbors to the left and right. This method is called after
+	 * {@link #setup()} and may be called concurrently from several threads, so
+	 * it must not modify the state of the watcher.
+	 * 
+	 * @param above The values of the row above the output row
+	 * @param row The values of the output row
+	 * @param below The values of the row below the output row
+	 * @param output The array to place the calculated values in
+	 * @param length The number of output values to calculate
+	 */
+	void calcOutputRow(double[] above, double[] row, double[] below,
+		double[] output, int length);
+
+}
@@ -0,0 +1,214 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import imagej.command.CommandService;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.Img;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.ops.function.Function;
+import net.imglib2.ops.function.real.RealImageFunction;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory;
+import net.imglib2.outofbounds.OutOfBoundsMirrorFactory.Boundary;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests that the tiled, multi-threaded {@link Reducer} gives the same results
+ * as a single thread.
+ */
+public class ReducerTest {
+
+	/** Large enough for several tiles per plane, and more than one plane. */
+	private static final long[] DIMENSIONS = { 37, 71, 2 };
+
+	private final Context context = new Context(CommandService.class,
+		DatasetService.class, ThreadService.class);
+
+	private final ImgPlus<UnsignedByteType> input = createImage(DIMENSIONS);
+
+	@Test
+	public void testMedianRadial() {
+		assertThreadCountIrrelevant(new NoiseReductionMedian<UnsignedByteType>(),
+			new RadialNeigh(2, 2));
+	}
+
+	@Test
+	public void testMedianRectangular() {
+		assertThreadCountIrrelevant(new NoiseReductionMedian<UnsignedByteType>(),
+			new RectangularNeigh(new long[] { 2, 1 }, new long[] { 1, 2 }));
+	}
+
+	@Test
+	public void testMeanRadial() {
+		assertThreadCountIrrelevant(new NoiseReductionMean<UnsignedByteType>(),
+			new RadialNeigh(2, 3));
+	}
+
+	@Test
+	public void testPluginThreads() {
+		final Dataset single = runPlugin(new RadialNeigh(2, 2), 1);
+		final Dataset multi = runPlugin(new RadialNeigh(2, 2), 3);
+		assertSameValues(single.getImgPlus(), multi.getImgPlus());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreadCount() {
+		new NoiseReductionMedian<UnsignedByteType>().setNumThreads(0);
+	}
+
+	@Test
+	public void testRadialCopyIsIndependent() {
+		assertCopyIsIndependent(new RadialNeigh(2, 2));
+	}
+
+	@Test
+	public void testRectangularCopyIsIndependent() {
+		assertCopyIsIndependent(new RectangularNeigh(new long[] { 1, 2 },
+			new long[] { 2, 1 }));
+	}
+
+	// -- Helper methods --
+
+	private void assertThreadCountIrrelevant(
+		final AbstractNoiseReducerPlugin<UnsignedByteType> plugin,
+		final Neighborhood neighborhood)
+	{
+		final Dataset single = reduce(plugin, neighborhood, 1);
+		for (final int threads : new int[] { 2, 4, 7 }) {
+			final Dataset multi = reduce(plugin, neighborhood, threads);
+			assertSameValues(single.getImgPlus(), multi.getImgPlus());
+		}
+	}
+
+	private Dataset reduce(
+		final AbstractNoiseReducerPlugin<UnsignedByteType> plugin,
+		final Neighborhood neighborhood, final int threads)
+	{
+		final Reducer<UnsignedByteType, DoubleType> reducer =
+			new Reducer<UnsignedByteType, DoubleType>(context, input, plugin
+				.getFunction(imageFunction(input)), neighborhood);
+		reducer.setNumThreads(threads);
+		return reducer.reduceNoise(neighborhood.getDescription());
+	}
+
+	private Dataset runPlugin(final Neighborhood neighborhood,
+		final int threads)
+	{
+		final NoiseReductionMedian<UnsignedByteType> plugin =
+			new NoiseReductionMedian<UnsignedByteType>();
+		context.inject(plugin);
+		plugin.setInput(context.getService(DatasetService.class).create(input));
+		plugin.setNeighborhood(neighborhood);
+		plugin.setNumThreads(threads);
+		plugin.run();
+		return plugin.getOutput();
+	}
+
+	/**
+	 * Moving the points of a copy must neither move the original points nor
+	 * change which points the original includes.
+	 */
+	private void assertCopyIsIndependent(final Neighborhood neighborhood) {
+		final PointSet points = neighborhood.getPoints();
+		final long size = points.size();
+		final Neighborhood copy = neighborhood.copy();
+		assertNotSame(points, copy.getPoints());
+		assertEquals(size, copy.getPoints().size());
+
+		copy.getPoints().translate(new long[] { 10, 10 });
+		assertTrue(copy.getPoints().includes(new long[] { 10, 10 }));
+		assertFalse(copy.getPoints().includes(new long[] { 0, 0 }));
+		assertEquals(0, points.getOrigin()[0]);
+		assertEquals(0, points.getOrigin()[1]);
+		assertTrue(points.includes(new long[] { 0, 0 }));
+		assertFalse(points.includes(new long[] { 10, 10 }));
+		assertEquals(size, points.size());
+	}
+
+	/** Reads an image as the noise reduction plugins do. */
+	static Function<long[], DoubleType> imageFunction(
+		final ImgPlus<UnsignedByteType> img)
+	{
+		final OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>> oobFactory =
+			new OutOfBoundsMirrorFactory<UnsignedByteType, RandomAccessibleInterval<UnsignedByteType>>(
+				Boundary.DOUBLE);
+		return new RealImageFunction<UnsignedByteType, DoubleType>(img,
+			oobFactory, new DoubleType());
+	}
+
+	static void assertSameValues(
+		final ImgPlus<? extends RealType<?>> expected,
+		final ImgPlus<? extends RealType<?>> actual)
+	{
+		final Cursor<? extends RealType<?>> e = expected.cursor();
+		final Cursor<? extends RealType<?>> a = actual.cursor();
+		while (e.hasNext()) {
+			assertEquals(e.next().getRealDouble(), a.next().getRealDouble(), 0);
+		}
+		assertFalse(a.hasNext());
+	}
+
+	/** Creates a planar image of reproducible random bytes. */
+	static ImgPlus<UnsignedByteType> createImage(final long... dims) {
+		final Img<UnsignedByteType> img =
+			new PlanarImgFactory<UnsignedByteType>().create(dims,
+				new UnsignedByteType());
+		final Random random = new Random(17);
+		for (final UnsignedByteType value : img) {
+			value.set(random.nextInt(256));
+		}
+		return new ImgPlus<UnsignedByteType>(img);
+	}
+
+}
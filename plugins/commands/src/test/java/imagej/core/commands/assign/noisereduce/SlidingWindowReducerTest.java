@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.core.commands.assign.noisereduce;
+
+import static imagej.core.commands.assign.noisereduce.ReducerTest.assertSameValues;
+import static imagej.core.commands.assign.noisereduce.ReducerTest.createImage;
+import static imagej.core.commands.assign.noisereduce.ReducerTest.imageFunction;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.core.commands.assign.noisereduce.SlidingWindowReducer.Operation;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Tests that the {@link SlidingWindowReducer} computes the same results as the
+ * general {@link Reducer}.
+ */
+public class SlidingWindowReducerTest {
+
+	private final Context context = new Context(DatasetService.class,
+		ThreadService.class);
+
+	@Test
+	public void testOddWindows() {
+		assertMatchesReducer(createImage(41, 30, 2), 1, 1, 1, 1);
+		assertMatchesReducer(createImage(41, 30), 3, 3, 2, 2);
+	}
+
+	@Test
+	public void testEvenWindows() {
+		assertMatchesReducer(createImage(41, 30), 1, 0, 1, 0);
+		assertMatchesReducer(createImage(41, 30), 0, 2, 1, 2);
+	}
+
+	@Test
+	public void testAsymmetricWindows() {
+		assertMatchesReducer(createImage(23, 19, 3), 2, 0, 0, 3);
+	}
+
+	@Test
+	public void testSinglePixelWindow() {
+		assertMatchesReducer(createImage(9, 7), 0, 0, 0, 0);
+	}
+
+	@Test
+	public void testWindowLargerThanPlane() {
+		assertMatchesReducer(createImage(3, 2, 2), 4, 4, 4, 4);
+		assertMatchesReducer(createImage(1, 5), 2, 2, 1, 1);
+		assertMatchesReducer(createImage(6, 1), 1, 1, 3, 3);
+	}
+
+	@Test
+	public void testTallImage() {
+		// more rows than one band, so bands meet inside the plane
+		assertMatchesReducer(createImage(7, 150), 1, 2, 3, 1);
+	}
+
+	@Test
+	public void testCompatibility() {
+		final ImgPlus<UnsignedByteType> bytes = createImage(5, 5);
+		final RectangularNeigh rect =
+			new RectangularNeigh(new long[] { 1, 1 }, new long[] { 1, 1 });
+		assertTrue(SlidingWindowReducer.isCompatible(bytes, rect));
+		assertFalse(SlidingWindowReducer.isCompatible(bytes, new RadialNeigh(2, 2)));
+		final ImgPlus<FloatType> floats =
+			new ImgPlus<FloatType>(new PlanarImgFactory<FloatType>().create(
+				new long[] { 5, 5 }, new FloatType()));
+		assertFalse(SlidingWindowReducer.isCompatible(floats, rect));
+		assertFalse(SlidingWindowReducer.isCompatible(createImage(5), rect));
+		assertFalse(SlidingWindowReducer.isCompatible(createImage(5, 5, 3),
+			new RectangularNeigh(new long[] { 1, 1, 1 }, new long[] { 1, 1, 1 })));
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Filters the image with every operation over a window reaching the given
+	 * number of pixels left, right, up and down, and compares the results with
+	 * those of the {@link Reducer}.
+	 */
+	private void assertMatchesReducer(final ImgPlus<UnsignedByteType> img,
+		final long left, final long right, final long up, final long down)
+	{
+		final long[] pos = new long[img.numDimensions()];
+		final long[] neg = new long[img.numDimensions()];
+		pos[0] = right;
+		neg[0] = left;
+		pos[1] = down;
+		neg[1] = up;
+		final RectangularNeigh neighborhood = new RectangularNeigh(pos, neg);
+		assertTrue(SlidingWindowReducer.isCompatible(img, neighborhood));
+		assertMatchesReducer(img, neighborhood, Operation.MEDIAN,
+			new NoiseReductionMedian<UnsignedByteType>());
+		assertMatchesReducer(img, neighborhood, Operation.MIN,
+			new NoiseReductionMin<UnsignedByteType>());
+		assertMatchesReducer(img, neighborhood, Operation.MAX,
+			new NoiseReductionMax<UnsignedByteType>());
+		assertMatchesReducer(img, neighborhood, Operation.MIDPOINT,
+			new NoiseReductionMidpoint<UnsignedByteType>());
+	}
+
+	private void assertMatchesReducer(final ImgPlus<UnsignedByteType> img,
+		final RectangularNeigh neighborhood, final Operation operation,
+		final AbstractNoiseReducerPlugin<UnsignedByteType> plugin)
+	{
+		final Reducer<UnsignedByteType, ?> reducer =
+			new Reducer<UnsignedByteType, DoubleType>(context, img, plugin
+				.getFunction(imageFunction(img)), neighborhood);
+		final Dataset expected = reducer.reduceNoise(operation.toString());
+		for (final int threads : new int[] { 1, 3 }) {
+			final SlidingWindowReducer<UnsignedByteType> sliding =
+				new SlidingWindowReducer<UnsignedByteType>(context, img, operation,
+					neighborhood);
+			sliding.setNumThreads(threads);
+			final Dataset actual = sliding.reduceNoise(operation.toString());
+			assertSameValues(expected.getImgPlus(), actual.getImgPlus());
+		}
+	}
+
+}
@@ -96,7 +96,7 @@ protected void onDataViewUpdatedEvent(final DataViewUpdatedEvent event) {
 	@Override
 	public void update() {
 		log.debug("Updating image figure: " + this);
-		final Image image = datasetView.getScreenImage().image();
+		final Image image = datasetView.getVisibleScreenImage().image();
 		final BufferedImage bufImage = AWTImageTools.makeBuffered(image);
 		figure.setBounds(new Rectangle2D.Double(0, 0, bufImage.getWidth(),
 			bufImage.getHeight()));